@@ -0,0 +1,76 @@
+package stocksynapse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Shared fixtures for the benchmarks: generated products and an
+ * {@link InventoryService} over a throwaway embedded store.
+ */
+final class BenchmarkCatalogs {
+
+    private static final String[] CATEGORIES = { "Electronics", "Groceries", "Clothing", "Garden", "Toys", "Books" };
+
+    private BenchmarkCatalogs() {
+    }
+
+    /**
+     * @return {@code count} products with repeatable names, prices, quantities and categories.
+     */
+    static List<Product> generateProducts(int count, long seed) {
+        Random random = new Random(seed);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(new Product(new UUID(random.nextLong(), random.nextLong()).toString(),
+                    "Product " + i, random.nextInt(100_000) / 100.0, random.nextInt(500),
+                    CATEGORIES[random.nextInt(CATEGORIES.length)], "Generated for benchmarking"));
+        }
+        return products;
+    }
+
+    /**
+     * Opens a service over an empty embedded store in a new temporary
+     * directory, with the product cache and catalog snapshot turned off so
+     * every read reaches the store.
+     */
+    static InventoryService openEmbeddedService(Path directory) {
+        Properties props = new Properties();
+        props.setProperty("STORAGE_BACKEND", "embedded");
+        props.setProperty("EMBEDDED_STORE_DIR", directory.toString());
+        props.setProperty("PRODUCT_CACHE_MAX_SIZE", "0");
+        props.setProperty("CATALOG_SNAPSHOT_FILE", "");
+        return new InventoryService(props);
+    }
+
+    /**
+     * Opens a service as {@link #openEmbeddedService} does and adds
+     * {@code count} generated products to it.
+     */
+    static InventoryService openPopulatedService(Path directory, int count) {
+        InventoryService service = openEmbeddedService(directory);
+        for (Product product : generateProducts(count, 42)) {
+            service.addProduct(product.getName(), product.getPrice(), product.getQuantity(),
+                    product.getCategory(), product.getDescription());
+        }
+        return service;
+    }
+
+    static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package stocksynapse;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The CPU work around a Gemini call: building the single-product and batch
+ * prompts and extracting the forecast text from a response. No requests are
+ * sent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ForecastingServiceBenchmark {
+
+    private ForecastingService service;
+    private Product product;
+    private List<Product> batch;
+    private String response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties config = new Properties();
+        // Keep the forecast cache off the disk.
+        config.setProperty("FORECAST_CACHE_MAX_ENTRIES", "0");
+        service = new ForecastingService("benchmark-key", config);
+        batch = BenchmarkCatalogs.generateProducts(5, 42);
+        product = batch.get(0);
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= batch.size(); i++) {
+            text.append("### PRODUCT ").append(i).append("\n**Forecast**\nSteady demand of about 40 units a week.\n")
+                    .append("**Recommendation**\nReorder 120 units within the next ten days.\n\n");
+        }
+        JSONObject part = new JSONObject().put("text", text.toString());
+        JSONObject content = new JSONObject().put("parts", new JSONArray().put(part)).put("role", "model");
+        JSONObject candidate = new JSONObject().put("content", content).put("finishReason", "STOP");
+        response = new JSONObject().put("candidates", new JSONArray().put(candidate)).toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public String createPromptForProduct() {
+        return service.createPromptForProduct(product);
+    }
+
+    @Benchmark
+    public String createPromptForBatch() {
+        return service.createPromptForBatch(batch);
+    }
+
+    @Benchmark
+    public String parseResponse() throws ForecastingException {
+        return service.parseResponse(response);
+    }
+}
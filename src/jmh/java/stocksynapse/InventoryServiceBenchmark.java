@@ -0,0 +1,85 @@
+package stocksynapse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Create, read, update and delete through {@link InventoryService}, against
+ * the embedded store so the figures do not depend on a MySQL server. Every
+ * change also runs the registered listeners (statistics, search index,
+ * alerts), as it does in the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventoryServiceBenchmark {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    private Path directory;
+    private InventoryService service;
+    private List<Product> catalog;
+    private Product edited;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("stocksynapse-bench");
+        service = BenchmarkCatalogs.openPopulatedService(directory, CATALOG_SIZE);
+        catalog = service.getAllProducts();
+        edited = catalog.get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+        BenchmarkCatalogs.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Product getProductById() {
+        next = (next + 1) % CATALOG_SIZE;
+        return service.getProductById(catalog.get(next).getId());
+    }
+
+    @Benchmark
+    public Product updateProduct() {
+        Product change = new Product(edited.getId(), edited.getName(), edited.getPrice(),
+                edited.getQuantity() == 0 ? 100 : edited.getQuantity() - 1, edited.getCategory(),
+                edited.getDescription(), edited.getVersion());
+        edited = service.updateProduct(change).getProduct();
+        return edited;
+    }
+
+    @Benchmark
+    public Product adjustQuantity() {
+        next = (next + 1) % CATALOG_SIZE;
+        return service.adjustQuantity(catalog.get(next).getId(), next % 2 == 0 ? 1 : -1, "benchmark");
+    }
+
+    /** Add and delete together, so the catalog stays the same size across iterations. */
+    @Benchmark
+    public boolean addThenDeleteProduct() {
+        Product added = service.addProduct("Benchmark product", 9.99, 10, "Electronics", null);
+        return service.deleteProduct(added.getId());
+    }
+}
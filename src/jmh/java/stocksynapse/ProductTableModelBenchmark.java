@@ -0,0 +1,77 @@
+package stocksynapse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The table model's work on the EDT: refreshing it with a reloaded catalog
+ * in which a few products changed, and reading cells as the JTable paints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class ProductTableModelBenchmark {
+
+    /** Rows a JTable paints in one screenful. */
+    private static final int VISIBLE_ROWS = 40;
+
+    @Param({ "1000", "10000", "100000" })
+    public int catalogSize;
+
+    private List<Product> original;
+    private List<Product> reloaded;
+    private ProductTableModel model;
+    private boolean showingReloaded;
+    private int firstVisibleRow;
+
+    @Setup(Level.Trial)
+    public void setUpCatalogs() {
+        original = new ColumnarProductList(BenchmarkCatalogs.generateProducts(catalogSize, 42));
+        // The reloaded catalog has one product in a hundred restocked.
+        List<Product> changed = new ArrayList<>(original);
+        for (int i = 0; i < changed.size(); i += 100) {
+            Product product = changed.get(i);
+            changed.set(i, new Product(product.getId(), product.getName(), product.getPrice(),
+                    product.getQuantity() + 10, product.getCategory(), product.getDescription(),
+                    product.getVersion() + 1));
+        }
+        reloaded = new ColumnarProductList(changed);
+        model = new ProductTableModel(original);
+    }
+
+    /** Alternates between the two catalogs, so every call applies the same number of changes. */
+    @Benchmark
+    public ProductTableModel refresh() {
+        showingReloaded = !showingReloaded;
+        model.refresh(showingReloaded ? reloaded : original);
+        return model;
+    }
+
+    @Benchmark
+    public void getValueAtVisibleRows(Blackhole blackhole) {
+        firstVisibleRow = (firstVisibleRow + VISIBLE_ROWS) % (catalogSize - VISIBLE_ROWS);
+        for (int row = firstVisibleRow; row < firstVisibleRow + VISIBLE_ROWS; row++) {
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                blackhole.consume(model.getValueAt(row, column));
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package stocksynapse;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.List;
+
+/**
+ * Shows catalog-wide analytics: stock value by category, price and quantity
+ * percentiles, the most valuable products and dead stock. The figures are
+ * computed by the {@link InventoryAnalyticsEngine} when the panel is shown
+ * and reused until the catalog changes.
+ */
+public class AnalyticsPanel extends JPanel {
+
+    private final InventoryService inventoryService;
+    private final JLabel summaryLabel;
+    private final DefaultTableModel categoryModel = readOnlyModel("Category", "Products", "Units", "Value");
+    private final DefaultTableModel percentileModel = readOnlyModel("Percentile", "Price", "Quantity");
+    private final DefaultTableModel topModel = readOnlyModel("Name", "Category", "Price", "Quantity", "Value");
+    private final DefaultTableModel deadStockModel = readOnlyModel("Name", "Category", "Price", "Quantity", "Value");
+    private int loadGeneration;
+
+    public AnalyticsPanel(InventoryService inventoryService) {
+        this.inventoryService = inventoryService;
+        setLayout(new BorderLayout(10, 10));
+        setBorder(new EmptyBorder(20, 20, 20, 20));
+
+        // --- Title and Summary ---
+        JPanel headerPanel = new JPanel(new GridLayout(0, 1, 5, 5));
+        JLabel titleLabel = new JLabel("Inventory Analytics", SwingConstants.CENTER);
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 28));
+        headerPanel.add(titleLabel);
+        summaryLabel = new JLabel(" ", SwingConstants.CENTER);
+        summaryLabel.setFont(new Font("Arial", Font.PLAIN, 14));
+        headerPanel.add(summaryLabel);
+        add(headerPanel, BorderLayout.NORTH);
+
+        // --- Tables ---
+        JPanel tablesPanel = new JPanel(new GridLayout(2, 2, 10, 10));
+        tablesPanel.add(createTablePane("Stock Value by Category", categoryModel));
+        tablesPanel.add(createTablePane("Price and Quantity Percentiles", percentileModel));
+        tablesPanel.add(createTablePane("Most Valuable Products", topModel));
+        tablesPanel.add(createTablePane("Dead Stock", deadStockModel));
+        add(tablesPanel, BorderLayout.CENTER);
+
+        // --- Control Panel ---
+        JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        JButton refreshButton = new JButton("Refresh Analytics");
+        refreshButton.addActionListener(e -> {
+            // Re-read the catalog to pick up changes made by other terminals.
+            inventoryService.getAnalyticsEngine().invalidate();
+            loadAnalytics();
+        });
+        controlPanel.add(refreshButton);
+        add(controlPanel, BorderLayout.SOUTH);
+
+        // Compute only when the page is opened, since the first run reads the whole catalog.
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                loadAnalytics();
+            }
+        });
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    private static JScrollPane createTablePane(String title, DefaultTableModel model) {
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setBorder(BorderFactory.createTitledBorder(title));
+        return scrollPane;
+    }
+
+    /**
+     * Shows the cached analytics straight away if the catalog has not
+     * changed, otherwise computes them off the EDT.
+     */
+    private void loadAnalytics() {
+        final int generation = ++loadGeneration;
+        InventoryAnalytics cached = inventoryService.getAnalyticsEngine().getCachedAnalytics();
+        if (cached != null) {
+            showAnalytics(cached);
+            return;
+        }
+        summaryLabel.setText("Computing analytics...");
+        new TracedSwingWorker<InventoryAnalytics, Void>("Compute analytics") {
+            @Override
+            protected InventoryAnalytics runInBackground() {
+                return inventoryService.getAnalyticsEngine().getAnalytics();
+            }
+
+            @Override
+            protected void finished() {
+                if (generation != loadGeneration) {
+                    return; // A newer load has been started.
+                }
+                try {
+                    showAnalytics(get());
+                } catch (Exception ex) {
+                    summaryLabel.setText("Analytics unavailable: " + ex.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void showAnalytics(InventoryAnalytics analytics) {
+        summaryLabel.setText(String.format(
+                "%,d products worth $%,.2f. Dead stock (no sales in %d days): %,d products worth $%,.2f. "
+                        + "Computed in %d ms.",
+                analytics.getProductCount(), analytics.getTotalValue(), analytics.getDeadStockDays(),
+                analytics.getDeadStockCount(), analytics.getDeadStockValue(),
+                analytics.getComputeNanos() / 1_000_000));
+
+        categoryModel.setRowCount(0);
+        for (InventoryAnalytics.CategorySummary category : analytics.getCategories()) {
+            categoryModel.addRow(new Object[] {
+                    category.getCategory() == null ? "(none)" : category.getCategory(),
+                    category.getProductCount(), category.getTotalUnits(),
+                    String.format("$%,.2f", category.getTotalValue()) });
+        }
+
+        percentileModel.setRowCount(0);
+        double[] prices = analytics.getPricePercentiles();
+        int[] quantities = analytics.getQuantityPercentiles();
+        for (int i = 0; i < InventoryAnalytics.PERCENTILES.length; i++) {
+            percentileModel.addRow(new Object[] { "p" + InventoryAnalytics.PERCENTILES[i],
+                    String.format("$%,.2f", prices[i]), quantities[i] });
+        }
+
+        showProducts(topModel, analytics.getMostValuable());
+        showProducts(deadStockModel, analytics.getDeadStock());
+    }
+
+    private static void showProducts(DefaultTableModel model, List<Product> products) {
+        model.setRowCount(0);
+        for (Product product : products) {
+            model.addRow(new Object[] { product.getName(), product.getCategory(),
+                    String.format("$%,.2f", product.getPrice()), product.getQuantity(),
+                    String.format("$%,.2f", product.getPrice() * product.getQuantity()) });
+        }
+    }
+}
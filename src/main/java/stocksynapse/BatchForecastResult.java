@@ -0,0 +1,66 @@
+package stocksynapse;
+
+/**
+ * The outcome of forecasting one product as part of a batch: either the
+ * forecast text or the error that prevented it.
+ */
+public class BatchForecastResult {
+    private final Product product;
+    private final String forecast;
+    private final ForecastingException error;
+    private final boolean cached;
+    private final boolean local;
+
+    private BatchForecastResult(Product product, String forecast, ForecastingException error, boolean cached,
+            boolean local) {
+        this.product = product;
+        this.forecast = forecast;
+        this.error = error;
+        this.cached = cached;
+        this.local = local;
+    }
+
+    public static BatchForecastResult success(Product product, String forecast) {
+        return new BatchForecastResult(product, forecast, null, false, false);
+    }
+
+    public static BatchForecastResult cached(Product product, String forecast) {
+        return new BatchForecastResult(product, forecast, null, true, false);
+    }
+
+    public static BatchForecastResult local(Product product, String forecast) {
+        return new BatchForecastResult(product, forecast, null, false, true);
+    }
+
+    public static BatchForecastResult failure(Product product, ForecastingException error) {
+        return new BatchForecastResult(product, null, error, false, false);
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    /** @return The forecast text, or null if the forecast failed. */
+    public String getForecast() {
+        return forecast;
+    }
+
+    /** @return The error, or null if the forecast succeeded. */
+    public ForecastingException getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /** @return true if the forecast came from the forecast cache rather than a new API call. */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /** @return true if the forecast came from the local statistical engine rather than the Gemini API. */
+    public boolean isLocal() {
+        return local;
+    }
+}
@@ -0,0 +1,48 @@
+package stocksynapse;
+
+/**
+ * An immutable snapshot of a cache's hit, miss and eviction counters.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+
+    public CacheStats(long hits, long misses, long evictions, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /** @return Entries dropped because they expired or the cache was full. */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** @return Entries currently held. */
+    public int getSize() {
+        return size;
+    }
+
+    /** @return The fraction of lookups served from the cache, between 0 and 1. */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : hits / (double) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats{hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d, size=%d}",
+                hits, misses, getHitRate() * 100, evictions, size);
+    }
+}
@@ -0,0 +1,228 @@
+package stocksynapse;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * A read-only copy of the catalog saved to a binary file, so the next launch
+ * can show the inventory before the database has answered.
+ *
+ * The file holds every product in (name, id) order followed by a table of
+ * record offsets. Opening it only maps the file and checks the header; each
+ * product is decoded when the list is asked for it, so a table showing a
+ * million products touches only the rows on screen.
+ *
+ * The rows may be out of date. They are meant to be displayed until the
+ * catalog has been read from the database, never to be written back.
+ */
+public class CatalogSnapshot extends AbstractList<Product> implements RandomAccess {
+
+    private static final int MAGIC = 0x53534353; // "SSCS"
+    private static final int FORMAT_VERSION = 1;
+    // Magic, format version, save time, product count and the offset of the record table.
+    private static final int HEADER_SIZE = 24;
+
+    private final ByteBuffer buffer;
+    private final long savedAtMillis;
+    private final int size;
+    private final int tableOffset;
+
+    private CatalogSnapshot(ByteBuffer buffer, long savedAtMillis, int size, int tableOffset) {
+        this.buffer = buffer;
+        this.savedAtMillis = savedAtMillis;
+        this.size = size;
+        this.tableOffset = tableOffset;
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param file The file written by {@link #write}.
+     * @return The snapshot's products, decoded on demand.
+     * @throws java.nio.file.NoSuchFileException if there is no snapshot yet.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public static CatalogSnapshot open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a catalog snapshot.");
+            }
+            // The mapping stays valid after the channel is closed.
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException(file + " is not a catalog snapshot or was written by another version.");
+        }
+        int size = buffer.getInt(16);
+        int tableOffset = buffer.getInt(20);
+        if (size < 0 || tableOffset < HEADER_SIZE || (long) tableOffset + 4L * size > buffer.capacity()) {
+            throw new IOException(file + " is truncated.");
+        }
+        return new CatalogSnapshot(buffer, buffer.getLong(8), size, tableOffset);
+    }
+
+    /**
+     * Writes a snapshot of the catalog. The file is replaced atomically, so a
+     * crash part way through leaves the previous snapshot in place.
+     *
+     * @param file The snapshot file to replace.
+     * @param scan Streams every product, in (name, id) order, to the consumer it is given.
+     * @return The number of products written.
+     * @throws IOException if the file cannot be written.
+     */
+    public static int write(Path file, Consumer<Consumer<Product>> scan) throws IOException {
+        long savedAt = System.currentTimeMillis();
+        Path parent = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, "catalog-snapshot", ".tmp");
+        try {
+            int count;
+            int tableOffset;
+            try (Writer out = new Writer(temp)) {
+                try {
+                    scan.accept(out::writeProduct);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                count = out.count;
+                tableOffset = out.writeTable();
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(savedAt).putInt(count).putInt(tableOffset).flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** @return When the snapshot was taken, in epoch milliseconds. */
+    public long getSavedAtMillis() {
+        return savedAtMillis;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Product get(int index) {
+        Objects.checkIndex(index, size);
+        int position = buffer.getInt(tableOffset + 4 * index);
+        String id = getString(position);
+        position = skipString(position);
+        String name = getString(position);
+        position = skipString(position);
+        double price = buffer.getDouble(position);
+        int quantity = buffer.getInt(position + 8);
+        position += 12;
+        String category = getString(position);
+        position = skipString(position);
+        String description = getString(position);
+        position = skipString(position);
+        return new Product(id, name, price, quantity, category, description, buffer.getLong(position));
+    }
+
+    private String getString(int position) {
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int skipString(int position) {
+        return position + 4 + Math.max(0, buffer.getInt(position));
+    }
+
+    /** Streams records to the file, remembering where each one starts. */
+    private static final class Writer implements AutoCloseable {
+        private final DataOutputStream data;
+        private int[] offsets = new int[1024];
+        private int count;
+
+        Writer(Path file) throws IOException {
+            this.data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+            data.write(new byte[HEADER_SIZE]);
+        }
+
+        void writeProduct(Product product) {
+            try {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = checkedPosition();
+                writeString(product.getId());
+                writeString(product.getName());
+                data.writeDouble(product.getPrice());
+                data.writeInt(product.getQuantity());
+                writeString(product.getCategory());
+                writeString(product.getDescription());
+                data.writeLong(product.getVersion());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Appends the table of record offsets.
+         *
+         * @return Where the table starts.
+         */
+        int writeTable() throws IOException {
+            int tableOffset = checkedPosition();
+            for (int i = 0; i < count; i++) {
+                data.writeInt(offsets[i]);
+            }
+            checkedPosition();
+            return tableOffset;
+        }
+
+        private int checkedPosition() throws IOException {
+            // DataOutputStream stops counting at Integer.MAX_VALUE, which is also the most an int offset can address.
+            if (data.size() == Integer.MAX_VALUE) {
+                throw new IOException("The catalog is too large for a snapshot (2 GB).");
+            }
+            return data.size();
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                data.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
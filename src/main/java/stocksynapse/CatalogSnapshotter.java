@@ -0,0 +1,117 @@
+package stocksynapse;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the {@link CatalogSnapshot} file up to date: it is rewritten
+ * periodically while products change and once more on exit, so the next
+ * launch can show the inventory straight away.
+ *
+ * The first save of each session always runs, since other terminals may
+ * have changed the catalog since the last one; after that a save is skipped
+ * unless this application has changed a product.
+ *
+ * Tuning keys read from local.properties (all optional):
+ * CATALOG_SNAPSHOT_FILE (empty disables snapshots) and
+ * CATALOG_SNAPSHOT_INTERVAL_MS (0 saves only on exit).
+ */
+public class CatalogSnapshotter implements InventoryListener {
+
+    private final Path file;
+    private final Consumer<Consumer<Product>> scan;
+    private final ScheduledExecutorService saver;
+    private final AtomicBoolean changed = new AtomicBoolean(true);
+
+    /**
+     * @param config Tuning values from local.properties.
+     * @param scan   Streams every product, in (name, id) order, to the consumer it is given.
+     */
+    public CatalogSnapshotter(Properties config, Consumer<Consumer<Product>> scan) {
+        String fileName = config.getProperty("CATALOG_SNAPSHOT_FILE", "catalog-snapshot.bin").trim();
+        this.file = fileName.isEmpty() ? null : Paths.get(fileName);
+        this.scan = scan;
+        this.saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stocksynapse-snapshot-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalMillis = LocalProperties.getLong(config, "CATALOG_SNAPSHOT_INTERVAL_MS", 300_000L);
+        if (isEnabled() && intervalMillis > 0) {
+            saver.scheduleWithFixedDelay(this::saveIfChanged, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Maps the snapshot saved by an earlier session.
+     *
+     * @return The saved products, or null if snapshots are disabled or none could be read.
+     */
+    public CatalogSnapshot open() {
+        if (!isEnabled()) {
+            return null;
+        }
+        try {
+            return CatalogSnapshot.open(file);
+        } catch (NoSuchFileException e) {
+            // First run; nothing saved yet.
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable catalog snapshot " + file + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Rewrites the snapshot if the catalog may have changed since the last
+     * save. A failed save, e.g. because the database is unreachable, keeps
+     * the previous snapshot and is retried next time.
+     */
+    public synchronized void saveIfChanged() {
+        if (!isEnabled() || !changed.getAndSet(false)) {
+            return;
+        }
+        try {
+            CatalogSnapshot.write(file, scan);
+        } catch (IOException | RuntimeException e) {
+            changed.set(true);
+            System.err.println("Could not save catalog snapshot to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the periodic saves and saves one last time. Call once on
+     * application exit, before the store is closed.
+     */
+    public void close() {
+        // Not shutdownNow: interrupting a save in progress would close its file channel.
+        saver.shutdown();
+        saveIfChanged();
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        changed.set(true);
+    }
+
+    @Override
+    public void productUpdated(Product previous, Product updated) {
+        changed.set(true);
+    }
+
+    @Override
+    public void productRemoved(Product product) {
+        changed.set(true);
+    }
+}
@@ -0,0 +1,524 @@
+package stocksynapse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A list of products stored column by column in primitive arrays, for
+ * holding large catalogs in a fraction of the memory a list of Product
+ * objects needs and with far fewer objects for the garbage collector.
+ *
+ * Prices are kept as whole cents and UUID IDs as two longs. Categories are
+ * numbered in a dictionary, so each distinct category is stored once.
+ * Names and descriptions are UTF-8 bytes in one shared array. The rare value
+ * that does not fit (a price with fractions of a cent, an ID that is not a
+ * lowercase UUID) is stored exactly in a slower form.
+ *
+ * {@link #get(int)} builds a short-lived Product view of a row. Callers that
+ * only need one field, like a table cell, should use the per-column getters,
+ * which allocate at most the string they return.
+ *
+ * Like ArrayList, this class is not thread-safe; share copies, not instances.
+ */
+public class ColumnarProductList extends AbstractList<Product> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 16;
+    // Rows whose ID is stored as text rather than UUID bits.
+    private static final byte TEXT_ID = 1;
+    // Rows whose price is stored as raw double bits rather than cents.
+    private static final byte RAW_PRICE = 2;
+    // Unused text is reclaimed once it is more than half the text array and at least this big.
+    private static final int MIN_COMPACTION_BYTES = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private int size;
+    // UUID bits; for a TEXT_ID row, idLow holds the ID's length in bytes.
+    private long[] idHigh;
+    private long[] idLow;
+    private long[] prices;
+    private int[] quantities;
+    // Index into categoryNames, or -1 for no category.
+    private int[] categories;
+    private long[] versions;
+    private byte[] flags;
+    // Where each row's text starts: its ID if stored as text, then its name, then its description.
+    private int[] textOffsets;
+    // Byte lengths, or -1 for null.
+    private int[] nameLengths;
+    private int[] descriptionLengths;
+
+    private byte[] text;
+    private int textSize;
+    // Bytes of text no longer referenced by any row.
+    private int unusedTextBytes;
+
+    private final List<String> categoryNames;
+    private final Map<String, Integer> categoryCodes;
+
+    public ColumnarProductList() {
+        allocate(INITIAL_CAPACITY);
+        this.text = new byte[INITIAL_CAPACITY * 32];
+        this.categoryNames = new ArrayList<>();
+        this.categoryCodes = new HashMap<>();
+    }
+
+    /**
+     * @param products The rows to copy. Another ColumnarProductList is copied
+     *                 column by column, without building Product views.
+     */
+    public ColumnarProductList(Collection<? extends Product> products) {
+        if (products instanceof ColumnarProductList) {
+            ColumnarProductList other = (ColumnarProductList) products;
+            this.size = other.size;
+            int capacity = Math.max(INITIAL_CAPACITY, size);
+            this.idHigh = Arrays.copyOf(other.idHigh, capacity);
+            this.idLow = Arrays.copyOf(other.idLow, capacity);
+            this.prices = Arrays.copyOf(other.prices, capacity);
+            this.quantities = Arrays.copyOf(other.quantities, capacity);
+            this.categories = Arrays.copyOf(other.categories, capacity);
+            this.versions = Arrays.copyOf(other.versions, capacity);
+            this.flags = Arrays.copyOf(other.flags, capacity);
+            this.textOffsets = Arrays.copyOf(other.textOffsets, capacity);
+            this.nameLengths = Arrays.copyOf(other.nameLengths, capacity);
+            this.descriptionLengths = Arrays.copyOf(other.descriptionLengths, capacity);
+            this.text = Arrays.copyOf(other.text, Math.max(other.textSize, INITIAL_CAPACITY * 32));
+            this.textSize = other.textSize;
+            this.unusedTextBytes = other.unusedTextBytes;
+            this.categoryNames = new ArrayList<>(other.categoryNames);
+            this.categoryCodes = new HashMap<>(other.categoryCodes);
+        } else {
+            allocate(Math.max(INITIAL_CAPACITY, products.size()));
+            this.text = new byte[Math.max(INITIAL_CAPACITY, products.size()) * 32];
+            this.categoryNames = new ArrayList<>();
+            this.categoryCodes = new HashMap<>();
+            addAll(products);
+        }
+    }
+
+    private void allocate(int capacity) {
+        idHigh = new long[capacity];
+        idLow = new long[capacity];
+        prices = new long[capacity];
+        quantities = new int[capacity];
+        categories = new int[capacity];
+        versions = new long[capacity];
+        flags = new byte[capacity];
+        textOffsets = new int[capacity];
+        nameLengths = new int[capacity];
+        descriptionLengths = new int[capacity];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Product get(int index) {
+        checkIndex(index, size);
+        return new Product(getId(index), getName(index), getPrice(index), quantities[index], getCategory(index),
+                getDescription(index), versions[index]);
+    }
+
+    public String getId(int index) {
+        checkIndex(index, size);
+        if ((flags[index] & TEXT_ID) != 0) {
+            return new String(text, textOffsets[index], (int) idLow[index], StandardCharsets.UTF_8);
+        }
+        return formatUuid(idHigh[index], idLow[index]);
+    }
+
+    public String getName(int index) {
+        checkIndex(index, size);
+        return decode(nameOffset(index), nameLengths[index]);
+    }
+
+    public String getDescription(int index) {
+        checkIndex(index, size);
+        return decode(nameOffset(index) + Math.max(0, nameLengths[index]), descriptionLengths[index]);
+    }
+
+    public double getPrice(int index) {
+        checkIndex(index, size);
+        return (flags[index] & RAW_PRICE) != 0 ? Double.longBitsToDouble(prices[index]) : prices[index] / 100.0;
+    }
+
+    public int getQuantity(int index) {
+        checkIndex(index, size);
+        return quantities[index];
+    }
+
+    /**
+     * @return The category, shared by every row in it, or null.
+     */
+    public String getCategory(int index) {
+        checkIndex(index, size);
+        return categories[index] < 0 ? null : categoryNames.get(categories[index]);
+    }
+
+    /**
+     * @return The row's category as a code for {@link #getCategoryName(int)},
+     *         or -1 for no category. Rows in the same category share a code.
+     */
+    int getCategoryCode(int index) {
+        checkIndex(index, size);
+        return categories[index];
+    }
+
+    /** @return The number of category codes, one more than the largest. */
+    int getCategoryCodeCount() {
+        return categoryNames.size();
+    }
+
+    String getCategoryName(int code) {
+        return categoryNames.get(code);
+    }
+
+    /**
+     * Finds the rows of several products in one pass over the ID columns,
+     * comparing UUID bits rather than building each row's ID string.
+     *
+     * @param ids The IDs to find.
+     * @return The row of each ID, in the same order, or -1 if it is not in the list.
+     */
+    int[] indexOfIds(List<String> ids) {
+        int[] rows = new int[ids.size()];
+        Arrays.fill(rows, -1);
+        if (ids.isEmpty()) {
+            return rows;
+        }
+        // An open-addressing table of the UUIDs, at least twice the size needed so probes stay short.
+        int mask = Integer.highestOneBit(ids.size() * 4 - 1) - 1;
+        long[] highs = new long[mask + 1];
+        long[] lows = new long[mask + 1];
+        int[] positions = new int[mask + 1];
+        Arrays.fill(positions, -1);
+        Map<String, Integer> textPositions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            if (!isUuid(id)) {
+                textPositions.put(id, i);
+                continue;
+            }
+            long high = parseHex(id, 0, 18);
+            long low = parseHex(id, 19, 36);
+            int slot = slot(high, low, mask);
+            while (positions[slot] >= 0 && (highs[slot] != high || lows[slot] != low)) {
+                slot = (slot + 1) & mask;
+            }
+            highs[slot] = high;
+            lows[slot] = low;
+            positions[slot] = i;
+        }
+        for (int row = 0; row < size; row++) {
+            if ((flags[row] & TEXT_ID) != 0) {
+                Integer position = textPositions.isEmpty() ? null : textPositions.get(getId(row));
+                if (position != null) {
+                    rows[position] = row;
+                }
+                continue;
+            }
+            long high = idHigh[row];
+            long low = idLow[row];
+            for (int slot = slot(high, low, mask); positions[slot] >= 0; slot = (slot + 1) & mask) {
+                if (highs[slot] == high && lows[slot] == low) {
+                    rows[positions[slot]] = row;
+                    break;
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public Product set(int index, Product product) {
+        checkIndex(index, size);
+        Product previous = get(index);
+        unusedTextBytes += textLength(index);
+        write(index, product);
+        compactTextIfWasteful();
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Product product) {
+        checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+        shift(index, index + 1, size - index);
+        size++;
+        write(index, product);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Product> products) {
+        return addAll(size, products);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Product> products) {
+        checkIndex(index, size + 1);
+        int count = products.size();
+        if (count == 0) {
+            return false;
+        }
+        ensureCapacity(size + count);
+        shift(index, index + count, size - index);
+        size += count;
+        int row = index;
+        for (Product product : products) {
+            write(row++, product);
+        }
+        return true;
+    }
+
+    @Override
+    public Product remove(int index) {
+        checkIndex(index, size);
+        Product removed = get(index);
+        removeRange(index, index + 1);
+        return removed;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            unusedTextBytes += textLength(i);
+        }
+        shift(toIndex, fromIndex, size - toIndex);
+        size -= toIndex - fromIndex;
+        modCount++;
+        compactTextIfWasteful();
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        textSize = 0;
+        unusedTextBytes = 0;
+        modCount++;
+    }
+
+    /**
+     * Releases spare capacity, e.g. once a list has been loaded and will
+     * mostly be read.
+     */
+    public void trimToSize() {
+        int capacity = Math.max(INITIAL_CAPACITY, size);
+        if (capacity < idHigh.length) {
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            textOffsets = Arrays.copyOf(textOffsets, capacity);
+            nameLengths = Arrays.copyOf(nameLengths, capacity);
+            descriptionLengths = Arrays.copyOf(descriptionLengths, capacity);
+        }
+        if (textSize < text.length) {
+            text = Arrays.copyOf(text, textSize);
+        }
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= idHigh.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, idHigh.length + (idHigh.length >> 1));
+        idHigh = Arrays.copyOf(idHigh, newCapacity);
+        idLow = Arrays.copyOf(idLow, newCapacity);
+        prices = Arrays.copyOf(prices, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        categories = Arrays.copyOf(categories, newCapacity);
+        versions = Arrays.copyOf(versions, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+        textOffsets = Arrays.copyOf(textOffsets, newCapacity);
+        nameLengths = Arrays.copyOf(nameLengths, newCapacity);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, newCapacity);
+    }
+
+    /** Moves rows within every column, as System.arraycopy does. */
+    private void shift(int from, int to, int count) {
+        if (count == 0 || from == to) {
+            return;
+        }
+        System.arraycopy(idHigh, from, idHigh, to, count);
+        System.arraycopy(idLow, from, idLow, to, count);
+        System.arraycopy(prices, from, prices, to, count);
+        System.arraycopy(quantities, from, quantities, to, count);
+        System.arraycopy(categories, from, categories, to, count);
+        System.arraycopy(versions, from, versions, to, count);
+        System.arraycopy(flags, from, flags, to, count);
+        System.arraycopy(textOffsets, from, textOffsets, to, count);
+        System.arraycopy(nameLengths, from, nameLengths, to, count);
+        System.arraycopy(descriptionLengths, from, descriptionLengths, to, count);
+    }
+
+    /** Stores a product in a row, appending its text. */
+    private void write(int index, Product product) {
+        modCount++;
+        byte rowFlags = 0;
+        String id = product.getId();
+        byte[] idBytes = null;
+        if (isUuid(id)) {
+            idHigh[index] = parseHex(id, 0, 18);
+            idLow[index] = parseHex(id, 19, 36);
+        } else {
+            rowFlags |= TEXT_ID;
+            idBytes = id.getBytes(StandardCharsets.UTF_8);
+            idHigh[index] = 0;
+            idLow[index] = idBytes.length;
+        }
+
+        double price = product.getPrice();
+        long cents = Math.round(price * 100);
+        if (cents / 100.0 == price && !(price == 0 && 1 / price < 0)) {
+            prices[index] = cents;
+        } else {
+            // Not a whole number of cents (or -0.0); keep it exactly.
+            rowFlags |= RAW_PRICE;
+            prices[index] = Double.doubleToRawLongBits(price);
+        }
+        quantities[index] = product.getQuantity();
+        versions[index] = product.getVersion();
+        categories[index] = encodeCategory(product.getCategory());
+        flags[index] = rowFlags;
+
+        byte[] name = product.getName() == null ? null : product.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] description = product.getDescription() == null ? null
+                : product.getDescription().getBytes(StandardCharsets.UTF_8);
+        textOffsets[index] = textSize;
+        appendText(idBytes);
+        nameLengths[index] = appendText(name);
+        descriptionLengths[index] = appendText(description);
+    }
+
+    private int encodeCategory(String category) {
+        if (category == null) {
+            return -1;
+        }
+        Integer code = categoryCodes.get(category);
+        if (code == null) {
+            code = categoryNames.size();
+            categoryNames.add(category);
+            categoryCodes.put(category, code);
+        }
+        return code;
+    }
+
+    /** @return The number of bytes appended, or -1 for null. */
+    private int appendText(byte[] bytes) {
+        if (bytes == null) {
+            return -1;
+        }
+        if (textSize + bytes.length > text.length) {
+            long grown = Math.max((long) textSize + bytes.length, Math.max(INITIAL_CAPACITY * 32L, text.length * 2L));
+            text = Arrays.copyOf(text, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+        }
+        System.arraycopy(bytes, 0, text, textSize, bytes.length);
+        textSize += bytes.length;
+        return bytes.length;
+    }
+
+    private int nameOffset(int index) {
+        return textOffsets[index] + ((flags[index] & TEXT_ID) != 0 ? (int) idLow[index] : 0);
+    }
+
+    private int textLength(int index) {
+        return nameOffset(index) - textOffsets[index] + Math.max(0, nameLengths[index])
+                + Math.max(0, descriptionLengths[index]);
+    }
+
+    private String decode(int offset, int length) {
+        return length < 0 ? null : new String(text, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rewrites the text array without the text of replaced and removed rows
+     * once that is more than half of it.
+     */
+    private void compactTextIfWasteful() {
+        if (size == 0) {
+            textSize = 0;
+            unusedTextBytes = 0;
+            return;
+        }
+        if (unusedTextBytes < MIN_COMPACTION_BYTES || unusedTextBytes * 2L < textSize) {
+            return;
+        }
+        byte[] compacted = new byte[Math.max(INITIAL_CAPACITY * 32, (textSize - unusedTextBytes) * 2)];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            int length = textLength(i);
+            System.arraycopy(text, textOffsets[i], compacted, position, length);
+            textOffsets[i] = position;
+            position += length;
+        }
+        text = compacted;
+        textSize = position;
+        unusedTextBytes = 0;
+    }
+
+    /** @return The hash table slot for a UUID given as its two halves. */
+    private static int slot(long high, long low, int mask) {
+        // Random UUIDs are already well mixed; fold the halves so all bits contribute.
+        long key = high ^ low;
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    /** @return true for a UUID in the lowercase form UUID.toString() produces. */
+    private static boolean isUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String id, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = id.charAt(i);
+            if (c != '-') {
+                value = (value << 4) | Character.digit(c, 16);
+            }
+        }
+        return value;
+    }
+
+    private static String formatUuid(long high, long low) {
+        char[] chars = new char[36];
+        int position = 0;
+        for (int nibble = 0; nibble < 32; nibble++) {
+            if (nibble == 8 || nibble == 12 || nibble == 16 || nibble == 20) {
+                chars[position++] = '-';
+            }
+            long bits = nibble < 16 ? high : low;
+            chars[position++] = HEX_DIGITS[(int) (bits >>> (60 - 4 * (nibble % 16))) & 0xF];
+        }
+        return new String(chars);
+    }
+}
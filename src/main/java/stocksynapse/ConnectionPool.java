@@ -0,0 +1,427 @@
+package stocksynapse;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small JDBC connection pool so that InventoryService does not pay TCP and
+ * authentication setup on every call.
+ *
+ * Connections handed out by {@link #getConnection()} are proxies: closing them
+ * returns the physical connection to the pool, and {@code prepareStatement(sql)}
+ * is served from a per-connection LRU cache of prepared statements. Every
+ * statement is traced by {@link StatementTracer} for Flight Recorder and the
+ * slow-operation log. Idle connections are validated on borrow and evicted
+ * by a background housekeeping thread once they exceed the idle timeout.
+ *
+ * Tuning keys read from local.properties (all optional):
+ * DB_POOL_MIN_SIZE, DB_POOL_MAX_SIZE, DB_POOL_IDLE_TIMEOUT_MS,
+ * DB_POOL_BORROW_TIMEOUT_MS, DB_POOL_VALIDATION_INTERVAL_MS,
+ * DB_POOL_VALIDATION_TIMEOUT_S and DB_STATEMENT_CACHE_SIZE.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    // One permit per connection that may be on loan at the same time.
+    private final Semaphore permits;
+    // Most recently returned connections sit at the head, so the tail holds the idlest ones.
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    private volatile boolean lastFillFailed;
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder connectionsDestroyed = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    public ConnectionPool(String url, String user, String password, Properties props) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = Math.max(1, LocalProperties.getInt(props, "DB_POOL_MAX_SIZE", 10));
+        this.minSize = Math.min(maxSize, Math.max(0, LocalProperties.getInt(props, "DB_POOL_MIN_SIZE", 2)));
+        this.idleTimeoutMillis = LocalProperties.getLong(props, "DB_POOL_IDLE_TIMEOUT_MS", 300_000L);
+        this.borrowTimeoutMillis = LocalProperties.getLong(props, "DB_POOL_BORROW_TIMEOUT_MS", 5_000L);
+        this.validationIntervalMillis = LocalProperties.getLong(props, "DB_POOL_VALIDATION_INTERVAL_MS", 1_000L);
+        this.validationTimeoutSeconds = LocalProperties.getInt(props, "DB_POOL_VALIDATION_TIMEOUT_S", 2);
+        this.statementCacheSize = Math.max(0, LocalProperties.getInt(props, "DB_STATEMENT_CACHE_SIZE", 32));
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stocksynapse-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        // Warm up to the minimum size in the background so startup never blocks on the database.
+        long period = Math.max(1_000L, Math.min(idleTimeoutMillis / 2, 30_000L));
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if none is idle and
+     * the pool has not reached its maximum size. The caller must close the
+     * returned connection to give it back.
+     *
+     * @return A pooled connection.
+     * @throws SQLTimeoutException if no connection became available within the borrow timeout.
+     * @throws SQLException        if the pool is shut down or a new connection could not be opened.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException(
+                        "Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+            recordWait(System.nanoTime() - start);
+            activeCount.incrementAndGet();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return A snapshot of the pool's usage counters.
+     */
+    public PoolStats getStats() {
+        return new PoolStats(activeCount.get(), idle.size(), maxSize, borrowCount.sum(), totalWaitNanos.sum(),
+                maxWaitNanos.get(), timeouts.sum(), connectionsCreated.sum(), connectionsDestroyed.sum(),
+                statementCacheHits.sum(), statementCacheMisses.sum());
+    }
+
+    /**
+     * Closes all idle connections and stops the housekeeping thread.
+     * Connections still on loan are closed as soon as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    private PooledConnection takeIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        // Skip the round trip for connections that were in use a moment ago.
+        if (System.currentTimeMillis() - pooled.lastUsedMillis < validationIntervalMillis) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        openCount.incrementAndGet();
+        connectionsCreated.increment();
+        return new PooledConnection(physical);
+    }
+
+    private void release(PooledConnection pooled) {
+        activeCount.decrementAndGet();
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                destroy(pooled);
+            } else {
+                pooled.reset();
+                pooled.lastUsedMillis = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        openCount.decrementAndGet();
+        connectionsDestroyed.increment();
+        pooled.closePhysical();
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Evicts connections that have been idle too long (never shrinking below
+     * the minimum size) and tops the pool back up to the minimum size.
+     */
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && openCount.get() > minSize) {
+            PooledConnection pooled = it.next();
+            if (now - pooled.lastUsedMillis > idleTimeoutMillis && idle.removeLastOccurrence(pooled)) {
+                destroy(pooled);
+            }
+        }
+
+        while (!closed && openCount.get() < minSize) {
+            try {
+                PooledConnection pooled = openConnection();
+                pooled.lastUsedMillis = System.currentTimeMillis();
+                idle.offerLast(pooled);
+                lastFillFailed = false;
+            } catch (SQLException e) {
+                if (!lastFillFailed) {
+                    System.err.println("Connection pool could not open a connection: " + e.getMessage());
+                }
+                lastFillFailed = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * A physical connection plus its prepared-statement cache.
+     * Only ever used by one borrower at a time, so the cache needs no locking.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final Map<String, PreparedStatement> statementCache;
+        private volatile long lastUsedMillis;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > statementCacheSize) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new LeasedConnectionHandler(this));
+        }
+
+        PreparedStatement prepareCached(String sql, Connection owner) throws SQLException {
+            if (statementCacheSize == 0) {
+                return physical.prepareStatement(sql);
+            }
+            PreparedStatement statement = statementCache.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statementCacheMisses.increment();
+                statement = physical.prepareStatement(sql);
+                statementCache.put(sql, statement);
+            } else {
+                statementCacheHits.increment();
+            }
+            return (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, new CachedStatementHandler(statement, owner));
+        }
+
+        /** Undoes per-borrower state so the next borrower starts clean. */
+        void reset() throws SQLException {
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+        }
+
+        void closePhysical() {
+            for (PreparedStatement statement : statementCache.values()) {
+                closeQuietly(statement);
+            }
+            statementCache.clear();
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                // The connection is being discarded anyway.
+            }
+        }
+    }
+
+    /** Routes close() back to the pool and prepareStatement(sql) through the cache. */
+    private final class LeasedConnectionHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        LeasedConnectionHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            if ("prepareStatement".equals(method.getName()) && args != null && args.length == 1) {
+                return StatementTracer.trace(pooled.prepareCached((String) args[0], (Connection) proxy),
+                        (String) args[0]);
+            }
+            Object result = invokeTarget(pooled.physical, method, args);
+            if (result instanceof Statement) {
+                // prepareStatement/prepareCall overloads take the SQL up front; createStatement takes it per execute.
+                return StatementTracer.trace((Statement) result,
+                        args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Keeps a cached statement open when the borrower closes it, resetting
+     * the per-statement settings so the next borrower of the same SQL starts
+     * clean. The borrower's proxy then behaves as a closed statement.
+     */
+    private static final class CachedStatementHandler implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final Connection owner;
+        private boolean closed;
+
+        CachedStatementHandler(PreparedStatement statement, Connection owner) {
+            this.statement = statement;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        ResultSet open = statement.getResultSet();
+                        if (open != null) {
+                            open.close();
+                        }
+                        statement.clearParameters();
+                        statement.clearBatch();
+                        statement.clearWarnings();
+                        statement.setFetchSize(0);
+                        statement.setMaxRows(0);
+                        statement.setQueryTimeout(0);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed.");
+            }
+            if ("getConnection".equals(method.getName())) {
+                return owner;
+            }
+            return invokeTarget(statement, method, args);
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Nothing useful to do; the statement is being discarded.
+        }
+    }
+}
@@ -2,11 +2,36 @@ package stocksynapse;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.border.TitledBorder;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DashboardPanel extends JPanel {
+    private static final String LIVE_TITLE = "Live Statistics";
+    private static final String SNAPSHOT_TITLE = "Statistics from Last Session (Updating...)";
+    private static final int MAX_ALERTS_SHOWN = 100;
+
     private final InventoryService inventoryService;
+    private TitledBorder statsBorder;
+    private boolean showingLiveStats;
     private JLabel productCountLabel;
+    private JLabel totalUnitsLabel;
+    private JLabel totalValueLabel;
+    private JLabel lowStockLabel;
+    private JLabel categoriesLabel;
+    private TitledBorder alertsBorder;
+    private final DefaultTableModel alertsModel = new DefaultTableModel(
+            new Object[] { "Product", "Category", "Quantity", "Threshold" }, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    // Set while a refresh of the alerts is queued on the EDT, so bursts of changes repaint once.
+    private final AtomicBoolean alertsRefreshQueued = new AtomicBoolean();
 
     public DashboardPanel(InventoryService inventoryService) {
         this.inventoryService = inventoryService;
@@ -20,27 +45,173 @@ public class DashboardPanel extends JPanel {
 
         // --- Stats Panel ---
         JPanel statsPanel = new JPanel(new GridLayout(0, 1, 10, 10));
-        statsPanel.setBorder(BorderFactory.createTitledBorder("Live Statistics"));
+        statsBorder = BorderFactory.createTitledBorder(LIVE_TITLE);
+        statsPanel.setBorder(statsBorder);
+
+        productCountLabel = createStatLabel(statsPanel);
+        totalUnitsLabel = createStatLabel(statsPanel);
+        totalValueLabel = createStatLabel(statsPanel);
+        lowStockLabel = createStatLabel(statsPanel);
+        categoriesLabel = createStatLabel(statsPanel);
 
-        productCountLabel = new JLabel();
-        productCountLabel.setFont(new Font("Arial", Font.PLAIN, 18));
-        statsPanel.add(productCountLabel);
+        // --- Low Stock Alerts ---
+        JTable alertsTable = new JTable(alertsModel);
+        alertsTable.setFillsViewportHeight(true);
+        JScrollPane alertsPane = new JScrollPane(alertsTable);
+        alertsBorder = BorderFactory.createTitledBorder("Low Stock Alerts");
+        alertsPane.setBorder(alertsBorder);
 
-        add(statsPanel, BorderLayout.CENTER);
+        JPanel centerPanel = new JPanel(new BorderLayout(10, 10));
+        centerPanel.add(statsPanel, BorderLayout.NORTH);
+        centerPanel.add(alertsPane, BorderLayout.CENTER);
+        add(centerPanel, BorderLayout.CENTER);
 
         // --- Control Panel ---
         JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         JButton refreshButton = new JButton("Refresh Stats");
-        refreshButton.addActionListener(e -> updateStats());
+        refreshButton.addActionListener(e -> reloadStats());
         controlPanel.add(refreshButton);
         add(controlPanel, BorderLayout.SOUTH);
 
+        // Alerts are pushed as stock changes, from whichever thread made the change.
+        inventoryService.getLowStockAlerts().addChangeListener(() -> {
+            if (alertsRefreshQueued.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(this::showAlerts);
+            }
+        });
+
         // Initial update
         updateStats();
+        showSnapshotStats(inventoryService.openCatalogSnapshot());
+    }
+
+    private JLabel createStatLabel(JPanel statsPanel) {
+        JLabel label = new JLabel();
+        label.setFont(new Font("Arial", Font.PLAIN, 18));
+        statsPanel.add(label);
+        return label;
     }
 
+    /**
+     * Shows the latest statistics. These are maintained incrementally by the
+     * service, so this is cheap enough to call after every change; only the
+     * very first call has to wait for the database.
+     */
     public void updateStats() {
-        int count = inventoryService.getAllProducts().size();
-        productCountLabel.setText("Total Unique Products in Inventory: " + count);
+        InventoryStats stats = inventoryService.getInventoryStats();
+        if (stats.isSeeded() && inventoryService.getLowStockAlerts().isSeeded()) {
+            showStats(stats, true);
+        } else {
+            reloadStats();
+        }
+    }
+
+    /**
+     * Recomputes the statistics from the database off the EDT, picking up
+     * changes made by other terminals.
+     */
+    private void reloadStats() {
+        productCountLabel.setText("Loading statistics...");
+        new TracedSwingWorker<InventoryStats, Void>("Reload dashboard statistics") {
+            @Override
+            protected InventoryStats runInBackground() throws Exception {
+                // Seeding runs aggregate SQL and a catalog scan, so keep it off the EDT
+                inventoryService.reseedInventoryStats();
+                inventoryService.reseedLowStockAlerts();
+                return inventoryService.getInventoryStats();
+            }
+
+            @Override
+            protected void finished() {
+                try {
+                    InventoryStats stats = get();
+                    if (stats.isSeeded()) {
+                        showStats(stats, true);
+                    } else {
+                        // Every attempt raced with a change; the next change calls updateStats again.
+                        productCountLabel.setText("Statistics are changing too quickly to count; retrying...");
+                    }
+                } catch (Exception ex) {
+                    productCountLabel.setText("Statistics unavailable: " + ex.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Shows statistics computed from the last session's catalog snapshot
+     * until the database has answered.
+     */
+    private void showSnapshotStats(final CatalogSnapshot snapshot) {
+        if (snapshot == null || showingLiveStats) {
+            return;
+        }
+        final int lowStockThreshold = inventoryService.getInventoryStats().getLowStockThreshold();
+        new TracedSwingWorker<InventoryStats, Void>("Compute snapshot statistics") {
+            @Override
+            protected InventoryStats runInBackground() {
+                InventoryStats stats = new InventoryStats(lowStockThreshold);
+                stats.seed(snapshot::forEach);
+                return stats;
+            }
+
+            @Override
+            protected void finished() {
+                try {
+                    InventoryStats stats = get();
+                    if (!showingLiveStats) {
+                        showStats(stats, false);
+                    }
+                } catch (Exception ex) {
+                    System.err.println("Could not read the catalog snapshot: " + ex.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * @param live false if the figures come from the last session's snapshot.
+     */
+    private void showStats(InventoryStats stats, boolean live) {
+        showingLiveStats = live;
+        statsBorder.setTitle(live ? LIVE_TITLE : SNAPSHOT_TITLE);
+        repaint();
+        productCountLabel.setText("Total Unique Products in Inventory: " + stats.getProductCount());
+        totalUnitsLabel.setText("Total Units in Stock: " + stats.getTotalUnits());
+        totalValueLabel.setText(String.format("Total Inventory Value: $%,.2f", stats.getTotalValue()));
+        lowStockLabel.setText("Products Below " + stats.getLowStockThreshold() + " Units: " + stats.getLowStockCount());
+
+        Map<String, Long> categories = stats.getCategoryCounts();
+        StringBuilder text = new StringBuilder("Products per Category: ");
+        if (categories.isEmpty()) {
+            text.append("none");
+        }
+        String separator = "";
+        for (Map.Entry<String, Long> entry : categories.entrySet()) {
+            text.append(separator).append(entry.getKey()).append(" (").append(entry.getValue()).append(")");
+            separator = ", ";
+        }
+        categoriesLabel.setText(text.toString());
+        categoriesLabel.setToolTipText(text.toString());
+    }
+
+    /**
+     * Shows the most urgent low-stock alerts. Reading them costs the same
+     * whatever the size of the catalog.
+     */
+    private void showAlerts() {
+        alertsRefreshQueued.set(false);
+        LowStockAlerts alerts = inventoryService.getLowStockAlerts();
+        List<LowStockAlerts.Alert> mostUrgent = alerts.getMostUrgent(MAX_ALERTS_SHOWN);
+        int count = alerts.getAlertCount();
+        alertsBorder.setTitle(count > mostUrgent.size()
+                ? "Low Stock Alerts (" + count + ", most urgent " + mostUrgent.size() + " shown)"
+                : "Low Stock Alerts (" + count + ")");
+        alertsModel.setRowCount(0);
+        for (LowStockAlerts.Alert alert : mostUrgent) {
+            alertsModel.addRow(new Object[] { alert.getName(), alert.getCategory(), alert.getQuantity(),
+                    alert.getThreshold() });
+        }
+        repaint();
     }
 }
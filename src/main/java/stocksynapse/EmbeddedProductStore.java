@@ -0,0 +1,1063 @@
+package stocksynapse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps products and the stock movement ledger in a single append-only log
+ * file on the local disk, for shops that run one terminal and do not want a
+ * database server.
+ *
+ * The log is memory-mapped. Every write appends one record holding all of
+ * its entries (product versions, deletions and ledger movements) with a
+ * CRC32 checksum, so a write is applied in full or not at all. An in-memory
+ * index maps each product ID to its latest entry in the log, so a point read
+ * decodes one entry and a write appends one record: both take microseconds.
+ *
+ * A second index holds the entry offsets of the live products ordered by
+ * name, so the whole catalog can be streamed in order, and a default query
+ * paged, without sorting it again after every write. Other queries sort
+ * their matching offsets once and keep them until the next write.
+ *
+ * On startup the log is replayed to rebuild the index. A record whose
+ * length or checksum does not match, left by a crash in the middle of a
+ * write, ends the log and is discarded. Writes survive a crash of the
+ * application as soon as they return; with EMBEDDED_STORE_SYNC_WRITES they
+ * are also forced to disk, so they survive a power cut.
+ *
+ * Superseded product versions are dead space. Once they take up more than
+ * half the log, it is compacted: the live products and the full ledger are
+ * written to a new log file with the next generation number, which replaces
+ * the old one only after it is complete.
+ *
+ * Tuning keys read from local.properties (all optional):
+ * EMBEDDED_STORE_SYNC_WRITES and EMBEDDED_STORE_COMPACT_MIN_MB.
+ */
+public class EmbeddedProductStore implements ProductStore {
+
+    private static final int MAGIC = 0x53534C47; // "SSLG"
+    private static final int FORMAT_VERSION = 1;
+    // Magic, format version and a flag set once the file is complete.
+    private static final int HEADER_SIZE = 12;
+    private static final int FLAG_OFFSET = 8;
+    // Each record is its payload length and checksum followed by the payload.
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MIN_MAPPED_SIZE = 1 << 20;
+    // Offsets in the index are ints, so one log file can hold up to 2 GB.
+    private static final long MAX_LOG_SIZE = Integer.MAX_VALUE;
+    // Compaction groups entries into records of about this size.
+    private static final int COMPACTION_RECORD_SIZE = 64 * 1024;
+    private static final int MAX_CACHED_QUERIES = 4;
+    // A record putting more products than this marks the name order stale rather than updating it in place.
+    private static final int MAX_INCREMENTAL_ORDER_UPDATES = 64;
+    private static final Comparator<Product> NAME_ORDER = ProductQuery.DEFAULT.comparator();
+
+    private static final byte ENTRY_PUT = 1;
+    private static final byte ENTRY_DELETE = 2;
+    private static final byte ENTRY_MOVEMENT = 3;
+
+    private final Path directory;
+    private final boolean syncWrites;
+    private final long compactMinBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FileChannel lockChannel;
+    private final FileLock fileLock;
+
+    // Everything below is guarded by the lock.
+    private long generation;
+    private FileChannel channel;
+    private MappedByteBuffer log;
+    private int writePosition;
+    // Product ID to the offset (high half) and length (low half) of its latest entry.
+    private final HashMap<String, Long> index = new HashMap<>();
+    private final TreeMap<String, Integer> categoryCounts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private int[] movementOffsets = new int[1024];
+    private int movementCount;
+    private long deadBytes;
+    // Entry offsets of the live products, ordered by NAME_ORDER. Writers update it in place; after a
+    // replay or a large record it is stale and the next reader rebuilds it, holding nameOrderLock.
+    private final Object nameOrderLock = new Object();
+    private int[] nameOrder = new int[0];
+    private int nameOrderSize;
+    private boolean nameOrderStale = true;
+    private int recordProductCount;
+    // Bumped by every write, so cached query results can tell they are stale.
+    private long modificationCount;
+    private boolean closed;
+
+    private final Map<ProductQuery, QueryResult> queryResults = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ProductQuery, QueryResult> eldest) {
+            return size() > MAX_CACHED_QUERIES;
+        }
+    };
+
+    // Reused to build each record's payload; writes hold the write lock.
+    private ByteBuffer payload = ByteBuffer.allocate(4096);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Opens the store in a directory, creating it if needed, and replays the
+     * log.
+     *
+     * @param directory Where the log files are kept.
+     * @param props     Tuning values from local.properties.
+     * @throws IOException if the log cannot be read or another process has it open.
+     */
+    public EmbeddedProductStore(Path directory, Properties props) throws IOException {
+        this.directory = directory;
+        this.syncWrites = LocalProperties.getBoolean(props, "EMBEDDED_STORE_SYNC_WRITES", false);
+        this.compactMinBytes = Math.max(0, LocalProperties.getLong(props, "EMBEDDED_STORE_COMPACT_MIN_MB", 16))
+                * 1024 * 1024;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve("store.lock"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("The embedded store in " + directory + " is in use by another process.");
+        }
+        this.fileLock = acquired;
+        try {
+            open();
+        } catch (IOException | RuntimeException e) {
+            fileLock.release();
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the newest complete log file, or creates the first one, and
+     * rebuilds the index from it. Older and unfinished files are deleted.
+     */
+    private void open() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "products-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring("products-".length(), name.length() - 4)));
+                } catch (NumberFormatException e) {
+                    // Not one of ours.
+                }
+            }
+        }
+        generations.sort(Comparator.reverseOrder());
+        long current = 0;
+        for (long candidate : generations) {
+            if (current == 0 && isComplete(logFile(candidate))) {
+                current = candidate;
+            } else {
+                // Superseded by a compaction, or a compaction that did not finish.
+                deleteQuietly(logFile(candidate));
+            }
+        }
+        if (current == 0) {
+            current = 1;
+            try (FileChannel created = FileChannel.open(logFile(current), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                created.write(header(true));
+                created.force(true);
+            }
+        }
+        generation = current;
+        channel = FileChannel.open(logFile(current), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(Math.max(channel.size(), MIN_MAPPED_SIZE));
+        replay();
+    }
+
+    private Path logFile(long fileGeneration) {
+        return directory.resolve(String.format("products-%06d.log", fileGeneration));
+    }
+
+    private static ByteBuffer header(boolean complete) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(complete ? 1 : 0).flip();
+        return header;
+    }
+
+    private static boolean isComplete(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                // Keep reading until the header is full or the file ends.
+            }
+            if (header.hasRemaining()) {
+                return false;
+            }
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException(file + " is not a Stock Synapse log or was written by another version.");
+            }
+            return header.getInt(FLAG_OFFSET) == 1;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Still mapped on some platforms; it is deleted on a later start instead.
+        }
+    }
+
+    private void map(long size) throws IOException {
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(size, MAX_LOG_SIZE));
+    }
+
+    /**
+     * Rebuilds the index from the records in the log, stopping at the first
+     * record that is missing or damaged.
+     */
+    private void replay() {
+        index.clear();
+        categoryCounts.clear();
+        movementCount = 0;
+        deadBytes = 0;
+        nameOrderStale = true;
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= log.capacity()) {
+            int length = log.getInt(position);
+            if (length <= 0 || length > log.capacity() - position - RECORD_HEADER_SIZE
+                    || checksum(position + RECORD_HEADER_SIZE, length) != log.getInt(position + 4)) {
+                if (length != 0) {
+                    // A torn write; clear it so later records appended here cannot be mistaken for it.
+                    for (int i = position; i < log.capacity(); i++) {
+                        log.put(i, (byte) 0);
+                    }
+                }
+                break;
+            }
+            applyRecord(position + RECORD_HEADER_SIZE, length, false);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        writePosition = position;
+        modificationCount++;
+    }
+
+    private int checksum(int offset, int length) {
+        byte[] bytes = new byte[length];
+        log.get(offset, bytes);
+        crc.reset();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Updates the index for every entry in a record that is already in the log.
+     *
+     * @param updateOrder true to keep the name order up to date in place,
+     *                    false to leave it stale for the next reader to rebuild.
+     */
+    private void applyRecord(int offset, int length, boolean updateOrder) {
+        if (!updateOrder) {
+            nameOrderStale = true;
+        }
+        Cursor cursor = new Cursor(log, offset);
+        int end = offset + length;
+        while (cursor.position < end) {
+            int entryStart = cursor.position;
+            byte type = cursor.getByte();
+            if (type == ENTRY_PUT) {
+                Product product = cursor.getProductFields();
+                removeFromIndex(product.getId());
+                index.put(product.getId(), ((long) entryStart << 32) | (cursor.position - entryStart));
+                categoryCounts.merge(categoryKey(product.getCategory()), 1, Integer::sum);
+                if (!nameOrderStale) {
+                    insertIntoNameOrder(entryStart, product);
+                }
+            } else if (type == ENTRY_DELETE) {
+                removeFromIndex(cursor.getString());
+                deadBytes += cursor.position - entryStart;
+            } else if (type == ENTRY_MOVEMENT) {
+                cursor.getMovementFields();
+                if (movementCount == movementOffsets.length) {
+                    movementOffsets = Arrays.copyOf(movementOffsets, movementCount * 2);
+                }
+                movementOffsets[movementCount++] = entryStart;
+            } else {
+                throw new IllegalStateException("Unknown entry type " + type + " at offset " + entryStart + ".");
+            }
+        }
+    }
+
+    private void removeFromIndex(String id) {
+        Long location = index.remove(id);
+        if (location != null) {
+            deadBytes += (int) (long) location;
+            Product old = readProduct(location);
+            categoryCounts.computeIfPresent(categoryKey(old.getCategory()),
+                    (key, count) -> count == 1 ? null : count - 1);
+            if (!nameOrderStale) {
+                removeFromNameOrder(old);
+            }
+        }
+    }
+
+    private void insertIntoNameOrder(int offset, Product product) {
+        int position = -nameOrderSearch(log, nameOrder, nameOrderSize, product) - 1;
+        if (nameOrderSize == nameOrder.length) {
+            nameOrder = Arrays.copyOf(nameOrder, Math.max(16, nameOrderSize * 2));
+        }
+        System.arraycopy(nameOrder, position, nameOrder, position + 1, nameOrderSize - position);
+        nameOrder[position] = offset;
+        nameOrderSize++;
+    }
+
+    private void removeFromNameOrder(Product product) {
+        int position = nameOrderSearch(log, nameOrder, nameOrderSize, product);
+        System.arraycopy(nameOrder, position + 1, nameOrder, position, nameOrderSize - position - 1);
+        nameOrderSize--;
+    }
+
+    /**
+     * Finds a product in offsets sorted by NAME_ORDER, decoding only the
+     * entries the bisection visits.
+     *
+     * @return The product's position, or (-(insertion point) - 1) as in Arrays.binarySearch.
+     */
+    private static int nameOrderSearch(ByteBuffer buffer, int[] offsets, int size, Product product) {
+        return search(buffer, offsets, 0, size, product, NAME_ORDER);
+    }
+
+    private static int search(ByteBuffer buffer, int[] offsets, int from, int to, Product key,
+            Comparator<Product> order) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = order.compare(decodeProduct(buffer, offsets[mid]), key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static String categoryKey(String category) {
+        return category == null ? "" : category;
+    }
+
+    private Product readProduct(long location) {
+        return decodeProduct(log, (int) (location >>> 32));
+    }
+
+    private static Product decodeProduct(ByteBuffer buffer, int offset) {
+        Cursor cursor = new Cursor(buffer, offset);
+        cursor.getByte();
+        return cursor.getProductFields();
+    }
+
+    // ---------------------------------------------------------------- writes
+
+    @Override
+    public void addProduct(Product product) {
+        Product stored = withVersion(product, 0);
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (index.containsKey(stored.getId())) {
+                throw new RuntimeException("A product with ID " + stored.getId() + " already exists.");
+            }
+            beginRecord();
+            putProduct(stored);
+            if (stored.getQuantity() != 0) {
+                putMovement(new StockMovement(stored.getId(), System.currentTimeMillis(), stored.getQuantity(),
+                        stored.getQuantity(), "ADD"));
+            }
+            commitRecord();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addProducts(List<Product> products) {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Set<String> ids = new HashSet<>();
+            for (Product product : products) {
+                if (index.containsKey(product.getId()) || !ids.add(product.getId())) {
+                    throw new RuntimeException("A product with ID " + product.getId() + " already exists.");
+                }
+            }
+            beginRecord();
+            for (Product product : products) {
+                putProduct(withVersion(product, 0));
+            }
+            commitRecord();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The version is checked against the index, so the caller's copy of the
+     * previous product is not needed.
+     */
+    @Override
+    public UpdateResult updateProduct(Product edited, Product previous) {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Long location = index.get(edited.getId());
+            if (location == null) {
+                return UpdateResult.notFound();
+            }
+            Product current = readProduct(location);
+            if (current.getVersion() != edited.getVersion()) {
+                return UpdateResult.conflict(current);
+            }
+            Product updated = withVersion(edited, edited.getVersion() + 1);
+            beginRecord();
+            putProduct(updated);
+            int change = updated.getQuantity() - current.getQuantity();
+            if (change != 0) {
+                putMovement(new StockMovement(updated.getId(), System.currentTimeMillis(), change,
+                        updated.getQuantity(), "EDIT"));
+            }
+            commitRecord();
+            return UpdateResult.updated(updated, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Product> adjustQuantities(List<StockAdjustment> adjustments, Map<String, Product> previous) {
+        TreeMap<String, Integer> netChanges = new TreeMap<>();
+        for (StockAdjustment adjustment : adjustments) {
+            netChanges.merge(adjustment.getProductId(), adjustment.getDelta(), Math::addExact);
+        }
+        if (netChanges.isEmpty()) {
+            return List.of();
+        }
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Map<String, Product> before = new HashMap<>();
+            List<Product> updated = new ArrayList<>();
+            for (Map.Entry<String, Integer> change : netChanges.entrySet()) {
+                Long location = index.get(change.getKey());
+                Product current = location == null ? null : readProduct(location);
+                updated.add(StockAdjustment.apply(change.getKey(), current, change.getValue()));
+                before.put(change.getKey(), current);
+            }
+            beginRecord();
+            for (Product product : updated) {
+                putProduct(product);
+            }
+            long now = System.currentTimeMillis();
+            Map<String, Integer> running = new HashMap<>();
+            for (StockAdjustment adjustment : adjustments) {
+                int after = running.merge(adjustment.getProductId(),
+                        before.get(adjustment.getProductId()).getQuantity() + adjustment.getDelta(),
+                        (current, ignored) -> current + adjustment.getDelta());
+                putMovement(new StockMovement(adjustment.getProductId(), now, adjustment.getDelta(), after,
+                        adjustment.getReason()));
+            }
+            commitRecord();
+            previous.putAll(before);
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Product deleteProduct(String id) {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Long location = index.get(id);
+            if (location == null) {
+                return null;
+            }
+            Product previous = readProduct(location);
+            beginRecord();
+            payload.put(ENTRY_DELETE);
+            putString(id);
+            commitRecord();
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Product withVersion(Product product, long version) {
+        return new Product(product.getId(), product.getName(), product.getPrice(), product.getQuantity(),
+                product.getCategory(), product.getDescription(), version);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The embedded store has been closed.");
+        }
+    }
+
+    private void beginRecord() {
+        payload.clear();
+        recordProductCount = 0;
+    }
+
+    private void putProduct(Product product) {
+        recordProductCount++;
+        payload.put(ENTRY_PUT);
+        putString(product.getId());
+        putString(product.getName());
+        ensurePayloadCapacity(20);
+        payload.putDouble(product.getPrice());
+        payload.putInt(product.getQuantity());
+        putString(product.getCategory());
+        putString(product.getDescription());
+        ensurePayloadCapacity(8);
+        payload.putLong(product.getVersion());
+    }
+
+    private void putMovement(StockMovement movement) {
+        payload.put(ENTRY_MOVEMENT);
+        putString(movement.getProductId());
+        ensurePayloadCapacity(16);
+        payload.putLong(movement.getMovedAtMillis());
+        payload.putInt(movement.getQuantityChange());
+        payload.putInt(movement.getQuantityAfter());
+        putString(movement.getReason());
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensurePayloadCapacity(4);
+            payload.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensurePayloadCapacity(4 + bytes.length);
+        payload.putInt(bytes.length);
+        payload.put(bytes);
+    }
+
+    private void ensurePayloadCapacity(int needed) {
+        // Every entry starts with its type byte, so leave room for the next one too.
+        if (payload.remaining() < needed + 1) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(payload.capacity() * 2, payload.position() + needed + 1));
+            payload.flip();
+            larger.put(payload);
+            payload = larger;
+        }
+    }
+
+    /**
+     * Appends the payload built since {@link #beginRecord()} as one record
+     * and applies it to the index. The length is written last, so a record
+     * cut short by a crash reads as the end of the log.
+     */
+    private void commitRecord() {
+        int length = payload.position();
+        try {
+            ensureLogCapacity(RECORD_HEADER_SIZE + length);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to grow the embedded store's log.", e);
+        }
+        int position = writePosition;
+        crc.reset();
+        crc.update(payload.array(), 0, length);
+        log.put(position + RECORD_HEADER_SIZE, payload.array(), 0, length);
+        log.putInt(position + 4, (int) crc.getValue());
+        log.putInt(position, length);
+        if (syncWrites) {
+            log.force(position, RECORD_HEADER_SIZE + length);
+        }
+        writePosition = position + RECORD_HEADER_SIZE + length;
+        applyRecord(position + RECORD_HEADER_SIZE, length, recordProductCount <= MAX_INCREMENTAL_ORDER_UPDATES);
+        modificationCount++;
+        if (deadBytes > compactMinBytes && deadBytes > writePosition / 2) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // The write is already safe in the current log; compaction is retried after the next one.
+                System.err.println("Embedded store compaction failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void ensureLogCapacity(int needed) throws IOException {
+        if ((long) writePosition + needed <= log.capacity()) {
+            return;
+        }
+        if ((long) writePosition + needed > MAX_LOG_SIZE) {
+            compact();
+            if ((long) writePosition + needed > MAX_LOG_SIZE) {
+                throw new IOException("The embedded store is full (2 GB).");
+            }
+        }
+        long size = log.capacity();
+        while (size < (long) writePosition + needed) {
+            size *= 2;
+        }
+        map(size);
+    }
+
+    /**
+     * Writes the live products and the whole ledger to a log file of the next
+     * generation, then switches to it. The new file is marked complete only
+     * after it has been forced to disk, so a crash part way through leaves
+     * the current log in charge.
+     */
+    private void compact() throws IOException {
+        long nextGeneration = generation + 1;
+        Path target = logFile(nextGeneration);
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            out.write(header(false));
+            CompactionWriter writer = new CompactionWriter(out);
+            for (long location : index.values()) {
+                writer.copyEntry((int) (location >>> 32), (int) location);
+            }
+            for (int i = 0; i < movementCount; i++) {
+                int offset = movementOffsets[i];
+                Cursor cursor = new Cursor(log, offset);
+                cursor.getByte();
+                cursor.getMovementFields();
+                writer.copyEntry(offset, cursor.position - offset);
+            }
+            writer.flush();
+            out.force(true);
+            out.write(ByteBuffer.allocate(4).putInt(0, 1), FLAG_OFFSET);
+            out.force(true);
+        }
+        Path previousFile = logFile(generation);
+        channel.close();
+        generation = nextGeneration;
+        channel = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(Math.max(channel.size() * 2, MIN_MAPPED_SIZE));
+        replay();
+        queryResults.clear();
+        deleteQuietly(previousFile);
+    }
+
+    /** Groups copied entries into checksummed records of about COMPACTION_RECORD_SIZE bytes. */
+    private final class CompactionWriter {
+        private final FileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(COMPACTION_RECORD_SIZE * 2);
+
+        CompactionWriter(FileChannel out) {
+            this.out = out;
+        }
+
+        void copyEntry(int offset, int length) throws IOException {
+            if (buffer.position() > 0 && buffer.position() + length > COMPACTION_RECORD_SIZE) {
+                flush();
+            }
+            byte[] entry = new byte[length];
+            log.get(offset, entry);
+            if (length > buffer.remaining()) {
+                flush();
+                writeRecord(ByteBuffer.wrap(entry));
+                return;
+            }
+            buffer.put(entry);
+        }
+
+        void flush() throws IOException {
+            if (buffer.position() > 0) {
+                buffer.flip();
+                writeRecord(buffer);
+                buffer.clear();
+            }
+        }
+
+        private void writeRecord(ByteBuffer record) throws IOException {
+            CRC32 checksum = new CRC32();
+            checksum.update(record.duplicate());
+            ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            recordHeader.putInt(record.remaining()).putInt((int) checksum.getValue()).flip();
+            while (recordHeader.hasRemaining()) {
+                out.write(recordHeader);
+            }
+            while (record.hasRemaining()) {
+                out.write(record);
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------- reads
+
+    @Override
+    public Product getProduct(String id) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            Long location = index.get(id);
+            return location == null ? null : readProduct(location);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void getProducts(Collection<String> ids, Map<String, Product> into) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (String id : ids) {
+                Long location = index.get(id);
+                if (location != null) {
+                    into.put(id, readProduct(location));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Streams the products in the name order index. The offsets are copied
+     * under the read lock and decoded as they are delivered, so a slow
+     * consumer does not hold up writers and only one product is decoded at a
+     * time.
+     */
+    @Override
+    public void forEachProduct(Consumer<Product> consumer) {
+        QueryResult rows = query(ProductQuery.DEFAULT);
+        for (int i = 0; i < rows.offsets.length; i++) {
+            consumer.accept(rows.product(i));
+        }
+    }
+
+    @Override
+    public List<Product> queryProducts(ProductQuery query, Product after, int limit) {
+        QueryResult rows = query(query);
+        int start = 0;
+        if (after != null) {
+            // The rows are sorted by the query's comparator, so the cursor's position can be found by bisection.
+            int found = search(rows.log, rows.offsets, 0, rows.offsets.length, after, query.comparator());
+            start = found >= 0 ? found + 1 : -found - 1;
+        }
+        return page(rows, start, limit);
+    }
+
+    @Override
+    public List<Product> queryProductsAt(ProductQuery query, int offset, int limit) {
+        return page(query(query), offset, limit);
+    }
+
+    private static List<Product> page(QueryResult rows, int start, int limit) {
+        int end = (int) Math.min(rows.offsets.length, (long) start + limit);
+        List<Product> page = new ArrayList<>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+            page.add(rows.product(i));
+        }
+        return page;
+    }
+
+    @Override
+    public int countProducts(ProductQuery query) {
+        return query.isFiltered() ? query(query).offsets.length : getProductCount();
+    }
+
+    @Override
+    public int getProductCount() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> getCategories() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            List<String> categories = new ArrayList<>(categoryCounts.keySet());
+            categories.remove("");
+            return categories;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Seeds the statistics with an unordered scan of the index.
+     */
+    @Override
+    public void seedInventoryStats(InventoryStats stats) {
+        stats.seed(consumer -> {
+            lock.readLock().lock();
+            try {
+                checkOpen();
+                for (long location : index.values()) {
+                    consumer.accept(readProduct(location));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void forEachStockMovement(long sinceMillis, Consumer<StockMovement> consumer) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (int i = 0; i < movementCount; i++) {
+                Cursor cursor = new Cursor(log, movementOffsets[i]);
+                cursor.getByte();
+                StockMovement movement = cursor.getMovementFields();
+                if (movement.getMovedAtMillis() >= sinceMillis) {
+                    consumer.accept(movement);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the entry offsets of every product matching a query, sorted.
+     * Queries by name are read off the name order index; others are sorted
+     * here. The result is kept until the next write, so paging through a
+     * query sorts it only once.
+     */
+    private QueryResult query(ProductQuery query) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            synchronized (queryResults) {
+                QueryResult cached = queryResults.get(query);
+                if (cached != null && cached.modificationCount == modificationCount) {
+                    return cached;
+                }
+            }
+            int[] offsets;
+            if (query.getSortColumn() == ProductQuery.SortColumn.NAME) {
+                offsets = copyNameOrder();
+                if (query.isFiltered()) {
+                    int matching = 0;
+                    for (int offset : offsets) {
+                        if (query.matches(decodeProduct(log, offset))) {
+                            offsets[matching++] = offset;
+                        }
+                    }
+                    offsets = Arrays.copyOf(offsets, matching);
+                }
+                if (!query.isAscending()) {
+                    reverse(offsets);
+                }
+            } else {
+                List<Product> matching = new ArrayList<>();
+                List<Integer> matchingOffsets = new ArrayList<>();
+                for (long location : index.values()) {
+                    Product product = readProduct(location);
+                    if (query.matches(product)) {
+                        matching.add(product);
+                        matchingOffsets.add((int) (location >>> 32));
+                    }
+                }
+                offsets = sortOffsets(matching, matchingOffsets, query.comparator());
+            }
+            QueryResult result = new QueryResult(log, offsets, modificationCount);
+            synchronized (queryResults) {
+                queryResults.put(query, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The name order, rebuilt first if it is stale. The caller holds the read lock.
+     */
+    private int[] copyNameOrder() {
+        synchronized (nameOrderLock) {
+            if (nameOrderStale) {
+                List<Product> products = new ArrayList<>(index.size());
+                List<Integer> offsets = new ArrayList<>(index.size());
+                for (long location : index.values()) {
+                    products.add(readProduct(location));
+                    offsets.add((int) (location >>> 32));
+                }
+                nameOrder = sortOffsets(products, offsets, NAME_ORDER);
+                nameOrderSize = nameOrder.length;
+                nameOrderStale = false;
+            }
+            return Arrays.copyOf(nameOrder, nameOrderSize);
+        }
+    }
+
+    /**
+     * Sorts offsets by the products decoded from them. The products are only
+     * held while sorting; the result keeps just the offsets.
+     */
+    private static int[] sortOffsets(List<Product> products, List<Integer> offsets, Comparator<Product> order) {
+        Integer[] positions = new Integer[products.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, (a, b) -> order.compare(products.get(a), products.get(b)));
+        int[] sorted = new int[positions.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = offsets.get(positions[i]);
+        }
+        return sorted;
+    }
+
+    private static void reverse(int[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+
+    /**
+     * The sorted entry offsets of a query's rows, with the mapping they were
+     * read from. Entries are never overwritten once written, and the mapping
+     * stays readable after the log is grown or compacted, so rows can be
+     * decoded without holding the lock.
+     */
+    private static final class QueryResult {
+        private final ByteBuffer log;
+        private final int[] offsets;
+        private final long modificationCount;
+
+        QueryResult(ByteBuffer log, int[] offsets, long modificationCount) {
+            this.log = log;
+            this.offsets = offsets;
+            this.modificationCount = modificationCount;
+        }
+
+        Product product(int row) {
+            return decodeProduct(log, offsets[row]);
+        }
+    }
+
+    @Override
+    public PoolStats getPoolStats() {
+        return null;
+    }
+
+    /**
+     * Forces the log to disk and releases the files.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            log.force();
+            channel.close();
+            fileLock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close the embedded store cleanly: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Decodes entries from the log with absolute reads, so several readers
+     * can share the mapped buffer.
+     */
+    private static final class Cursor {
+        private final ByteBuffer buffer;
+        private int position;
+
+        Cursor(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        byte getByte() {
+            return buffer.get(position++);
+        }
+
+        int getInt() {
+            int value = buffer.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        long getLong() {
+            long value = buffer.getLong(position);
+            position += 8;
+            return value;
+        }
+
+        double getDouble() {
+            double value = buffer.getDouble(position);
+            position += 8;
+            return value;
+        }
+
+        String getString() {
+            int length = getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(position, bytes);
+            position += length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        Product getProductFields() {
+            String id = getString();
+            String name = getString();
+            double price = getDouble();
+            int quantity = getInt();
+            String category = getString();
+            String description = getString();
+            return new Product(id, name, price, quantity, category, description, getLong());
+        }
+
+        StockMovement getMovementFields() {
+            String productId = getString();
+            long movedAt = getLong();
+            int change = getInt();
+            int after = getInt();
+            return new StockMovement(productId, movedAt, change, after, getString());
+        }
+    }
+}
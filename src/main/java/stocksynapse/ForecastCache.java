@@ -0,0 +1,217 @@
+package stocksynapse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Caches generated forecasts on disk so that asking again about a product
+ * whose details have not changed returns instantly and costs no API quota.
+ *
+ * Entries are keyed by a SHA-256 hash of the prompt built from the product, so
+ * any change to name, category, price or quantity produces a new key. Entries
+ * expire after a TTL and the least recently used ones are dropped once the
+ * cache is full. Changes are written to the cache file shortly after they
+ * happen, and again when {@link #flush()} is called on exit.
+ *
+ * Tuning keys read from local.properties (all optional):
+ * FORECAST_CACHE_FILE, FORECAST_CACHE_TTL_HOURS and FORECAST_CACHE_MAX_ENTRIES
+ * (0 disables the cache).
+ */
+public class ForecastCache {
+
+    private static final long SAVE_DELAY_MILLIS = 2_000L;
+
+    private final Path file;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+    private final ScheduledExecutorService saver;
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ForecastCache(Properties config) {
+        this.file = Paths.get(config.getProperty("FORECAST_CACHE_FILE", "forecast-cache.json"));
+        this.ttlMillis = LocalProperties.getLong(config, "FORECAST_CACHE_TTL_HOURS", 24L) * 3_600_000L;
+        this.maxEntries = Math.max(0, LocalProperties.getInt(config, "FORECAST_CACHE_MAX_ENTRIES", 1_000));
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stocksynapse-forecast-cache-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        if (isEnabled()) {
+            load();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * @param prompt The exact prompt a forecast was generated from.
+     * @return The cached forecast, or null if there is none or it has expired.
+     */
+    public synchronized Entry get(String prompt) {
+        String key = keyFor(prompt);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(ttlMillis)) {
+            entries.remove(key);
+            evictions.increment();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a freshly generated forecast and schedules a save.
+     */
+    public void put(String prompt, String forecast) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            entries.put(keyFor(prompt), new Entry(forecast, System.currentTimeMillis()));
+        }
+        if (saveScheduled.compareAndSet(false, true)) {
+            saver.schedule(this::flush, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    /**
+     * Writes the cache to disk now. The file is replaced atomically so a crash
+     * mid-write never leaves it truncated.
+     */
+    public void flush() {
+        saveScheduled.set(false);
+        if (!isEnabled()) {
+            return;
+        }
+        JSONArray array = new JSONArray();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (!e.getValue().isExpired(ttlMillis, now)) {
+                    array.put(new JSONObject()
+                            .put("key", e.getKey())
+                            .put("createdAt", e.getValue().createdAtMillis)
+                            .put("forecast", e.getValue().forecast));
+                }
+            }
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(parent, "forecast-cache", ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(array.toString());
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save forecast cache to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JSONArray array = new JSONArray(new JSONTokener(reader));
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                // The file is written least recently used first, so replaying it restores the LRU order.
+                for (int i = 0; i < array.length(); i++) {
+                    JSONObject obj = array.getJSONObject(i);
+                    Entry entry = new Entry(obj.getString("forecast"), obj.getLong("createdAt"));
+                    if (!entry.isExpired(ttlMillis, now)) {
+                        entries.put(obj.getString("key"), entry);
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // First run; nothing cached yet.
+        } catch (IOException | JSONException e) {
+            System.err.println("Ignoring unreadable forecast cache " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static String keyFor(String prompt) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(prompt.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A cached forecast and when it was generated.
+     */
+    public static final class Entry {
+        private final String forecast;
+        private final long createdAtMillis;
+
+        Entry(String forecast, long createdAtMillis) {
+            this.forecast = forecast;
+            this.createdAtMillis = createdAtMillis;
+        }
+
+        public String getForecast() {
+            return forecast;
+        }
+
+        public long getCreatedAtMillis() {
+            return createdAtMillis;
+        }
+
+        boolean isExpired(long ttlMillis) {
+            return isExpired(ttlMillis, System.currentTimeMillis());
+        }
+
+        boolean isExpired(long ttlMillis, long now) {
+            return now - createdAtMillis > ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package stocksynapse;
+
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Reads a Gemini streamGenerateContent response in server-sent events form
+ * (alt=sse) line by line, passing each piece of generated text on as soon as
+ * its event is complete instead of waiting for the whole body.
+ */
+class ForecastStreamParser implements Flow.Subscriber<String> {
+
+    private final Consumer<String> listener;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder eventData = new StringBuilder();
+    private volatile boolean hasText;
+    private String error;
+
+    /**
+     * @param listener Receives each new piece of text, in order.
+     */
+    ForecastStreamParser(Consumer<String> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+        if (line.isEmpty()) {
+            dispatchEvent();
+        } else if (line.startsWith("data:")) {
+            if (eventData.length() > 0) {
+                eventData.append('\n');
+            }
+            eventData.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+        }
+        // Comments (":...") and the event, id and retry fields carry nothing we need.
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // Reported through the response future.
+    }
+
+    @Override
+    public void onComplete() {
+        dispatchEvent();
+    }
+
+    /** @return Whether any text has been passed to the listener yet. */
+    boolean hasText() {
+        return hasText;
+    }
+
+    /** @return All text received so far. */
+    String getText() {
+        return text.toString();
+    }
+
+    /**
+     * @return The complete forecast once the stream has ended.
+     * @throws ForecastingException if the stream reported an error or contained no text.
+     */
+    String getResult() throws ForecastingException {
+        if (error != null) {
+            throw new ForecastingException("Gemini API reported an error while streaming: " + error);
+        }
+        if (text.length() == 0) {
+            throw new ForecastingException("Could not find forecast text in Gemini API streaming response.");
+        }
+        return text.toString();
+    }
+
+    private void dispatchEvent() {
+        if (eventData.length() == 0) {
+            return;
+        }
+        String data = eventData.toString();
+        eventData.setLength(0);
+        try {
+            JSONObject event = new JSONObject(data);
+            if (event.has("error")) {
+                error = event.getJSONObject("error").optString("message", data);
+                return;
+            }
+            JSONArray candidates = event.optJSONArray("candidates");
+            if (candidates == null || candidates.isEmpty()) {
+                return;
+            }
+            JSONObject content = candidates.getJSONObject(0).optJSONObject("content");
+            JSONArray parts = content == null ? null : content.optJSONArray("parts");
+            if (parts == null) {
+                return;
+            }
+            StringBuilder delta = new StringBuilder();
+            for (int i = 0; i < parts.length(); i++) {
+                delta.append(parts.getJSONObject(i).optString("text", ""));
+            }
+            if (delta.length() > 0) {
+                text.append(delta);
+                hasText = true;
+                listener.accept(delta.toString());
+            }
+        } catch (JSONException e) {
+            error = "unreadable event: " + data;
+        }
+    }
+}
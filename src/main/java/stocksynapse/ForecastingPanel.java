@@ -2,16 +2,43 @@ package stocksynapse;
 
 import javax.swing.*;
 import javax.swing.border.*;
+import javax.swing.plaf.basic.ComboPopup;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class ForecastingPanel extends JPanel {
     private final InventoryService inventoryService;
     private final ForecastingService forecastingService;
 
+    private static final String ALL_PRODUCTS = "All Products";
+    private static final String ENGINE_GEMINI = "Gemini AI";
+    private static final String ENGINE_LOCAL = "Local statistical model";
+
     private JComboBox<ProductWrapper> productSelector;
+    private final ProductListModel productListModel = new ProductListModel();
     private JTextArea forecastResultArea;
     private JButton generateButton;
+    private JCheckBox streamCheckBox;
+    private JComboBox<String> engineSelector;
+    private JComboBox<String> batchScopeSelector;
+    private JButton batchButton;
+    private JButton cancelButton;
+    private JLabel batchStatusLabel;
+    private ColumnarProductList products = new ColumnarProductList();
+    // Bumped by each product list load, so only the newest one is shown.
+    private int productListGeneration;
+    private SwingWorker<?, ?> batchWorker;
+    private CompletableFuture<String> pendingForecast;
+    private JLabel apiStatusLabel;
+    private Timer apiStatusTimer;
 
     public ForecastingPanel(InventoryService inventoryService, ForecastingService forecastingService) {
         this.inventoryService = inventoryService;
@@ -35,14 +62,54 @@ public class ForecastingPanel extends JPanel {
         // --- Input Panel ---
         JPanel inputPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         inputPanel.add(new JLabel("Select Product to Forecast:"));
-        productSelector = new JComboBox<>();
+        productSelector = new JComboBox<>(productListModel) {
+            @Override
+            public int getSelectedIndex() {
+                // The default searches every item for the selected one, building each from the catalog.
+                return productListModel.getSelectedIndex();
+            }
+        };
         productSelector.setFont(new Font("Arial", Font.PLAIN, 14));
+        // Fixed item sizes, so the combo box never measures every product in the catalog.
+        productSelector.setPrototypeDisplayValue(
+                new ProductWrapper(-1, new Product("", "A product name of typical length", 0, 0, null, null)));
+        Object popup = productSelector.getUI().getAccessibleChild(productSelector, 0);
+        if (popup instanceof ComboPopup) {
+            JList<?> popupList = ((ComboPopup) popup).getList();
+            popupList.setFixedCellHeight(productSelector.getFontMetrics(productSelector.getFont()).getHeight() + 4);
+        }
         inputPanel.add(productSelector);
 
         generateButton = new JButton("Generate Forecast");
         inputPanel.add(generateButton);
+        streamCheckBox = new JCheckBox("Stream response", true);
+        streamCheckBox.setToolTipText("Show the forecast as it is written instead of waiting for the whole answer");
+        inputPanel.add(streamCheckBox);
+        engineSelector = new JComboBox<>(new String[] { ENGINE_GEMINI, ENGINE_LOCAL });
+        engineSelector.setToolTipText("The local model forecasts from recorded stock movements without calling the API");
+        engineSelector.setEnabled(forecastingService.getLocalEngine() != null);
+        engineSelector.addActionListener(e -> streamCheckBox.setEnabled(!isLocalEngineSelected()));
+        inputPanel.add(new JLabel("Engine:"));
+        inputPanel.add(engineSelector);
 
-        contentPanel.add(inputPanel, BorderLayout.NORTH);
+        // --- Batch Input Panel ---
+        JPanel batchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        batchPanel.add(new JLabel("Or forecast a whole group:"));
+        batchScopeSelector = new JComboBox<>();
+        batchScopeSelector.setFont(new Font("Arial", Font.PLAIN, 14));
+        batchPanel.add(batchScopeSelector);
+        batchButton = new JButton("Forecast Batch");
+        batchPanel.add(batchButton);
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        batchPanel.add(cancelButton);
+        batchStatusLabel = new JLabel();
+        batchPanel.add(batchStatusLabel);
+
+        JPanel controlsPanel = new JPanel(new GridLayout(0, 1));
+        controlsPanel.add(inputPanel);
+        controlsPanel.add(batchPanel);
+        contentPanel.add(controlsPanel, BorderLayout.NORTH);
 
         // --- Result Display Area ---
         forecastResultArea = new JTextArea(
@@ -57,15 +124,34 @@ public class ForecastingPanel extends JPanel {
 
         add(contentPanel, BorderLayout.CENTER);
 
+        // --- API Status Bar ---
+        apiStatusLabel = new JLabel(" ");
+        apiStatusLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        add(apiStatusLabel, BorderLayout.SOUTH);
+        apiStatusTimer = new Timer(1000, e -> updateApiStatus());
+
         // --- Action Listeners ---
         generateButton.addActionListener(e -> generateForecast());
+        batchButton.addActionListener(e -> generateBatchForecast());
+        cancelButton.addActionListener(e -> {
+            if (pendingForecast != null) {
+                pendingForecast.cancel(true);
+            }
+            if (batchWorker != null) {
+                batchWorker.cancel(true);
+            }
+        });
         // Refresh product list when the panel becomes visible
         addAncestorListener(new javax.swing.event.AncestorListener() {
             public void ancestorAdded(javax.swing.event.AncestorEvent event) {
                 refreshProductList();
+                loadStockHistory();
+                updateApiStatus();
+                apiStatusTimer.start();
             }
 
             public void ancestorRemoved(javax.swing.event.AncestorEvent event) {
+                apiStatusTimer.stop();
             }
 
             public void ancestorMoved(javax.swing.event.AncestorEvent event) {
@@ -73,21 +159,98 @@ public class ForecastingPanel extends JPanel {
         });
     }
 
+    /**
+     * Loads the catalog and its categories in the background, since a large
+     * catalog is not cached and reading it would freeze the window. The
+     * previous list stays in the selectors until the new one arrives.
+     */
     private void refreshProductList() {
-        productSelector.removeAllItems();
-        List<Product> products = inventoryService.getAllProducts();
+        final int generation = ++productListGeneration;
+        new TracedSwingWorker<ColumnarProductList, Void>("Load forecast products") {
+            private final Set<String> categories = new TreeSet<>();
+
+            @Override
+            protected ColumnarProductList runInBackground() {
+                ColumnarProductList loaded = inventoryService.getAllProducts();
+                for (int i = 0; i < loaded.size(); i++) {
+                    String category = loaded.getCategory(i);
+                    if (category != null && !category.trim().isEmpty()) {
+                        categories.add(category);
+                    }
+                }
+                return loaded;
+            }
+
+            @Override
+            protected void finished() {
+                if (generation != productListGeneration) {
+                    return; // The panel was shown again and a newer load has started
+                }
+                try {
+                    showProductList(get(), categories);
+                } catch (java.util.concurrent.ExecutionException e) {
+                    batchStatusLabel.setText("Could not load products: " + e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    private void showProductList(ColumnarProductList loaded, Set<String> categories) {
+        batchScopeSelector.removeAllItems();
+        products = loaded;
+        productListModel.setProducts(products);
+        boolean batchRunning = batchWorker != null && !batchWorker.isDone();
         if (products.isEmpty()) {
             productSelector.setEnabled(false);
             generateButton.setEnabled(false);
+            batchScopeSelector.setEnabled(false);
+            batchButton.setEnabled(false);
         } else {
-            for (Product p : products) {
-                productSelector.addItem(new ProductWrapper(p));
+            batchScopeSelector.addItem(ALL_PRODUCTS);
+            for (String category : categories) {
+                batchScopeSelector.addItem(category);
             }
             productSelector.setEnabled(true);
             generateButton.setEnabled(true);
+            batchScopeSelector.setEnabled(true);
+            batchButton.setEnabled(!batchRunning);
         }
     }
 
+    private boolean isLocalEngineSelected() {
+        return ENGINE_LOCAL.equals(engineSelector.getSelectedItem()) && forecastingService.getLocalEngine() != null;
+    }
+
+    /**
+     * Loads recorded stock movements for the local engine the first time the
+     * panel is shown.
+     */
+    private void loadStockHistory() {
+        if (forecastingService.getLocalEngine() == null || inventoryService.getStockHistory().isSeeded()) {
+            return;
+        }
+        new TracedSwingWorker<Void, Void>("Load stock history") {
+            @Override
+            protected Void runInBackground() {
+                inventoryService.reseedStockHistory();
+                return null;
+            }
+
+            @Override
+            protected void finished() {
+                try {
+                    get();
+                } catch (java.util.concurrent.ExecutionException e) {
+                    System.err.println("Could not load stock history: " + e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
     private void generateForecast() {
         ProductWrapper selectedWrapper = (ProductWrapper) productSelector.getSelectedItem();
         if (selectedWrapper == null) {
@@ -96,45 +259,304 @@ public class ForecastingPanel extends JPanel {
             return;
         }
 
+        // The local model runs in microseconds, so there is no need to leave the EDT.
+        if (isLocalEngineSelected()) {
+            forecastResultArea.setText(forecastingService.getLocalEngine().forecast(selectedWrapper.getProduct())
+                    .toReport());
+            forecastResultArea.setCaretPosition(0);
+            return;
+        }
+
+        // A forecast for the product exactly as it is now can be shown without calling the API.
+        ForecastCache.Entry cached = forecastingService.getCachedForecast(selectedWrapper.getProduct());
+        if (cached != null) {
+            forecastResultArea.setText(String.format("[Cached result from %tF %<tR - product unchanged since]%n%n%s",
+                    new java.util.Date(cached.getCreatedAtMillis()), cached.getForecast()));
+            forecastResultArea.setCaretPosition(0);
+            return;
+        }
+
         forecastResultArea.setText("Generating forecast... Please wait.");
         generateButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+
+        // The request runs asynchronously; no thread is blocked while waiting for the API or a retry
+        final StreamingTextAppender appender = streamCheckBox.isSelected() ? new StreamingTextAppender() : null;
+        final CompletableFuture<String> request = appender != null
+                ? forecastingService.generateForecastStreaming(selectedWrapper.getProduct(), appender)
+                : forecastingService.generateForecastAsync(selectedWrapper.getProduct());
+        pendingForecast = request;
+        if (appender != null) {
+            appender.request = request;
+        }
+        request.whenComplete((forecast, error) -> SwingUtilities.invokeLater(() -> {
+            // Streamed text is already on screen, so errors are added below it rather than replacing it.
+            boolean streamed = appender != null && appender.hasOutput;
+            if (request.isCancelled()) {
+                showForecastMessage("Forecast cancelled.", streamed);
+            } else if (error == null) {
+                if (!streamed) {
+                    forecastResultArea.setText(forecast);
+                }
+            } else {
+                // Unwrap the actual exception from the future
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (cause instanceof ForecastingException) {
+                    showForecastMessage("Forecasting Error: " + cause.getMessage(), streamed);
+                } else {
+                    showForecastMessage("An unexpected error occurred: " + cause.getMessage(), streamed);
+                }
+                cause.printStackTrace(); // Log the full stack trace to the console
+            }
+            if (pendingForecast == request) {
+                pendingForecast = null;
+                generateButton.setEnabled(true);
+                cancelButton.setEnabled(batchWorker != null && !batchWorker.isDone());
+            }
+        }));
+    }
+
+    private void showForecastMessage(String message, boolean append) {
+        if (append) {
+            forecastResultArea.append("\n\n" + message);
+        } else {
+            forecastResultArea.setText(message);
+        }
+    }
+
+    /**
+     * Collects streamed text on the HTTP thread and appends it to the result
+     * area on the EDT. However quickly pieces arrive, at most one append is
+     * queued on the EDT at a time; anything that arrives meanwhile rides along.
+     */
+    private class StreamingTextAppender implements Consumer<String> {
+        private final StringBuilder buffer = new StringBuilder();
+        private final AtomicBoolean flushQueued = new AtomicBoolean();
+        private volatile CompletableFuture<String> request;
+        private boolean hasOutput; // EDT only
+
+        @Override
+        public void accept(String text) {
+            synchronized (buffer) {
+                buffer.append(text);
+            }
+            if (flushQueued.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(this::flush);
+            }
+        }
+
+        private void flush() {
+            flushQueued.set(false);
+            String text;
+            synchronized (buffer) {
+                text = buffer.toString();
+                buffer.setLength(0);
+            }
+            if (text.isEmpty() || request == null || pendingForecast != request) {
+                return; // A newer forecast has taken over the result area
+            }
+            if (!hasOutput) {
+                forecastResultArea.setText("");
+                hasOutput = true;
+            }
+            forecastResultArea.append(text);
+        }
+    }
+
+    private void generateBatchForecast() {
+        String scope = (String) batchScopeSelector.getSelectedItem();
+        if (scope == null) {
+            return;
+        }
+        final List<Product> selected = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            if (ALL_PRODUCTS.equals(scope) || scope.equals(products.getCategory(i))) {
+                selected.add(products.get(i));
+            }
+        }
+        final int total = selected.size();
+
+        if (isLocalEngineSelected()) {
+            generateLocalBatchForecast(selected);
+            return;
+        }
+
+        forecastResultArea.setText("");
+        batchStatusLabel.setText("0 / " + total + " done");
+        batchButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+
+        // Requests run concurrently inside the service; results are published as each product completes
+        batchWorker = new TracedSwingWorker<List<BatchForecastResult>, BatchForecastResult>("Batch forecast") {
+            private int completed;
+            private int failed;
 
-        // Use SwingWorker to perform network I/O off the Event Dispatch Thread
-        new SwingWorker<String, Void>() {
             @Override
-            protected String doInBackground() throws Exception {
-                return forecastingService.generateForecast(selectedWrapper.getProduct());
+            protected List<BatchForecastResult> runInBackground() throws Exception {
+                return forecastingService.generateForecasts(selected, this::publish);
             }
 
             @Override
-            protected void done() {
-                try {
-                    forecastResultArea.setText(get());
-                } catch (java.util.concurrent.ExecutionException e) {
-                    // Unwrap the actual exception from doInBackground
-                    Throwable cause = e.getCause();
-                    if (cause instanceof ForecastingException) {
-                        forecastResultArea.setText("Forecasting Error: " + cause.getMessage());
+            protected void process(List<BatchForecastResult> chunks) {
+                StringBuilder text = new StringBuilder();
+                for (BatchForecastResult result : chunks) {
+                    completed++;
+                    text.append("=== ").append(result.getProduct().getName())
+                            .append(result.isCached() ? " (cached) ===\n"
+                                    : result.isLocal() ? " (local model) ===\n" : " ===\n");
+                    if (result.isSuccess()) {
+                        text.append(result.getForecast());
                     } else {
-                        forecastResultArea.setText("An unexpected error occurred: " + cause.getMessage());
+                        failed++;
+                        text.append("Forecasting Error: ").append(result.getError().getMessage());
                     }
-                    cause.printStackTrace(); // Log the full stack trace to the console
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt(); // Restore interrupt status
-                    forecastResultArea.setText("Forecasting interrupted: " + e.getMessage());
-                    e.printStackTrace();
-                } finally {
-                    generateButton.setEnabled(true);
+                    text.append("\n\n");
                 }
+                forecastResultArea.append(text.toString());
+                batchStatusLabel.setText(completed + " / " + total + " done" + (failed > 0 ? ", " + failed + " failed" : ""));
             }
-        }.execute();
+
+            @Override
+            protected void finished() {
+                if (isCancelled()) {
+                    batchStatusLabel.setText(batchStatusLabel.getText() + " (cancelled)");
+                } else {
+                    try {
+                        get();
+                    } catch (java.util.concurrent.ExecutionException e) {
+                        forecastResultArea.append("An unexpected error occurred: " + e.getCause().getMessage());
+                        e.getCause().printStackTrace();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                batchButton.setEnabled(true);
+                cancelButton.setEnabled(pendingForecast != null);
+            }
+        };
+        batchWorker.execute();
+    }
+
+    /**
+     * Forecasts the selection with the local model on all cores and lists the
+     * products that need reordering first, soonest to run out at the top.
+     */
+    private void generateLocalBatchForecast(final List<Product> selected) {
+        final LocalForecastingEngine engine = forecastingService.getLocalEngine();
+        batchStatusLabel.setText("Forecasting " + selected.size() + " products locally...");
+        batchButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+
+        batchWorker = new TracedSwingWorker<String, Void>("Local batch forecast") {
+            @Override
+            protected String runInBackground() {
+                long start = System.nanoTime();
+                List<LocalForecast> forecasts = new ArrayList<>(engine.forecastAll(selected));
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                forecasts.sort(Comparator.comparing((LocalForecast f) -> !f.needsReorder())
+                        .thenComparingDouble(LocalForecast::getDaysOfCover));
+                long reorders = forecasts.stream().filter(LocalForecast::needsReorder).count();
+
+                StringBuilder text = new StringBuilder();
+                text.append(String.format("Forecast %,d products in %,d ms - %,d need reordering.%n%n",
+                        forecasts.size(), elapsedMillis, reorders));
+                for (LocalForecast forecast : forecasts) {
+                    text.append(forecast).append('\n');
+                }
+                return text.toString();
+            }
+
+            @Override
+            protected void finished() {
+                if (isCancelled()) {
+                    batchStatusLabel.setText("Cancelled");
+                } else {
+                    try {
+                        forecastResultArea.setText(get());
+                        forecastResultArea.setCaretPosition(0);
+                        batchStatusLabel.setText(selected.size() + " / " + selected.size() + " done");
+                    } catch (java.util.concurrent.ExecutionException e) {
+                        forecastResultArea.setText("An unexpected error occurred: " + e.getCause().getMessage());
+                        e.getCause().printStackTrace();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                batchButton.setEnabled(true);
+                cancelButton.setEnabled(pendingForecast != null);
+            }
+        };
+        batchWorker.execute();
+    }
+
+    private void updateApiStatus() {
+        RateLimiterStats stats = forecastingService.getRateLimiterStats();
+        apiStatusLabel.setText(String.format(
+                "API queue: %d waiting  |  avg wait %.0f ms, max %.0f ms  |  %d requests shared with identical in-flight calls",
+                stats.getQueueDepth(), stats.getAverageWaitMillis(), stats.getMaxWaitMillis(),
+                forecastingService.getCoalescedRequestCount()));
+    }
+
+    /**
+     * Presents the catalog to the product combo box without copying it; each
+     * item is built from the columnar list only when the combo box asks for it.
+     */
+    private static class ProductListModel extends AbstractListModel<ProductWrapper>
+            implements ComboBoxModel<ProductWrapper> {
+        private ColumnarProductList products = new ColumnarProductList();
+        private ProductWrapper selected;
+
+        void setProducts(ColumnarProductList newProducts) {
+            int oldSize = products.size();
+            products = newProducts;
+            selected = newProducts.isEmpty() ? null : getElementAt(0);
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            if (!newProducts.isEmpty()) {
+                fireIntervalAdded(this, 0, newProducts.size() - 1);
+            }
+        }
+
+        int getSelectedIndex() {
+            return selected == null ? -1 : selected.index;
+        }
+
+        @Override
+        public int getSize() {
+            return products.size();
+        }
+
+        @Override
+        public ProductWrapper getElementAt(int index) {
+            if (selected != null && selected.index == index) {
+                return selected;
+            }
+            return new ProductWrapper(index, products.get(index));
+        }
+
+        @Override
+        public Object getSelectedItem() {
+            return selected;
+        }
+
+        @Override
+        public void setSelectedItem(Object item) {
+            if (item != selected) {
+                selected = (ProductWrapper) item;
+                fireContentsChanged(this, -1, -1);
+            }
+        }
     }
 
     // Wrapper class to display product names in JComboBox but hold the full object
     private static class ProductWrapper {
+        // The product's row in the catalog list, so the selection can be found without a search.
+        private final int index;
         private final Product product;
 
-        public ProductWrapper(Product product) {
+        public ProductWrapper(int index, Product product) {
+            this.index = index;
             this.product = product;
         }
 
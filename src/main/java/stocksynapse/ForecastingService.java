@@ -5,6 +5,31 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.json.JSONObject;
 
 /**
@@ -14,84 +39,792 @@ public class ForecastingService {
 
     private final String apiKey;
     private final HttpClient httpClient;
-    private static final String API_URL_FORMAT = "https://generativelanguage.googleapis.com/v1/models/%s:generateContent?key=%s";
+    private static final String DEFAULT_API_BASE_URL = "https://generativelanguage.googleapis.com/v1";
+    private static final String GENERATE_URL_FORMAT = "%s/models/%s:generateContent?key=%s";
+    private static final String STREAM_URL_FORMAT = "%s/models/%s:streamGenerateContent?alt=sse&key=%s";
     private static final String MODEL_NAME = "gemini-pro";
+    // Matches the "### PRODUCT <n>" headings that separate products in a batch response.
+    private static final Pattern BATCH_HEADING = Pattern.compile("(?im)^[#*\\s]*PRODUCT\\s+(\\d+)[#*:\\s]*$");
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    // From a forecast being asked for until it is answered, whether by the cache, Gemini or the local engine.
+    private static final LatencyHistogram FORECAST_TIME = METRICS.histogram("forecast.generateForecast");
+    private static final LatencyHistogram BATCH_TIME = METRICS.histogram("forecast.generateForecasts");
+    // One HTTP exchange with Gemini, excluding time spent waiting for the rate limiter or a retry.
+    private static final LatencyHistogram ATTEMPT_TIME = METRICS.histogram("forecast.gemini.attempt");
+    private static final LatencyHistogram LOCAL_FORECAST_TIME = METRICS.histogram("forecast.localEngine");
+    private static final MetricsRegistry.Counter RETRIES = METRICS.counter("forecast.gemini.retries");
+    private static final MetricsRegistry.Counter QUOTA_EXCEEDED = METRICS.counter("forecast.gemini.quotaExceeded");
+    private static final MetricsRegistry.Counter FAILURES = METRICS.counter("forecast.gemini.failures");
+    private static final MetricsRegistry.Counter LOCAL_FALLBACKS = METRICS.counter("forecast.localFallbacks");
+
+    private final String apiBaseUrl;
+    private final int batchSize;
+    private final int maxConcurrency;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long timeoutMillis;
+    private final LocalForecastingEngine localEngine;
+    private final ForecastCache forecastCache;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final ConcurrentHashMap<String, SharedRequest> inFlightRequests = new ConcurrentHashMap<>();
+    private final LongAdder coalescedRequests = new LongAdder();
 
     public ForecastingService(String apiKey) {
+        this(apiKey, new Properties(), null);
+    }
+
+    public ForecastingService(String apiKey, Properties config) {
+        this(apiKey, config, null);
+    }
+
+    /**
+     * @param apiKey The Gemini API key.
+     * @param config Optional tuning from local.properties: FORECAST_BATCH_SIZE
+     *               (products packed into one request),
+     *               FORECAST_MAX_CONCURRENCY (requests in flight at once),
+     *               FORECAST_MAX_ATTEMPTS, FORECAST_BACKOFF_BASE_MS and
+     *               FORECAST_BACKOFF_MAX_MS (retry policy),
+     *               FORECAST_RATE_LIMIT_RPM and FORECAST_RATE_LIMIT_BURST
+     *               (client-side rate limit; 0 rpm disables it),
+     *               FORECAST_API_BASE_URL (e.g. a local stub server),
+     *               FORECAST_TIMEOUT_MS (how long a single forecast may
+     *               wait for Gemini; 0 waits indefinitely) and the
+     *               {@link ForecastCache} settings.
+     * @param localEngine Answers instead of Gemini when a call fails or times
+     *               out; may be null to report the failure instead.
+     */
+    public ForecastingService(String apiKey, Properties config, LocalForecastingEngine localEngine) {
         if (apiKey == null || apiKey.trim().isEmpty()) {
             throw new IllegalArgumentException("API Key for Gemini API cannot be null or empty.");
         }
         this.apiKey = apiKey;
         this.httpClient = HttpClient.newHttpClient();
+        this.apiBaseUrl = config.getProperty("FORECAST_API_BASE_URL", DEFAULT_API_BASE_URL).trim()
+                .replaceAll("/+$", "");
+        this.batchSize = Math.max(1, LocalProperties.getInt(config, "FORECAST_BATCH_SIZE", 5));
+        this.maxConcurrency = Math.max(1, LocalProperties.getInt(config, "FORECAST_MAX_CONCURRENCY", 4));
+        this.maxAttempts = Math.max(1, LocalProperties.getInt(config, "FORECAST_MAX_ATTEMPTS", 4));
+        this.baseBackoffMillis = Math.max(1L, LocalProperties.getLong(config, "FORECAST_BACKOFF_BASE_MS", 1_000L));
+        this.maxBackoffMillis = Math.max(baseBackoffMillis,
+                LocalProperties.getLong(config, "FORECAST_BACKOFF_MAX_MS", 60_000L));
+        this.timeoutMillis = Math.max(0L, LocalProperties.getLong(config, "FORECAST_TIMEOUT_MS", 30_000L));
+        this.localEngine = localEngine;
+        this.forecastCache = new ForecastCache(config);
+        this.rateLimiter = new TokenBucketRateLimiter(
+                LocalProperties.getDouble(config, "FORECAST_RATE_LIMIT_RPM", 60.0),
+                LocalProperties.getInt(config, "FORECAST_RATE_LIMIT_BURST", 5));
+        registerGauges();
+    }
+
+    private void registerGauges() {
+        METRICS.gauge("forecast.cache.hits", () -> forecastCache.getStats().getHits());
+        METRICS.gauge("forecast.cache.misses", () -> forecastCache.getStats().getMisses());
+        METRICS.gauge("forecast.cache.size", () -> forecastCache.getStats().getSize());
+        METRICS.gauge("forecast.coalescedRequests", coalescedRequests::sum);
+        METRICS.gauge("forecast.rateLimiter.queueDepth", () -> rateLimiter.getStats().getQueueDepth());
+        METRICS.gauge("forecast.rateLimiter.averageWaitMillis", () -> rateLimiter.getStats().getAverageWaitMillis());
+        METRICS.gauge("forecast.rateLimiter.maxWaitMillis", () -> rateLimiter.getStats().getMaxWaitMillis());
     }
 
     /**
      * Generates a sales forecast for a given product using the Gemini API.
-     * Includes a retry mechanism for transient API errors like rate limiting.
+     * This is a blocking wrapper around {@link #generateForecastAsync(Product)}.
      *
      * @param product The product to be forecasted.
      * @return A string containing the AI-generated forecast and advice.
      * @throws ForecastingException if the API call fails after all retries.
      */
     public String generateForecast(Product product) throws ForecastingException {
+        CompletableFuture<String> future = generateForecastAsync(product);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ForecastingException("Forecast request was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw toForecastingException(e.getCause());
+        }
+    }
+
+    /**
+     * Generates a sales forecast without blocking the calling thread.
+     * Rate-limit (429) and server (5xx) responses and network errors are
+     * retried with exponential backoff and jitter, honouring any Retry-After
+     * header up to FORECAST_BACKOFF_MAX_MS; a longer one fails the forecast
+     * at once rather than holding it that long. Retries are scheduled rather than slept, so no thread is held
+     * while waiting. Cancelling the returned future aborts the request in
+     * flight and any pending retry. If the call fails or takes longer than
+     * FORECAST_TIMEOUT_MS and a local engine is configured, the future is
+     * completed with the local forecast instead.
+     *
+     * @param product The product to be forecasted.
+     * @return A future completed with the forecast text, or exceptionally with a ForecastingException.
+     */
+    public CompletableFuture<String> generateForecastAsync(Product product) {
+        long start = System.nanoTime();
+        CompletableFuture<String> request = requestForecast(product);
+        if (request.isDone()) {
+            FORECAST_TIME.recordSince(start);
+            return request;
+        }
+        CompletableFuture<String> result = withFallback(product, request, null);
+        result.whenComplete((text, error) -> FORECAST_TIME.recordSince(start));
+        return result;
+    }
+
+    /**
+     * Asks Gemini for a forecast, answering from the cache when possible and
+     * caching what comes back.
+     */
+    private CompletableFuture<String> requestForecast(Product product) {
         String prompt = createPromptForProduct(product);
-        final int MAX_RETRIES = 3;
-        int attempt = 0;
+        ForecastCache.Entry cached = forecastCache.get(prompt);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.getForecast());
+        }
+        CompletableFuture<String> request = sendPromptAsync(prompt);
+        request.thenAccept(forecast -> forecastCache.put(prompt, forecast));
+        return request;
+    }
+
+    /**
+     * Applies the timeout to a Gemini request and substitutes the local
+     * forecast if it fails. Cancelling the returned future cancels the request.
+     *
+     * @param streamStarted Set once streamed text has been shown, or null for
+     *                      a plain request. A stream that has started is not
+     *                      timed out or replaced, since the caller already has
+     *                      part of the answer.
+     */
+    private CompletableFuture<String> withFallback(Product product, CompletableFuture<String> request,
+            AtomicBoolean streamStarted) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        if (timeoutMillis > 0) {
+            CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                if (!request.isDone() && (streamStarted == null || !streamStarted.get())) {
+                    timedOut.set(true);
+                    request.cancel(true);
+                }
+            });
+        }
+        request.whenComplete((text, error) -> {
+            if (error == null) {
+                result.complete(text);
+                return;
+            }
+            if (result.isDone()) {
+                return; // The caller cancelled
+            }
+            ForecastingException failure = timedOut.get()
+                    ? new ForecastingException("Gemini API did not respond within " + timeoutMillis + " ms.")
+                    : toForecastingException(error);
+            if (localEngine != null && (streamStarted == null || !streamStarted.get())) {
+                result.complete(localFallback(product, failure));
+            } else {
+                result.completeExceptionally(failure);
+            }
+        });
+        result.whenComplete((text, error) -> {
+            if (result.isCancelled()) {
+                request.cancel(true);
+            }
+        });
+        return result;
+    }
 
-        while (attempt < MAX_RETRIES) {
-            // Create the JSON payload
-            JSONObject content = new JSONObject();
-            content.put("text", prompt);
+    private String localFallback(Product product, ForecastingException failure) {
+        System.err.println("Gemini forecast failed, using the local engine instead: " + failure.getMessage());
+        LOCAL_FALLBACKS.increment();
+        long start = System.nanoTime();
+        try {
+            return "[Gemini API unavailable (" + failure.getMessage()
+                    + ") - showing the local statistical forecast]\n\n" + localEngine.forecast(product).toReport();
+        } finally {
+            LOCAL_FORECAST_TIME.recordSince(start);
+        }
+    }
 
-            JSONObject payload = new JSONObject()
-                    .put("contents", new org.json.JSONArray()
-                            .put(new JSONObject().put("parts", new org.json.JSONArray().put(content))));
+    /**
+     * @return The result to report for a product whose batch request failed:
+     *         the local forecast if there is a local engine, otherwise the error.
+     */
+    private BatchForecastResult failedResult(Product product, Throwable error) {
+        ForecastingException failure = toForecastingException(error);
+        if (localEngine == null || failure.getCause() instanceof CancellationException) {
+            return BatchForecastResult.failure(product, failure);
+        }
+        return BatchForecastResult.local(product, localFallback(product, failure));
+    }
 
-            // Build the HTTP request
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(String.format(API_URL_FORMAT, MODEL_NAME, apiKey)))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-                    .build();
+    /**
+     * @return The in-process statistical engine, or null if none was configured.
+     */
+    public LocalForecastingEngine getLocalEngine() {
+        return localEngine;
+    }
 
-            try {
-                // Send the request and get the response
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 429) {
-                    // Handle rate limiting specifically with a retry
-                    if (attempt < MAX_RETRIES - 1) {
-                        long retryAfter = 30L; // Default wait time
-                        System.out.println("Quota exceeded. Retrying in " + retryAfter + " seconds...");
-                        try {
-                            Thread.sleep(retryAfter * 1000);
-                        } catch (InterruptedException interruptedException) {
-                            Thread.currentThread().interrupt();
-                        }
+    /**
+     * Generates a forecast using the streaming endpoint, handing text to the
+     * listener as the model produces it so the first words appear long before
+     * the whole forecast is ready. Streams are not shared between callers,
+     * but still go through the rate limiter, and a failure before any text has
+     * arrived is retried like {@link #generateForecastAsync(Product)}. The
+     * timeout and local fallback only apply until the first text arrives; the
+     * fallback text is returned through the future, not the listener.
+     *
+     * @param product  The product to be forecasted.
+     * @param listener Receives each new piece of text, in order, on an HTTP
+     *                 client thread. A cached forecast is delivered in one piece.
+     * @return A future completed with the full forecast text, or exceptionally with a ForecastingException.
+     */
+    public CompletableFuture<String> generateForecastStreaming(Product product, Consumer<String> listener) {
+        String prompt = createPromptForProduct(product);
+        ForecastCache.Entry cached = forecastCache.get(prompt);
+        if (cached != null) {
+            listener.accept(cached.getForecast());
+            return CompletableFuture.completedFuture(cached.getForecast());
+        }
+        AtomicBoolean streamStarted = new AtomicBoolean();
+        CompletableFuture<String> request = sendWithRetries(buildRequest(STREAM_URL_FORMAT, prompt), text -> {
+            streamStarted.set(true);
+            listener.accept(text);
+        });
+        request.thenAccept(forecast -> forecastCache.put(prompt, forecast));
+        return withFallback(product, request, streamStarted);
+    }
+
+    /**
+     * Looks up a previous forecast for the product as it is now, without
+     * calling the API. Cheap enough to call on the EDT.
+     *
+     * @param product The product to look up.
+     * @return The cached forecast, or null if the product has changed or was never forecast.
+     */
+    public ForecastCache.Entry getCachedForecast(Product product) {
+        return forecastCache.get(createPromptForProduct(product));
+    }
+
+    /**
+     * @return Hit, miss and eviction counters for the forecast cache.
+     */
+    public CacheStats getCacheStats() {
+        return forecastCache.getStats();
+    }
+
+    /**
+     * @return Queue depth and wait times of the client-side rate limiter.
+     */
+    public RateLimiterStats getRateLimiterStats() {
+        return rateLimiter.getStats();
+    }
+
+    /**
+     * @return How many forecast calls were served by joining an identical request already in flight.
+     */
+    public long getCoalescedRequestCount() {
+        return coalescedRequests.sum();
+    }
+
+    /**
+     * Saves the forecast cache. Call once on application exit.
+     */
+    public void close() {
+        forecastCache.flush();
+    }
+
+    /**
+     * Generates forecasts for many products. Products are packed several to a
+     * request, and up to FORECAST_MAX_CONCURRENCY requests run at once, so
+     * the total time scales with the concurrency rather than the number of
+     * products. Products missing from a batch response are retried on their
+     * own. The method blocks until every product has a result, or until the
+     * calling thread is interrupted.
+     *
+     * @param products The products to forecast.
+     * @param listener Receives each result as soon as it is available, on an
+     *                 HTTP client thread; may be null.
+     * @return One result per product, in completion order.
+     * @throws InterruptedException if the calling thread is interrupted; outstanding requests are cancelled.
+     */
+    public List<BatchForecastResult> generateForecasts(List<Product> products, Consumer<BatchForecastResult> listener)
+            throws InterruptedException {
+        CompletableFuture<List<BatchForecastResult>> future = generateForecastsAsync(products, listener);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            // Per-product failures are reported as results, so this is a bug worth seeing.
+            throw new IllegalStateException("Batch forecasting failed unexpectedly.", e.getCause());
+        }
+    }
+
+    /**
+     * Non-blocking form of {@link #generateForecasts(List, Consumer)}.
+     * Cancelling the returned future cancels every outstanding request.
+     */
+    public CompletableFuture<List<BatchForecastResult>> generateForecastsAsync(List<Product> products,
+            Consumer<BatchForecastResult> listener) {
+        long start = System.nanoTime();
+        List<BatchForecastResult> results = Collections.synchronizedList(new ArrayList<>());
+        Consumer<BatchForecastResult> collector = result -> {
+            results.add(result);
+            if (listener != null) {
+                listener.accept(result);
+            }
+        };
+
+        // Answer what we can from the cache straight away and only send the rest.
+        List<Product> uncached = new ArrayList<>();
+        for (Product product : products) {
+            ForecastCache.Entry cached = getCachedForecast(product);
+            if (cached != null) {
+                collector.accept(BatchForecastResult.cached(product, cached.getForecast()));
+            } else {
+                uncached.add(product);
+            }
+        }
+        List<List<Product>> groups = new ArrayList<>();
+        for (int from = 0; from < uncached.size(); from += batchSize) {
+            groups.add(uncached.subList(from, Math.min(from + batchSize, uncached.size())));
+        }
+        CompletableFuture<List<BatchForecastResult>> result = new BatchRun(groups, collector).start()
+                .thenApply(ignored -> results);
+        result.whenComplete((ignored, error) -> BATCH_TIME.recordSince(start));
+        return result;
+    }
+
+    /**
+     * Drives one batch: keeps up to maxConcurrency groups in flight, starting
+     * the next group whenever one finishes.
+     */
+    private final class BatchRun {
+        private final List<List<Product>> groups;
+        private final Consumer<BatchForecastResult> collector;
+        private final AtomicInteger nextGroup = new AtomicInteger();
+        private final AtomicInteger activeLanes = new AtomicInteger();
+        private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        BatchRun(List<List<Product>> groups, Consumer<BatchForecastResult> collector) {
+            this.groups = groups;
+            this.collector = collector;
+        }
+
+        CompletableFuture<Void> start() {
+            done.whenComplete((ignored, error) -> {
+                if (done.isCancelled()) {
+                    for (CompletableFuture<?> request : inFlight) {
+                        request.cancel(true);
                     }
-                } else if (response.statusCode() != 200) {
-                    // For any other non-200 status code, throw an exception immediately
-                    throw new ForecastingException(
-                            "Gemini API returned an error. Status: " + response.statusCode() + "\nResponse: "
-                                    + response.body());
+                }
+            });
+            int lanes = Math.min(maxConcurrency, groups.size());
+            if (lanes == 0) {
+                done.complete(null);
+            }
+            activeLanes.set(lanes);
+            for (int i = 0; i < lanes; i++) {
+                runNextGroup();
+            }
+            return done;
+        }
+
+        private void runNextGroup() {
+            int index = nextGroup.getAndIncrement();
+            if (done.isDone() || index >= groups.size()) {
+                if (activeLanes.decrementAndGet() == 0) {
+                    done.complete(null);
+                }
+                return;
+            }
+            forecastGroup(groups.get(index)).whenComplete((ignored, error) -> runNextGroup());
+        }
+
+        private CompletableFuture<Void> forecastGroup(List<Product> group) {
+            if (group.size() == 1) {
+                return forecastSingle(group.get(0));
+            }
+            return track(sendPromptAsync(createPromptForBatch(group))).handle((text, error) -> {
+                if (error != null) {
+                    for (Product product : group) {
+                        collector.accept(failedResult(product, error));
+                    }
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                String[] sections = splitBatchResponse(text, group.size());
+                // Products the model skipped are retried one at a time within this lane.
+                CompletableFuture<Void> missing = CompletableFuture.completedFuture(null);
+                for (int i = 0; i < group.size(); i++) {
+                    Product product = group.get(i);
+                    if (sections[i] != null) {
+                        forecastCache.put(createPromptForProduct(product), sections[i]);
+                        collector.accept(BatchForecastResult.success(product, sections[i]));
+                    } else {
+                        missing = missing.thenCompose(ignored -> forecastSingle(product));
+                    }
+                }
+                return missing;
+            }).thenCompose(next -> next);
+        }
+
+        private CompletableFuture<Void> forecastSingle(Product product) {
+            if (done.isDone()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return track(requestForecast(product)).handle((text, error) -> {
+                collector.accept(error == null ? BatchForecastResult.success(product, text)
+                        : failedResult(product, error));
+                return null;
+            });
+        }
+
+        private <T> CompletableFuture<T> track(CompletableFuture<T> request) {
+            inFlight.add(request);
+            request.whenComplete((ignored, error) -> inFlight.remove(request));
+            if (done.isCancelled()) {
+                request.cancel(true);
+            }
+            return request;
+        }
+    }
+
+    /**
+     * Sends a prompt to the Gemini API, sharing the request with any identical
+     * prompt already in flight. Each caller gets its own future, so one caller
+     * cancelling does not affect the others; the HTTP call is only aborted
+     * once every caller has cancelled.
+     *
+     * @return A future completed with the generated text.
+     */
+    private CompletableFuture<String> sendPromptAsync(String prompt) {
+        while (true) {
+            SharedRequest candidate = new SharedRequest();
+            SharedRequest shared = inFlightRequests.putIfAbsent(prompt, candidate);
+            if (shared == null) {
+                shared = candidate;
+                candidate.start(prompt);
+            }
+            CompletableFuture<String> view = shared.subscribe();
+            if (view != null) {
+                return view;
+            }
+            // Everyone else cancelled it just now; start a fresh request.
+            inFlightRequests.remove(prompt, shared);
+        }
+    }
+
+    /**
+     * One HTTP request shared by every caller that asked for the same prompt.
+     */
+    private final class SharedRequest {
+        private final CompletableFuture<String> response = new CompletableFuture<>();
+        private int subscribers;
+        private boolean abandoned;
+
+        void start(String prompt) {
+            CompletableFuture<String> request = sendPromptWithRetries(prompt);
+            response.whenComplete((text, error) -> {
+                inFlightRequests.remove(prompt, this);
+                if (response.isCancelled()) {
+                    request.cancel(true);
+                }
+            });
+            request.whenComplete((text, error) -> {
+                if (error != null) {
+                    response.completeExceptionally(error);
+                } else {
+                    response.complete(text);
+                }
+            });
+        }
+
+        /** @return A per-caller view of the response, or null if the request was already abandoned. */
+        synchronized CompletableFuture<String> subscribe() {
+            if (abandoned) {
+                return null;
+            }
+            if (++subscribers > 1) {
+                coalescedRequests.increment();
+            }
+            CompletableFuture<String> view = new CompletableFuture<>();
+            response.whenComplete((text, error) -> {
+                if (error != null) {
+                    view.completeExceptionally(error);
                 } else {
-                    // Success! Parse and return the response.
-                    return parseResponse(response.body());
+                    view.complete(text);
                 }
-            } catch (IOException | InterruptedException e) {
-                // Network errors can be transient, so we'll allow a retry
-                if (attempt == MAX_RETRIES - 1) {
-                    throw new ForecastingException(
-                            "Network error while communicating with Gemini API after multiple retries.", e);
+            });
+            view.whenComplete((text, error) -> {
+                if (view.isCancelled()) {
+                    unsubscribe();
                 }
-                System.out.println("Network error. Retrying...");
+            });
+            return view;
+        }
+
+        private void unsubscribe() {
+            boolean abandon;
+            synchronized (this) {
+                abandon = --subscribers == 0 && !response.isDone();
+                abandoned |= abandon;
+            }
+            if (abandon) {
+                response.cancel(true);
             }
-            attempt++;
         }
-        throw new ForecastingException("Failed to generate forecast after all retries.");
     }
 
-    private String createPromptForProduct(Product product) {
+    /**
+     * Sends a prompt to the Gemini API, retrying transient failures.
+     *
+     * @return A future completed with the generated text.
+     */
+    private CompletableFuture<String> sendPromptWithRetries(String prompt) {
+        return sendWithRetries(buildRequest(GENERATE_URL_FORMAT, prompt), null);
+    }
+
+    private HttpRequest buildRequest(String urlFormat, String prompt) {
+        // Create the JSON payload
+        JSONObject content = new JSONObject();
+        content.put("text", prompt);
+
+        JSONObject payload = new JSONObject()
+                .put("contents", new org.json.JSONArray()
+                        .put(new JSONObject().put("parts", new org.json.JSONArray().put(content))));
+
+        // Build the HTTP request
+        return HttpRequest.newBuilder()
+                .uri(URI.create(String.format(urlFormat, apiBaseUrl, MODEL_NAME, apiKey)))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
+                .build();
+    }
+
+    /**
+     * Sends a request, retrying transient failures.
+     *
+     * @param listener Null for a plain request; otherwise the request is
+     *                 streamed and the listener is given text as it arrives.
+     * @return A future completed with the generated text.
+     */
+    private CompletableFuture<String> sendWithRetries(HttpRequest request, Consumer<String> listener) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<?>> exchange = new AtomicReference<>();
+        result.whenComplete((text, error) -> {
+            // Abort the HTTP exchange if the caller cancelled.
+            CompletableFuture<?> current = exchange.get();
+            if (result.isCancelled() && current != null) {
+                current.cancel(true);
+            } else if (error != null) {
+                FAILURES.increment();
+            }
+        });
+        sendAttempt(request, listener, 1, result, exchange);
+        return result;
+    }
+
+    private void sendAttempt(HttpRequest request, Consumer<String> listener, int attempt,
+            CompletableFuture<String> result,
+            AtomicReference<CompletableFuture<?>> exchange) {
+        if (result.isDone()) {
+            return; // Cancelled while waiting to retry
+        }
+        // Every attempt, retries included, waits its turn in the local rate limiter.
+        CompletableFuture<Void> permit = rateLimiter.acquire();
+        exchange.set(permit);
+        if (result.isCancelled()) {
+            permit.cancel(true);
+            return;
+        }
+        permit.thenRun(() -> sendAttemptNow(request, listener, attempt, result, exchange));
+    }
+
+    /** Records one HTTP attempt for Flight Recorder and, if it was slow, the slow-operation log. */
+    private static void traceAttempt(GeminiRequestEvent event, long attemptStart, HttpRequest request, int attempt,
+            boolean streamed, HttpResponse<String> response, Throwable error) {
+        long elapsed = System.nanoTime() - attemptStart;
+        event.end();
+        boolean commit = event.shouldCommit();
+        boolean slow = SlowOperationLog.isSlow(elapsed);
+        if (!commit && !slow) {
+            return;
+        }
+        int status = response != null ? response.statusCode() : 0;
+        // Without a Content-Length, e.g. for a chunked stream, the body as read is counted in UTF-8 bytes;
+        // for a stream that is the forecast text, not the events it arrived in.
+        long responseBytes = response == null ? 0
+                : response.headers().firstValueAsLong("Content-Length").orElseGet(() -> response.body() != null
+                        ? response.body().getBytes(StandardCharsets.UTF_8).length : 0);
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        String errorText = cause == null ? null : cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        if (commit) {
+            event.status = status;
+            event.attempt = attempt;
+            event.streamed = streamed;
+            event.requestBytes = request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L);
+            event.responseBytes = responseBytes;
+            event.error = errorText;
+            event.commit();
+        }
+        if (slow) {
+            // The query string carries the API key, so only the path is logged.
+            SlowOperationLog.log("HTTP", elapsed, request.method() + " " + request.uri().getPath()
+                    + " status=" + status + " attempt=" + attempt + (streamed ? " streamed" : "")
+                    + " responseBytes=" + responseBytes + (errorText != null ? " error=" + errorText : ""));
+        }
+    }
+
+    private void sendAttemptNow(HttpRequest request, Consumer<String> listener, int attempt,
+            CompletableFuture<String> result, AtomicReference<CompletableFuture<?>> exchange) {
+        if (result.isDone()) {
+            return;
+        }
+        HttpResponse.BodyHandler<String> bodyHandler = HttpResponse.BodyHandlers.ofString();
+        ForecastStreamParser stream = null;
+        if (listener != null) {
+            // Successful responses are parsed event by event as they arrive; errors are read whole.
+            ForecastStreamParser parser = new ForecastStreamParser(text -> {
+                if (!result.isDone()) {
+                    listener.accept(text);
+                }
+            });
+            bodyHandler = info -> info.statusCode() == 200
+                    ? HttpResponse.BodySubscribers.fromLineSubscriber(parser, ForecastStreamParser::getText,
+                            StandardCharsets.UTF_8, null)
+                    : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+            stream = parser;
+        }
+        final ForecastStreamParser streamParser = stream;
+        GeminiRequestEvent event = new GeminiRequestEvent();
+        event.begin();
+        long attemptStart = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> response = httpClient.sendAsync(request, bodyHandler);
+        exchange.set(response);
+        if (result.isCancelled()) {
+            response.cancel(true);
+            return;
+        }
+        response.whenComplete((httpResponse, error) -> {
+            ATTEMPT_TIME.recordSince(attemptStart);
+            traceAttempt(event, attemptStart, request, attempt, streamParser != null, httpResponse, error);
+            if (result.isDone()) {
+                return;
+            }
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (streamParser != null && streamParser.hasText()) {
+                    // Part of the forecast is already on screen, so a retry would repeat it.
+                    result.completeExceptionally(new ForecastingException(
+                            "Connection to Gemini API was lost while streaming the forecast.", cause));
+                } else if (cause instanceof IOException && attempt < maxAttempts) {
+                    // Network errors can be transient, so we'll allow a retry
+                    retryLater(request, listener, attempt, result, exchange, backoffMillis(attempt));
+                } else {
+                    result.completeExceptionally(new ForecastingException(
+                            "Network error while communicating with Gemini API after multiple retries.", cause));
+                }
+                return;
+            }
+
+            int status = httpResponse.statusCode();
+            if (status == 200) {
+                // Success! Parse and return the response.
+                try {
+                    result.complete(streamParser != null ? streamParser.getResult()
+                            : parseResponse(httpResponse.body()));
+                } catch (ForecastingException e) {
+                    result.completeExceptionally(e);
+                }
+            } else if (status == 429 || status >= 500) {
+                // Rate limiting and server errors are worth another attempt
+                if (attempt >= maxAttempts) {
+                    result.completeExceptionally(new ForecastingException(
+                            "Failed to generate forecast after all retries. Last status: " + status));
+                    return;
+                }
+                if (status == 429) {
+                    QUOTA_EXCEEDED.increment();
+                }
+                long delay = retryAfterMillis(httpResponse);
+                if (delay > maxBackoffMillis) {
+                    // Waiting would hold this forecast, and every caller sharing it, for as long.
+                    result.completeExceptionally(new ForecastingException(
+                            (status == 429 ? "Gemini API quota exceeded" : "Gemini API is unavailable (status "
+                                    + status + ")") + "; it asked to retry in " + (delay + 999) / 1000
+                                    + " seconds. Please try again later."));
+                    return;
+                }
+                if (delay < 0) {
+                    delay = backoffMillis(attempt);
+                }
+                retryLater(request, listener, attempt, result, exchange, delay);
+            } else {
+                // For any other non-200 status code, fail immediately
+                result.completeExceptionally(new ForecastingException(
+                        "Gemini API returned an error. Status: " + status + "\nResponse: " + httpResponse.body()));
+            }
+        });
+    }
+
+    private void retryLater(HttpRequest request, Consumer<String> listener, int attempt,
+            CompletableFuture<String> result, AtomicReference<CompletableFuture<?>> exchange, long delayMillis) {
+        // Counted here and traced per attempt by traceAttempt, rather than printed.
+        RETRIES.increment();
+        // The delayed executor schedules the retry on a timer instead of parking a thread.
+        CompletableFuture.runAsync(() -> sendAttempt(request, listener, attempt + 1, result, exchange),
+                CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half the capped delay plus a
+     * random share of the other half, so retries from many callers spread out.
+     */
+    private long backoffMillis(int attempt) {
+        long capped = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        long half = capped / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    /**
+     * @return The delay requested by a Retry-After header (seconds or an
+     *         HTTP date) in milliseconds, or -1 if there is none.
+     */
+    private static long retryAfterMillis(HttpResponse<?> response) {
+        Optional<String> header = response.headers().firstValue("Retry-After");
+        if (header.isEmpty()) {
+            return -1;
+        }
+        String value = header.get().trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime retryAt = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt).toMillis());
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
+
+    private static ForecastingException toForecastingException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof ForecastingException) {
+            return (ForecastingException) cause;
+        }
+        if (cause instanceof CancellationException) {
+            return new ForecastingException("Forecast request was cancelled.", cause);
+        }
+        return new ForecastingException("Unexpected error while generating forecast.", cause);
+    }
+
+    String createPromptForProduct(Product product) {
         return String.format(
                 "You are an expert inventory management analyst for a retail business. " +
                         "Analyze the following product and provide a brief sales forecast and restocking recommendation. "
@@ -107,7 +840,54 @@ public class ForecastingService {
                 product.getName(), product.getCategory(), product.getPrice(), product.getQuantity());
     }
 
-    private String parseResponse(String responseBody) throws ForecastingException {
+    String createPromptForBatch(List<Product> products) {
+        StringBuilder prompt = new StringBuilder(
+                "You are an expert inventory management analyst for a retail business. " +
+                        "Analyze each of the following products and provide a brief sales forecast and restocking "
+                        + "recommendation for each one. " +
+                        "Be concise and provide actionable advice. Assume a standard retail environment. " +
+                        "Start the analysis of each product with a line containing only '### PRODUCT <number>', " +
+                        "using the product's number from the list, then use headings for 'Forecast' and "
+                        + "'Recommendation'.\n\n");
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            prompt.append(String.format(
+                    "Product %d:%n- Name: %s%n- Category: %s%n- Price: $%.2f%n- Current Quantity in Stock: %d%n%n",
+                    i + 1, product.getName(), product.getCategory(), product.getPrice(), product.getQuantity()));
+        }
+        return prompt.append("Your Analysis:").toString();
+    }
+
+    /**
+     * Splits a batch response on its "### PRODUCT n" headings.
+     *
+     * @return The text for each product by position; null where the response did not cover it.
+     */
+    private static String[] splitBatchResponse(String text, int count) {
+        String[] sections = new String[count];
+        Matcher matcher = BATCH_HEADING.matcher(text);
+        int current = -1;
+        int sectionStart = 0;
+        while (matcher.find()) {
+            if (current >= 0) {
+                sections[current] = text.substring(sectionStart, matcher.start()).trim();
+            }
+            int number = Integer.parseInt(matcher.group(1));
+            current = number >= 1 && number <= count ? number - 1 : -1;
+            sectionStart = matcher.end();
+        }
+        if (current >= 0) {
+            sections[current] = text.substring(sectionStart).trim();
+        }
+        for (int i = 0; i < count; i++) {
+            if (sections[i] != null && sections[i].isEmpty()) {
+                sections[i] = null;
+            }
+        }
+        return sections;
+    }
+
+    String parseResponse(String responseBody) throws ForecastingException {
         try {
             JSONObject jsonResponse = new JSONObject(responseBody);
 
@@ -0,0 +1,45 @@
+package stocksynapse;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for one HTTP exchange with the Gemini API.
+ * Each retry is a separate event; waiting for the rate limiter or for the
+ * next retry is not included.
+ */
+@Name("stocksynapse.GeminiRequest")
+@Label("Gemini Request")
+@Category({ "Stock Synapse", "Forecasting" })
+@Description("One HTTP attempt to generate a forecast")
+// Requests complete on HTTP client threads, where the stack says nothing about the caller.
+@StackTrace(false)
+final class GeminiRequestEvent extends Event {
+
+    @Label("Status")
+    @Description("The HTTP status code, or 0 if no response arrived")
+    int status;
+
+    @Label("Attempt")
+    @Description("1 for the first try, 2 for the first retry, and so on")
+    int attempt;
+
+    @Label("Streamed")
+    boolean streamed;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    long responseBytes;
+
+    @Label("Error")
+    String error;
+}
@@ -0,0 +1,60 @@
+package stocksynapse;
+
+import java.util.List;
+
+/**
+ * Progress and outcome of a bulk product import. Interim snapshots are
+ * reported after every committed chunk, and a final one is returned when the
+ * import finishes.
+ */
+public class ImportResult {
+    private final long importedCount;
+    private final long rejectedCount;
+    private final long elapsedNanos;
+    private final double fractionDone;
+    private final List<String> errors;
+
+    public ImportResult(long importedCount, long rejectedCount, long elapsedNanos, double fractionDone,
+            List<String> errors) {
+        this.importedCount = importedCount;
+        this.rejectedCount = rejectedCount;
+        this.elapsedNanos = elapsedNanos;
+        this.fractionDone = fractionDone;
+        this.errors = List.copyOf(errors);
+    }
+
+    /** @return Products committed to the database so far. */
+    public long getImportedCount() {
+        return importedCount;
+    }
+
+    /** @return Records skipped because they could not be parsed. */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1_000_000_000.0;
+    }
+
+    /** @return Import throughput in products per second. */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : importedCount / getElapsedSeconds();
+    }
+
+    /** @return How far through the source the import is, between 0 and 1. */
+    public double getFractionDone() {
+        return fractionDone;
+    }
+
+    /** @return Messages for the first few rejected records. */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Imported %,d products (%,d rejected) in %.1f s - %,.0f rows/s",
+                importedCount, rejectedCount, getElapsedSeconds(), getRowsPerSecond());
+    }
+}
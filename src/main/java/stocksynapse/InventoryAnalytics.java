@@ -0,0 +1,302 @@
+package stocksynapse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Category-level analytics for the whole catalog: stock value by category,
+ * price and quantity percentiles, the most valuable products and dead stock.
+ *
+ * Everything is computed in one parallel pass over a columnar catalog,
+ * followed by two parallel sorts for the percentiles, so even a catalog of a
+ * million products takes tens of milliseconds on a multi-core machine.
+ * Instances are immutable; {@link InventoryAnalyticsEngine} caches them
+ * until the catalog changes.
+ */
+public class InventoryAnalytics {
+
+    /** The percentiles reported for prices and quantities. */
+    public static final int[] PERCENTILES = { 10, 25, 50, 75, 90, 99 };
+
+    /** Totals for one category. */
+    public static final class CategorySummary {
+        private final String category;
+        private final long productCount;
+        private final long totalUnits;
+        private final long totalValueCents;
+
+        CategorySummary(String category, long productCount, long totalUnits, long totalValueCents) {
+            this.category = category;
+            this.productCount = productCount;
+            this.totalUnits = totalUnits;
+            this.totalValueCents = totalValueCents;
+        }
+
+        /** @return The category, or null for products without one. */
+        public String getCategory() {
+            return category;
+        }
+
+        public long getProductCount() {
+            return productCount;
+        }
+
+        public long getTotalUnits() {
+            return totalUnits;
+        }
+
+        public double getTotalValue() {
+            return totalValueCents / 100.0;
+        }
+    }
+
+    private final long productCount;
+    private final long totalValueCents;
+    private final List<CategorySummary> categories;
+    private final double[] pricePercentiles;
+    private final int[] quantityPercentiles;
+    private final List<Product> mostValuable;
+    private final List<Product> deadStock;
+    private final long deadStockCount;
+    private final long deadStockValueCents;
+    private final int deadStockDays;
+    private final long computeNanos;
+
+    private InventoryAnalytics(long productCount, long totalValueCents, List<CategorySummary> categories,
+            double[] pricePercentiles, int[] quantityPercentiles, List<Product> mostValuable, List<Product> deadStock,
+            long deadStockCount, long deadStockValueCents, int deadStockDays, long computeNanos) {
+        this.productCount = productCount;
+        this.totalValueCents = totalValueCents;
+        this.categories = Collections.unmodifiableList(categories);
+        this.pricePercentiles = pricePercentiles;
+        this.quantityPercentiles = quantityPercentiles;
+        this.mostValuable = Collections.unmodifiableList(mostValuable);
+        this.deadStock = Collections.unmodifiableList(deadStock);
+        this.deadStockCount = deadStockCount;
+        this.deadStockValueCents = deadStockValueCents;
+        this.deadStockDays = deadStockDays;
+        this.computeNanos = computeNanos;
+    }
+
+    /**
+     * Computes the analytics for a catalog. The list must not change while
+     * this runs.
+     *
+     * @param products   The catalog.
+     * @param history    Recent demand, used to find dead stock; must be seeded.
+     * @param topCount   How many of the most valuable products and of the dead stock to list.
+     * @return The analytics.
+     */
+    public static InventoryAnalytics compute(ColumnarProductList products, StockHistory history, int topCount) {
+        long start = System.nanoTime();
+        int size = products.size();
+        int categoryCodes = products.getCategoryCodeCount();
+        // Usually far fewer products have sold recently than are stocked, so find their rows once
+        // instead of looking up every row's ID.
+        boolean[] hasDemand = new boolean[size];
+        for (int row : products.indexOfIds(history.getProductsWithDemand(history.today()))) {
+            if (row >= 0) {
+                hasDemand[row] = true;
+            }
+        }
+
+        Accumulator totals = IntStream.range(0, size).parallel().collect(
+                () -> new Accumulator(categoryCodes, topCount),
+                (accumulator, row) -> accumulator.add(products, row, hasDemand[row]),
+                Accumulator::merge);
+
+        double[] prices = new double[size];
+        int[] quantities = new int[size];
+        IntStream.range(0, size).parallel().forEach(row -> {
+            prices[row] = products.getPrice(row);
+            quantities[row] = products.getQuantity(row);
+        });
+        Arrays.parallelSort(prices);
+        Arrays.parallelSort(quantities);
+        double[] pricePercentiles = new double[PERCENTILES.length];
+        int[] quantityPercentiles = new int[PERCENTILES.length];
+        if (size > 0) {
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                // Nearest rank: the smallest value with at least p% of the values at or below it.
+                int rank = (int) Math.ceil(PERCENTILES[i] / 100.0 * size);
+                pricePercentiles[i] = prices[Math.max(0, rank - 1)];
+                quantityPercentiles[i] = quantities[Math.max(0, rank - 1)];
+            }
+        }
+
+        List<CategorySummary> categories = new ArrayList<>();
+        for (int code = -1; code < categoryCodes; code++) {
+            int slot = code + 1;
+            if (totals.categoryCounts[slot] > 0) {
+                categories.add(new CategorySummary(code < 0 ? null : products.getCategoryName(code),
+                        totals.categoryCounts[slot], totals.categoryUnits[slot], totals.categoryValueCents[slot]));
+            }
+        }
+        categories.sort(Comparator.comparingLong((CategorySummary c) -> c.totalValueCents).reversed());
+
+        long totalValueCents = 0;
+        for (long value : totals.categoryValueCents) {
+            totalValueCents += value;
+        }
+        return new InventoryAnalytics(size, totalValueCents, categories, pricePercentiles, quantityPercentiles,
+                totals.mostValuable.toProducts(products), totals.deadStock.toProducts(products),
+                totals.deadStockCount, totals.deadStockValueCents, history.getHistoryDays(),
+                System.nanoTime() - start);
+    }
+
+    static long valueCents(ColumnarProductList products, int row) {
+        // Matches InventoryStats: the price is rounded to cents before multiplying.
+        return Math.round(products.getPrice(row) * 100) * products.getQuantity(row);
+    }
+
+    public long getProductCount() {
+        return productCount;
+    }
+
+    public double getTotalValue() {
+        return totalValueCents / 100.0;
+    }
+
+    /** @return Every category, most valuable first. */
+    public List<CategorySummary> getCategories() {
+        return categories;
+    }
+
+    /** @return The price at each of {@link #PERCENTILES}. */
+    public double[] getPricePercentiles() {
+        return pricePercentiles.clone();
+    }
+
+    /** @return The quantity at each of {@link #PERCENTILES}. */
+    public int[] getQuantityPercentiles() {
+        return quantityPercentiles.clone();
+    }
+
+    /** @return The products with the most stock value, most valuable first. */
+    public List<Product> getMostValuable() {
+        return mostValuable;
+    }
+
+    /**
+     * @return The most valuable of the products that have stock but sold none
+     *         in the last {@link #getDeadStockDays()} days, most valuable first.
+     */
+    public List<Product> getDeadStock() {
+        return deadStock;
+    }
+
+    /** @return How many products are dead stock, including those not listed. */
+    public long getDeadStockCount() {
+        return deadStockCount;
+    }
+
+    public double getDeadStockValue() {
+        return deadStockValueCents / 100.0;
+    }
+
+    public int getDeadStockDays() {
+        return deadStockDays;
+    }
+
+    /** @return How long the computation took. */
+    public long getComputeNanos() {
+        return computeNanos;
+    }
+
+    /** Per-thread partial results, merged pairwise by the parallel stream. */
+    private static final class Accumulator {
+        private final long[] categoryCounts;
+        private final long[] categoryUnits;
+        private final long[] categoryValueCents;
+        private final TopRows mostValuable;
+        private final TopRows deadStock;
+        private long deadStockCount;
+        private long deadStockValueCents;
+
+        Accumulator(int categoryCodes, int topCount) {
+            // Slot 0 is for products without a category, slot code + 1 for each category.
+            this.categoryCounts = new long[categoryCodes + 1];
+            this.categoryUnits = new long[categoryCodes + 1];
+            this.categoryValueCents = new long[categoryCodes + 1];
+            this.mostValuable = new TopRows(topCount);
+            this.deadStock = new TopRows(topCount);
+        }
+
+        void add(ColumnarProductList products, int row, boolean hasDemand) {
+            int slot = products.getCategoryCode(row) + 1;
+            int quantity = products.getQuantity(row);
+            long value = valueCents(products, row);
+            categoryCounts[slot]++;
+            categoryUnits[slot] += quantity;
+            categoryValueCents[slot] += value;
+            mostValuable.offer(row, value);
+            if (quantity > 0 && !hasDemand) {
+                deadStockCount++;
+                deadStockValueCents += value;
+                deadStock.offer(row, value);
+            }
+        }
+
+        void merge(Accumulator other) {
+            for (int slot = 0; slot < categoryCounts.length; slot++) {
+                categoryCounts[slot] += other.categoryCounts[slot];
+                categoryUnits[slot] += other.categoryUnits[slot];
+                categoryValueCents[slot] += other.categoryValueCents[slot];
+            }
+            mostValuable.mergeFrom(other.mostValuable);
+            deadStock.mergeFrom(other.deadStock);
+            deadStockCount += other.deadStockCount;
+            deadStockValueCents += other.deadStockValueCents;
+        }
+    }
+
+    /**
+     * The rows with the highest values seen, kept sorted in small arrays;
+     * most rows are rejected by one comparison with the smallest kept value.
+     */
+    private static final class TopRows {
+        private final int capacity;
+        private final int[] rows;
+        private final long[] values;
+        private int size;
+
+        TopRows(int capacity) {
+            this.capacity = capacity;
+            this.rows = new int[capacity];
+            this.values = new long[capacity];
+        }
+
+        void offer(int row, long value) {
+            if (capacity == 0 || size == capacity && value <= values[size - 1]) {
+                return;
+            }
+            int position = size == capacity ? size - 1 : size++;
+            // Shift smaller values down to keep the arrays sorted, largest first.
+            while (position > 0 && values[position - 1] < value) {
+                rows[position] = rows[position - 1];
+                values[position] = values[position - 1];
+                position--;
+            }
+            rows[position] = row;
+            values[position] = value;
+        }
+
+        void mergeFrom(TopRows other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.rows[i], other.values[i]);
+            }
+        }
+
+        List<Product> toProducts(ColumnarProductList products) {
+            List<Product> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(products.get(rows[i]));
+            }
+            return result;
+        }
+    }
+}
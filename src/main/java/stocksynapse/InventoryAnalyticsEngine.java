@@ -0,0 +1,177 @@
+package stocksynapse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Serves {@link InventoryAnalytics} for the catalog, computing them at most
+ * once between changes.
+ *
+ * The engine keeps its own columnar copy of the catalog, loaded on first use.
+ * Changes reported as an {@link InventoryListener} are queued by product ID
+ * and applied to the copy on the next request, so a burst of edits costs one
+ * pass over the ID columns rather than a reload from the database. If more
+ * than {@link #MAX_PENDING_CHANGES} changes queue up, e.g. during an import,
+ * the copy is dropped and reloaded instead.
+ */
+public class InventoryAnalyticsEngine implements InventoryListener {
+
+    /** How many of the most valuable products and of the dead stock to list. */
+    public static final int TOP_COUNT = 20;
+    static final int MAX_PENDING_CHANGES = 10_000;
+
+    private final Supplier<ColumnarProductList> loader;
+    private final Runnable historySeeder;
+    private final StockHistory history;
+    private final Object computeLock = new Object();
+
+    // Guarded by this. A null value means the product was removed.
+    private Map<String, Product> pending = new LinkedHashMap<>();
+    private boolean reloadNeeded = true;
+    private long version;
+    private InventoryAnalytics cached;
+
+    // Guarded by computeLock.
+    private ColumnarProductList catalog;
+
+    /**
+     * @param loader        Reads the whole catalog.
+     * @param history       The live demand history, used to find dead stock.
+     * @param historySeeder Seeds {@code history} if it has not been seeded yet.
+     */
+    public InventoryAnalyticsEngine(Supplier<ColumnarProductList> loader, StockHistory history,
+            Runnable historySeeder) {
+        this.loader = loader;
+        this.history = history;
+        this.historySeeder = historySeeder;
+    }
+
+    /**
+     * @return The analytics computed since the last change, or null if they
+     *         would have to be computed again.
+     */
+    public synchronized InventoryAnalytics getCachedAnalytics() {
+        return cached;
+    }
+
+    /**
+     * Returns the analytics for the current catalog, computing them if the
+     * catalog has changed since they were last computed. The first call reads
+     * the whole catalog, so call this off the event dispatch thread.
+     *
+     * @return The analytics.
+     */
+    public InventoryAnalytics getAnalytics() {
+        synchronized (computeLock) {
+            long startVersion;
+            Map<String, Product> changes;
+            boolean reload;
+            synchronized (this) {
+                if (cached != null) {
+                    return cached;
+                }
+                startVersion = version;
+                changes = pending;
+                pending = new LinkedHashMap<>();
+                reload = reloadNeeded || catalog == null;
+                reloadNeeded = false;
+            }
+            try {
+                if (reload) {
+                    // Changes committed during the read may or may not be in it; applying them
+                    // again afterwards is harmless because each one replaces the product by ID.
+                    catalog = null;
+                    catalog = loader.get();
+                }
+                apply(catalog, changes);
+                if (!history.isSeeded()) {
+                    historySeeder.run();
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    reloadNeeded = true;
+                }
+                throw e;
+            }
+
+            InventoryAnalytics analytics = InventoryAnalytics.compute(catalog, history, TOP_COUNT);
+            synchronized (this) {
+                if (version == startVersion) {
+                    cached = analytics;
+                }
+            }
+            return analytics;
+        }
+    }
+
+    /**
+     * Drops the cached analytics and the catalog copy, e.g. to pick up
+     * changes made by other terminals.
+     */
+    public synchronized void invalidate() {
+        version++;
+        cached = null;
+        pending.clear();
+        reloadNeeded = true;
+    }
+
+    private static void apply(ColumnarProductList catalog, Map<String, Product> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(changes.keySet());
+        int[] rows = catalog.indexOfIds(ids);
+        List<Integer> removedRows = new ArrayList<>();
+        List<Product> added = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            Product product = changes.get(ids.get(i));
+            if (rows[i] >= 0) {
+                if (product == null) {
+                    removedRows.add(rows[i]);
+                } else {
+                    catalog.set(rows[i], product);
+                }
+            } else if (product != null) {
+                added.add(product);
+            }
+        }
+        // Remove from the end so the remaining row numbers stay valid.
+        removedRows.sort(null);
+        for (int i = removedRows.size() - 1; i >= 0; i--) {
+            catalog.remove((int) removedRows.get(i));
+        }
+        // Analytics do not depend on row order, so new products go at the end.
+        catalog.addAll(added);
+    }
+
+    private synchronized void record(String id, Product product) {
+        version++;
+        cached = null;
+        if (reloadNeeded) {
+            return;
+        }
+        pending.put(id, product);
+        if (pending.size() > MAX_PENDING_CHANGES) {
+            pending.clear();
+            reloadNeeded = true;
+        }
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        record(product.getId(), product);
+    }
+
+    @Override
+    public void productUpdated(Product previous, Product updated) {
+        record(updated.getId(), updated);
+    }
+
+    @Override
+    public void productRemoved(Product product) {
+        record(product.getId(), null);
+    }
+}
@@ -0,0 +1,22 @@
+package stocksynapse;
+
+/**
+ * Receives notifications after InventoryService has committed a change.
+ * Components that keep derived state (statistics, indexes, alerts) register
+ * one so they can update incrementally instead of rescanning the catalog.
+ *
+ * Callbacks run on the thread that made the change, which is usually a
+ * SwingWorker thread, so implementations must be thread-safe and quick.
+ */
+public interface InventoryListener {
+
+    void productAdded(Product product);
+
+    /**
+     * @param previous The product as it was before the change, or null if unknown.
+     * @param updated  The product as it is now.
+     */
+    void productUpdated(Product previous, Product updated);
+
+    void productRemoved(Product product);
+}
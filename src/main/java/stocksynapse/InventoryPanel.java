@@ -4,15 +4,38 @@ import javax.swing.border.CompoundBorder;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.TableRowSorter;
+import java.nio.file.Path;
 import java.util.UUID;
+import java.util.regex.Pattern;
 import java.util.ArrayList;
+import java.util.List;
 
 public class InventoryPanel extends JPanel {
+    // Search results beyond this many are not loaded when the catalog is too large to hold. The
+    // ones loaded are the first in index order, not by name, since the index does not hold names.
+    private static final int MAX_SEARCH_RESULTS = 5_000;
+    private static final String ALL_CATEGORIES = "All Categories";
+
     private final InventoryService inventoryService;
     private final ProductTableModel tableModel;
     private final JTable inventoryTable;
+    private final TableRowSorter<ProductTableModel> sorter;
+    // Used instead of the sorter for large catalogs, which the database sorts and filters.
+    private final QueryRowSorter querySorter;
+    private final JComboBox<String> categoryFilter;
+    private boolean updatingCategories;
+    // The order and filters for reading a large catalog; its category also filters small ones.
+    private ProductQuery catalogQuery = ProductQuery.DEFAULT;
     private final DashboardPanel dashboardPanel; // Reference to update dashboard
+    private final JTextField searchField;
+    private final JLabel searchStatusLabel;
+    // True while a large catalog's table holds search results instead of paging the whole catalog.
+    private boolean showingSearchResults;
+    private long searchGeneration;
 
     public InventoryPanel(InventoryService inventoryService, DashboardPanel dashboardPanel) {
         this.inventoryService = inventoryService;
@@ -37,7 +60,34 @@ public class InventoryPanel extends JPanel {
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 28));
         titleLabel.setForeground(darkText);
         titleLabel.setBorder(new EmptyBorder(10, 0, 20, 0));
-        add(titleLabel, BorderLayout.NORTH);
+
+        // --- Search Bar ---
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.setBackground(backgroundGreen);
+        JLabel searchLabel = new JLabel("Search:");
+        searchLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        searchLabel.setForeground(darkText);
+        searchField = new JTextField(30);
+        searchField.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        searchField.setToolTipText("Find products by the start of any word in their name, category, description or ID");
+        searchStatusLabel = new JLabel(" ");
+        searchStatusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        JLabel categoryLabel = new JLabel("Category:");
+        categoryLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        categoryLabel.setForeground(darkText);
+        categoryFilter = new JComboBox<>(new String[] { ALL_CATEGORIES });
+        categoryFilter.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        searchPanel.add(searchLabel);
+        searchPanel.add(searchField);
+        searchPanel.add(categoryLabel);
+        searchPanel.add(categoryFilter);
+        searchPanel.add(searchStatusLabel);
+
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.setBackground(backgroundGreen);
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        headerPanel.add(searchPanel, BorderLayout.SOUTH);
+        add(headerPanel, BorderLayout.NORTH);
 
         // --- Inventory Table ---
         inventoryTable = new JTable(tableModel);
@@ -58,8 +108,17 @@ public class InventoryPanel extends JPanel {
                 new EmptyBorder(5, 5, 5, 5)));
 
         // Enable sorting and filtering
-        TableRowSorter<ProductTableModel> sorter = new TableRowSorter<>(tableModel);
+        sorter = new TableRowSorter<>(tableModel);
         inventoryTable.setRowSorter(sorter);
+        // A header click on a large catalog re-queries it in the new order; the rows are not held to sort.
+        querySorter = new QueryRowSorter(tableModel, key -> {
+            catalogQuery = catalogQuery.withSort(ProductTableModel.getSortColumn(key.getColumn()),
+                    key.getSortOrder() != SortOrder.DESCENDING);
+            if (tableModel.isLazy()) {
+                tableModel.refreshLazy(inventoryService, tableModel.getRowCount(), catalogQuery);
+            }
+        });
+        querySorter.setSortKeys(List.of(new RowSorter.SortKey(1, SortOrder.ASCENDING))); // By name, as queried
 
         JScrollPane scrollPane = new JScrollPane(inventoryTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(tableGrid));
@@ -71,11 +130,15 @@ public class InventoryPanel extends JPanel {
         JButton addButton = new JButton("Add New Product");
         JButton editButton = new JButton("Edit Selected");
         JButton deleteButton = new JButton("Delete Selected");
+        JButton adjustButton = new JButton("Adjust Stock...");
+        JButton importButton = new JButton("Import...");
         JButton refreshButton = new JButton("Refresh Table");
 
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(adjustButton);
+        buttonPanel.add(importButton);
         buttonPanel.add(refreshButton);
         add(buttonPanel, BorderLayout.SOUTH);
 
@@ -94,10 +157,237 @@ public class InventoryPanel extends JPanel {
         addButton.addActionListener(e -> openAddProductDialog());
         editButton.addActionListener(e -> openEditProductDialog());
         deleteButton.addActionListener(e -> deleteSelectedProduct());
+        adjustButton.addActionListener(e -> adjustSelectedStock());
+        importButton.addActionListener(e -> importProducts());
         refreshButton.addActionListener(e -> refreshTable());
+        categoryFilter.addActionListener(e -> {
+            if (updatingCategories) {
+                return;
+            }
+            Object selected = categoryFilter.getSelectedItem();
+            catalogQuery = catalogQuery.withCategory(ALL_CATEGORIES.equals(selected) ? null : (String) selected);
+            if (isCatalogPaged()) {
+                refreshTable(); // The database applies the filter and recounts the rows
+            } else {
+                applySearch();
+            }
+        });
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                applySearch();
+            }
 
-        // Initial data load
+            public void removeUpdate(DocumentEvent e) {
+                applySearch();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
+        // Initial data load; the last session's snapshot is shown until the database answers
+        showCatalogSnapshot(inventoryService.openCatalogSnapshot());
         refreshTable();
+        buildSearchIndex();
+    }
+
+    /**
+     * Shows the catalog saved by the last session while the first refresh
+     * reads it from the database. Once that refresh completes, only the rows
+     * that changed since the snapshot are updated.
+     *
+     * @param snapshot The saved catalog, or null if there is none.
+     */
+    private void showCatalogSnapshot(CatalogSnapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        tableModel.showSnapshot(snapshot);
+        if (snapshot.size() > inventoryService.getLargeCatalogThreshold()) {
+            // Saved in the database's default order, so header clicks re-query as they will once paged
+            inventoryTable.setRowSorter(querySorter);
+        }
+    }
+
+    /**
+     * @return true if the catalog is too large to hold, so the database sorts,
+     *         filters and searches it rather than the table.
+     */
+    private boolean isCatalogPaged() {
+        return tableModel.isLazy() || tableModel.isShowingSnapshot() && inventoryTable.getRowSorter() == querySorter;
+    }
+
+    /**
+     * Builds the search index in the background; the index then keeps itself
+     * up to date as products change.
+     */
+    private void buildSearchIndex() {
+        new TracedSwingWorker<Void, Void>("Build search index") {
+            @Override
+            protected Void runInBackground() throws Exception {
+                inventoryService.rebuildSearchIndex();
+                return null;
+            }
+
+            @Override
+            protected void finished() {
+                try {
+                    get();
+                    applySearch();
+                } catch (Exception ex) {
+                    searchStatusLabel.setText("Search unavailable: " + ex.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Filters the table to the products matching the search field. Small
+     * catalogs are filtered in place by the row sorter, using the index to
+     * test each row; large ones are replaced by the matching products.
+     */
+    private void applySearch() {
+        String query = searchField.getText().trim();
+        ProductSearchIndex index = inventoryService.getSearchIndex();
+        if (query.isEmpty()) {
+            searchStatusLabel.setText(" ");
+            if (showingSearchResults) {
+                showingSearchResults = false;
+                refreshTable();
+            } else if (!isCatalogPaged()) {
+                sorter.setRowFilter(withCategoryFilter(null));
+            }
+            return;
+        }
+        if (isCatalogPaged() || showingSearchResults) {
+            loadSearchResults(query);
+            return;
+        }
+        RowFilter<ProductTableModel, Integer> searchFilter;
+        if (index.isBuilt()) {
+            searchFilter = new IndexRowFilter(index, query);
+        } else {
+            // Until the index is ready, scan the rows; the catalog is small enough to hold.
+            searchFilter = RowFilter.regexFilter("(?i)" + Pattern.quote(query), 0, 1, 4);
+        }
+        sorter.setRowFilter(withCategoryFilter(searchFilter));
+        searchStatusLabel.setText(inventoryTable.getRowCount() + " matches");
+    }
+
+    /**
+     * Replaces the paged catalog with the products matching a search.
+     */
+    private void loadSearchResults(final String query) {
+        final ProductSearchIndex index = inventoryService.getSearchIndex();
+        if (!index.isBuilt()) {
+            searchStatusLabel.setText("Indexing catalog...");
+            return; // Searched again once the index is built
+        }
+        final long generation = ++searchGeneration;
+        new TracedSwingWorker<List<Product>, Void>("Search products") {
+            private int matchCount;
+
+            @Override
+            protected List<Product> runInBackground() throws Exception {
+                ProductSearchIndex.Matches matches = index.search(query);
+                if (matches == null) {
+                    return List.of();
+                }
+                matchCount = matches.size();
+                return inventoryService.getProductsByIds(matches.getProductIds(MAX_SEARCH_RESULTS));
+            }
+
+            @Override
+            protected void finished() {
+                if (generation != searchGeneration) {
+                    return; // A newer keystroke has superseded this search
+                }
+                try {
+                    List<Product> products = get();
+                    showingSearchResults = true;
+                    sorter.setRowFilter(withCategoryFilter(null));
+                    tableModel.refresh(products);
+                    if (inventoryTable.getRowSorter() != sorter) {
+                        inventoryTable.setRowSorter(sorter);
+                    }
+                    searchStatusLabel.setText(matchCount > products.size()
+                            ? "Showing " + products.size() + " of " + matchCount
+                                    + " matches; refine the search to see the rest"
+                            : matchCount + " matches");
+                } catch (Exception ex) {
+                    searchStatusLabel.setText("Search failed: " + ex.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Adds the selected category, if any, to a row filter for a table that
+     * holds its rows.
+     *
+     * @param filter Another filter to apply, or null.
+     * @return The combined filter, or null if neither applies.
+     */
+    private RowFilter<ProductTableModel, Integer> withCategoryFilter(RowFilter<ProductTableModel, Integer> filter) {
+        final String category = catalogQuery.getCategory();
+        if (category == null) {
+            return filter;
+        }
+        RowFilter<ProductTableModel, Integer> categoryRowFilter = new RowFilter<ProductTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends ProductTableModel, ? extends Integer> entry) {
+                Product product = entry.getModel().getProductAt(entry.getIdentifier());
+                return product != null && category.equals(product.getCategory());
+            }
+        };
+        return filter == null ? categoryRowFilter : RowFilter.andFilter(List.of(filter, categoryRowFilter));
+    }
+
+    /**
+     * Replaces the category choices, keeping the current selection.
+     */
+    private void updateCategories(List<String> categories) {
+        Object selected = categoryFilter.getSelectedItem();
+        updatingCategories = true;
+        try {
+            categoryFilter.removeAllItems();
+            categoryFilter.addItem(ALL_CATEGORIES);
+            for (String category : categories) {
+                categoryFilter.addItem(category);
+            }
+            if (selected != null && categories.contains(selected)) {
+                categoryFilter.setSelectedItem(selected);
+            } else if (catalogQuery.getCategory() != null) {
+                // The category is gone; show every product again.
+                catalogQuery = catalogQuery.withCategory(null);
+            }
+        } finally {
+            updatingCategories = false;
+        }
+    }
+
+    /**
+     * Shows the rows whose product is in the index's matches for a query. The
+     * query is re-run when the index changes, so edits are reflected.
+     */
+    private static final class IndexRowFilter extends RowFilter<ProductTableModel, Integer> {
+        private final ProductSearchIndex index;
+        private final String query;
+        private ProductSearchIndex.Matches matches;
+
+        IndexRowFilter(ProductSearchIndex index, String query) {
+            this.index = index;
+            this.query = query;
+        }
+
+        @Override
+        public boolean include(Entry<? extends ProductTableModel, ? extends Integer> entry) {
+            if (matches == null || matches.isStale()) {
+                matches = index.search(query);
+            }
+            Product product = entry.getModel().getProductAt(entry.getIdentifier());
+            return product != null && matches != null && matches.contains(product.getId());
+        }
     }
 
     private void openAddProductDialog() {
@@ -108,9 +398,9 @@ public class InventoryPanel extends JPanel {
             try {
                 final Product newProduct = dialog.getProductFromFields(UUID.randomUUID().toString());
                 // Use SwingWorker to perform file I/O off the EDT
-                new SwingWorker<Void, Void>() {
+                new TracedSwingWorker<Void, Void>("Add product") {
                     @Override
-                    protected Void doInBackground() throws Exception {
+                    protected Void runInBackground() throws Exception {
                         inventoryService.addProduct(newProduct.getName(), newProduct.getPrice(),
                                 newProduct.getQuantity(),
                                 newProduct.getCategory(), newProduct.getDescription());
@@ -118,9 +408,9 @@ public class InventoryPanel extends JPanel {
                     }
 
                     @Override
-                    protected void done() {
+                    protected void finished() {
                         try {
-                            get(); // Check for exceptions from doInBackground
+                            get(); // Check for exceptions from runInBackground
                             refreshTable();
                             dashboardPanel.updateStats();
                             JOptionPane.showMessageDialog(InventoryPanel.this, "Product added successfully!", "Success",
@@ -153,6 +443,9 @@ public class InventoryPanel extends JPanel {
         // Convert view index to model index in case of sorting/filtering
         int modelRow = inventoryTable.convertRowIndexToModel(selectedViewRow);
         Product productToEdit = tableModel.getProductAt(modelRow);
+        if (productToEdit == null) {
+            return; // Row is still loading
+        }
 
         ProductDialog dialog = new ProductDialog(productToEdit);
         int result = dialog.showDialog(this, "Edit Product");
@@ -161,27 +454,46 @@ public class InventoryPanel extends JPanel {
             try {
                 final Product updatedProduct = dialog.getProductFromFields(productToEdit.getId());
                 // Use SwingWorker to perform file I/O off the EDT
-                new SwingWorker<Product, Void>() {
+                new TracedSwingWorker<UpdateResult, Void>("Update product") {
                     @Override
-                    protected Product doInBackground() throws Exception {
-                        inventoryService.updateProduct(updatedProduct.getId(), updatedProduct.getName(),
-                                updatedProduct.getPrice(),
-                                updatedProduct.getQuantity(), updatedProduct.getCategory(),
-                                updatedProduct.getDescription());
-                        return inventoryService.getProductById(productToEdit.getId());
+                    protected UpdateResult runInBackground() throws Exception {
+                        // The service returns the saved row, so there is no need to read it back.
+                        return inventoryService.updateProduct(updatedProduct);
                     }
 
                     @Override
-                    protected void done() {
+                    protected void finished() {
+                        UpdateResult result;
                         try {
-                            tableModel.updateProduct(modelRow, get());
-                            dashboardPanel.updateStats();
-                            JOptionPane.showMessageDialog(InventoryPanel.this, "Product updated successfully!",
-                                    "Success", JOptionPane.INFORMATION_MESSAGE);
+                            result = get();
                         } catch (Exception ex) {
                             JOptionPane.showMessageDialog(InventoryPanel.this,
                                     "Failed to update product: " + ex.getCause().getMessage(), "Error",
                                     JOptionPane.ERROR_MESSAGE);
+                            return;
+                        }
+                        switch (result.getStatus()) {
+                            case UPDATED:
+                                tableModel.updateProduct(modelRow, result.getProduct());
+                                dashboardPanel.updateStats();
+                                JOptionPane.showMessageDialog(InventoryPanel.this, "Product updated successfully!",
+                                        "Success", JOptionPane.INFORMATION_MESSAGE);
+                                break;
+                            case CONFLICT:
+                                tableModel.updateProduct(modelRow, result.getProduct());
+                                JOptionPane.showMessageDialog(InventoryPanel.this,
+                                        productToEdit.getName()
+                                                + " was changed by someone else while you were editing.\n"
+                                                + "Your changes were not saved. The table now shows the current values.",
+                                        "Edit Conflict", JOptionPane.WARNING_MESSAGE);
+                                break;
+                            default:
+                                tableModel.removeProduct(modelRow);
+                                dashboardPanel.updateStats();
+                                JOptionPane.showMessageDialog(InventoryPanel.this,
+                                        productToEdit.getName() + " was deleted by someone else.", "Edit Conflict",
+                                        JOptionPane.WARNING_MESSAGE);
+                                break;
                         }
                     }
                 }.execute();
@@ -203,6 +515,9 @@ public class InventoryPanel extends JPanel {
 
         int modelRow = inventoryTable.convertRowIndexToModel(selectedViewRow);
         Product productToDelete = tableModel.getProductAt(modelRow);
+        if (productToDelete == null) {
+            return; // Row is still loading
+        }
 
         int confirmation = JOptionPane.showConfirmDialog(
                 this,
@@ -213,17 +528,17 @@ public class InventoryPanel extends JPanel {
 
         if (confirmation == JOptionPane.YES_OPTION) {
             // Use SwingWorker to perform file I/O off the EDT
-            new SwingWorker<Void, Void>() {
+            new TracedSwingWorker<Void, Void>("Delete product") {
                 @Override
-                protected Void doInBackground() throws Exception {
+                protected Void runInBackground() throws Exception {
                     inventoryService.deleteProduct(productToDelete.getId());
                     return null;
                 }
 
                 @Override
-                protected void done() {
+                protected void finished() {
                     try {
-                        get(); // Check for exceptions from doInBackground
+                        get(); // Check for exceptions from runInBackground
                         tableModel.removeProduct(modelRow);
                         dashboardPanel.updateStats();
                         JOptionPane.showMessageDialog(InventoryPanel.this, "Product deleted successfully!", "Success",
@@ -238,8 +553,193 @@ public class InventoryPanel extends JPanel {
         }
     }
 
+    private void adjustSelectedStock() {
+        int selectedViewRow = inventoryTable.getSelectedRow();
+        if (selectedViewRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a product to adjust.", "No Product Selected",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        int modelRow = inventoryTable.convertRowIndexToModel(selectedViewRow);
+        Product product = tableModel.getProductAt(modelRow);
+        if (product == null) {
+            return; // Row is still loading
+        }
+
+        JSpinner deltaSpinner = new JSpinner(new SpinnerNumberModel(-1, -1_000_000, 1_000_000, 1));
+        JComboBox<String> reasonSelector = new JComboBox<>(
+                new String[] { "SALE", "RESTOCK", "RETURN", "DAMAGED", "CORRECTION" });
+        reasonSelector.setEditable(true);
+        JPanel form = new JPanel(new GridLayout(0, 2, 5, 5));
+        form.add(new JLabel("In stock:"));
+        form.add(new JLabel(String.valueOf(product.getQuantity())));
+        form.add(new JLabel("Change (+/-):"));
+        form.add(deltaSpinner);
+        form.add(new JLabel("Reason:"));
+        form.add(reasonSelector);
+
+        int result = JOptionPane.showConfirmDialog(this, form, "Adjust Stock - " + product.getName(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+        final int delta = (Integer) deltaSpinner.getValue();
+        final String reason = String.valueOf(reasonSelector.getSelectedItem());
+        if (delta == 0) {
+            return;
+        }
+
+        // Use SwingWorker to perform database I/O off the EDT
+        new TracedSwingWorker<Product, Void>("Adjust stock") {
+            @Override
+            protected Product runInBackground() throws Exception {
+                return inventoryService.adjustQuantity(product.getId(), delta, reason);
+            }
+
+            @Override
+            protected void finished() {
+                try {
+                    tableModel.updateProduct(modelRow, get());
+                    dashboardPanel.updateStats();
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(InventoryPanel.this,
+                            "Failed to adjust stock: " + ex.getCause().getMessage(), "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void importProducts() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import Products");
+        chooser.setFileFilter(new FileNameExtensionFilter("Product files (CSV, JSON)", "csv", "json"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        final Path file = chooser.getSelectedFile().toPath();
+        final ProgressMonitor monitor = new ProgressMonitor(this, "Importing " + file.getFileName(),
+                "Starting...", 0, 1000);
+        monitor.setMillisToDecideToPopup(200);
+
+        // Use SwingWorker to stream the file and insert in batches off the EDT
+        SwingWorker<ImportResult, ImportResult> worker = new TracedSwingWorker<>("Import products") {
+            @Override
+            protected ImportResult runInBackground() throws Exception {
+                return inventoryService.importProducts(file, this::publish);
+            }
+
+            @Override
+            protected void process(List<ImportResult> chunks) {
+                // Only the latest snapshot matters; intermediate ones are coalesced.
+                ImportResult latest = chunks.get(chunks.size() - 1);
+                monitor.setProgress((int) (latest.getFractionDone() * 1000));
+                monitor.setNote(String.format("%,d rows imported (%,.0f rows/s)", latest.getImportedCount(),
+                        latest.getRowsPerSecond()));
+                if (monitor.isCanceled()) {
+                    cancel(true);
+                }
+            }
+
+            @Override
+            protected void finished() {
+                monitor.close();
+                refreshTable();
+                dashboardPanel.updateStats();
+                if (isCancelled()) {
+                    JOptionPane.showMessageDialog(InventoryPanel.this,
+                            "Import cancelled. Chunks committed before cancelling were kept.", "Import Cancelled",
+                            JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+                try {
+                    ImportResult result = get();
+                    StringBuilder message = new StringBuilder(result.toString());
+                    for (String error : result.getErrors()) {
+                        message.append("\n").append(error);
+                    }
+                    JOptionPane.showMessageDialog(InventoryPanel.this, message.toString(), "Import Complete",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(InventoryPanel.this,
+                            "Failed to import products: " + ex.getCause().getMessage(), "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.execute();
+    }
+
     public void refreshTable() {
-        // Get the latest data from the service and update the table model
-        tableModel.refresh(inventoryService.getAllProducts());
+        // Snapshot the current rows on the EDT so the diff can be computed in the background
+        final List<Product> displayed = tableModel.isLazy() ? null : tableModel.snapshot();
+        final boolean displayingSnapshot = tableModel.isShowingSnapshot();
+        final int displayedVersion = tableModel.getVersion();
+
+        // Get the latest data from the service off the EDT and update the table model
+        final ProductQuery query = catalogQuery;
+        new TracedSwingWorker<List<Product>, Void>("Load products") {
+            private int matchCount;
+            private List<String> categories;
+            private ProductListDiff diff;
+            // The saved snapshot's rows, decoded here rather than on the EDT.
+            private List<Product> snapshotRows;
+
+            @Override
+            protected List<Product> runInBackground() throws Exception {
+                categories = inventoryService.getCategories();
+                int productCount = inventoryService.getProductCount();
+                if (productCount > inventoryService.getLargeCatalogThreshold()) {
+                    // Too large to hold; the database sorts and filters, and rows are paged in as the table scrolls
+                    matchCount = query.isFiltered() ? inventoryService.countProducts(query) : productCount;
+                    return null;
+                }
+                List<Product> products = inventoryService.getAllProducts();
+                if (displayed != null && !displayed.isEmpty()) {
+                    List<Product> previous = displayed;
+                    if (displayingSnapshot) {
+                        snapshotRows = new ArrayList<>(displayed);
+                        previous = snapshotRows;
+                    }
+                    diff = ProductListDiff.compute(previous, products);
+                }
+                return products;
+            }
+
+            @Override
+            protected void finished() {
+                try {
+                    List<Product> products = get();
+                    updateCategories(categories);
+                    if (products == null) {
+                        if (!searchField.getText().trim().isEmpty()) {
+                            loadSearchResults(searchField.getText().trim());
+                            return;
+                        }
+                        if (inventoryTable.getRowSorter() != querySorter) {
+                            inventoryTable.setRowSorter(querySorter);
+                        }
+                        tableModel.refreshLazy(inventoryService, matchCount, catalogQuery);
+                    } else {
+                        showingSearchResults = false;
+                        if (snapshotRows != null) {
+                            tableModel.adoptSnapshot(snapshotRows, displayedVersion);
+                        }
+                        if (diff == null || !tableModel.applyDiff(diff, displayedVersion)) {
+                            tableModel.refresh(products);
+                        }
+                        if (inventoryTable.getRowSorter() != sorter) {
+                            inventoryTable.setRowSorter(sorter);
+                        }
+                        applySearch();
+                    }
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(InventoryPanel.this,
+                            "Failed to load products: " + ex.getCause().getMessage(), "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
     }
 }
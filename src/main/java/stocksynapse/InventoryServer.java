@@ -0,0 +1,483 @@
+package stocksynapse;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A headless JSON API over {@link InventoryService} and
+ * {@link ForecastingService}, so that point-of-sale terminals and scripts
+ * can share one running instance. Started with {@code --server} instead of
+ * the window; see the README for the endpoints.
+ *
+ * Requests are handled on a fixed pool of SERVER_THREADS threads with a
+ * queue of SERVER_QUEUE_SIZE. When the queue is full the server's accept
+ * thread runs the request itself, which stops it accepting new connections
+ * until it catches up instead of letting the backlog grow without limit.
+ * Forecasts complete asynchronously and do not hold a thread while Gemini
+ * answers.
+ *
+ * The API has no authentication, so it listens on SERVER_BIND_ADDRESS
+ * (127.0.0.1 by default) and should only be opened to a trusted network.
+ */
+public class InventoryServer implements AutoCloseable {
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    // Time from the request being read to the response being sent, including the wait for Gemini.
+    private static final LatencyHistogram REQUEST_TIME = METRICS.histogram("server.request");
+    private static final MetricsRegistry.Counter CLIENT_ERRORS = METRICS.counter("server.clientErrors");
+    private static final MetricsRegistry.Counter SERVER_ERRORS = METRICS.counter("server.serverErrors");
+
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1_000;
+    private static final int MAX_BATCH_FORECASTS = 100;
+    private static final String PRODUCTS_PATH = "/api/products";
+
+    private final InventoryService inventoryService;
+    private final ForecastingService forecastingService;
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Binds the server; call {@link #start()} to begin serving requests.
+     *
+     * @param config Optional keys from local.properties: SERVER_PORT,
+     *               SERVER_BIND_ADDRESS, SERVER_THREADS and SERVER_QUEUE_SIZE.
+     * @throws IOException if the address cannot be bound.
+     */
+    public InventoryServer(InventoryService inventoryService, ForecastingService forecastingService,
+            Properties config) throws IOException {
+        this.inventoryService = inventoryService;
+        this.forecastingService = forecastingService;
+        int port = LocalProperties.getInt(config, "SERVER_PORT", 8080);
+        String host = config.getProperty("SERVER_BIND_ADDRESS", "127.0.0.1").trim();
+        int threads = Math.max(1, LocalProperties.getInt(config, "SERVER_THREADS", 32));
+        int queueSize = Math.max(1, LocalProperties.getInt(config, "SERVER_QUEUE_SIZE", 1_000));
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "stocksynapse-server-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        // The JDK server writes the headers and the body of a response separately, so with Nagle's algorithm
+        // on every response waits out the client's delayed ACK (about 40 ms). Read once, when the first server
+        // is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(new InetSocketAddress(host, port), queueSize);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+
+        METRICS.gauge("server.activeThreads", executor::getActiveCount);
+        METRICS.gauge("server.queueDepth", () -> executor.getQueue().size());
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Stock Synapse API listening on http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/api/");
+    }
+
+    /** @return The port the server is bound to, useful when SERVER_PORT is 0. */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Stops accepting requests, gives those in progress a second to finish, then stops the threads. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) {
+        long start = System.nanoTime();
+        CompletableFuture<Response> response;
+        try {
+            response = route(exchange);
+        } catch (RuntimeException | IOException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((result, error) -> {
+            if (error != null) {
+                result = toErrorResponse(error instanceof CompletionException ? error.getCause() : error);
+            }
+            send(exchange, result);
+            long elapsed = System.nanoTime() - start;
+            REQUEST_TIME.recordSince(start);
+            if (SlowOperationLog.isSlow(elapsed)) {
+                SlowOperationLog.log("API", elapsed, exchange.getRequestMethod() + " "
+                        + exchange.getRequestURI() + " status=" + result.status);
+            }
+        });
+    }
+
+    private CompletableFuture<Response> route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        // Raw, so that an ID containing an encoded slash is decoded only once, as a single path segment.
+        String path = exchange.getRequestURI().getRawPath();
+        Map<String, String> params = queryParameters(exchange.getRequestURI());
+
+        if (path.equals(PRODUCTS_PATH) || path.equals(PRODUCTS_PATH + "/")) {
+            switch (method) {
+                case "GET":
+                    return done(listProducts(params));
+                case "POST":
+                    return done(addProduct(readBody(exchange)));
+                default:
+                    return done(methodNotAllowed("GET, POST"));
+            }
+        }
+        if (path.startsWith(PRODUCTS_PATH + "/")) {
+            String[] parts = path.substring(PRODUCTS_PATH.length() + 1).split("/");
+            String id = URLDecoder.decode(parts[0], StandardCharsets.UTF_8);
+            if (parts.length == 2 && parts[1].equals("forecast")) {
+                return method.equals("GET") ? forecastProduct(id) : done(methodNotAllowed("GET"));
+            }
+            if (parts.length != 1) {
+                return done(notFound("No such endpoint: " + path));
+            }
+            switch (method) {
+                case "GET":
+                    return done(getProduct(id));
+                case "PUT":
+                    return done(updateProduct(id, readBody(exchange)));
+                case "DELETE":
+                    return done(deleteProduct(id));
+                default:
+                    return done(methodNotAllowed("GET, PUT, DELETE"));
+            }
+        }
+        switch (path) {
+            case "/api/search":
+                return method.equals("GET") ? done(search(params)) : done(methodNotAllowed("GET"));
+            case "/api/adjustments":
+                return method.equals("POST") ? done(adjust(readBody(exchange))) : done(methodNotAllowed("POST"));
+            case "/api/forecasts":
+                return method.equals("POST") ? forecastProducts(readBody(exchange)) : done(methodNotAllowed("POST"));
+            case "/api/categories":
+                return method.equals("GET")
+                        ? done(Response.ok(new JSONObject().put("categories",
+                                new JSONArray(inventoryService.getCategories()))))
+                        : done(methodNotAllowed("GET"));
+            default:
+                return done(notFound("No such endpoint: " + path));
+        }
+    }
+
+    // --- Endpoints ---
+
+    /**
+     * GET /api/products?offset=&limit=&sort=&order=&category=&minQuantity=&maxQuantity=&prefix=
+     */
+    private Response listProducts(Map<String, String> params) {
+        int offset = Math.max(0, intParam(params, "offset", 0));
+        int limit = Math.min(MAX_PAGE_SIZE, Math.max(1, intParam(params, "limit", DEFAULT_PAGE_SIZE)));
+        ProductQuery.SortColumn sort;
+        try {
+            sort = ProductQuery.SortColumn.valueOf(params.getOrDefault("sort", "name").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("sort must be one of id, name, price, quantity or category.");
+        }
+        ProductQuery query = new ProductQuery(sort, !"desc".equalsIgnoreCase(params.get("order")),
+                params.get("category"), integerParam(params, "minQuantity"), integerParam(params, "maxQuantity"),
+                params.get("prefix"));
+        List<Product> products = inventoryService.queryProductsAt(query, offset, limit);
+        return Response.ok(new JSONObject()
+                .put("offset", offset)
+                .put("products", toJson(products)));
+    }
+
+    /** POST /api/products with name, price, quantity and optionally category and description. */
+    private Response addProduct(JSONObject body) {
+        Product fields = toProduct(null, body, 0L);
+        Product added = inventoryService.addProduct(fields.getName(), fields.getPrice(), fields.getQuantity(),
+                fields.getCategory(), fields.getDescription());
+        return new Response(201, toJson(added));
+    }
+
+    private Response getProduct(String id) {
+        Product product = inventoryService.getProductById(id);
+        return product != null ? Response.ok(toJson(product)) : notFound("No product with ID " + id + ".");
+    }
+
+    /**
+     * PUT /api/products/{id} with every field and the version the edit is
+     * based on. A 409 response carries the product as it now is.
+     */
+    private Response updateProduct(String id, JSONObject body) {
+        if (!body.has("version")) {
+            throw new IllegalArgumentException("version is required, so that concurrent edits are not lost.");
+        }
+        UpdateResult result = inventoryService.updateProduct(toProduct(id, body, body.getLong("version")));
+        switch (result.getStatus()) {
+            case UPDATED:
+                return Response.ok(toJson(result.getProduct()));
+            case CONFLICT:
+                return new Response(409, toJson(result.getProduct())
+                        .put("error", "The product was changed by someone else; re-apply the edit to this version."));
+            default:
+                return notFound("No product with ID " + id + ".");
+        }
+    }
+
+    private Response deleteProduct(String id) {
+        return inventoryService.deleteProduct(id) ? new Response(204, null)
+                : notFound("No product with ID " + id + ".");
+    }
+
+    /**
+     * GET /api/search?q=&limit=. When there are more matches than the limit,
+     * the products returned are the first in index order, then sorted by name.
+     */
+    private Response search(Map<String, String> params) {
+        ProductSearchIndex index = inventoryService.getSearchIndex();
+        if (!index.isBuilt()) {
+            return new Response(503, error("The search index is still being built; try again shortly."));
+        }
+        int limit = Math.min(MAX_PAGE_SIZE, Math.max(1, intParam(params, "limit", DEFAULT_PAGE_SIZE)));
+        ProductSearchIndex.Matches matches = index.search(params.getOrDefault("q", ""));
+        List<Product> products = matches == null ? List.of()
+                : inventoryService.getProductsByIds(matches.getProductIds(limit));
+        return Response.ok(new JSONObject()
+                .put("total", matches == null ? 0 : matches.size())
+                .put("products", toJson(products)));
+    }
+
+    /**
+     * POST /api/adjustments with {"adjustments": [{"productId", "delta", "reason"}, ...]},
+     * applied in one transaction.
+     */
+    private Response adjust(JSONObject body) {
+        JSONArray array = body.getJSONArray("adjustments");
+        List<StockAdjustment> adjustments = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject adjustment = array.getJSONObject(i);
+            adjustments.add(new StockAdjustment(adjustment.getString("productId"), adjustment.getInt("delta"),
+                    adjustment.optString("reason", "API")));
+        }
+        if (adjustments.isEmpty()) {
+            throw new IllegalArgumentException("adjustments cannot be empty.");
+        }
+        return Response.ok(new JSONObject().put("products", toJson(inventoryService.adjustQuantities(adjustments))));
+    }
+
+    private CompletableFuture<Response> forecastProduct(String id) {
+        Product product = inventoryService.getProductById(id);
+        if (product == null) {
+            return done(notFound("No product with ID " + id + "."));
+        }
+        return forecastingService.generateForecastAsync(product)
+                .thenApply(forecast -> Response.ok(new JSONObject()
+                        .put("productId", product.getId())
+                        .put("forecast", forecast)));
+    }
+
+    /** POST /api/forecasts with {"productIds": [...]}; failures are reported per product. */
+    private CompletableFuture<Response> forecastProducts(JSONObject body) {
+        JSONArray ids = body.getJSONArray("productIds");
+        if (ids.length() == 0 || ids.length() > MAX_BATCH_FORECASTS) {
+            throw new IllegalArgumentException("productIds must list 1 to " + MAX_BATCH_FORECASTS + " products.");
+        }
+        List<String> idList = new ArrayList<>(ids.length());
+        for (int i = 0; i < ids.length(); i++) {
+            idList.add(ids.getString(i));
+        }
+        List<Product> products = inventoryService.getProductsByIds(idList);
+        return forecastingService.generateForecastsAsync(products, null).thenApply(results -> {
+            JSONArray array = new JSONArray();
+            for (BatchForecastResult result : results) {
+                JSONObject item = new JSONObject().put("productId", result.getProduct().getId());
+                if (result.isSuccess()) {
+                    item.put("forecast", result.getForecast()).put("cached", result.isCached())
+                            .put("local", result.isLocal());
+                } else {
+                    item.put("error", result.getError().getMessage());
+                }
+                array.put(item);
+            }
+            return Response.ok(new JSONObject().put("results", array));
+        });
+    }
+
+    // --- JSON and HTTP plumbing ---
+
+    private static Product toProduct(String id, JSONObject body, long version) {
+        String name = body.optString("name", "").trim();
+        if (name.isEmpty() || !body.has("price") || !body.has("quantity")) {
+            throw new IllegalArgumentException("name, price and quantity are required.");
+        }
+        double price = body.getDouble("price");
+        int quantity = body.getInt("quantity");
+        if (price < 0 || quantity < 0) {
+            throw new IllegalArgumentException("price and quantity cannot be negative.");
+        }
+        return new Product(id, name, price, quantity, body.optString("category", "").trim(),
+                body.optString("description", "").trim(), version);
+    }
+
+    private static JSONObject toJson(Product product) {
+        return new JSONObject()
+                .put("id", product.getId())
+                .put("name", product.getName())
+                .put("price", product.getPrice())
+                .put("quantity", product.getQuantity())
+                .put("category", product.getCategory())
+                .put("description", product.getDescription())
+                .put("version", product.getVersion());
+    }
+
+    private static JSONArray toJson(List<Product> products) {
+        JSONArray array = new JSONArray();
+        for (Product product : products) {
+            array.put(toJson(product));
+        }
+        return array;
+    }
+
+    private static JSONObject readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (body.size() + read > MAX_BODY_BYTES) {
+                    throw new IllegalArgumentException("Request body is larger than " + MAX_BODY_BYTES + " bytes.");
+                }
+                body.write(buffer, 0, read);
+            }
+            return new JSONObject(body.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> queryParameters(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        Integer value = integerParam(params, name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static Integer integerParam(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number.");
+        }
+    }
+
+    private static CompletableFuture<Response> done(Response response) {
+        return CompletableFuture.completedFuture(response);
+    }
+
+    private static Response notFound(String message) {
+        return new Response(404, error(message));
+    }
+
+    private static Response methodNotAllowed(String allowed) {
+        Response response = new Response(405, error("Method not allowed; use " + allowed + "."));
+        response.allow = allowed;
+        return response;
+    }
+
+    private static JSONObject error(String message) {
+        return new JSONObject().put("error", message);
+    }
+
+    private static Response toErrorResponse(Throwable error) {
+        if (error instanceof IllegalArgumentException || error instanceof JSONException) {
+            CLIENT_ERRORS.increment();
+            return new Response(400, error(error.getMessage()));
+        }
+        if (error instanceof ForecastingException) {
+            SERVER_ERRORS.increment();
+            return new Response(502, error(error.getMessage()));
+        }
+        SERVER_ERRORS.increment();
+        System.err.println("Request failed: " + error);
+        error.printStackTrace();
+        return new Response(500, error("Internal server error."));
+    }
+
+    private static void send(HttpExchange exchange, Response response) {
+        try {
+            Headers headers = exchange.getResponseHeaders();
+            if (response.allow != null) {
+                headers.set("Allow", response.allow);
+            }
+            if (response.body == null) {
+                exchange.sendResponseHeaders(response.status, -1);
+                return;
+            }
+            byte[] bytes = response.body.toString().getBytes(StandardCharsets.UTF_8);
+            headers.set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            // The client went away; there is nobody left to tell.
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** A status code and an optional JSON body. */
+    private static final class Response {
+        final int status;
+        final JSONObject body;
+        String allow;
+
+        Response(int status, JSONObject body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response ok(JSONObject body) {
+            return new Response(200, body);
+        }
+    }
+}
@@ -1,48 +1,276 @@
 package stocksynapse;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Manages the inventory data and business logic.
  * This class acts as a service layer, separating data operations
- * from the user interface.
+ * from the user interface. The data itself is kept by a {@link ProductStore}
+ * chosen with STORAGE_BACKEND in local.properties: "mysql" (the default) or
+ * "embedded".
  */
 public class InventoryService {
 
-    private static final String DB_PROPERTIES_FILE = "local.properties";
-    private static String dbUrl;
-    private static String dbUser;
-    private static String dbPassword;
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    // How long each operation takes, including the listeners it notifies. Shown in the metrics view.
+    private static final LatencyHistogram RESEED_INVENTORY_STATS_TIME = METRICS
+            .histogram("inventory.reseedInventoryStats");
+    private static final LatencyHistogram RESEED_STOCK_HISTORY_TIME = METRICS.histogram("inventory.reseedStockHistory");
+    private static final LatencyHistogram REBUILD_SEARCH_INDEX_TIME = METRICS.histogram("inventory.rebuildSearchIndex");
+    private static final LatencyHistogram RESEED_LOW_STOCK_ALERTS_TIME = METRICS
+            .histogram("inventory.reseedLowStockAlerts");
+    private static final LatencyHistogram ADD_PRODUCT_TIME = METRICS.histogram("inventory.addProduct");
+    private static final LatencyHistogram IMPORT_PRODUCTS_TIME = METRICS.histogram("inventory.importProducts");
+    private static final LatencyHistogram UPDATE_PRODUCT_TIME = METRICS.histogram("inventory.updateProduct");
+    private static final LatencyHistogram ADJUST_QUANTITY_TIME = METRICS.histogram("inventory.adjustQuantity");
+    private static final LatencyHistogram ADJUST_QUANTITIES_TIME = METRICS.histogram("inventory.adjustQuantities");
+    private static final LatencyHistogram DELETE_PRODUCT_TIME = METRICS.histogram("inventory.deleteProduct");
+    private static final LatencyHistogram GET_PRODUCT_BY_ID_TIME = METRICS.histogram("inventory.getProductById");
+    private static final LatencyHistogram GET_ALL_PRODUCTS_TIME = METRICS.histogram("inventory.getAllProducts");
+    private static final LatencyHistogram FOR_EACH_PRODUCT_TIME = METRICS.histogram("inventory.forEachProduct");
+    private static final LatencyHistogram QUERY_PRODUCTS_TIME = METRICS.histogram("inventory.queryProducts");
+    private static final LatencyHistogram QUERY_PRODUCTS_AT_TIME = METRICS.histogram("inventory.queryProductsAt");
+    private static final LatencyHistogram COUNT_PRODUCTS_TIME = METRICS.histogram("inventory.countProducts");
+    private static final LatencyHistogram GET_PRODUCTS_BY_IDS_TIME = METRICS.histogram("inventory.getProductsByIds");
+    private static final LatencyHistogram GET_CATEGORIES_TIME = METRICS.histogram("inventory.getCategories");
+    private static final LatencyHistogram GET_PRODUCT_COUNT_TIME = METRICS.histogram("inventory.getProductCount");
+
+    private final ProductStore store;
+    private final ProductCache productCache;
+    private final int importChunkSize;
+    private final int largeCatalogThreshold;
+    private final InventoryStats inventoryStats;
+    private final StockHistory stockHistory;
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+    private final CatalogSnapshotter snapshotter;
+    private final InventoryAnalyticsEngine analyticsEngine;
+    private final LowStockAlerts lowStockAlerts;
+    private final List<InventoryListener> listeners = new CopyOnWriteArrayList<>();
 
     public InventoryService() {
+        this(loadConfiguration());
+    }
+
+    /**
+     * Creates a service from configuration supplied by the caller instead of
+     * local.properties, e.g. to benchmark against a temporary embedded store.
+     * 
+     * @param props The same keys as local.properties, or null if they could
+     *              not be loaded, in which case database access fails cleanly.
+     */
+    public InventoryService(Properties props) {
+        boolean configured = props != null;
+        if (!configured) {
+            props = new Properties();
+        }
+        this.store = createStore(props, configured);
+        this.productCache = new ProductCache(props);
+        int importBatchSize = Math.max(1, LocalProperties.getInt(props, "IMPORT_BATCH_SIZE", 1_000));
+        this.importChunkSize = Math.max(importBatchSize, LocalProperties.getInt(props, "IMPORT_CHUNK_SIZE", 10_000));
+        this.largeCatalogThreshold = Math.max(0, LocalProperties.getInt(props, "LARGE_CATALOG_THRESHOLD", 10_000));
+        this.inventoryStats = new InventoryStats(LocalProperties.getInt(props, "LOW_STOCK_THRESHOLD", 10));
+        addInventoryListener(inventoryStats);
+        this.stockHistory = new StockHistory(LocalProperties.getInt(props, "LOCAL_FORECAST_HISTORY_DAYS", 56));
+        addInventoryListener(stockHistory);
+        addInventoryListener(searchIndex);
+        this.snapshotter = new CatalogSnapshotter(props, this::forEachProduct);
+        addInventoryListener(snapshotter);
+        this.analyticsEngine = new InventoryAnalyticsEngine(this::getAllProducts, stockHistory,
+                this::reseedStockHistory);
+        addInventoryListener(analyticsEngine);
+        this.lowStockAlerts = new LowStockAlerts(props);
+        addInventoryListener(lowStockAlerts);
+        registerGauges();
+    }
+
+    private void registerGauges() {
+        METRICS.gauge("inventory.productCache.hits", () -> productCache.getStats().getHits());
+        METRICS.gauge("inventory.productCache.misses", () -> productCache.getStats().getMisses());
+        METRICS.gauge("inventory.productCache.evictions", () -> productCache.getStats().getEvictions());
+        METRICS.gauge("inventory.productCache.size", () -> productCache.getStats().getSize());
+        METRICS.gauge("inventory.lowStockAlerts", lowStockAlerts::getAlertCount);
+        if (store.getPoolStats() != null) {
+            METRICS.gauge("inventory.pool.active", () -> store.getPoolStats().getActive());
+            METRICS.gauge("inventory.pool.idle", () -> store.getPoolStats().getIdle());
+            METRICS.gauge("inventory.pool.averageWaitMillis", () -> store.getPoolStats().getAverageWaitMillis());
+            METRICS.gauge("inventory.pool.maxWaitMillis", () -> store.getPoolStats().getMaxWaitMillis());
+            METRICS.gauge("inventory.pool.timeouts", () -> store.getPoolStats().getTimeouts());
+            METRICS.gauge("inventory.pool.statementCacheHits", () -> store.getPoolStats().getStatementCacheHits());
+        }
+    }
+
+    private static Properties loadConfiguration() {
         // Load database configuration on startup.
         try {
-            Properties props = new Properties();
             // Ensure the properties file is loaded from the project root
-            try (FileInputStream fis = new FileInputStream(DB_PROPERTIES_FILE)) {
-                props.load(fis);
-                dbUrl = props.getProperty("DB_URL");
-                dbUser = props.getProperty("DB_USER");
-                dbPassword = props.getProperty("DB_PASSWORD");
-            }
+            return LocalProperties.load();
         } catch (IOException e) {
-            System.err.println("FATAL: Could not load database configuration from " + DB_PROPERTIES_FILE);
+            System.err.println("FATAL: Could not load database configuration from " + LocalProperties.FILE_NAME);
             e.printStackTrace();
             // In a real application, you would show an error dialog and possibly exit.
-            dbUrl = null; // Ensure connection attempts will fail cleanly.
+            // Leaving the pool unset ensures connection attempts will fail cleanly.
+            return null;
+        }
+    }
+
+    private static ProductStore createStore(Properties props, boolean configured) {
+        String backend = props.getProperty("STORAGE_BACKEND", "mysql").trim().toLowerCase(Locale.ROOT);
+        if (backend.equals("embedded")) {
+            Path directory = Path.of(props.getProperty("EMBEDDED_STORE_DIR", "data").trim());
+            try {
+                return new EmbeddedProductStore(directory, props);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open the embedded store in " + directory.toAbsolutePath(), e);
+            }
+        }
+        if (!backend.equals("mysql")) {
+            System.err.println("Unknown STORAGE_BACKEND '" + backend + "'; using mysql.");
+        }
+        ConnectionPool pool = configured ? new ConnectionPool(props.getProperty("DB_URL"),
+                props.getProperty("DB_USER"), props.getProperty("DB_PASSWORD"), props) : null;
+        return new MySqlProductStore(pool, props);
+    }
+
+    /**
+     * Registers a listener to be told about every committed change.
+     */
+    public void addInventoryListener(InventoryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeInventoryListener(InventoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the live inventory statistics. They are maintained incrementally
+     * as products change, so reading them is cheap, but they hold nothing
+     * until {@link #reseedInventoryStats()} has run once; check
+     * {@link InventoryStats#isSeeded()}.
+     * 
+     * @return The live statistics.
+     */
+    public InventoryStats getInventoryStats() {
+        return inventoryStats;
+    }
+
+    /**
+     * Recomputes the inventory statistics from the database, e.g. to pick up
+     * changes made by other terminals.
+     */
+    public void reseedInventoryStats() {
+        long start = System.nanoTime();
+        try {
+            store.seedInventoryStats(inventoryStats);
+        } finally {
+            RESEED_INVENTORY_STATS_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Returns the live per-product demand history used by the local
+     * forecasting engine. Like the statistics, it is empty until
+     * {@link #reseedStockHistory()} has run once.
+     * 
+     * @return The live stock history.
+     */
+    public StockHistory getStockHistory() {
+        return stockHistory;
+    }
+
+    /**
+     * Reloads the stock history from the stock movement ledger.
+     */
+    public void reseedStockHistory() {
+        long start = System.nanoTime();
+        try {
+            stockHistory.seed(store);
+        } finally {
+            RESEED_STOCK_HISTORY_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Returns the live low-stock alerts. They are kept up to date as products
+     * change, but are empty until {@link #reseedLowStockAlerts()} has run
+     * once; check {@link LowStockAlerts#isSeeded()}.
+     * 
+     * @return The live low-stock alerts.
+     */
+    public LowStockAlerts getLowStockAlerts() {
+        return lowStockAlerts;
+    }
+
+    /**
+     * Rebuilds the low-stock alerts from a scan of the catalog, e.g. to pick
+     * up changes made by other terminals.
+     */
+    public void reseedLowStockAlerts() {
+        long start = System.nanoTime();
+        try {
+            lowStockAlerts.seed(store::forEachProduct);
+        } finally {
+            RESEED_LOW_STOCK_ALERTS_TIME.recordSince(start);
         }
     }
 
+    /**
+     * Returns the catalog analytics engine: stock value by category,
+     * percentiles, the most valuable products and dead stock. Results are
+     * cached until the next change.
+     * 
+     * @return The analytics engine.
+     */
+    public InventoryAnalyticsEngine getAnalyticsEngine() {
+        return analyticsEngine;
+    }
+
+    /**
+     * Returns the live search index. It is kept up to date as products
+     * change, but is empty until {@link #rebuildSearchIndex()} has run once;
+     * check {@link ProductSearchIndex#isBuilt()}.
+     * 
+     * @return The live search index.
+     */
+    public ProductSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Rebuilds the search index from a streaming scan of the catalog.
+     */
+    public void rebuildSearchIndex() {
+        long start = System.nanoTime();
+        try {
+            searchIndex.build(this::forEachProduct);
+        } finally {
+            REBUILD_SEARCH_INDEX_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Maps the catalog snapshot saved by the last session, so the UI can show
+     * it while the catalog is read from the database. The rows may be out of
+     * date and must only be displayed.
+     * 
+     * @return The saved products in (name, id) order, or null if there is no snapshot.
+     */
+    public CatalogSnapshot openCatalogSnapshot() {
+        return snapshotter.open();
+    }
+
     /**
      * Adds a new product to the inventory.
      * This method is responsible for generating a unique ID for the product
@@ -53,51 +281,158 @@ public class InventoryService {
      * @param quantity    The quantity of the product.
      * @param category    The category of the product.
      * @param description A description of the product.
+     * @return The product as stored, including its generated ID.
      */
-    public void addProduct(String name, double price, int quantity, String category, String description) {
-        String sql = "INSERT INTO products(id, name, price, quantity, category, description) VALUES(?, ?, ?, ?, ?, ?)";
+    public Product addProduct(String name, double price, int quantity, String category, String description) {
+        long start = System.nanoTime();
+        try {
+            Product product = new Product(UUID.randomUUID().toString(), name, price, quantity, category, description);
+            store.addProduct(product);
+            productCache.put(product);
+            for (InventoryListener listener : listeners) {
+                listener.productAdded(product);
+            }
+            return product;
+        } finally {
+            ADD_PRODUCT_TIME.recordSince(start);
+        }
+    }
 
-        try (Connection conn = getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, UUID.randomUUID().toString());
-            pstmt.setString(2, name);
-            pstmt.setDouble(3, price);
-            pstmt.setInt(4, quantity);
-            pstmt.setString(5, category);
-            pstmt.setString(6, description);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to add product to the database.", e);
+    /**
+     * Imports products from a CSV or JSON file in bulk. Records are streamed
+     * from disk and each chunk of IMPORT_CHUNK_SIZE rows is inserted as one
+     * transaction (with JDBC batches on MySQL). If a chunk fails, that chunk
+     * is rolled back and earlier chunks stay committed.
+     * The import stops after the current chunk if the calling thread is
+     * interrupted. Imported stock is not written to the stock history; it
+     * only records later changes.
+     * 
+     * @param file     The CSV or JSON file to import.
+     * @param progress Receives a progress snapshot after every committed chunk; may be null.
+     * @return The final import counts and throughput.
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    public ImportResult importProducts(Path file, Consumer<ImportResult> progress) throws IOException {
+        long start = System.nanoTime();
+        long imported = 0;
+
+        try (ProductFileReader reader = new ProductFileReader(file)) {
+            List<Product> chunk = new ArrayList<>();
+            while (reader.hasNext() && !Thread.currentThread().isInterrupted()) {
+                chunk.clear();
+                while (chunk.size() < importChunkSize && reader.hasNext()) {
+                    chunk.add(reader.next());
+                }
+                store.addProducts(chunk);
+                imported += chunk.size();
+                // The new rows were written around the cache, so drop what it holds.
+                productCache.clear();
+                for (Product product : chunk) {
+                    for (InventoryListener listener : listeners) {
+                        listener.productAdded(product);
+                    }
+                }
+                if (progress != null) {
+                    progress.accept(new ImportResult(imported, reader.getRejectedCount(),
+                            System.nanoTime() - start, reader.getFractionRead(), reader.getErrors()));
+                }
+            }
+            return new ImportResult(imported, reader.getRejectedCount(), System.nanoTime() - start,
+                    reader.getFractionRead(), reader.getErrors());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Failed to import products after " + imported + " rows were committed.", e);
+        } finally {
+            IMPORT_PRODUCTS_TIME.recordSince(start);
         }
     }
 
     /**
-     * Updates an existing product in the inventory.
+     * Saves an edited product, provided nobody else has changed it since it
+     * was read. The update is a compare-and-set on the row version, and the
+     * saved product is built from the edit instead of being read back, so a
+     * successful edit costs a single statement when the product is cached.
+     * A quantity change is recorded in the stock movement ledger in the same
+     * transaction.
      * 
-     * @param id          The ID of the product to update.
-     * @param name        The new name.
-     * @param price       The new price.
-     * @param quantity    The new quantity.
-     * @param category    The new category.
-     * @param description The new description.
-     * @return true if the product was found and updated, false otherwise.
+     * @param edited The new values, with the ID and the version they were based on.
+     * @return UPDATED with the saved product (version incremented), CONFLICT
+     *         with the product as it now is in the database, or NOT_FOUND.
      */
-    public boolean updateProduct(String id, String name, double price, int quantity, String category,
-            String description) {
-        String sql = "UPDATE products SET name = ?, price = ?, quantity = ?, category = ?, description = ? WHERE id = ?";
+    public UpdateResult updateProduct(Product edited) {
+        long start = System.nanoTime();
+        try {
+            String id = edited.getId();
+            // Listeners and the ledger need the old values. A cached copy at the edit's version is exactly the row
+            // being replaced, so only a cache miss costs a read.
+            Product cached = productCache.get(id);
+            Product previous = cached != null && cached.getVersion() == edited.getVersion() ? cached : null;
 
-        try (Connection conn = getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, name);
-            pstmt.setDouble(2, price);
-            pstmt.setInt(3, quantity);
-            pstmt.setString(4, category);
-            pstmt.setString(5, description);
-            pstmt.setString(6, id);
-            int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to update product in the database.", e);
+            UpdateResult result = store.updateProduct(edited, previous);
+            if (!result.isUpdated()) {
+                productCache.remove(id);
+                return result;
+            }
+            productCache.put(result.getProduct());
+            for (InventoryListener listener : listeners) {
+                listener.productUpdated(result.getPrevious(), result.getProduct());
+            }
+            return result;
+        } finally {
+            UPDATE_PRODUCT_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Changes a product's stock by a relative amount and records the movement
+     * in the stock movement ledger, in one transaction. Unlike
+     * {@link #updateProduct}, the adjustment does not need to know the current
+     * quantity, so concurrent adjustments from several terminals never
+     * conflict and are never lost.
+     * 
+     * @param id     The ID of the product.
+     * @param delta  Units added (positive) or removed (negative).
+     * @param reason Why the stock changed, e.g. "SALE" or "RESTOCK".
+     * @return The product with its new quantity.
+     * @throws IllegalArgumentException if the product does not exist or the
+     *                                  change would take its stock below zero.
+     */
+    public Product adjustQuantity(String id, int delta, String reason) {
+        long start = System.nanoTime();
+        try {
+            return adjustQuantities(List.of(new StockAdjustment(id, delta, reason))).get(0);
+        } finally {
+            ADJUST_QUANTITY_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Applies many stock adjustments in a single transaction; either every
+     * adjustment is applied or none is. On MySQL the affected rows are locked
+     * and read in one query, updated with one JDBC batch and logged with
+     * another. Several adjustments to the same product are allowed; the
+     * stock check applies to their combined change.
+     * 
+     * @param adjustments The changes to apply, in the order they should appear in the ledger.
+     * @return Each affected product with its new quantity, ordered by ID.
+     * @throws IllegalArgumentException if a product does not exist or would
+     *                                  end up with negative stock.
+     */
+    public List<Product> adjustQuantities(List<StockAdjustment> adjustments) {
+        long start = System.nanoTime();
+        try {
+            Map<String, Product> previous = new HashMap<>();
+            List<Product> updated = store.adjustQuantities(adjustments, previous);
+            for (Product product : updated) {
+                productCache.put(product);
+                for (InventoryListener listener : listeners) {
+                    listener.productUpdated(previous.get(product.getId()), product);
+                }
+            }
+            return updated;
+        } finally {
+            ADJUST_QUANTITIES_TIME.recordSince(start);
         }
     }
 
@@ -108,15 +443,18 @@ public class InventoryService {
      * @return true if the product was found and deleted, false otherwise.
      */
     public boolean deleteProduct(String id) {
-        String sql = "DELETE FROM products WHERE id = ?";
-
-        try (Connection conn = getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, id);
-            int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to delete product from the database.", e);
+        long start = System.nanoTime();
+        try {
+            Product previous = store.deleteProduct(id);
+            productCache.remove(id);
+            if (previous != null) {
+                for (InventoryListener listener : listeners) {
+                    listener.productRemoved(previous);
+                }
+            }
+            return previous != null;
+        } finally {
+            DELETE_PRODUCT_TIME.recordSince(start);
         }
     }
 
@@ -127,56 +465,220 @@ public class InventoryService {
      * @return The Product object, or null if not found.
      */
     public Product getProductById(String id) {
-        String sql = "SELECT * FROM products WHERE id = ?";
-        try (Connection conn = getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, id);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new Product(
-                            rs.getString("id"),
-                            rs.getString("name"),
-                            rs.getDouble("price"),
-                            rs.getInt("quantity"),
-                            rs.getString("category"),
-                            rs.getString("description"));
-                }
+        long start = System.nanoTime();
+        try {
+            Product cached = productCache.get(id);
+            if (cached != null) {
+                return cached;
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to retrieve product from the database.", e);
+            long loadToken = productCache.beginLoad();
+            Product product = store.getProduct(id);
+            if (product != null) {
+                productCache.putLoaded(product, loadToken);
+            }
+            return product;
+        } finally {
+            GET_PRODUCT_BY_ID_TIME.recordSince(start);
         }
-        return null;
     }
 
     /**
-     * @return A copy of the current inventory list to prevent direct modification.
+     * @return A copy of the current inventory list to prevent direct modification,
+     *         held column by column so even very large catalogs fit in memory.
      */
-    public List<Product> getAllProducts() {
-        List<Product> products = new ArrayList<>();
-        String sql = "SELECT * FROM products ORDER BY name"; // Default sort by name
-        try (Connection conn = getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql);
-                ResultSet rs = pstmt.executeQuery()) {
+    public ColumnarProductList getAllProducts() {
+        long start = System.nanoTime();
+        try {
+            ColumnarProductList cached = productCache.getAll();
+            if (cached != null) {
+                return cached;
+            }
+            long loadToken = productCache.beginLoad();
+            ColumnarProductList products = new ColumnarProductList();
+            forEachProduct(products::add);
+            products.trimToSize();
+            productCache.putAllLoaded(products, loadToken);
+            return products;
+        } finally {
+            GET_ALL_PRODUCTS_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Streams every product, ordered by name, to the given consumer without
+     * buffering the whole result set in the driver. Prefer this over
+     * {@link #getAllProducts()} when the caller does not need to hold the list.
+     * 
+     * @param consumer Receives each product in turn.
+     */
+    public void forEachProduct(Consumer<Product> consumer) {
+        long start = System.nanoTime();
+        try {
+            store.forEachProduct(consumer);
+        } finally {
+            FOR_EACH_PRODUCT_TIME.recordSince(start);
+        }
+    }
 
-            while (rs.next()) {
-                products.add(new Product(
-                        rs.getString("id"),
-                        rs.getString("name"),
-                        rs.getDouble("price"),
-                        rs.getInt("quantity"),
-                        rs.getString("category"),
-                        rs.getString("description")));
+    /**
+     * Retrieves the next page of products in (name, id) order using keyset
+     * pagination, so the cost of a page does not grow with its position.
+     * 
+     * @param after The last product of the previous page, or null for the first page.
+     * @param limit The maximum number of products to return.
+     * @return Up to {@code limit} products that sort after {@code after}.
+     */
+    public List<Product> getProductsAfter(Product after, int limit) {
+        return queryProducts(ProductQuery.DEFAULT, after, limit);
+    }
+
+    /**
+     * Retrieves a page of products in (name, id) order starting at a row
+     * offset. Used to jump to an arbitrary position; sequential reads should
+     * use {@link #getProductsAfter(Product, int)} instead.
+     * 
+     * @param offset The zero-based index of the first product to return.
+     * @param limit  The maximum number of products to return.
+     * @return Up to {@code limit} products.
+     */
+    public List<Product> getProductsAt(int offset, int limit) {
+        return queryProductsAt(ProductQuery.DEFAULT, offset, limit);
+    }
+
+    /**
+     * Retrieves the next page of products matching a query, sorted and
+     * filtered by the database. Pages are read with keyset conditions on the
+     * indexed sort column, so the cost of a page does not grow with its
+     * position.
+     * 
+     * @param query The sort order and filters.
+     * @param after The last product of the previous page, or null for the first page.
+     * @param limit The maximum number of products to return.
+     * @return Up to {@code limit} matching products that sort after {@code after}.
+     */
+    public List<Product> queryProducts(ProductQuery query, Product after, int limit) {
+        long start = System.nanoTime();
+        try {
+            return store.queryProducts(query, after, limit);
+        } finally {
+            QUERY_PRODUCTS_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Retrieves a page of products matching a query starting at a row
+     * offset. Used to jump to an arbitrary position; sequential reads should
+     * use {@link #queryProducts(ProductQuery, Product, int)} instead.
+     * 
+     * @param query  The sort order and filters.
+     * @param offset The zero-based index of the first product to return.
+     * @param limit  The maximum number of products to return.
+     * @return Up to {@code limit} matching products.
+     */
+    public List<Product> queryProductsAt(ProductQuery query, int offset, int limit) {
+        long start = System.nanoTime();
+        try {
+            return store.queryProductsAt(query, offset, limit);
+        } finally {
+            QUERY_PRODUCTS_AT_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * @param query The filters to apply; the sort order is ignored.
+     * @return The number of products matching the query's filters.
+     */
+    public int countProducts(ProductQuery query) {
+        long start = System.nanoTime();
+        try {
+            if (!query.isFiltered()) {
+                return getProductCount();
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to retrieve all products from the database.", e);
+            return store.countProducts(query);
+        } finally {
+            COUNT_PRODUCTS_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * @return Catalogs with more products than this are sorted and filtered
+     *         by the database and paged into the table, rather than loaded in
+     *         full.
+     */
+    public int getLargeCatalogThreshold() {
+        return largeCatalogThreshold;
+    }
+
+    /**
+     * Retrieves specific products, e.g. the results of a search, a thousand
+     * IDs per query.
+     * 
+     * @param ids The IDs to look up; unknown IDs are skipped.
+     * @return The products found, in catalog order: by name, ignoring case, and then ID.
+     */
+    public List<Product> getProductsByIds(Collection<String> ids) {
+        long start = System.nanoTime();
+        try {
+            Map<String, Product> found = new HashMap<>();
+            store.getProducts(ids, found);
+            List<Product> products = new ArrayList<>(found.values());
+            products.sort(ProductQuery.DEFAULT.comparator());
+            return products;
+        } finally {
+            GET_PRODUCTS_BY_IDS_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * @return The distinct product categories, sorted, read from the category index.
+     */
+    public List<String> getCategories() {
+        long start = System.nanoTime();
+        try {
+            return store.getCategories();
+        } finally {
+            GET_CATEGORIES_TIME.recordSince(start);
         }
-        return products;
     }
 
-    private Connection getConnection() throws SQLException {
-        if (dbUrl == null) {
-            throw new SQLException("Database configuration is missing or failed to load.");
+    /**
+     * @return The number of products in the inventory.
+     */
+    public int getProductCount() {
+        long start = System.nanoTime();
+        try {
+            int cachedCount = productCache.getCatalogSize();
+            if (cachedCount >= 0) {
+                return cachedCount;
+            }
+            return store.getProductCount();
+        } finally {
+            GET_PRODUCT_COUNT_TIME.recordSince(start);
         }
-        return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
     }
-}
\ No newline at end of file
+
+    /**
+     * @return A snapshot of the connection pool's counters (active, idle, wait
+     *         time, timeouts), or null if the database is not configured or
+     *         the embedded store is in use.
+     */
+    public PoolStats getPoolStats() {
+        return store.getPoolStats();
+    }
+
+    /**
+     * @return Hit, miss and eviction counters for the product cache.
+     */
+    public CacheStats getCacheStats() {
+        return productCache.getStats();
+    }
+
+    /**
+     * Saves the catalog snapshot, then releases the pooled database
+     * connections or the embedded store's files. Call once on application exit.
+     */
+    public void close() {
+        snapshotter.close();
+        store.close();
+    }
+}
@@ -0,0 +1,177 @@
+package stocksynapse;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Live inventory statistics for the dashboard.
+ *
+ * The figures are seeded once, with aggregate SQL or a scan of the catalog,
+ * and from then on kept up to date incrementally as InventoryService reports
+ * each change, so reading them costs the same whatever the size of the
+ * catalog. Monetary totals are kept
+ * in whole cents to avoid floating-point drift over many updates.
+ */
+public class InventoryStats implements InventoryListener {
+
+    private final int lowStockThreshold;
+    private boolean seeded;
+    // Bumped by every change, so a seed that raced with a change can be detected and retried.
+    private long version;
+    private long productCount;
+    private long totalUnits;
+    private long totalValueCents;
+    private long lowStockCount;
+    private final Map<String, Long> categoryCounts = new HashMap<>();
+
+    /**
+     * @param lowStockThreshold Products with fewer units than this count as low on stock.
+     */
+    public InventoryStats(int lowStockThreshold) {
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
+    public synchronized boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Recomputes every figure from the database with aggregate queries. If
+     * every attempt races with a change, the figures are left as they were;
+     * see {@link SeedAttempts}.
+     *
+     * @param conn A connection to read from.
+     * @throws SQLException if the queries fail.
+     */
+    public void seed(Connection conn) throws SQLException {
+        SeedAttempts.seed(this, () -> version, () -> {
+            InventoryStats fresh = new InventoryStats(lowStockThreshold);
+            String totalsSql = "SELECT COUNT(*), COALESCE(SUM(quantity), 0), COALESCE(SUM(ROUND(price * 100) * quantity), 0),"
+                    + " COALESCE(SUM(CASE WHEN quantity < ? THEN 1 ELSE 0 END), 0) FROM products";
+            try (PreparedStatement pstmt = conn.prepareStatement(totalsSql)) {
+                pstmt.setInt(1, lowStockThreshold);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        fresh.productCount = rs.getLong(1);
+                        fresh.totalUnits = rs.getLong(2);
+                        fresh.totalValueCents = rs.getLong(3);
+                        fresh.lowStockCount = rs.getLong(4);
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT category, COUNT(*) FROM products GROUP BY category");
+                    ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    fresh.categoryCounts.put(categoryKey(rs.getString(1)), rs.getLong(2));
+                }
+            }
+            return fresh;
+        }, this::replaceWith);
+    }
+
+    /**
+     * Recomputes every figure from a full scan of the catalog, for backends
+     * without aggregate queries. If every attempt races with a change, the
+     * figures are left as they were; see {@link SeedAttempts}.
+     *
+     * @param scan Streams every product to the consumer it is given, e.g.
+     *             {@link ProductStore#forEachProduct}.
+     */
+    public void seed(Consumer<Consumer<Product>> scan) {
+        SeedAttempts.seed(this, () -> version, () -> {
+            InventoryStats fresh = new InventoryStats(lowStockThreshold);
+            fresh.seeded = true;
+            scan.accept(product -> fresh.apply(product, 1));
+            return fresh;
+        }, this::replaceWith);
+    }
+
+    // Called holding this monitor.
+    private void replaceWith(InventoryStats fresh) {
+        productCount = fresh.productCount;
+        totalUnits = fresh.totalUnits;
+        totalValueCents = fresh.totalValueCents;
+        lowStockCount = fresh.lowStockCount;
+        categoryCounts.clear();
+        categoryCounts.putAll(fresh.categoryCounts);
+        seeded = true;
+    }
+
+    @Override
+    public synchronized void productAdded(Product product) {
+        version++;
+        apply(product, 1);
+    }
+
+    @Override
+    public synchronized void productUpdated(Product previous, Product updated) {
+        version++;
+        if (previous == null) {
+            // Without the old row the totals cannot be corrected; force a reseed.
+            seeded = false;
+            return;
+        }
+        apply(previous, -1);
+        apply(updated, 1);
+    }
+
+    @Override
+    public synchronized void productRemoved(Product product) {
+        version++;
+        apply(product, -1);
+    }
+
+    public synchronized long getProductCount() {
+        return productCount;
+    }
+
+    public synchronized long getTotalUnits() {
+        return totalUnits;
+    }
+
+    public synchronized double getTotalValue() {
+        return totalValueCents / 100.0;
+    }
+
+    public synchronized long getLowStockCount() {
+        return lowStockCount;
+    }
+
+    public int getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+
+    /**
+     * @return Product counts per category, sorted by category name.
+     */
+    public synchronized Map<String, Long> getCategoryCounts() {
+        return new TreeMap<>(categoryCounts);
+    }
+
+    private void apply(Product product, int sign) {
+        if (!seeded) {
+            return;
+        }
+        productCount += sign;
+        totalUnits += (long) sign * product.getQuantity();
+        totalValueCents += sign * Math.round(product.getPrice() * 100) * product.getQuantity();
+        if (product.getQuantity() < lowStockThreshold) {
+            lowStockCount += sign;
+        }
+        categoryCounts.merge(categoryKey(product.getCategory()), (long) sign, (a, b) -> {
+            long sum = a + b;
+            return sum == 0 ? null : sum;
+        });
+    }
+
+    private static String categoryKey(String category) {
+        return category == null || category.trim().isEmpty() ? "(Uncategorized)" : category;
+    }
+}
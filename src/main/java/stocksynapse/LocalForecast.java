@@ -0,0 +1,118 @@
+package stocksynapse;
+
+/**
+ * A demand forecast and reorder recommendation for one product, produced by
+ * {@link LocalForecastingEngine} from the product's stock history.
+ */
+public class LocalForecast {
+    private final Product product;
+    private final String method;
+    private final int historyDays;
+    private final int horizonDays;
+    private final double horizonDemand;
+    private final int leadTimeDays;
+    private final double safetyStock;
+    private final int reorderPoint;
+    private final int suggestedOrder;
+
+    public LocalForecast(Product product, String method, int historyDays, int horizonDays, double horizonDemand,
+            int leadTimeDays, double safetyStock, int reorderPoint, int suggestedOrder) {
+        this.product = product;
+        this.method = method;
+        this.historyDays = historyDays;
+        this.horizonDays = horizonDays;
+        this.horizonDemand = horizonDemand;
+        this.leadTimeDays = leadTimeDays;
+        this.safetyStock = safetyStock;
+        this.reorderPoint = reorderPoint;
+        this.suggestedOrder = suggestedOrder;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    /** @return The model that produced the forecast, e.g. "Holt-Winters (weekly seasonality)". */
+    public String getMethod() {
+        return method;
+    }
+
+    /** @return Days of history the forecast was based on; 0 if the product has none. */
+    public int getHistoryDays() {
+        return historyDays;
+    }
+
+    public int getHorizonDays() {
+        return horizonDays;
+    }
+
+    /** @return Units expected to sell over the forecast horizon. */
+    public double getHorizonDemand() {
+        return horizonDemand;
+    }
+
+    public double getAverageDailyDemand() {
+        return horizonDays == 0 ? 0.0 : horizonDemand / horizonDays;
+    }
+
+    /** @return Days the current stock will last at the forecast rate, or infinity if nothing is selling. */
+    public double getDaysOfCover() {
+        double daily = getAverageDailyDemand();
+        return daily <= 0 ? Double.POSITIVE_INFINITY : product.getQuantity() / daily;
+    }
+
+    public double getSafetyStock() {
+        return safetyStock;
+    }
+
+    /** @return The stock level at or below which the product should be reordered. */
+    public int getReorderPoint() {
+        return reorderPoint;
+    }
+
+    /** @return Units to order now; 0 if stock is above the reorder point. */
+    public int getSuggestedOrder() {
+        return suggestedOrder;
+    }
+
+    public boolean needsReorder() {
+        return suggestedOrder > 0;
+    }
+
+    /**
+     * @return The forecast as text laid out like the AI forecasts, with
+     *         'Forecast' and 'Recommendation' headings.
+     */
+    public String toReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Forecast\n");
+        if (historyDays == 0) {
+            report.append("No stock movements have been recorded for ").append(product.getName())
+                    .append(" yet, so there is no demand to project.\n\n");
+        } else {
+            double daysOfCover = getDaysOfCover();
+            report.append(String.format("Expected demand over the next %d days: %.1f units (%.2f per day), "
+                    + "based on %d days of history using %s.%n", horizonDays, horizonDemand,
+                    getAverageDailyDemand(), historyDays, method));
+            report.append(String.format("Current stock of %d units %s.%n%n", product.getQuantity(),
+                    Double.isInfinite(daysOfCover) ? "is not being drawn down"
+                            : String.format("covers about %.0f days", daysOfCover)));
+        }
+        report.append("Recommendation\n");
+        report.append(String.format("Reorder point: %d units (%d-day lead time, %.0f units safety stock).%n",
+                reorderPoint, leadTimeDays, safetyStock));
+        if (needsReorder()) {
+            report.append(String.format("Stock is at or below the reorder point - order %d units now.%n",
+                    suggestedOrder));
+        } else {
+            report.append("Stock is above the reorder point - no order needed yet.\n");
+        }
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %.1f units over %d days, reorder point %d, order %d (%s)", product.getName(),
+                horizonDemand, horizonDays, reorderPoint, suggestedOrder, method);
+    }
+}
@@ -0,0 +1,173 @@
+package stocksynapse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Forecasts demand in-process from each product's stock history, with no
+ * network calls, so routine restocking questions are answered instantly and
+ * the whole catalog can be forecast at once.
+ *
+ * Products with at least two full seasons of history use additive
+ * Holt-Winters exponential smoothing (level, trend and a weekly season by
+ * default); shorter histories fall back to Holt's damped trend method or
+ * simple smoothing. The spread of the one-step-ahead errors sets the safety
+ * stock, and the reorder point is the forecast demand over the supplier lead
+ * time plus that safety stock.
+ *
+ * Tuning keys read from local.properties (all optional):
+ * LOCAL_FORECAST_SEASON_DAYS, LOCAL_FORECAST_HORIZON_DAYS,
+ * LOCAL_FORECAST_LEAD_TIME_DAYS and LOCAL_FORECAST_SAFETY_FACTOR (standard
+ * deviations of safety stock; 1.65 covers about 95% of lead times).
+ */
+public class LocalForecastingEngine {
+
+    // Smoothing weights for level, trend and season. Demand is noisy day to day, so trend and season move slowly.
+    private static final double ALPHA = 0.3;
+    private static final double BETA = 0.05;
+    private static final double GAMMA = 0.2;
+    // Short histories extrapolate a damped trend so a few noisy days cannot project runaway growth.
+    private static final double PHI = 0.8;
+
+    private final StockHistory history;
+    private final int seasonDays;
+    private final int horizonDays;
+    private final int leadTimeDays;
+    private final double safetyFactor;
+
+    public LocalForecastingEngine(StockHistory history, Properties config) {
+        this.history = history;
+        this.seasonDays = Math.max(1, LocalProperties.getInt(config, "LOCAL_FORECAST_SEASON_DAYS", 7));
+        this.horizonDays = Math.max(1, LocalProperties.getInt(config, "LOCAL_FORECAST_HORIZON_DAYS", 14));
+        this.leadTimeDays = Math.max(1, LocalProperties.getInt(config, "LOCAL_FORECAST_LEAD_TIME_DAYS", 7));
+        this.safetyFactor = Math.max(0.0, LocalProperties.getDouble(config, "LOCAL_FORECAST_SAFETY_FACTOR", 1.65));
+    }
+
+    /**
+     * Forecasts one product. Cheap enough to call on the EDT.
+     *
+     * @param product The product to forecast.
+     * @return The forecast and reorder recommendation.
+     */
+    public LocalForecast forecast(Product product) {
+        return forecast(product, history.today(), new double[history.getHistoryDays()]);
+    }
+
+    /**
+     * Forecasts many products in parallel across all cores.
+     *
+     * @param products The products to forecast.
+     * @return One forecast per product, in the same order.
+     */
+    public List<LocalForecast> forecastAll(List<Product> products) {
+        long today = history.today();
+        int days = history.getHistoryDays();
+        return products.parallelStream()
+                .map(product -> forecast(product, today, new double[days]))
+                .collect(Collectors.toList());
+    }
+
+    private LocalForecast forecast(Product product, long today, double[] demand) {
+        int start = demand.length;
+        if (history.getDailyDemand(product.getId(), today, demand)) {
+            // Days before the first recorded sale say nothing about demand, so leave them out.
+            start = 0;
+            while (start < demand.length && demand[start] == 0) {
+                start++;
+            }
+        }
+        int n = demand.length - start;
+        if (n == 0) {
+            return recommend(product, "no history", 0, new double[horizonDays], 0.0);
+        }
+
+        double[] horizon = new double[Math.max(horizonDays, leadTimeDays)];
+        double errorSquares = 0;
+        int errorCount = 0;
+        String method;
+        if (n >= 2 * seasonDays && seasonDays > 1) {
+            method = "Holt-Winters (" + seasonDays + "-day season)";
+            // Initial level and trend from the first two seasons; initial season from the first.
+            double firstMean = mean(demand, start, seasonDays);
+            double secondMean = mean(demand, start + seasonDays, seasonDays);
+            double level = firstMean;
+            double trend = (secondMean - firstMean) / seasonDays;
+            double[] season = new double[seasonDays];
+            for (int i = 0; i < seasonDays; i++) {
+                season[i] = demand[start + i] - firstMean;
+            }
+            for (int t = 0; t < n; t++) {
+                double y = demand[start + t];
+                int s = t % seasonDays;
+                if (t >= seasonDays) {
+                    double error = y - (level + trend + season[s]);
+                    errorSquares += error * error;
+                    errorCount++;
+                }
+                double previousLevel = level;
+                level = ALPHA * (y - season[s]) + (1 - ALPHA) * (level + trend);
+                trend = BETA * (level - previousLevel) + (1 - BETA) * trend;
+                season[s] = GAMMA * (y - level) + (1 - GAMMA) * season[s];
+            }
+            for (int h = 1; h <= horizon.length; h++) {
+                horizon[h - 1] = Math.max(0, level + h * trend + season[(n + h - 1) % seasonDays]);
+            }
+        } else if (n >= 2) {
+            method = "Holt's damped trend";
+            double level = demand[start];
+            double trend = (demand[start + n - 1] - demand[start]) / (n - 1);
+            for (int t = 1; t < n; t++) {
+                double y = demand[start + t];
+                double error = y - (level + PHI * trend);
+                errorSquares += error * error;
+                errorCount++;
+                double previousLevel = level;
+                level = ALPHA * y + (1 - ALPHA) * (level + PHI * trend);
+                trend = BETA * (level - previousLevel) + (1 - BETA) * PHI * trend;
+            }
+            double damping = 0;
+            for (int h = 1; h <= horizon.length; h++) {
+                damping += Math.pow(PHI, h);
+                horizon[h - 1] = Math.max(0, level + damping * trend);
+            }
+        } else {
+            method = "simple exponential smoothing";
+            Arrays.fill(horizon, demand[start]);
+        }
+
+        // Without enough residuals, assume Poisson-like noise: variance equal to the mean.
+        double dailySigma = errorCount >= 2 ? Math.sqrt(errorSquares / errorCount)
+                : Math.sqrt(Math.max(0, horizon[0]));
+        return recommend(product, method, n, horizon, dailySigma);
+    }
+
+    private LocalForecast recommend(Product product, String method, int historyDays, double[] horizon,
+            double dailySigma) {
+        double horizonDemand = 0;
+        for (int i = 0; i < horizonDays; i++) {
+            horizonDemand += horizon[i];
+        }
+        double leadTimeDemand = 0;
+        for (int i = 0; i < leadTimeDays; i++) {
+            leadTimeDemand += i < horizon.length ? horizon[i] : 0;
+        }
+        double safetyStock = safetyFactor * dailySigma * Math.sqrt(leadTimeDays);
+        int reorderPoint = (int) Math.ceil(leadTimeDemand + safetyStock);
+        // Order up to enough stock to cover the horizon on top of the reorder point.
+        int suggestedOrder = historyDays > 0 && product.getQuantity() <= reorderPoint
+                ? (int) Math.ceil(reorderPoint + horizonDemand) - product.getQuantity()
+                : 0;
+        return new LocalForecast(product, method, historyDays, horizonDays, horizonDemand, leadTimeDays,
+                safetyStock, reorderPoint, suggestedOrder);
+    }
+
+    private static double mean(double[] values, int from, int count) {
+        double sum = 0;
+        for (int i = from; i < from + count; i++) {
+            sum += values[i];
+        }
+        return sum / count;
+    }
+}
@@ -0,0 +1,79 @@
+package stocksynapse;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Helpers for reading the local.properties configuration file.
+ * Tuning values are optional, so every typed getter takes a default that is
+ * used when the key is missing or cannot be parsed.
+ */
+public final class LocalProperties {
+
+    public static final String FILE_NAME = "local.properties";
+
+    private LocalProperties() {
+    }
+
+    /**
+     * Loads local.properties from the project root.
+     *
+     * @return The loaded properties.
+     * @throws IOException if the file is missing or unreadable.
+     */
+    public static Properties load() throws IOException {
+        Properties props = new Properties();
+        try (FileInputStream fis = new FileInputStream(FILE_NAME)) {
+            props.load(fis);
+        }
+        return props;
+    }
+
+    public static int getInt(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public static double getDouble(Properties props, String key, double defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(Properties props, String key, boolean defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+}
@@ -0,0 +1,343 @@
+package stocksynapse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the products that are running low on stock, most urgent first.
+ *
+ * A product is low on stock when it has fewer units than its threshold: its
+ * own, else its category's, else the default. The at-risk products are held
+ * in an indexed binary heap ordered by how much of the threshold is left, so
+ * each change reported by InventoryService is evaluated in O(log n) without
+ * rescanning the catalog, however fast stock is moving.
+ *
+ * Thresholds read from local.properties: LOW_STOCK_THRESHOLD (the default),
+ * LOW_STOCK_CATEGORY_THRESHOLDS and LOW_STOCK_PRODUCT_THRESHOLDS, the last two
+ * as comma-separated name=units pairs keyed by category or product ID.
+ */
+public class LowStockAlerts implements InventoryListener {
+
+    /** A product that is low on stock. */
+    public static final class Alert {
+        private final String productId;
+        private final String name;
+        private final String category;
+        private final int quantity;
+        private final int threshold;
+
+        Alert(Product product, int threshold) {
+            this.productId = product.getId();
+            this.name = product.getName();
+            this.category = product.getCategory();
+            this.quantity = product.getQuantity();
+            this.threshold = threshold;
+        }
+
+        public String getProductId() {
+            return productId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        /** @return The product is low on stock below this many units. */
+        public int getThreshold() {
+            return threshold;
+        }
+
+        /** @return Whether this alert should be shown before the other. */
+        boolean isMoreUrgentThan(Alert other) {
+            // Compare quantity / threshold without dividing; thresholds are always positive.
+            long left = (long) quantity * other.threshold;
+            long right = (long) other.quantity * threshold;
+            if (left != right) {
+                return left < right;
+            }
+            if (quantity != other.quantity) {
+                return quantity < other.quantity;
+            }
+            return productId.compareTo(other.productId) < 0;
+        }
+    }
+
+    private final int defaultThreshold;
+    private final Map<String, Integer> categoryThresholds;
+    private final Map<String, Integer> productThresholds;
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    // The heap and the position of each product in it, guarded by this.
+    private Alert[] heap = new Alert[16];
+    private int size;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private boolean seeded;
+    // While a seed is scanning, each product changed meanwhile and its new alert, or null if it
+    // has none; otherwise null. Guarded by this.
+    private Map<String, Alert> changesDuringSeed;
+    private final Object seedLock = new Object();
+
+    /**
+     * @param config Thresholds from local.properties.
+     */
+    public LowStockAlerts(Properties config) {
+        this.defaultThreshold = LocalProperties.getInt(config, "LOW_STOCK_THRESHOLD", 10);
+        this.categoryThresholds = parseThresholds(config, "LOW_STOCK_CATEGORY_THRESHOLDS");
+        this.productThresholds = parseThresholds(config, "LOW_STOCK_PRODUCT_THRESHOLDS");
+    }
+
+    private static Map<String, Integer> parseThresholds(Properties config, String key) {
+        Map<String, Integer> thresholds = new HashMap<>();
+        for (String pair : config.getProperty(key, "").split(",")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            int separator = pair.lastIndexOf('=');
+            try {
+                if (separator <= 0) {
+                    throw new NumberFormatException("missing '='");
+                }
+                thresholds.put(pair.substring(0, separator).trim(),
+                        Integer.parseInt(pair.substring(separator + 1).trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid " + key + " entry '" + pair.trim() + "' (expected name=units).");
+            }
+        }
+        return thresholds;
+    }
+
+    /**
+     * @return The number of units below which the product is low on stock.
+     */
+    public int getThreshold(Product product) {
+        Integer threshold = productThresholds.get(product.getId());
+        if (threshold == null && product.getCategory() != null) {
+            threshold = categoryThresholds.get(product.getCategory());
+        }
+        return threshold != null ? threshold : defaultThreshold;
+    }
+
+    /**
+     * Registers a callback run after the set of alerts changes. It runs on
+     * the thread that made the change, so it must be quick and thread-safe.
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public synchronized boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Rebuilds the alerts from a full scan of the catalog. Changes reported
+     * while the scan runs are recorded and applied to the new alerts before
+     * they replace the old ones, so none are lost whether or not the scan saw
+     * them. Seeds run one at a time.
+     *
+     * @param scan Streams every product to the consumer it is given, e.g.
+     *             {@link ProductStore#forEachProduct}.
+     */
+    public void seed(Consumer<Consumer<Product>> scan) {
+        synchronized (seedLock) {
+            Map<String, Alert> missed = new HashMap<>();
+            synchronized (this) {
+                changesDuringSeed = missed;
+            }
+            Map<String, Alert> loaded = new HashMap<>();
+            try {
+                scan.accept(product -> {
+                    Alert alert = evaluate(product);
+                    if (alert != null) {
+                        loaded.put(product.getId(), alert);
+                    }
+                });
+            } catch (RuntimeException | Error e) {
+                synchronized (this) {
+                    changesDuringSeed = null;
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                changesDuringSeed = null;
+                // Each change replaces the product's alert by ID, so applying it again is harmless.
+                for (Map.Entry<String, Alert> change : missed.entrySet()) {
+                    if (change.getValue() == null) {
+                        loaded.remove(change.getKey());
+                    } else {
+                        loaded.put(change.getKey(), change.getValue());
+                    }
+                }
+                heap = loaded.values().toArray(new Alert[Math.max(16, loaded.size())]);
+                size = loaded.size();
+                positions.clear();
+                for (int i = 0; i < size; i++) {
+                    positions.put(heap[i].getProductId(), i);
+                }
+                // Bottom-up heap construction is O(n).
+                for (int i = size / 2 - 1; i >= 0; i--) {
+                    siftDown(i);
+                }
+                seeded = true;
+            }
+        }
+        fireChanged();
+    }
+
+    /** @return How many products are low on stock. */
+    public synchronized int getAlertCount() {
+        return size;
+    }
+
+    /**
+     * Returns the most urgent alerts without disturbing the heap, in
+     * O(limit log limit) whatever the number of alerts.
+     *
+     * @param limit The most alerts to return.
+     * @return Up to {@code limit} alerts, most urgent first.
+     */
+    public synchronized List<Alert> getMostUrgent(int limit) {
+        if (size == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<Alert> result = new ArrayList<>(Math.min(limit, size));
+        // Walk the heap best-first: a node's children are only candidates once it has been taken.
+        PriorityQueue<Integer> frontier = new PriorityQueue<>(
+                (a, b) -> heap[a] == heap[b] ? 0 : heap[a].isMoreUrgentThan(heap[b]) ? -1 : 1);
+        frontier.add(0);
+        while (!frontier.isEmpty() && result.size() < limit) {
+            int index = frontier.poll();
+            result.add(heap[index]);
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                frontier.add(child);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        if (update(product.getId(), evaluate(product))) {
+            fireChanged();
+        }
+    }
+
+    @Override
+    public void productUpdated(Product previous, Product updated) {
+        if (update(updated.getId(), evaluate(updated))) {
+            fireChanged();
+        }
+    }
+
+    @Override
+    public void productRemoved(Product product) {
+        if (update(product.getId(), null)) {
+            fireChanged();
+        }
+    }
+
+    private Alert evaluate(Product product) {
+        int threshold = getThreshold(product);
+        return threshold > 0 && product.getQuantity() < threshold ? new Alert(product, threshold) : null;
+    }
+
+    /**
+     * Adds, replaces or removes a product's alert in O(log n).
+     *
+     * @param alert The product's new alert, or null if it is not low on stock.
+     * @return Whether the alerts changed.
+     */
+    private synchronized boolean update(String productId, Alert alert) {
+        if (changesDuringSeed != null) {
+            changesDuringSeed.put(productId, alert);
+        }
+        if (!seeded) {
+            return false;
+        }
+        Integer position = positions.get(productId);
+        if (position == null) {
+            if (alert == null) {
+                return false;
+            }
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            place(alert, size++);
+            siftUp(size - 1);
+        } else if (alert == null) {
+            positions.remove(productId);
+            Alert last = heap[--size];
+            heap[size] = null;
+            if (position < size) {
+                place(last, position);
+                siftUp(position);
+                siftDown(positions.get(last.getProductId()));
+            }
+        } else {
+            place(alert, position);
+            siftUp(position);
+            siftDown(positions.get(productId));
+        }
+        return true;
+    }
+
+    private void siftUp(int index) {
+        Alert alert = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!alert.isMoreUrgentThan(heap[parent])) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(alert, index);
+    }
+
+    private void siftDown(int index) {
+        Alert alert = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].isMoreUrgentThan(heap[child])) {
+                child++;
+            }
+            if (!heap[child].isMoreUrgentThan(alert)) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(alert, index);
+    }
+
+    private void place(Alert alert, int index) {
+        heap[index] = alert;
+        positions.put(alert.getProductId(), index);
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package stocksynapse;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.Map;
+
+/**
+ * A live view of the {@link MetricsRegistry}: how long each service call
+ * takes, how often Gemini calls are retried or fall back to the local
+ * engine, and the state of the caches and connection pool. The table is
+ * refreshed every second while the page is showing.
+ */
+public class MetricsPanel extends JPanel {
+
+    private static final int REFRESH_MILLIS = 1_000;
+
+    private final MetricsRegistry registry;
+    private final DefaultTableModel latencyModel = readOnlyModel("Operation", "Calls", "Mean (ms)", "p50 (ms)",
+            "p99 (ms)", "Max (ms)");
+    private final DefaultTableModel valueModel = readOnlyModel("Metric", "Value");
+    private final Timer refreshTimer;
+
+    public MetricsPanel(MetricsRegistry registry) {
+        this.registry = registry;
+        setLayout(new BorderLayout(10, 10));
+        setBorder(new EmptyBorder(20, 20, 20, 20));
+
+        // --- Title Panel ---
+        JLabel titleLabel = new JLabel("Performance Metrics", SwingConstants.CENTER);
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 28));
+        add(titleLabel, BorderLayout.NORTH);
+
+        // --- Tables ---
+        JSplitPane tables = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                createTablePane("Latency", latencyModel), createTablePane("Counters and Gauges", valueModel));
+        tables.setResizeWeight(0.6);
+        add(tables, BorderLayout.CENTER);
+
+        // --- Control Panel ---
+        JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        JButton resetButton = new JButton("Reset Metrics");
+        resetButton.addActionListener(e -> {
+            registry.reset();
+            refresh();
+        });
+        controlPanel.add(resetButton);
+        add(controlPanel, BorderLayout.SOUTH);
+
+        // Only poll the registry while the page is on screen.
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                refresh();
+                refreshTimer.start();
+            }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                refreshTimer.stop();
+            }
+        });
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    private static JScrollPane createTablePane(String title, DefaultTableModel model) {
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setBorder(BorderFactory.createTitledBorder(title));
+        return scrollPane;
+    }
+
+    private void refresh() {
+        // Update rows in place so the tables keep their selection and scroll position.
+        int row = 0;
+        for (Map.Entry<String, LatencyHistogram> entry : registry.getHistograms().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            setRow(latencyModel, row++, entry.getKey(), snapshot.getCount(), millis(snapshot.getMeanMillis()),
+                    millis(snapshot.getP50Millis()), millis(snapshot.getP99Millis()),
+                    millis(snapshot.getMaxMillis()));
+        }
+        latencyModel.setRowCount(row);
+
+        row = 0;
+        for (Map.Entry<String, MetricsRegistry.Counter> entry : registry.getCounters().entrySet()) {
+            setRow(valueModel, row++, entry.getKey(), String.format("%,d", entry.getValue().getCount()));
+        }
+        for (Map.Entry<String, MetricsRegistry.Gauge> entry : registry.getGauges().entrySet()) {
+            double value = entry.getValue().getValue();
+            setRow(valueModel, row++, entry.getKey(),
+                    value == Math.rint(value) ? String.format("%,.0f", value) : String.format("%,.3f", value));
+        }
+        valueModel.setRowCount(row);
+    }
+
+    private static String millis(double value) {
+        return String.format("%.3f", value);
+    }
+
+    private static void setRow(DefaultTableModel model, int row, Object... values) {
+        if (row >= model.getRowCount()) {
+            model.addRow(values);
+            return;
+        }
+        for (int column = 0; column < values.length; column++) {
+            if (!values[column].equals(model.getValueAt(row, column))) {
+                model.setValueAt(values[column], row, column);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package stocksynapse;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Named counters, gauges and latency histograms for the whole application.
+ *
+ * Services look their metrics up once, when they are created, and record to
+ * them directly; recording never allocates or takes a lock. Every metric is
+ * also published as an MXBean under the "stocksynapse" JMX domain, so the
+ * same figures can be read with JConsole or VisualVM.
+ *
+ * Names are dotted paths such as "inventory.getProductById", grouped by the
+ * service that records them.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry(true);
+
+    /** A count of events, such as retries or failures. */
+    public static final class Counter implements CounterMXBean {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        void reset() {
+            count.reset();
+        }
+    }
+
+    /** A value read when it is displayed, such as a cache's size. */
+    public static final class Gauge implements GaugeMXBean {
+        private final DoubleSupplier supplier;
+
+        Gauge(DoubleSupplier supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public double getValue() {
+            try {
+                return supplier.getAsDouble();
+            } catch (RuntimeException e) {
+                return Double.NaN;
+            }
+        }
+    }
+
+    public interface CounterMXBean {
+        long getCount();
+    }
+
+    public interface GaugeMXBean {
+        double getValue();
+    }
+
+    public interface HistogramMXBean {
+        long getCount();
+
+        double getMeanMillis();
+
+        double getP50Millis();
+
+        double getP99Millis();
+
+        double getMaxMillis();
+    }
+
+    private final boolean publishToJmx;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * @param publishToJmx Whether to register each metric with the platform MBean server.
+     */
+    public MetricsRegistry(boolean publishToJmx) {
+        this.publishToJmx = publishToJmx;
+    }
+
+    /** @return The registry shared by the application's services and shown in the metrics view. */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /** @return The counter with this name, created on first use. */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> publish(key, "Counter", new Counter()));
+    }
+
+    /** @return The latency histogram with this name, created on first use. */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> publish(key, "Histogram", new LatencyHistogram()));
+    }
+
+    /**
+     * Registers a gauge, replacing any earlier gauge with the same name, e.g.
+     * one registered by a service that has since been replaced.
+     *
+     * @param supplier Reads the current value; called from the metrics view and JMX clients.
+     */
+    public void gauge(String name, DoubleSupplier supplier) {
+        gauges.compute(name, (key, previous) -> {
+            if (previous != null) {
+                unpublish(key, "Gauge");
+            }
+            return publish(key, "Gauge", new Gauge(supplier));
+        });
+    }
+
+    public SortedMap<String, Counter> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    public SortedMap<String, Gauge> getGauges() {
+        return new TreeMap<>(gauges);
+    }
+
+    public SortedMap<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /** Zeroes every counter and histogram; gauges are unaffected. */
+    public void reset() {
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    private <T> T publish(String name, String type, T metric) {
+        if (!publishToJmx) {
+            return metric;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(name, type);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metric, objectName);
+            }
+        } catch (JMException | RuntimeException e) {
+            System.err.println("Could not publish metric " + name + " over JMX: " + e.getMessage());
+        }
+        return metric;
+    }
+
+    private void unpublish(String name, String type) {
+        if (!publishToJmx) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name, type));
+        } catch (JMException | RuntimeException e) {
+            // Already gone.
+        }
+    }
+
+    private static ObjectName objectName(String name, String type) throws JMException {
+        return new ObjectName("stocksynapse:type=" + type + ",name=" + ObjectName.quote(name));
+    }
+}
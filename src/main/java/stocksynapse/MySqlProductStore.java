@@ -0,0 +1,568 @@
+package stocksynapse;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps products in the MySQL products table and the ledger in the
+ * stock_movements table, through a {@link ConnectionPool}. Several terminals
+ * can share one database; concurrent edits are detected with the row version
+ * and stock adjustments lock the rows they change.
+ *
+ * Tuning keys read from local.properties (optional): IMPORT_BATCH_SIZE,
+ * the number of rows sent per JDBC batch.
+ */
+public class MySqlProductStore implements ProductStore {
+
+    private static final String PRODUCT_COLUMNS = "id, name, price, quantity, category, description, version";
+
+    private final ConnectionPool connectionPool;
+    private final int importBatchSize;
+    private volatile boolean schemaReady;
+
+    /**
+     * @param connectionPool The pool to borrow connections from, or null if
+     *                       the database is not configured, in which case
+     *                       every operation fails.
+     * @param props          Tuning values from local.properties.
+     */
+    public MySqlProductStore(ConnectionPool connectionPool, Properties props) {
+        this.connectionPool = connectionPool;
+        this.importBatchSize = Math.max(1, LocalProperties.getInt(props, "IMPORT_BATCH_SIZE", 1_000));
+    }
+
+    @Override
+    public void addProduct(Product product) {
+        String sql = "INSERT INTO products(id, name, price, quantity, category, description) VALUES(?, ?, ?, ?, ?, ?)";
+        try (Connection conn = getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, product.getId());
+            pstmt.setString(2, product.getName());
+            pstmt.setDouble(3, product.getPrice());
+            pstmt.setInt(4, product.getQuantity());
+            pstmt.setString(5, product.getCategory());
+            pstmt.setString(6, product.getDescription());
+            conn.setAutoCommit(false);
+            try {
+                pstmt.executeUpdate();
+                if (product.getQuantity() != 0) {
+                    recordStockMovement(conn, product.getId(), product.getQuantity(), product.getQuantity(), "ADD");
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to add product to the database.", e);
+        }
+    }
+
+    /**
+     * Inserts the products with JDBC batches of IMPORT_BATCH_SIZE rows,
+     * committed as one transaction.
+     */
+    @Override
+    public void addProducts(List<Product> products) {
+        String sql = "INSERT INTO products(id, name, price, quantity, category, description) VALUES(?, ?, ?, ?, ?, ?)";
+        try (Connection conn = getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            try {
+                int inBatch = 0;
+                for (Product product : products) {
+                    pstmt.setString(1, product.getId());
+                    pstmt.setString(2, product.getName());
+                    pstmt.setDouble(3, product.getPrice());
+                    pstmt.setInt(4, product.getQuantity());
+                    pstmt.setString(5, product.getCategory());
+                    pstmt.setString(6, product.getDescription());
+                    pstmt.addBatch();
+                    if (++inBatch % importBatchSize == 0) {
+                        pstmt.executeBatch();
+                    }
+                }
+                pstmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to insert products into the database.", e);
+        }
+    }
+
+    /**
+     * The update is a compare-and-set on the row version. When the caller
+     * supplies the previous row it is not read again, so a successful edit
+     * costs a single statement.
+     */
+    @Override
+    public UpdateResult updateProduct(Product edited, Product previous) {
+        String sql = "UPDATE products SET name = ?, price = ?, quantity = ?, category = ?, description = ?,"
+                + " version = version + 1 WHERE id = ? AND version = ?";
+        String id = edited.getId();
+        Product updated = new Product(id, edited.getName(), edited.getPrice(), edited.getQuantity(),
+                edited.getCategory(), edited.getDescription(), edited.getVersion() + 1);
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (previous == null) {
+                    Map<String, Product> locked = new HashMap<>();
+                    lockProducts(conn, List.of(id), locked);
+                    previous = locked.get(id);
+                    if (previous == null || previous.getVersion() != edited.getVersion()) {
+                        return rejectUpdate(conn, previous);
+                    }
+                }
+                int affectedRows;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, updated.getName());
+                    pstmt.setDouble(2, updated.getPrice());
+                    pstmt.setInt(3, updated.getQuantity());
+                    pstmt.setString(4, updated.getCategory());
+                    pstmt.setString(5, updated.getDescription());
+                    pstmt.setString(6, id);
+                    pstmt.setLong(7, edited.getVersion());
+                    affectedRows = pstmt.executeUpdate();
+                }
+                if (affectedRows == 0) {
+                    // The caller's copy was stale: the row changed or was deleted behind our back.
+                    Map<String, Product> current = new HashMap<>();
+                    lockProducts(conn, List.of(id), current);
+                    return rejectUpdate(conn, current.get(id));
+                }
+                int change = updated.getQuantity() - previous.getQuantity();
+                if (change != 0) {
+                    recordStockMovement(conn, id, change, updated.getQuantity(), "EDIT");
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update product in the database.", e);
+        }
+        return UpdateResult.updated(updated, previous);
+    }
+
+    private static UpdateResult rejectUpdate(Connection conn, Product current) throws SQLException {
+        conn.rollback();
+        return current == null ? UpdateResult.notFound() : UpdateResult.conflict(current);
+    }
+
+    /**
+     * The affected rows are locked and read in one query, updated with one
+     * JDBC batch and logged with another, all in one transaction.
+     */
+    @Override
+    public List<Product> adjustQuantities(List<StockAdjustment> adjustments, Map<String, Product> previous) {
+        // Net change per product, in ID order so that concurrent batches lock rows in the same order.
+        TreeMap<String, Integer> netChanges = new TreeMap<>();
+        for (StockAdjustment adjustment : adjustments) {
+            netChanges.merge(adjustment.getProductId(), adjustment.getDelta(), Math::addExact);
+        }
+        if (netChanges.isEmpty()) {
+            return List.of();
+        }
+
+        List<Product> updated = new ArrayList<>();
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                lockProducts(conn, netChanges.keySet(), previous);
+                for (Map.Entry<String, Integer> change : netChanges.entrySet()) {
+                    String id = change.getKey();
+                    updated.add(StockAdjustment.apply(id, previous.get(id), change.getValue()));
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE products SET quantity = quantity + ?, version = version + 1 WHERE id = ?")) {
+                    for (Map.Entry<String, Integer> change : netChanges.entrySet()) {
+                        pstmt.setInt(1, change.getValue());
+                        pstmt.setString(2, change.getKey());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+
+                String ledgerSql = "INSERT INTO stock_movements(product_id, moved_at, quantity_change, quantity_after,"
+                        + " reason) VALUES(?, ?, ?, ?, ?)";
+                try (PreparedStatement pstmt = conn.prepareStatement(ledgerSql)) {
+                    Timestamp now = new Timestamp(System.currentTimeMillis());
+                    Map<String, Integer> running = new HashMap<>();
+                    for (StockAdjustment adjustment : adjustments) {
+                        int after = running.merge(adjustment.getProductId(),
+                                previous.get(adjustment.getProductId()).getQuantity() + adjustment.getDelta(),
+                                (current, ignored) -> current + adjustment.getDelta());
+                        pstmt.setString(1, adjustment.getProductId());
+                        pstmt.setTimestamp(2, now);
+                        pstmt.setInt(3, adjustment.getDelta());
+                        pstmt.setInt(4, after);
+                        pstmt.setString(5, adjustment.getReason());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to adjust stock levels in the database.", e);
+        }
+        return updated;
+    }
+
+    /**
+     * Reads and locks the given products for the rest of the transaction,
+     * in ID order.
+     */
+    private static void lockProducts(Connection conn, Iterable<String> ids, Map<String, Product> into)
+            throws SQLException {
+        selectProducts(conn, ids, true, into);
+    }
+
+    /**
+     * Reads the given products, a thousand IDs per query.
+     */
+    private static void selectProducts(Connection conn, Iterable<String> ids, boolean forUpdate,
+            Map<String, Product> into) throws SQLException {
+        final int maxIdsPerQuery = 1_000;
+        List<String> chunk = new ArrayList<>();
+        for (String id : ids) {
+            chunk.add(id);
+            if (chunk.size() == maxIdsPerQuery) {
+                selectProductChunk(conn, chunk, forUpdate, into);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            selectProductChunk(conn, chunk, forUpdate, into);
+        }
+    }
+
+    private static void selectProductChunk(Connection conn, List<String> ids, boolean forUpdate,
+            Map<String, Product> into) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        String sql = "SELECT " + PRODUCT_COLUMNS + " FROM products WHERE id IN (" + placeholders + ")"
+                + (forUpdate ? " ORDER BY id FOR UPDATE" : "");
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setString(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Product product = mapProduct(rs);
+                    into.put(product.getId(), product);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Product deleteProduct(String id) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Map<String, Product> locked = new HashMap<>();
+                lockProducts(conn, List.of(id), locked);
+                Product previous = locked.get(id);
+                if (previous != null) {
+                    try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM products WHERE id = ?")) {
+                        pstmt.setString(1, id);
+                        pstmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+                return previous;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete product from the database.", e);
+        }
+    }
+
+    @Override
+    public Product getProduct(String id) {
+        String sql = "SELECT " + PRODUCT_COLUMNS + " FROM products WHERE id = ?";
+        try (Connection conn = getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapProduct(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve product from the database.", e);
+        }
+    }
+
+    @Override
+    public void getProducts(Collection<String> ids, Map<String, Product> into) {
+        try (Connection conn = getConnection()) {
+            selectProducts(conn, ids, false, into);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve products from the database.", e);
+        }
+    }
+
+    @Override
+    public void forEachProduct(Consumer<Product> consumer) {
+        String sql = "SELECT " + PRODUCT_COLUMNS + " FROM products ORDER BY name, id";
+        try (Connection conn = getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY)) {
+            // Connector/J streams rows one at a time instead of reading the full result into memory.
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(mapProduct(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve all products from the database.", e);
+        }
+    }
+
+    /**
+     * Pages are read with keyset conditions on the indexed sort column, so
+     * the cost of a page does not grow with its position.
+     */
+    @Override
+    public List<Product> queryProducts(ProductQuery query, Product after, int limit) {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT " + PRODUCT_COLUMNS + " FROM products" + query.toWhereClause(after, params)
+                + query.toOrderByClause() + " LIMIT ?";
+        params.add(limit);
+        return queryPage(sql, params.toArray());
+    }
+
+    @Override
+    public List<Product> queryProductsAt(ProductQuery query, int offset, int limit) {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT " + PRODUCT_COLUMNS + " FROM products" + query.toWhereClause(null, params)
+                + query.toOrderByClause() + " LIMIT ? OFFSET ?";
+        params.add(limit);
+        params.add(offset);
+        return queryPage(sql, params.toArray());
+    }
+
+    @Override
+    public int countProducts(ProductQuery query) {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COUNT(*) FROM products" + query.toWhereClause(null, params);
+        try (Connection conn = getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to count products in the database.", e);
+        }
+    }
+
+    @Override
+    public int getProductCount() {
+        return countProducts(ProductQuery.DEFAULT);
+    }
+
+    @Override
+    public List<String> getCategories() {
+        List<String> categories = new ArrayList<>();
+        try (Connection conn = getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT DISTINCT category FROM products WHERE category IS NOT NULL ORDER BY category");
+                ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                categories.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve categories from the database.", e);
+        }
+        return categories;
+    }
+
+    /**
+     * Seeds the statistics with aggregate queries.
+     */
+    @Override
+    public void seedInventoryStats(InventoryStats stats) {
+        try (Connection conn = getConnection()) {
+            stats.seed(conn);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to compute inventory statistics.", e);
+        }
+    }
+
+    @Override
+    public void forEachStockMovement(long sinceMillis, Consumer<StockMovement> consumer) {
+        String sql = "SELECT product_id, moved_at, quantity_change, quantity_after, reason FROM stock_movements"
+                + " WHERE moved_at >= ? ORDER BY moved_at, id";
+        try (Connection conn = getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setTimestamp(1, new Timestamp(sinceMillis));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(new StockMovement(rs.getString(1), rs.getTimestamp(2).getTime(), rs.getInt(3),
+                            rs.getInt(4), rs.getString(5)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load stock movements.", e);
+        }
+    }
+
+    private List<Product> queryPage(String sql, Object... params) {
+        List<Product> products = new ArrayList<>();
+        try (Connection conn = getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(mapProduct(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve a page of products from the database.", e);
+        }
+        return products;
+    }
+
+    /**
+     * Appends a row to the stock_movements table, as part of the caller's transaction.
+     */
+    private static void recordStockMovement(Connection conn, String productId, int change, int quantityAfter,
+            String reason) throws SQLException {
+        String sql = "INSERT INTO stock_movements(product_id, moved_at, quantity_change, quantity_after, reason)"
+                + " VALUES(?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, productId);
+            pstmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            pstmt.setInt(3, change);
+            pstmt.setInt(4, quantityAfter);
+            pstmt.setString(5, reason);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Brings the schema up to date on first use: creates the stock_movements
+     * table, adds the products.version column to databases created before
+     * it existed, and adds the indexes that server-side sorting relies on.
+     */
+    private synchronized void ensureSchema(Connection conn) throws SQLException {
+        if (schemaReady) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS stock_movements ("
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "product_id VARCHAR(64) NOT NULL, "
+                    + "moved_at TIMESTAMP(3) NOT NULL, "
+                    + "quantity_change INT NOT NULL, "
+                    + "quantity_after INT NOT NULL, "
+                    + "reason VARCHAR(64) NOT NULL, "
+                    + "INDEX idx_stock_movements_product (product_id, moved_at), "
+                    + "INDEX idx_stock_movements_time (moved_at))");
+            boolean hasVersion;
+            try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, "products", "version")) {
+                hasVersion = rs.next();
+            }
+            if (!hasVersion) {
+                stmt.execute("ALTER TABLE products ADD COLUMN version BIGINT NOT NULL DEFAULT 0");
+            }
+            // One index per sortable column, each ending in id so keyset pages are index range scans.
+            Set<String> indexes = new HashSet<>();
+            try (ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, "products", false, true)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    if (indexName != null) {
+                        indexes.add(indexName.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            String[][] sortIndexes = {
+                    { "idx_products_name", "name, id" },
+                    { "idx_products_price", "price, id" },
+                    { "idx_products_quantity", "quantity, id" },
+                    { "idx_products_category", "category, name, id" } };
+            for (String[] index : sortIndexes) {
+                if (!indexes.contains(index[0])) {
+                    stmt.execute("CREATE INDEX " + index[0] + " ON products (" + index[1] + ")");
+                }
+            }
+        }
+        schemaReady = true;
+    }
+
+    private static Product mapProduct(ResultSet rs) throws SQLException {
+        return new Product(
+                rs.getString("id"),
+                rs.getString("name"),
+                rs.getDouble("price"),
+                rs.getInt("quantity"),
+                rs.getString("category"),
+                rs.getString("description"),
+                rs.getLong("version"));
+    }
+
+    @Override
+    public PoolStats getPoolStats() {
+        return connectionPool == null ? null : connectionPool.getStats();
+    }
+
+    /**
+     * Releases the pooled database connections.
+     */
+    @Override
+    public void close() {
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (connectionPool == null) {
+            throw new SQLException("Database configuration is missing or failed to load.");
+        }
+        Connection conn = connectionPool.getConnection();
+        if (!schemaReady) {
+            try {
+                ensureSchema(conn);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+        }
+        return conn;
+    }
+}
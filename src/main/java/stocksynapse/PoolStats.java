@@ -0,0 +1,93 @@
+package stocksynapse;
+
+/**
+ * An immutable snapshot of the connection pool's counters.
+ * Obtained from {@link ConnectionPool#getStats()}.
+ */
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int maxSize;
+    private final long borrowCount;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+    private final long timeouts;
+    private final long connectionsCreated;
+    private final long connectionsDestroyed;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+
+    public PoolStats(int active, int idle, int maxSize, long borrowCount, long totalWaitNanos, long maxWaitNanos,
+            long timeouts, long connectionsCreated, long connectionsDestroyed, long statementCacheHits,
+            long statementCacheMisses) {
+        this.active = active;
+        this.idle = idle;
+        this.maxSize = maxSize;
+        this.borrowCount = borrowCount;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.timeouts = timeouts;
+        this.connectionsCreated = connectionsCreated;
+        this.connectionsDestroyed = connectionsDestroyed;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+    }
+
+    /** @return Connections currently borrowed by callers. */
+    public int getActive() {
+        return active;
+    }
+
+    /** @return Open connections waiting in the pool. */
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    /** @return Average time a caller waited for a connection, in milliseconds. */
+    public double getAverageWaitMillis() {
+        return borrowCount == 0 ? 0.0 : totalWaitNanos / (double) borrowCount / 1_000_000.0;
+    }
+
+    /** @return Longest time a caller waited for a connection, in milliseconds. */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos / 1_000_000.0;
+    }
+
+    /** @return Borrow attempts that gave up because the pool stayed exhausted. */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated;
+    }
+
+    public long getConnectionsDestroyed() {
+        return connectionsDestroyed;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "PoolStats{active=%d, idle=%d, max=%d, borrows=%d, avgWait=%.2fms, maxWait=%.2fms, timeouts=%d, "
+                        + "created=%d, destroyed=%d, stmtHits=%d, stmtMisses=%d}",
+                active, idle, maxSize, borrowCount, getAverageWaitMillis(), getMaxWaitMillis(), timeouts,
+                connectionsCreated, connectionsDestroyed, statementCacheHits, statementCacheMisses);
+    }
+}
@@ -1,5 +1,7 @@
 package stocksynapse;
 
+import java.util.Objects;
+
 public class Product {
     private final String id;
     private final String name;
@@ -7,14 +9,25 @@ public class Product {
     private final int quantity;
     private final String category;
     private final String description;
+    private final long version;
 
     public Product(String id, String name, double price, int quantity, String category, String description) {
+        this(id, name, price, quantity, category, description, 0L);
+    }
+
+    /**
+     * @param version The row version, incremented by the database on every
+     *                change; edits must present the version they were based on.
+     */
+    public Product(String id, String name, double price, int quantity, String category, String description,
+            long version) {
         this.id = id;
         this.name = name;
         this.price = price;
         this.quantity = quantity;
         this.category = category;
         this.description = description;
+        this.version = version;
     }
 
     public String getId() {
@@ -41,9 +54,33 @@ public class Product {
         return description;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Product)) {
+            return false;
+        }
+        Product other = (Product) o;
+        return Double.compare(price, other.price) == 0 && quantity == other.quantity && version == other.version
+                && Objects.equals(id, other.id) && Objects.equals(name, other.name)
+                && Objects.equals(category, other.category) && Objects.equals(description, other.description);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, price, quantity, category, description, version);
+    }
+
     @Override
     public String toString() {
-        return String.format("Product{id='%s', name='%s', price=%.2f, quantity=%d, category='%s', description='%s'}",
-                id, name, price, quantity, category, description);
+        return String.format(
+                "Product{id='%s', name='%s', price=%.2f, quantity=%d, category='%s', description='%s', version=%d}",
+                id, name, price, quantity, category, description, version);
     }
 }
@@ -0,0 +1,306 @@
+package stocksynapse;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe in-memory cache of products that sits in front of the
+ * database in InventoryService.
+ *
+ * Reads go through the cache and only fall back to MySQL on a miss. Writes are
+ * applied to the cache as well as the database (write-through), so the panels
+ * see their own changes without a reload. Entries expire after a TTL to pick
+ * up changes made by other terminals, and the oldest entries are evicted once
+ * the cache is full. Alongside single products the cache keeps one snapshot of
+ * the full catalog, as long as the catalog fits within the size limit.
+ *
+ * Tuning keys read from local.properties (all optional):
+ * PRODUCT_CACHE_MAX_SIZE (0 disables the cache) and PRODUCT_CACHE_TTL_MS.
+ */
+public class ProductCache {
+
+    // Matches the database's case-insensitive "ORDER BY name, id" closely enough for display.
+    private static final Comparator<Product> CATALOG_ORDER = Comparator
+            .comparing(Product::getName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Product::getId);
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Insertion order for eviction; may hold stale entries that were since replaced.
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private Snapshot catalog;
+    // Changes written since the catalog snapshot was taken, by ID; null for a removed product. Merged
+    // into a new snapshot when the catalog is next read, so a write costs the same whatever the size
+    // of the catalog. Guarded by this cache's monitor, like the snapshot.
+    private final Map<String, Product> catalogChanges = new LinkedHashMap<>();
+    // Bumped on every write so that a read which raced with a write does not cache stale data. Writes
+    // and the publishing of loaded data both hold this cache's monitor, so a write cannot land between
+    // a loader's epoch check and its publish.
+    private final AtomicLong writeEpoch = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ProductCache(Properties props) {
+        this.maxSize = Math.max(0, LocalProperties.getInt(props, "PRODUCT_CACHE_MAX_SIZE", 10_000));
+        this.ttlNanos = LocalProperties.getLong(props, "PRODUCT_CACHE_TTL_MS", 60_000L) * 1_000_000L;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * @return The cached product, or null if it is absent or has expired.
+     */
+    public Product get(String id) {
+        Entry entry = entries.get(id);
+        if (entry != null && entry.isExpired()) {
+            if (entries.remove(id, entry)) {
+                evictions.increment();
+            }
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.product;
+    }
+
+    /**
+     * @return A copy of the cached full catalog, or null if it is absent or has expired.
+     */
+    public ColumnarProductList getAll() {
+        Snapshot snapshot = currentCatalog();
+        if (snapshot == null || snapshot.isExpired()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new ColumnarProductList(snapshot.products);
+    }
+
+    /**
+     * @return The size of the cached full catalog, or -1 if it is absent or has expired.
+     */
+    public int getCatalogSize() {
+        Snapshot snapshot = currentCatalog();
+        if (snapshot == null || snapshot.isExpired()) {
+            return -1;
+        }
+        hits.increment();
+        return snapshot.products.size();
+    }
+
+    /**
+     * Marks the start of a database read. Pass the returned token to
+     * {@link #putLoaded(Product, long)} or {@link #putAllLoaded(List, long)}.
+     */
+    public long beginLoad() {
+        return writeEpoch.get();
+    }
+
+    /**
+     * Caches a product read from the database, unless a write happened since
+     * the read began.
+     */
+    public synchronized void putLoaded(Product product, long loadToken) {
+        if (isEnabled() && writeEpoch.get() == loadToken) {
+            store(product);
+        }
+    }
+
+    /**
+     * Caches the full catalog read from the database, unless a write happened
+     * since the read began or the catalog does not fit in the cache.
+     */
+    public void putAllLoaded(List<Product> products, long loadToken) {
+        if (!isEnabled() || products.size() > maxSize || writeEpoch.get() != loadToken) {
+            return;
+        }
+        // Copied before taking the monitor, so writers only wait for the publish itself.
+        ColumnarProductList copy = new ColumnarProductList(products);
+        synchronized (this) {
+            if (writeEpoch.get() != loadToken) {
+                return;
+            }
+            catalog = new Snapshot(copy);
+            catalogChanges.clear();
+            for (Product product : products) {
+                store(product);
+            }
+        }
+    }
+
+    /**
+     * Write-through for an added or updated product.
+     */
+    public synchronized void put(Product product) {
+        writeEpoch.incrementAndGet();
+        if (!isEnabled()) {
+            return;
+        }
+        store(product);
+        recordCatalogChange(product.getId(), product);
+    }
+
+    /**
+     * Write-through for a deleted product.
+     */
+    public synchronized void remove(String id) {
+        writeEpoch.incrementAndGet();
+        entries.remove(id);
+        recordCatalogChange(id, null);
+    }
+
+    /**
+     * Drops everything, e.g. after a bulk change made outside the cache.
+     */
+    public synchronized void clear() {
+        writeEpoch.incrementAndGet();
+        catalog = null;
+        catalogChanges.clear();
+        entries.clear();
+        insertionOrder.clear();
+        queued.set(0);
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    private void store(Product product) {
+        Entry entry = new Entry(product, System.nanoTime() + ttlNanos);
+        entries.put(product.getId(), entry);
+        insertionOrder.add(entry);
+        if (queued.incrementAndGet() > maxSize * 2) {
+            purgeReplacedEntries();
+        }
+        while (entries.size() > maxSize) {
+            Entry oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            queued.decrementAndGet();
+            if (entries.remove(oldest.product.getId(), oldest)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private void purgeReplacedEntries() {
+        insertionOrder.removeIf(entry -> {
+            if (entries.get(entry.product.getId()) != entry) {
+                queued.decrementAndGet();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    // Called holding this cache's monitor.
+    private void recordCatalogChange(String id, Product replacement) {
+        if (catalog == null) {
+            return;
+        }
+        catalogChanges.put(id, replacement);
+        if (catalogChanges.size() > maxSize) {
+            // As costly to merge as to reload.
+            catalog = null;
+            catalogChanges.clear();
+        }
+    }
+
+    /**
+     * @return The catalog snapshot with every change written since it was
+     *         taken merged in, or null if there is none.
+     */
+    private synchronized Snapshot currentCatalog() {
+        Snapshot snapshot = catalog;
+        if (snapshot == null || catalogChanges.isEmpty()) {
+            return snapshot;
+        }
+        ColumnarProductList base = snapshot.products;
+        BitSet replaced = new BitSet(base.size());
+        for (int row : base.indexOfIds(new ArrayList<>(catalogChanges.keySet()))) {
+            if (row >= 0) {
+                replaced.set(row);
+            }
+        }
+        List<Product> replacements = new ArrayList<>();
+        for (Product product : catalogChanges.values()) {
+            if (product != null) {
+                replacements.add(product);
+            }
+        }
+        replacements.sort(CATALOG_ORDER);
+        catalogChanges.clear();
+
+        // Both are sorted, so one merge keeps the catalog in order.
+        ColumnarProductList products = new ColumnarProductList();
+        int next = 0;
+        for (int row = replaced.nextClearBit(0); row < base.size(); row = replaced.nextClearBit(row + 1)) {
+            Product product = base.get(row);
+            while (next < replacements.size() && CATALOG_ORDER.compare(replacements.get(next), product) < 0) {
+                products.add(replacements.get(next++));
+            }
+            products.add(product);
+        }
+        products.addAll(replacements.subList(next, replacements.size()));
+        if (products.size() > maxSize) {
+            catalog = null;
+        } else {
+            products.trimToSize();
+            catalog = new Snapshot(products, snapshot.expiresAtNanos);
+        }
+        return catalog;
+    }
+
+    private static final class Entry {
+        private final Product product;
+        private final long expiresAtNanos;
+
+        Entry(Product product, long expiresAtNanos) {
+            this.product = product;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos > 0;
+        }
+    }
+
+    private final class Snapshot {
+        // Never modified once published; readers get copies.
+        private final ColumnarProductList products;
+        private final long expiresAtNanos;
+
+        Snapshot(ColumnarProductList products) {
+            this(products, System.nanoTime() + ttlNanos);
+        }
+
+        Snapshot(ColumnarProductList products, long expiresAtNanos) {
+            this.products = products;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos > 0;
+        }
+    }
+}
@@ -16,6 +16,7 @@ public class ProductDialog {
     private final JTextField categoryField = new JTextField();
     private final JTextField descriptionField = new JTextField();
     private final JPanel formPanel;
+    private final long version;
 
     public ProductDialog() {
         this(null);
@@ -50,6 +51,8 @@ public class ProductDialog {
         if (productToEdit != null) {
             populateFields(productToEdit);
         }
+        // Edits carry the version they started from so a concurrent change can be detected on save.
+        version = productToEdit == null ? 0L : productToEdit.getVersion();
     }
 
     private void populateFields(Product product) {
@@ -81,6 +84,6 @@ public class ProductDialog {
             throw new IllegalArgumentException("Price and Quantity cannot be negative.");
         }
 
-        return new Product(id, name, price, quantity, category, description);
+        return new Product(id, name, price, quantity, category, description, version);
     }
 }
\ No newline at end of file
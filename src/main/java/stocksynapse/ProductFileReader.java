@@ -0,0 +1,285 @@
+package stocksynapse;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Streams products out of a CSV or JSON file one record at a time, so that
+ * supplier catalogs of any size can be imported without loading them into
+ * memory.
+ *
+ * CSV files must start with a header row naming the columns (name, price,
+ * quantity, category, description; an id column is optional). JSON files must
+ * contain a top-level array of objects with the same keys. Records that cannot
+ * be parsed are skipped and counted as rejected.
+ */
+public class ProductFileReader implements Iterator<Product>, Closeable {
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final Reader reader;
+    private final CountingInputStream counter;
+    private final long totalBytes;
+    private final boolean json;
+    private JSONTokener tokener;
+    private Map<String, Integer> csvColumns;
+    private long recordNumber;
+    private long rejectedCount;
+    private final List<String> errors = new ArrayList<>();
+    private Product next;
+    private boolean finished;
+
+    /**
+     * Opens a product file. The format is chosen by extension: ".json" is
+     * read as JSON, anything else as CSV.
+     *
+     * @param file The file to read.
+     * @throws IOException if the file cannot be opened.
+     */
+    public ProductFileReader(Path file) throws IOException {
+        this.totalBytes = Files.size(file);
+        this.counter = new CountingInputStream(Files.newInputStream(file));
+        this.reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8), 1 << 16);
+        this.json = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json");
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = json ? readJsonRecord() : readCsvRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finished = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Product next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Product product = next;
+        next = null;
+        return product;
+    }
+
+    /** @return Records skipped because they could not be parsed. */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /** @return Messages for the first few rejected records. */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /** @return How far through the file the reader is, between 0 and 1. */
+    public double getFractionRead() {
+        return totalBytes == 0 ? 1.0 : Math.min(1.0, counter.count / (double) totalBytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Product readJsonRecord() throws IOException {
+        try {
+            if (tokener == null) {
+                tokener = new JSONTokener(reader);
+                if (tokener.nextClean() != '[') {
+                    throw tokener.syntaxError("A JSON import file must contain an array of products");
+                }
+                if (tokener.nextClean() == ']') {
+                    return null;
+                }
+                tokener.back();
+            }
+            while (true) {
+                char c = tokener.nextClean();
+                if (c == ']' || c == 0) {
+                    return null;
+                }
+                if (c != ',') {
+                    tokener.back();
+                }
+                recordNumber++;
+                Object value = tokener.nextValue();
+                if (!(value instanceof JSONObject)) {
+                    reject("expected an object");
+                    continue;
+                }
+                JSONObject obj = (JSONObject) value;
+                try {
+                    return toProduct(obj.optString("id", null), obj.optString("name", ""),
+                            String.valueOf(obj.opt("price")), String.valueOf(obj.opt("quantity")),
+                            obj.optString("category", ""), obj.optString("description", ""));
+                } catch (IllegalArgumentException e) {
+                    reject(e.getMessage());
+                }
+            }
+        } catch (JSONException e) {
+            throw new IOException("Malformed JSON import file: " + e.getMessage(), e);
+        }
+    }
+
+    private Product readCsvRecord() throws IOException {
+        if (csvColumns == null) {
+            List<String> header = readCsvFields();
+            if (header == null) {
+                return null;
+            }
+            csvColumns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                csvColumns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            for (String required : new String[] { "name", "price", "quantity" }) {
+                if (!csvColumns.containsKey(required)) {
+                    throw new IOException("CSV import file is missing the '" + required + "' column.");
+                }
+            }
+        }
+        List<String> fields;
+        while ((fields = readCsvFields()) != null) {
+            recordNumber++;
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue; // Blank line
+            }
+            try {
+                return toProduct(csvField(fields, "id"), csvField(fields, "name"), csvField(fields, "price"),
+                        csvField(fields, "quantity"), csvField(fields, "category"),
+                        csvField(fields, "description"));
+            } catch (IllegalArgumentException e) {
+                reject(e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private String csvField(List<String> fields, String column) {
+        Integer index = csvColumns.get(column);
+        return index == null || index >= fields.size() ? null : fields.get(index);
+    }
+
+    /**
+     * Reads one CSV record, honouring quoted fields that contain commas,
+     * doubled quotes or line breaks.
+     *
+     * @return The record's fields, or null at end of file.
+     */
+    private List<String> readCsvFields() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        while (c != -1) {
+            if (inQuotes) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int peek = reader.read();
+                    if (peek == '"') {
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                        reader.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static Product toProduct(String id, String name, String price, String quantity, String category,
+            String description) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("name is empty");
+        }
+        double parsedPrice;
+        int parsedQuantity;
+        try {
+            parsedPrice = Double.parseDouble(price.trim());
+            parsedQuantity = Integer.parseInt(quantity.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException("invalid price or quantity");
+        }
+        if (parsedPrice < 0 || parsedQuantity < 0) {
+            throw new IllegalArgumentException("price and quantity cannot be negative");
+        }
+        String productId = id == null || id.trim().isEmpty() ? UUID.randomUUID().toString() : id.trim();
+        return new Product(productId, name.trim(), parsedPrice, parsedQuantity,
+                category == null ? "" : category.trim(), description == null ? "" : description.trim());
+    }
+
+    private void reject(String reason) {
+        rejectedCount++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add("Record " + recordNumber + ": " + reason);
+        }
+    }
+
+    /** Tracks bytes consumed so progress can be reported against the file size. */
+    private static final class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
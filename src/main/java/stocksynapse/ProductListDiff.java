@@ -0,0 +1,189 @@
+package stocksynapse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The row-level difference between two ordered product lists, keyed by
+ * product ID. Applying the deletions, then the insertions, then the updates
+ * to the old list turns it into the new one, which lets
+ * {@link ProductTableModel} fire fine-grained table events instead of
+ * replacing every row.
+ *
+ * A product whose position changed relative to its neighbours (for example
+ * because it was renamed) shows up as a deletion plus an insertion. The
+ * products that keep their relative order are chosen as a longest increasing
+ * subsequence, so the number of such moves is as small as possible.
+ *
+ * Computing a diff does not touch Swing and can run on a background thread.
+ */
+public class ProductListDiff {
+
+    private final int oldSize;
+    private final List<Product> newRows;
+    // Indices into the old list, ascending.
+    private final int[] deletedRows;
+    // Indices into the new list, ascending.
+    private final int[] insertedRows;
+    // Indices into the new list, ascending.
+    private final int[] updatedRows;
+
+    private ProductListDiff(int oldSize, List<Product> newRows, int[] deletedRows, int[] insertedRows,
+            int[] updatedRows) {
+        this.oldSize = oldSize;
+        this.newRows = newRows;
+        this.deletedRows = deletedRows;
+        this.insertedRows = insertedRows;
+        this.updatedRows = updatedRows;
+    }
+
+    /**
+     * Computes the changes that turn {@code oldRows} into {@code newRows}.
+     * Runs in O(n) when the surviving rows keep their order, and O(n log n)
+     * otherwise.
+     *
+     * @param oldRows The rows currently displayed.
+     * @param newRows The rows to display instead.
+     * @return The difference between the two lists.
+     */
+    public static ProductListDiff compute(List<Product> oldRows, List<Product> newRows) {
+        Map<String, Integer> newIndexById = new HashMap<>(newRows.size() * 4 / 3 + 1);
+        for (int i = 0; i < newRows.size(); i++) {
+            newIndexById.put(newRows.get(i).getId(), i);
+        }
+
+        // For every old row, its index in the new list, or -1 if it was removed.
+        int[] target = new int[oldRows.size()];
+        boolean ordered = true;
+        int last = -1;
+        for (int i = 0; i < oldRows.size(); i++) {
+            Integer newIndex = newIndexById.get(oldRows.get(i).getId());
+            target[i] = newIndex == null ? -1 : newIndex;
+            if (target[i] >= 0) {
+                ordered &= target[i] > last;
+                last = target[i];
+            }
+        }
+        boolean[] kept = ordered ? keepAllPresent(target) : longestIncreasingRun(target);
+
+        boolean[] matched = new boolean[newRows.size()];
+        int[] deleted = new int[oldRows.size()];
+        int deletedCount = 0;
+        int[] updated = new int[newRows.size()];
+        int updatedCount = 0;
+        for (int i = 0; i < oldRows.size(); i++) {
+            if (!kept[i]) {
+                deleted[deletedCount++] = i;
+            } else {
+                matched[target[i]] = true;
+                if (!oldRows.get(i).equals(newRows.get(target[i]))) {
+                    updated[updatedCount++] = target[i];
+                }
+            }
+        }
+        int[] inserted = new int[newRows.size()];
+        int insertedCount = 0;
+        for (int j = 0; j < newRows.size(); j++) {
+            if (!matched[j]) {
+                inserted[insertedCount++] = j;
+            }
+        }
+        Arrays.sort(updated, 0, updatedCount);
+        return new ProductListDiff(oldRows.size(), newRows, Arrays.copyOf(deleted, deletedCount),
+                Arrays.copyOf(inserted, insertedCount), Arrays.copyOf(updated, updatedCount));
+    }
+
+    private static boolean[] keepAllPresent(int[] target) {
+        boolean[] kept = new boolean[target.length];
+        for (int i = 0; i < target.length; i++) {
+            kept[i] = target[i] >= 0;
+        }
+        return kept;
+    }
+
+    /**
+     * Marks the old rows forming a longest strictly increasing subsequence of
+     * new-list indices (patience sorting with back-pointers).
+     */
+    private static boolean[] longestIncreasingRun(int[] target) {
+        int n = target.length;
+        int[] tails = new int[n]; // Old-row index ending the best run of each length
+        int[] previous = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            if (target[i] < 0) {
+                continue;
+            }
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (target[tails[mid]] < target[i]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            previous[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            if (lo == length) {
+                length++;
+            }
+        }
+        boolean[] kept = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            kept[i] = true;
+        }
+        return kept;
+    }
+
+    /** @return The size of the list this diff was computed against. */
+    public int getOldSize() {
+        return oldSize;
+    }
+
+    public List<Product> getNewRows() {
+        return newRows;
+    }
+
+    public int[] getDeletedRows() {
+        return deletedRows;
+    }
+
+    public int[] getInsertedRows() {
+        return insertedRows;
+    }
+
+    public int[] getUpdatedRows() {
+        return updatedRows;
+    }
+
+    /** @return The total number of deleted, inserted and updated rows. */
+    public int getChangeCount() {
+        return deletedRows.length + insertedRows.length + updatedRows.length;
+    }
+
+    public boolean isEmpty() {
+        return getChangeCount() == 0;
+    }
+
+    /**
+     * Groups ascending indices into contiguous [first, last] ranges.
+     */
+    static List<int[]> toRanges(int[] rows) {
+        List<int[]> ranges = new ArrayList<>();
+        int i = 0;
+        while (i < rows.length) {
+            int start = i;
+            while (i + 1 < rows.length && rows[i + 1] == rows[i] + 1) {
+                i++;
+            }
+            ranges.add(new int[] { rows[start], rows[i] });
+            i++;
+        }
+        return ranges;
+    }
+}
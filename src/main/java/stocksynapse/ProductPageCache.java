@@ -0,0 +1,250 @@
+package stocksynapse;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * Holds a bounded window of product pages for the lazy mode of
+ * {@link ProductTableModel}. Pages are fetched on a background thread as the
+ * table asks for rows, and only the most recently used pages are kept, so
+ * memory depends on what is on screen rather than on the catalog size.
+ *
+ * Requests wait in a queue no longer than the page window, and the newest is
+ * loaded first. When fast scrolling overflows the queue, the oldest request
+ * is dropped, since its rows have most likely scrolled out of view; the page
+ * is requested again if the table asks for it later.
+ *
+ * All methods except the loader task must be called on the Event Dispatch Thread.
+ */
+class ProductPageCache {
+
+    // Walking forward this many pages with keyset queries is cheaper than one OFFSET scan.
+    private static final int MAX_KEYSET_WALK = 4;
+    // Page ends kept per resident page; the ones farthest from the page being read are dropped first.
+    private static final int PAGE_ENDS_PER_PAGE = 4;
+
+    private final InventoryService inventoryService;
+    private final int pageSize;
+    private final Map<Integer, List<Product>> pages;
+    // Last product of each page seen so far: the keyset cursor for the following page.
+    // Only used on the loader thread, and only valid for the query of cursorGeneration.
+    private final TreeMap<Integer, Product> pageEnds = new TreeMap<>();
+    private int cursorGeneration;
+    private final int maxPageEnds;
+    private final Set<Integer> pending = new HashSet<>();
+    // Pages waiting to load, newest first. Added to and trimmed on the EDT, taken by the loader thread.
+    private final LinkedBlockingDeque<PageRequest> requests;
+    private final AtomicBoolean loaderScheduled = new AtomicBoolean();
+    private final ExecutorService loader;
+    private final BiConsumer<Integer, Integer> rowsLoaded;
+    private int rowCount;
+    private int generation;
+    // Each request carries the query it was made with, so the loader never reads this field.
+    private ProductQuery query = ProductQuery.DEFAULT;
+
+    /**
+     * @param inventoryService The service to fetch pages from.
+     * @param pageSize         Rows fetched per query.
+     * @param maxPages         Pages kept in memory at once.
+     * @param rowsLoaded       Called on the EDT with the first and last row of each newly loaded page.
+     */
+    ProductPageCache(InventoryService inventoryService, int pageSize, int maxPages,
+            BiConsumer<Integer, Integer> rowsLoaded) {
+        this.inventoryService = inventoryService;
+        this.pageSize = pageSize;
+        this.rowsLoaded = rowsLoaded;
+        this.maxPageEnds = maxPages * PAGE_ENDS_PER_PAGE;
+        this.requests = new LinkedBlockingDeque<>(maxPages);
+        this.pages = new LinkedHashMap<>(maxPages * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Product>> eldest) {
+                return size() > maxPages;
+            }
+        };
+        this.loader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "stocksynapse-page-loader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Drops every loaded page and starts over with a new row count.
+     */
+    void reset(int newRowCount) {
+        reset(newRowCount, query);
+    }
+
+    /**
+     * Drops every loaded page and starts over with a new sort order or filter.
+     *
+     * @param newRowCount The number of products matching the new query.
+     * @param newQuery    The order and filters pages are read with.
+     */
+    void reset(int newRowCount, ProductQuery newQuery) {
+        query = newQuery;
+        generation++;
+        rowCount = newRowCount;
+        pages.clear();
+        pending.clear();
+        requests.clear();
+    }
+
+    /**
+     * Returns the product at a row if its page is loaded; otherwise schedules
+     * the page for loading and returns null.
+     */
+    Product get(int rowIndex) {
+        int page = rowIndex / pageSize;
+        List<Product> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        int offset = rowIndex % pageSize;
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    /**
+     * Replaces a row that is already loaded, e.g. after an edit.
+     */
+    void set(int rowIndex, Product product) {
+        List<Product> rows = pages.get(rowIndex / pageSize);
+        int offset = rowIndex % pageSize;
+        if (rows != null && offset < rows.size()) {
+            rows.set(offset, product);
+        }
+    }
+
+    void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private void requestPage(int page) {
+        if (!pending.add(page)) {
+            return;
+        }
+        PageRequest request = new PageRequest(page, generation, query);
+        while (!requests.offerFirst(request)) {
+            PageRequest dropped = requests.pollLast();
+            if (dropped != null) {
+                pending.remove(dropped.page);
+            }
+        }
+        // At most one loader task is queued; it keeps taking requests until there are none left.
+        if (loaderScheduled.compareAndSet(false, true)) {
+            loader.execute(this::loadRequestedPages);
+        }
+    }
+
+    // Runs on the loader thread.
+    private void loadRequestedPages() {
+        while (true) {
+            PageRequest request = requests.pollFirst();
+            if (request == null) {
+                loaderScheduled.set(false);
+                // A request may have arrived after the poll but before the flag was cleared.
+                if (requests.isEmpty() || !loaderScheduled.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            load(request);
+        }
+    }
+
+    // Runs on the loader thread.
+    private void load(PageRequest request) {
+        int page = request.page;
+        int requestGeneration = request.generation;
+        if (requestGeneration != cursorGeneration) {
+            // The first request since a reset: cursors from the old query would walk the wrong rows.
+            pageEnds.clear();
+            cursorGeneration = requestGeneration;
+        }
+        List<Product> rows;
+        try {
+            rows = fetchPage(page, request.query);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            SwingUtilities.invokeLater(() -> {
+                if (requestGeneration == generation) {
+                    pending.remove(page);
+                }
+            });
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (requestGeneration != generation) {
+                return; // The model was reset while this page was loading.
+            }
+            pending.remove(page);
+            pages.put(page, rows);
+            if (!rows.isEmpty()) {
+                int first = page * pageSize;
+                rowsLoaded.accept(first, Math.min(first + rows.size(), rowCount) - 1);
+            }
+        });
+    }
+
+    // Runs on the loader thread.
+    private List<Product> fetchPage(int page, ProductQuery query) {
+        if (page == 0) {
+            return remember(0, inventoryService.queryProducts(query, null, pageSize));
+        }
+        Entry<Integer, Product> known = pageEnds.floorEntry(page - 1);
+        if (known != null && page - 1 - known.getKey() <= MAX_KEYSET_WALK) {
+            int current = known.getKey() + 1;
+            Product cursor = known.getValue();
+            while (true) {
+                List<Product> rows = remember(current, inventoryService.queryProducts(query, cursor, pageSize));
+                if (current == page || rows.size() < pageSize) {
+                    return current == page ? rows : List.of();
+                }
+                cursor = rows.get(rows.size() - 1);
+                current++;
+            }
+        }
+        return remember(page, inventoryService.queryProductsAt(query, page * pageSize, pageSize));
+    }
+
+    private List<Product> remember(int page, List<Product> rows) {
+        if (!rows.isEmpty()) {
+            pageEnds.put(page, rows.get(rows.size() - 1));
+            while (pageEnds.size() > maxPageEnds) {
+                // Cursors far from where the table is reading are the least likely to be walked from.
+                int first = pageEnds.firstKey();
+                int last = pageEnds.lastKey();
+                pageEnds.remove(page - first > last - page ? first : last);
+            }
+        }
+        return rows;
+    }
+
+    private static final class PageRequest {
+        private final int page;
+        private final int generation;
+        private final ProductQuery query;
+
+        PageRequest(int page, int generation, ProductQuery query) {
+            this.page = page;
+            this.generation = generation;
+            this.query = query;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package stocksynapse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A sort order and set of filters for reading products from storage a page
+ * at a time, so large catalogs can be sorted and filtered by the storage
+ * backend instead of in the table.
+ *
+ * Every sort is on an indexed column with the product ID as a tie-breaker,
+ * which makes the order total and lets pages be fetched with keyset
+ * conditions rather than growing OFFSETs.
+ */
+public class ProductQuery {
+
+    /** The columns products can be sorted by, each backed by an index. */
+    public enum SortColumn {
+        ID("id"),
+        NAME("name"),
+        PRICE("price"),
+        QUANTITY("quantity"),
+        CATEGORY("category");
+
+        private final String column;
+
+        SortColumn(String column) {
+            this.column = column;
+        }
+
+        String getColumn() {
+            return column;
+        }
+    }
+
+    /** Every product, by name. */
+    public static final ProductQuery DEFAULT = new ProductQuery(SortColumn.NAME, true, null, null, null, null);
+
+    private final SortColumn sortColumn;
+    private final boolean ascending;
+    private final String category;
+    private final Integer minQuantity;
+    private final Integer maxQuantity;
+    private final String namePrefix;
+
+    /**
+     * @param sortColumn  The column to order by.
+     * @param ascending   true for ascending order, false for descending.
+     * @param category    Only products in this category, or null for all.
+     * @param minQuantity Only products with at least this much stock, or null.
+     * @param maxQuantity Only products with at most this much stock, or null.
+     * @param namePrefix  Only products whose name starts with this text (ignoring case), or null.
+     */
+    public ProductQuery(SortColumn sortColumn, boolean ascending, String category, Integer minQuantity,
+            Integer maxQuantity, String namePrefix) {
+        if (sortColumn == null) {
+            throw new IllegalArgumentException("Sort column cannot be null.");
+        }
+        if (minQuantity != null && maxQuantity != null && minQuantity > maxQuantity) {
+            throw new IllegalArgumentException("Minimum quantity cannot exceed maximum quantity.");
+        }
+        this.sortColumn = sortColumn;
+        this.ascending = ascending;
+        this.category = category == null || category.isEmpty() ? null : category;
+        this.minQuantity = minQuantity;
+        this.maxQuantity = maxQuantity;
+        this.namePrefix = namePrefix == null || namePrefix.trim().isEmpty() ? null : namePrefix.trim();
+    }
+
+    /**
+     * @return The same filters in a different order.
+     */
+    public ProductQuery withSort(SortColumn newSortColumn, boolean newAscending) {
+        return new ProductQuery(newSortColumn, newAscending, category, minQuantity, maxQuantity, namePrefix);
+    }
+
+    /**
+     * @return The same order with a different category filter.
+     */
+    public ProductQuery withCategory(String newCategory) {
+        return new ProductQuery(sortColumn, ascending, newCategory, minQuantity, maxQuantity, namePrefix);
+    }
+
+    public SortColumn getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Integer getMinQuantity() {
+        return minQuantity;
+    }
+
+    public Integer getMaxQuantity() {
+        return maxQuantity;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    /** @return true if any filter is set, i.e. the query may not return every product. */
+    public boolean isFiltered() {
+        return category != null || minQuantity != null || maxQuantity != null || namePrefix != null;
+    }
+
+    /**
+     * Builds the WHERE clause for the filters and, when {@code after} is
+     * given, the keyset condition for the rows that follow it.
+     *
+     * @param after  The last product of the previous page, or null.
+     * @param params Receives the values for the clause's placeholders, in order.
+     * @return The clause including the WHERE keyword, or an empty string.
+     */
+    String toWhereClause(Product after, List<Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (category != null) {
+            conditions.add("category = ?");
+            params.add(category);
+        }
+        if (minQuantity != null) {
+            conditions.add("quantity >= ?");
+            params.add(minQuantity);
+        }
+        if (maxQuantity != null) {
+            conditions.add("quantity <= ?");
+            params.add(maxQuantity);
+        }
+        if (namePrefix != null) {
+            // A prefix LIKE can use the name index; a leading wildcard could not.
+            conditions.add("name LIKE ? ESCAPE '\\\\'");
+            params.add(namePrefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+        }
+        if (after != null) {
+            String column = sortColumn.getColumn();
+            String comparison = ascending ? ">" : "<";
+            if (sortColumn == SortColumn.ID) {
+                conditions.add("id " + comparison + " ?");
+                params.add(after.getId());
+            } else if (sortValue(after) == null) {
+                // MySQL sorts NULLs first, so ascending the non-null rows all follow and descending none do.
+                conditions.add("(" + column + " IS NULL AND id " + comparison + " ?"
+                        + (ascending ? " OR " + column + " IS NOT NULL)" : ")"));
+                params.add(after.getId());
+            } else {
+                conditions.add("(" + column + " " + comparison + " ? OR (" + column + " = ? AND id " + comparison
+                        + " ?)" + (ascending ? ")" : " OR " + column + " IS NULL)"));
+                Object value = sortValue(after);
+                params.add(value);
+                params.add(value);
+                params.add(after.getId());
+            }
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * @return The ORDER BY clause, with the ID as a tie-breaker.
+     */
+    String toOrderByClause() {
+        String direction = ascending ? " ASC" : " DESC";
+        if (sortColumn == SortColumn.ID) {
+            return " ORDER BY id" + direction;
+        }
+        return " ORDER BY " + sortColumn.getColumn() + direction + ", id" + direction;
+    }
+
+    /**
+     * Tests a product against the filters in memory, the way
+     * {@link #toWhereClause} does in SQL.
+     */
+    boolean matches(Product product) {
+        return (category == null || category.equals(product.getCategory()))
+                && (minQuantity == null || product.getQuantity() >= minQuantity)
+                && (maxQuantity == null || product.getQuantity() <= maxQuantity)
+                && (namePrefix == null || product.getName().regionMatches(true, 0, namePrefix, 0, namePrefix.length()));
+    }
+
+    /**
+     * @return The order of {@link #toOrderByClause()} as a comparator. Text
+     *         compares case-insensitively and nulls sort first, as in MySQL.
+     */
+    Comparator<Product> comparator() {
+        Comparator<Product> order;
+        switch (sortColumn) {
+            case NAME:
+                order = Comparator.comparing(Product::getName, String.CASE_INSENSITIVE_ORDER);
+                break;
+            case PRICE:
+                order = Comparator.comparingDouble(Product::getPrice);
+                break;
+            case QUANTITY:
+                order = Comparator.comparingInt(Product::getQuantity);
+                break;
+            case CATEGORY:
+                order = Comparator.comparing(Product::getCategory,
+                        Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+                break;
+            default:
+                order = (a, b) -> 0;
+                break;
+        }
+        order = order.thenComparing(Product::getId);
+        return ascending ? order : order.reversed();
+    }
+
+    private Object sortValue(Product product) {
+        switch (sortColumn) {
+            case NAME:
+                return product.getName();
+            case PRICE:
+                return product.getPrice();
+            case QUANTITY:
+                return product.getQuantity();
+            case CATEGORY:
+                return product.getCategory();
+            default:
+                return product.getId();
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        ProductQuery that = (ProductQuery) o;
+        return ascending == that.ascending && sortColumn == that.sortColumn
+                && Objects.equals(category, that.category) && Objects.equals(minQuantity, that.minQuantity)
+                && Objects.equals(maxQuantity, that.maxQuantity) && Objects.equals(namePrefix, that.namePrefix);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sortColumn, ascending, category, minQuantity, maxQuantity, namePrefix);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductQuery{" + sortColumn + (ascending ? " ASC" : " DESC")
+                + (category != null ? ", category=" + category : "")
+                + (minQuantity != null ? ", minQuantity=" + minQuantity : "")
+                + (maxQuantity != null ? ", maxQuantity=" + maxQuantity : "")
+                + (namePrefix != null ? ", namePrefix=" + namePrefix : "") + "}";
+    }
+}
@@ -0,0 +1,389 @@
+package stocksynapse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * An in-memory word-prefix index over product names, categories,
+ * descriptions and IDs, so that search-as-you-type does not have to test
+ * every row.
+ *
+ * Each product gets an integer ordinal and every word in its text gets a
+ * posting list of ordinals held in a plain int array. A query matches the
+ * products that contain, for every query word, some word starting with it:
+ * "blu wid" finds "Blue Widget". Words are looked up by prefix in a sorted
+ * term map and the postings are combined in bit sets, so a search costs time
+ * in proportion to the matching postings rather than the catalog size.
+ *
+ * The index is built once from the database and then kept up to date as
+ * InventoryService reports each change. A changed product is given a new
+ * ordinal and its old one is marked dead; dead ordinals are compacted away
+ * once they outnumber the live ones.
+ *
+ * Searches take a shared read lock, so any number of them run at once;
+ * changes and the swap at the end of a build take the write lock.
+ */
+public class ProductSearchIndex implements InventoryListener {
+
+    private final TreeMap<String, IntList> postings = new TreeMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] ids = new String[1024];
+    private final BitSet live = new BitSet();
+    private int nextOrdinal;
+    private int deadCount;
+    private volatile boolean built;
+    // Bumped by every change, so searches can tell when their results are stale.
+    // Only written under the write lock.
+    private volatile long version;
+    // While a build is scanning, the changes reported meanwhile; otherwise null. Guarded by the write lock.
+    private List<Change> changesDuringBuild;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /** @return A counter that changes whenever the indexed products change. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** @return The number of products indexed. */
+    public int size() {
+        readLock.lock();
+        try {
+            return ordinals.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index from a full scan of the catalog. Changes reported
+     * while the scan runs are recorded and applied to the new index, in
+     * order, before it replaces the old one, so none are lost whether or not
+     * the scan saw them. Builds run one at a time.
+     *
+     * @param scan Streams every product to the consumer it is given, e.g.
+     *             {@link InventoryService#forEachProduct}.
+     */
+    public synchronized void build(Consumer<Consumer<Product>> scan) {
+        List<Change> missed = new ArrayList<>();
+        writeLock.lock();
+        try {
+            changesDuringBuild = missed;
+        } finally {
+            writeLock.unlock();
+        }
+        // Build off to the side so searches keep working on the old index meanwhile.
+        ProductSearchIndex fresh = new ProductSearchIndex();
+        try {
+            scan.accept(fresh::add);
+        } catch (RuntimeException | Error e) {
+            writeLock.lock();
+            try {
+                changesDuringBuild = null;
+            } finally {
+                writeLock.unlock();
+            }
+            throw e;
+        }
+
+        writeLock.lock();
+        try {
+            // The scan may or may not have seen these; applying them again in order makes it current either way.
+            for (Change change : missed) {
+                change.applyTo(fresh);
+            }
+            postings.clear();
+            postings.putAll(fresh.postings);
+            ordinals.clear();
+            ordinals.putAll(fresh.ordinals);
+            ids = fresh.ids;
+            live.clear();
+            live.or(fresh.live);
+            nextOrdinal = fresh.nextOrdinal;
+            deadCount = fresh.deadCount;
+            built = true;
+            version++;
+        } finally {
+            changesDuringBuild = null;
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the products matching a query.
+     *
+     * @param query Words to look for; each must be the start of a word in the
+     *              product's name, category, description or ID. Case is ignored.
+     * @return The matches, or null if the query contains no words.
+     */
+    public Matches search(String query) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return null;
+        }
+        readLock.lock();
+        try {
+            BitSet matched = match(words);
+            // Resolved now, under the same lock, since ordinals are renumbered by compaction and builds.
+            String[] matchedIds = new String[matched.cardinality()];
+            int count = 0;
+            for (int ordinal = matched.nextSetBit(0); ordinal >= 0; ordinal = matched.nextSetBit(ordinal + 1)) {
+                matchedIds[count++] = ids[ordinal];
+            }
+            return new Matches(matchedIds);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private BitSet match(List<String> words) {
+        BitSet result = null;
+        for (String word : new TreeSet<>(words)) {
+            BitSet wordMatches = new BitSet(nextOrdinal);
+            for (IntList list : postings.subMap(word, word + Character.MAX_VALUE).values()) {
+                for (int i = 0; i < list.size; i++) {
+                    wordMatches.set(list.values[i]);
+                }
+            }
+            if (result == null) {
+                result = wordMatches;
+            } else {
+                result.and(wordMatches);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        result.and(live);
+        return result;
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        writeLock.lock();
+        try {
+            version++;
+            add(product);
+            recordChange(product.getId(), product);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void productUpdated(Product previous, Product updated) {
+        writeLock.lock();
+        try {
+            version++;
+            remove(updated.getId());
+            add(updated);
+            recordChange(updated.getId(), updated);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void productRemoved(Product product) {
+        writeLock.lock();
+        try {
+            version++;
+            remove(product.getId());
+            recordChange(product.getId(), null);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void recordChange(String id, Product product) {
+        if (changesDuringBuild != null) {
+            changesDuringBuild.add(new Change(id, product));
+        }
+    }
+
+    private void add(Product product) {
+        if (ordinals.containsKey(product.getId())) {
+            remove(product.getId());
+        }
+        int ordinal = nextOrdinal++;
+        if (ordinal == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        ids[ordinal] = product.getId();
+        ordinals.put(product.getId(), ordinal);
+        live.set(ordinal);
+        List<String> words = tokenize(product.getName());
+        words.addAll(tokenize(product.getCategory()));
+        words.addAll(tokenize(product.getDescription()));
+        words.add(product.getId().toLowerCase(Locale.ROOT));
+        String previousWord = null;
+        words.sort(null);
+        for (String word : words) {
+            // Sorted, so repeats of a word are adjacent and are posted once.
+            if (!word.equals(previousWord)) {
+                postings.computeIfAbsent(word, w -> new IntList()).add(ordinal);
+                previousWord = word;
+            }
+        }
+    }
+
+    private void remove(String id) {
+        Integer ordinal = ordinals.remove(id);
+        if (ordinal == null) {
+            return;
+        }
+        ids[ordinal] = null;
+        live.clear(ordinal);
+        if (++deadCount > ordinals.size() && deadCount > 1_000) {
+            compact();
+        }
+    }
+
+    /**
+     * Renumbers the live products from zero and drops dead ordinals from
+     * every posting list, keeping each list in ascending order.
+     */
+    private void compact() {
+        int[] renumbered = new int[nextOrdinal];
+        String[] compactIds = new String[Math.max(1024, ordinals.size() * 2)];
+        int count = 0;
+        for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+            renumbered[ordinal] = count;
+            compactIds[count] = ids[ordinal];
+            ordinals.put(ids[ordinal], count);
+            count++;
+        }
+        Iterator<Map.Entry<String, IntList>> terms = postings.entrySet().iterator();
+        while (terms.hasNext()) {
+            IntList list = terms.next().getValue();
+            int kept = 0;
+            for (int i = 0; i < list.size; i++) {
+                int ordinal = list.values[i];
+                if (live.get(ordinal)) {
+                    list.values[kept++] = renumbered[ordinal];
+                }
+            }
+            list.size = kept;
+            if (kept == 0) {
+                terms.remove();
+            }
+        }
+        ids = compactIds;
+        live.clear();
+        live.set(0, count);
+        nextOrdinal = count;
+        deadCount = 0;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * The result of a search: the IDs of the products that matched when it
+     * ran, in index order. Later changes to the catalog are not reflected;
+     * see {@link #isStale()}.
+     */
+    public final class Matches {
+        private final String[] productIds;
+        private final long indexVersion;
+        // Built on the first call to contains().
+        private Set<String> productIdSet;
+
+        private Matches(String[] productIds) {
+            this.productIds = productIds;
+            this.indexVersion = version;
+        }
+
+        /** @return true if the index has changed since this search, so the matches may be out of date. */
+        public boolean isStale() {
+            return getVersion() != indexVersion;
+        }
+
+        public int size() {
+            return productIds.length;
+        }
+
+        public synchronized boolean contains(String productId) {
+            if (productIdSet == null) {
+                productIdSet = new HashSet<>(Arrays.asList(productIds));
+            }
+            return productIdSet.contains(productId);
+        }
+
+        /**
+         * @param limit The most IDs to return.
+         * @return IDs of matching products, up to the limit, in index order:
+         *         roughly the order the products were added or last changed,
+         *         not by name.
+         */
+        public List<String> getProductIds(int limit) {
+            return new ArrayList<>(Arrays.asList(productIds).subList(0, Math.min(limit, productIds.length)));
+        }
+    }
+
+    /** A change reported during a build: the product as it is now, or null if it was removed. */
+    private static final class Change {
+        private final String id;
+        private final Product product;
+
+        Change(String id, Product product) {
+            this.id = id;
+            this.product = product;
+        }
+
+        void applyTo(ProductSearchIndex index) {
+            if (product == null) {
+                index.remove(id);
+            } else {
+                index.add(product);
+            }
+        }
+    }
+
+    /** A growable array of ints, to avoid boxing millions of postings. */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package stocksynapse;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Where products and the stock movement ledger are kept.
+ * InventoryService holds the business rules, caching and change
+ * notifications, and leaves reading and writing to one of these backends:
+ * {@link MySqlProductStore} for a shared MySQL database, or
+ * {@link EmbeddedProductStore} for a single machine with no database server.
+ * The backend is chosen with STORAGE_BACKEND in local.properties.
+ *
+ * Every write is atomic: it is applied in full, together with its ledger
+ * entries, or not at all. Storage failures are reported as RuntimeExceptions.
+ */
+public interface ProductStore {
+
+    /**
+     * Inserts a new product and, if it has stock, an "ADD" ledger entry.
+     */
+    void addProduct(Product product);
+
+    /**
+     * Inserts a chunk of imported products as one transaction, without
+     * ledger entries.
+     */
+    void addProducts(List<Product> products);
+
+    /**
+     * Saves an edited product if its version still matches, incrementing the
+     * version and recording an "EDIT" ledger entry if the quantity changed.
+     *
+     * @param edited   The new values, with the version they were based on.
+     * @param previous The product as the caller last saw it at that version,
+     *                 or null; lets a backend skip reading the old row.
+     * @return UPDATED with the saved and previous products, CONFLICT with
+     *         the current product, or NOT_FOUND.
+     */
+    UpdateResult updateProduct(Product edited, Product previous);
+
+    /**
+     * Applies stock adjustments and their ledger entries as one transaction.
+     *
+     * @param adjustments The changes, in ledger order.
+     * @param previous    Receives each affected product as it was before.
+     * @return Each affected product with its new quantity, ordered by ID.
+     * @throws IllegalArgumentException if a product does not exist or would
+     *                                  end up with negative stock.
+     */
+    List<Product> adjustQuantities(List<StockAdjustment> adjustments, Map<String, Product> previous);
+
+    /**
+     * @return The deleted product, or null if there was none with that ID.
+     */
+    Product deleteProduct(String id);
+
+    /**
+     * @return The product, or null if not found.
+     */
+    Product getProduct(String id);
+
+    /**
+     * Reads the given products; unknown IDs are skipped.
+     *
+     * @param into Receives each product found, by ID.
+     */
+    void getProducts(Collection<String> ids, Map<String, Product> into);
+
+    /**
+     * Streams every product, ordered by name and then ID, without holding
+     * the whole catalog in memory.
+     */
+    void forEachProduct(Consumer<Product> consumer);
+
+    /**
+     * @return Up to {@code limit} products matching the query that sort after
+     *         {@code after}, or from the start if it is null.
+     */
+    List<Product> queryProducts(ProductQuery query, Product after, int limit);
+
+    /**
+     * @return Up to {@code limit} products matching the query, starting at a row offset.
+     */
+    List<Product> queryProductsAt(ProductQuery query, int offset, int limit);
+
+    /**
+     * @return The number of products matching the query's filters.
+     */
+    int countProducts(ProductQuery query);
+
+    /**
+     * @return The number of products.
+     */
+    int getProductCount();
+
+    /**
+     * @return The distinct non-null categories, sorted.
+     */
+    List<String> getCategories();
+
+    /**
+     * Recomputes the statistics from the stored products.
+     */
+    void seedInventoryStats(InventoryStats stats);
+
+    /**
+     * Streams the ledger entries recorded at or after a point in time, in
+     * the order they were recorded.
+     *
+     * @param sinceMillis The earliest time to include, in epoch milliseconds.
+     */
+    void forEachStockMovement(long sinceMillis, Consumer<StockMovement> consumer);
+
+    /**
+     * @return Connection pool counters, or null if the backend has no pool.
+     */
+    PoolStats getPoolStats();
+
+    /**
+     * Releases the backend's connections or files. Call once on application exit.
+     */
+    void close();
+}
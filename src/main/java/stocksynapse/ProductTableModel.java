@@ -1,7 +1,6 @@
 package stocksynapse;
 
 import javax.swing.table.AbstractTableModel;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -12,16 +11,31 @@ import java.util.List;
  */
 public class ProductTableModel extends AbstractTableModel {
 
-    private final List<Product> products;
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int MAX_RESIDENT_PAGES = 16;
+    // Beyond this many changes one full repaint is cheaper than many small events.
+    private static final int MAX_FINE_GRAINED_CHANGES = 1_000;
+
+    // Held column by column, so a large catalog costs a fraction of the memory of Product objects.
+    private final ColumnarProductList products;
     private final String[] columnNames = { "ID", "Name", "Price", "Quantity", "Category" };
+    // Non-null while the model is in lazy mode; rows then come from here instead of the list.
+    private ProductPageCache pageCache;
+    // Non-null while the model shows a saved catalog snapshot; rows then come from here instead of the list.
+    private List<Product> snapshotRows;
+    // Incremented on every change to the rows, so a diff computed in the background can detect it is stale.
+    private int version;
 
     public ProductTableModel(List<Product> products) {
-        this.products = new ArrayList<>(products);
+        this.products = new ColumnarProductList(products);
     }
 
     @Override
     public int getRowCount() {
-        return products.size();
+        if (isLazy()) {
+            return pageCache.getRowCount();
+        }
+        return snapshotRows != null ? snapshotRows.size() : products.size();
     }
 
     @Override
@@ -43,13 +57,41 @@ public class ProductTableModel extends AbstractTableModel {
         return String.class; // ID, Name, Category
     }
 
+    /**
+     * Displays only a portion of a long UUID for readability. Imported files may carry their own
+     * shorter IDs (SKUs), which are shown whole.
+     */
+    private static String abbreviateId(String id) {
+        return id.length() > 8 ? id.substring(0, 8) + "..." : id;
+    }
+
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        Product product = products.get(rowIndex);
+        if (!isLazy() && !isShowingSnapshot()) {
+            // Read just the cell's column rather than building the whole product.
+            switch (columnIndex) {
+                case 0:
+                    return abbreviateId(products.getId(rowIndex));
+                case 1:
+                    return products.getName(rowIndex);
+                case 2:
+                    return products.getPrice(rowIndex);
+                case 3:
+                    return products.getQuantity(rowIndex);
+                case 4:
+                    return products.getCategory(rowIndex);
+                default:
+                    return null;
+            }
+        }
+        Product product = getProductAt(rowIndex);
+        if (product == null) {
+            // Lazy mode: the row's page is still being fetched.
+            return columnIndex == 1 ? "Loading..." : null;
+        }
         switch (columnIndex) {
             case 0:
-                // Display only a portion of the long UUID for readability
-                return product.getId().substring(0, 8) + "...";
+                return abbreviateId(product.getId());
             case 1:
                 return product.getName();
             case 2:
@@ -65,25 +107,204 @@ public class ProductTableModel extends AbstractTableModel {
 
     /**
      * Refreshes the table data with an updated list of products.
-     * Notifies the JTable that the data has changed so it can repaint itself.
+     * Only the rows that were inserted, updated or deleted are reported to the
+     * JTable, so selection and sorting survive and the cost is proportional
+     * to the number of changes rather than the size of the table.
      * 
      * @param newProducts The new list of products to display.
      */
     public void refresh(List<Product> newProducts) {
+        if (isLazy() || isShowingSnapshot() || products.isEmpty()) {
+            replaceAll(newProducts);
+            return;
+        }
+        applyDiff(ProductListDiff.compute(products, newProducts), version);
+    }
+
+    /**
+     * @return A copy of the current rows for computing a diff off the EDT.
+     *         A catalog snapshot is returned as is, since it never changes.
+     */
+    public List<Product> snapshot() {
+        return isShowingSnapshot() ? snapshotRows : new ColumnarProductList(products);
+    }
+
+    /**
+     * @return A counter that changes whenever the rows change.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Applies a diff computed against an earlier {@link #snapshot()}, firing
+     * fine-grained row events. Very large diffs fall back to a full refresh.
+     * 
+     * @param diff            The changes to apply.
+     * @param expectedVersion The {@link #getVersion()} value when the snapshot was taken.
+     * @return false if the rows changed since the snapshot, in which case nothing was applied.
+     */
+    public boolean applyDiff(ProductListDiff diff, int expectedVersion) {
+        if (isLazy() || isShowingSnapshot() || expectedVersion != version || diff.getOldSize() != products.size()) {
+            return false;
+        }
+        if (diff.isEmpty()) {
+            return true;
+        }
+        if (diff.getChangeCount() > Math.max(MAX_FINE_GRAINED_CHANGES, products.size() / 4)) {
+            replaceAll(diff.getNewRows());
+            return true;
+        }
+        version++;
+        List<Product> newRows = diff.getNewRows();
+
+        // Delete from the bottom up so earlier ranges keep their indices.
+        List<int[]> deleted = ProductListDiff.toRanges(diff.getDeletedRows());
+        for (int r = deleted.size() - 1; r >= 0; r--) {
+            int[] range = deleted.get(r);
+            products.subList(range[0], range[1] + 1).clear();
+            fireTableRowsDeleted(range[0], range[1]);
+        }
+        // Insert top down; every row before an insertion point is already in its final position.
+        for (int[] range : ProductListDiff.toRanges(diff.getInsertedRows())) {
+            products.addAll(range[0], newRows.subList(range[0], range[1] + 1));
+            fireTableRowsInserted(range[0], range[1]);
+        }
+        for (int[] range : ProductListDiff.toRanges(diff.getUpdatedRows())) {
+            for (int i = range[0]; i <= range[1]; i++) {
+                products.set(i, newRows.get(i));
+            }
+            fireTableRowsUpdated(range[0], range[1]);
+        }
+        return true;
+    }
+
+    private void replaceAll(List<Product> newProducts) {
+        disableLazyLoading();
+        snapshotRows = null;
+        version++;
         this.products.clear();
         this.products.addAll(newProducts);
         // This is a crucial step that tells the JTable to update its view
         fireTableDataChanged();
     }
 
+    /**
+     * Switches the model to lazy mode, where rows are fetched from the service
+     * in pages as the JTable asks for them. Only a bounded window of pages is
+     * kept in memory, so large catalogs never have to be loaded in full.
+     * Calling this again re-reads the catalog from the start.
+     * 
+     * @param inventoryService The service to fetch pages from.
+     * @param rowCount         The number of products matching the query.
+     * @param query            The order and filters applied by the database.
+     */
+    public void refreshLazy(InventoryService inventoryService, int rowCount, ProductQuery query) {
+        snapshotRows = null;
+        if (pageCache == null) {
+            pageCache = new ProductPageCache(inventoryService, DEFAULT_PAGE_SIZE, MAX_RESIDENT_PAGES,
+                    (first, last) -> fireTableRowsUpdated(first, last));
+        }
+        version++;
+        products.clear();
+        pageCache.reset(rowCount, query);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Shows the products saved by an earlier session until the catalog has
+     * been read. The rows are read from the snapshot as the JTable asks for
+     * them, so this is instant whatever the size of the catalog.
+     * 
+     * @param rows The saved products, which must not change.
+     */
+    public void showSnapshot(List<Product> rows) {
+        disableLazyLoading();
+        version++;
+        products.clear();
+        snapshotRows = rows;
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return true if the rows come from a saved catalog snapshot.
+     */
+    public boolean isShowingSnapshot() {
+        return snapshotRows != null;
+    }
+
+    /**
+     * Takes over the snapshot's rows, decoded off the EDT, as ordinary rows so
+     * a diff computed against them can be applied. The table does not change.
+     * 
+     * @param decodedRows     A copy of the rows {@link #snapshot()} returned.
+     * @param expectedVersion The {@link #getVersion()} value when the snapshot was taken.
+     * @return false if the rows changed since, in which case nothing was done.
+     */
+    public boolean adoptSnapshot(List<Product> decodedRows, int expectedVersion) {
+        if (!isShowingSnapshot() || expectedVersion != version || decodedRows.size() != snapshotRows.size()) {
+            return false;
+        }
+        products.addAll(decodedRows);
+        snapshotRows = null;
+        return true;
+    }
+
+    /**
+     * Turns a snapshot's rows into ordinary rows before one is changed.
+     */
+    private void materializeSnapshot() {
+        if (isShowingSnapshot()) {
+            products.addAll(snapshotRows);
+            snapshotRows = null;
+        }
+    }
+
+    /**
+     * @param column A column index of this model.
+     * @return The database column that sorts like the given table column.
+     */
+    public static ProductQuery.SortColumn getSortColumn(int column) {
+        switch (column) {
+            case 0:
+                return ProductQuery.SortColumn.ID;
+            case 2:
+                return ProductQuery.SortColumn.PRICE;
+            case 3:
+                return ProductQuery.SortColumn.QUANTITY;
+            case 4:
+                return ProductQuery.SortColumn.CATEGORY;
+            default:
+                return ProductQuery.SortColumn.NAME;
+        }
+    }
+
+    /**
+     * @return true if rows are being loaded on demand rather than held in full.
+     */
+    public boolean isLazy() {
+        return pageCache != null;
+    }
+
+    private void disableLazyLoading() {
+        if (pageCache != null) {
+            pageCache.shutdown();
+            pageCache = null;
+        }
+    }
+
     /**
      * Returns the full Product object for a given row.
+     * In lazy mode this is null until the row's page has been loaded.
      * 
      * @param rowIndex The row index.
      * @return The Product at that row.
      */
     public Product getProductAt(int rowIndex) {
-        return products.get(rowIndex);
+        if (isLazy()) {
+            return pageCache.get(rowIndex);
+        }
+        return snapshotRows != null ? snapshotRows.get(rowIndex) : products.get(rowIndex);
     }
 
     /**
@@ -93,7 +314,13 @@ public class ProductTableModel extends AbstractTableModel {
      * @param product  The new product data.
      */
     public void updateProduct(int rowIndex, Product product) {
-        products.set(rowIndex, product);
+        if (isLazy()) {
+            pageCache.set(rowIndex, product);
+        } else {
+            materializeSnapshot();
+            version++;
+            products.set(rowIndex, product);
+        }
         fireTableRowsUpdated(rowIndex, rowIndex);
     }
 
@@ -103,6 +330,14 @@ public class ProductTableModel extends AbstractTableModel {
      * @param rowIndex The row index to remove.
      */
     public void removeProduct(int rowIndex) {
+        if (isLazy()) {
+            // Every later row shifts up a position, so the loaded pages are no longer valid.
+            pageCache.reset(pageCache.getRowCount() - 1);
+            fireTableDataChanged();
+            return;
+        }
+        materializeSnapshot();
+        version++;
         products.remove(rowIndex);
         fireTableRowsDeleted(rowIndex, rowIndex);
     }
@@ -0,0 +1,105 @@
+package stocksynapse;
+
+import java.util.List;
+import java.util.function.Consumer;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+
+/**
+ * A RowSorter for the lazy mode of {@link ProductTableModel}, where the rows
+ * already arrive sorted from the database. It never reorders rows itself:
+ * a header click just records the new sort key, so the header shows the
+ * usual arrow, and hands it to a callback that re-queries the catalog.
+ */
+class QueryRowSorter extends RowSorter<ProductTableModel> {
+
+    private final ProductTableModel model;
+    private final Consumer<SortKey> sortChanged;
+    private List<SortKey> sortKeys = List.of();
+
+    /**
+     * @param model       The table model.
+     * @param sortChanged Called on the EDT with the new sort key after a header click.
+     */
+    QueryRowSorter(ProductTableModel model, Consumer<SortKey> sortChanged) {
+        this.model = model;
+        this.sortChanged = sortChanged;
+    }
+
+    @Override
+    public ProductTableModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        SortOrder order = SortOrder.ASCENDING;
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+                && sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING) {
+            order = SortOrder.DESCENDING;
+        }
+        SortKey key = new SortKey(column, order);
+        setSortKeys(List.of(key));
+        sortChanged.accept(key);
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = keys == null ? List.of() : List.copyOf(keys);
+        if (!newKeys.equals(sortKeys)) {
+            sortKeys = newKeys;
+            fireSortOrderChanged();
+        }
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        return index;
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        return index;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    // The database has already ordered the rows, so model changes need no work here.
+
+    @Override
+    public void modelStructureChanged() {
+    }
+
+    @Override
+    public void allRowsChanged() {
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+    }
+}
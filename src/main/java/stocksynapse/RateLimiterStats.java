@@ -0,0 +1,59 @@
+package stocksynapse;
+
+/**
+ * An immutable snapshot of a {@link TokenBucketRateLimiter}'s queue and wait
+ * times, for sizing the API quota.
+ */
+public class RateLimiterStats {
+    private final int queueDepth;
+    private final double availableTokens;
+    private final long acquired;
+    private final long delayed;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+
+    public RateLimiterStats(int queueDepth, double availableTokens, long acquired, long delayed, long totalWaitNanos,
+            long maxWaitNanos) {
+        this.queueDepth = queueDepth;
+        this.availableTokens = availableTokens;
+        this.acquired = acquired;
+        this.delayed = delayed;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    /** @return Requests currently waiting for a token. */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public double getAvailableTokens() {
+        return availableTokens;
+    }
+
+    /** @return Requests that have been let through. */
+    public long getAcquired() {
+        return acquired;
+    }
+
+    /** @return Requests that had to queue before being let through. */
+    public long getDelayed() {
+        return delayed;
+    }
+
+    /** @return Average time a request waited for a token, in milliseconds. */
+    public double getAverageWaitMillis() {
+        return acquired == 0 ? 0.0 : totalWaitNanos / (double) acquired / 1_000_000.0;
+    }
+
+    /** @return Longest time a request waited for a token, in milliseconds. */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RateLimiterStats{queued=%d, tokens=%.1f, acquired=%d, delayed=%d, avgWait=%.0fms, maxWait=%.0fms}",
+                queueDepth, availableTokens, acquired, delayed, getAverageWaitMillis(), getMaxWaitMillis());
+    }
+}
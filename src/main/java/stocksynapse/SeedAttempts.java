@@ -0,0 +1,54 @@
+package stocksynapse;
+
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Seeds live figures from a read that cannot tell which concurrent changes
+ * it saw, for figures kept as running totals, where a change applied twice
+ * or not at all is not corrected by the next one.
+ *
+ * Each attempt loads off to the side and is published only if the owner's
+ * change counter has not moved meanwhile. If every attempt races with a
+ * change, nothing is published: an owner that was never seeded stays
+ * unseeded and is seeded again on its next read, and one that was keeps the
+ * figures its incremental updates have maintained.
+ */
+final class SeedAttempts {
+
+    static final int MAX_ATTEMPTS = 3;
+
+    /** Loads a complete set of figures, without holding the owner's monitor. */
+    interface Loader<T, E extends Exception> {
+        T load() throws E;
+    }
+
+    private SeedAttempts() {
+    }
+
+    /**
+     * @param owner   The monitor guarding the owner's figures and change counter.
+     * @param version Reads the owner's change counter; called holding the monitor.
+     * @param loader  Loads the figures.
+     * @param publish Replaces the owner's figures; called holding the monitor.
+     * @return Whether the figures were published.
+     * @throws E if loading fails.
+     */
+    static <T, E extends Exception> boolean seed(Object owner, LongSupplier version, Loader<T, E> loader,
+            Consumer<T> publish) throws E {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            long startVersion;
+            synchronized (owner) {
+                startVersion = version.getAsLong();
+            }
+            T loaded = loader.load();
+            synchronized (owner) {
+                if (version.getAsLong() == startVersion) {
+                    publish.accept(loaded);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
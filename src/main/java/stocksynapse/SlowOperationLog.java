@@ -0,0 +1,111 @@
+package stocksynapse;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a line for every database statement, Gemini request or background
+ * task that took longer than a threshold, with enough detail (the SQL and
+ * its parameters, the HTTP status, the task name) to find the culprit
+ * without a profiler. Work on the event dispatch thread has its own, lower
+ * threshold, since anything over a few frames makes the window stutter.
+ *
+ * Lines are written by a background thread, so logging never slows down
+ * the operation being logged.
+ *
+ * Keys read from local.properties (all optional): SLOW_OPERATION_THRESHOLD_MS
+ * (0 disables the log), SLOW_EDT_THRESHOLD_MS and SLOW_OPERATION_LOG_FILE
+ * (empty writes to standard error only).
+ */
+public final class SlowOperationLog {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static volatile SlowOperationLog instance = new SlowOperationLog(new Properties());
+
+    private final long thresholdNanos;
+    private final long edtThresholdNanos;
+    private final Path file;
+    private final ExecutorService writer;
+
+    private SlowOperationLog(Properties config) {
+        long thresholdMillis = LocalProperties.getLong(config, "SLOW_OPERATION_THRESHOLD_MS", 1_000L);
+        long edtThresholdMillis = LocalProperties.getLong(config, "SLOW_EDT_THRESHOLD_MS", 100L);
+        this.thresholdNanos = thresholdMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(thresholdMillis) : Long.MAX_VALUE;
+        this.edtThresholdNanos = thresholdMillis > 0 && edtThresholdMillis > 0
+                ? TimeUnit.MILLISECONDS.toNanos(edtThresholdMillis)
+                : Long.MAX_VALUE;
+        String fileName = config.getProperty("SLOW_OPERATION_LOG_FILE", "slow-operations.log").trim();
+        this.file = fileName.isEmpty() ? null : Paths.get(fileName);
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "stocksynapse-slow-log");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Applies the settings from local.properties. Call once at startup,
+     * before the services are created.
+     */
+    public static void configure(Properties config) {
+        SlowOperationLog previous = instance;
+        instance = new SlowOperationLog(config);
+        previous.writer.shutdown();
+    }
+
+    /** @return Whether an operation that took this long should be logged; cheap enough for every call. */
+    public static boolean isSlow(long durationNanos) {
+        return durationNanos >= instance.thresholdNanos;
+    }
+
+    /** @return Whether work on the event dispatch thread that took this long should be logged. */
+    public static boolean isSlowOnEdt(long durationNanos) {
+        return durationNanos >= instance.edtThresholdNanos;
+    }
+
+    /**
+     * Logs an operation. Callers check {@link #isSlow} or
+     * {@link #isSlowOnEdt} first, so the detail is only built for the few
+     * operations that are logged.
+     *
+     * @param kind          What ran, e.g. "SQL" or "HTTP".
+     * @param durationNanos How long it took.
+     * @param detail        What to look at, e.g. the statement and its parameters.
+     */
+    public static void log(String kind, long durationNanos, String detail) {
+        SlowOperationLog log = instance;
+        String line = String.format("%s %-6s %8.1f ms [%s] %s", LocalDateTime.now().format(TIMESTAMP), kind,
+                durationNanos / 1_000_000.0, Thread.currentThread().getName(), detail);
+        try {
+            log.writer.execute(() -> log.write(line));
+        } catch (RuntimeException e) {
+            // Reconfigured or shutting down; the line is not worth failing the operation for.
+        }
+    }
+
+    private void write(String line) {
+        System.err.println("Slow operation: " + line);
+        if (file == null) {
+            return;
+        }
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            out.write(line);
+            out.write(System.lineSeparator());
+        } catch (IOException e) {
+            System.err.println("Could not write to " + file + ": " + e.getMessage());
+        }
+    }
+}
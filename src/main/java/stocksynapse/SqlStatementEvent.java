@@ -0,0 +1,36 @@
+package stocksynapse;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for one SQL statement run through the
+ * {@link ConnectionPool}. For a query the event lasts until its result set
+ * is closed, so it includes fetching the rows.
+ */
+@Name("stocksynapse.SqlStatement")
+@Label("SQL Statement")
+@Category({ "Stock Synapse", "Database" })
+@Description("A statement executed against MySQL")
+final class SqlStatementEvent extends Event {
+
+    @Label("Statement Type")
+    @Description("The SQL keyword the statement starts with, e.g. SELECT or UPDATE")
+    String statementType;
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Rows")
+    @Description("Rows read by a query, or rows changed by an update or batch; -1 if unknown")
+    long rows;
+
+    @Label("Batch Size")
+    int batchSize;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,299 @@
+package stocksynapse;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Wraps the statements handed out by {@link ConnectionPool} so that every
+ * execution is recorded as a {@link SqlStatementEvent} and, when it crosses
+ * the threshold, written to the {@link SlowOperationLog} together with its
+ * parameters.
+ *
+ * A query is timed until its result set is closed (or its statement, if
+ * the result set is left open), so the event includes reading the rows and
+ * its row count is the number of rows the caller actually read.
+ */
+final class StatementTracer {
+
+    private static final int MAX_LOGGED_VALUE_LENGTH = 200;
+
+    private StatementTracer() {
+    }
+
+    /**
+     * @param statement The statement to trace.
+     * @param sql       Its SQL, or null for a plain {@link Statement} that is given SQL on each execute.
+     */
+    static Statement trace(Statement statement, String sql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return (Statement) Proxy.newProxyInstance(StatementTracer.class.getClassLoader(), new Class<?>[] { type },
+                new StatementHandler(statement, sql));
+    }
+
+    /** Records parameters and batch size as they are set, and times each execute call. */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+        private Object[] parameters = new Object[0];
+        private int batchSize;
+        private Execution openQuery;
+
+        StatementHandler(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    finishOpenQuery();
+                    break;
+                case "clearParameters":
+                    Arrays.fill(parameters, null);
+                    break;
+                case "addBatch":
+                    batchSize++;
+                    break;
+                case "clearBatch":
+                    batchSize = 0;
+                    break;
+                default:
+                    if (name.startsWith("execute")) {
+                        return execute(proxy, method, args);
+                    }
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        recordParameter((Integer) args[0], args[1]);
+                    }
+                    break;
+            }
+            return invokeTarget(statement, method, args);
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+            // A new execution implicitly closes the previous result set.
+            finishOpenQuery();
+            String executedSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            Execution execution = new Execution(executedSql, "executeBatch".equals(method.getName()) ? batchSize : 0,
+                    parameters);
+            Object result;
+            try {
+                result = invokeTarget(statement, method, args);
+            } catch (Throwable e) {
+                execution.finish(-1, true);
+                throw e;
+            } finally {
+                if ("executeBatch".equals(method.getName()) || "executeLargeBatch".equals(method.getName())) {
+                    batchSize = 0;
+                }
+            }
+
+            if (result instanceof ResultSet) {
+                openQuery = execution;
+                return Proxy.newProxyInstance(StatementTracer.class.getClassLoader(),
+                        new Class<?>[] { ResultSet.class }, new ResultSetHandler((ResultSet) result, proxy, this));
+            }
+            execution.finish(rowsOf(result), false);
+            return result;
+        }
+
+        private long rowsOf(Object result) throws Exception {
+            if (result instanceof Integer || result instanceof Long) {
+                return ((Number) result).longValue();
+            }
+            if (result instanceof int[]) {
+                long rows = 0;
+                for (int count : (int[]) result) {
+                    rows += Math.max(count, 0);
+                }
+                return rows;
+            }
+            if (result instanceof long[]) {
+                long rows = 0;
+                for (long count : (long[]) result) {
+                    rows += Math.max(count, 0);
+                }
+                return rows;
+            }
+            if (Boolean.FALSE.equals(result)) {
+                return statement.getUpdateCount();
+            }
+            return -1;
+        }
+
+        private void recordParameter(int index, Object value) {
+            if (index < 1) {
+                return;
+            }
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+        }
+
+        void finishQuery(Execution execution) {
+            if (openQuery == execution) {
+                openQuery = null;
+            }
+            execution.finish(execution.rowsRead, false);
+        }
+
+        private void finishOpenQuery() {
+            if (openQuery != null) {
+                Execution query = openQuery;
+                openQuery = null;
+                query.finish(query.rowsRead, false);
+            }
+        }
+    }
+
+    /** Counts the rows read from a traced query and ends its event when closed. */
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final Object statementProxy;
+        private final StatementHandler owner;
+        private final Execution execution;
+
+        ResultSetHandler(ResultSet resultSet, Object statementProxy, StatementHandler owner) {
+            this.resultSet = resultSet;
+            this.statementProxy = statementProxy;
+            this.owner = owner;
+            this.execution = owner.openQuery;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    Object hasRow = invokeTarget(resultSet, method, args);
+                    if (Boolean.TRUE.equals(hasRow)) {
+                        execution.rowsRead++;
+                    }
+                    return hasRow;
+                case "close":
+                    try {
+                        return invokeTarget(resultSet, method, args);
+                    } finally {
+                        owner.finishQuery(execution);
+                    }
+                case "getStatement":
+                    return statementProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return invokeTarget(resultSet, method, args);
+            }
+        }
+    }
+
+    /** One execution of a statement, from execute until its rows are read. */
+    private static final class Execution {
+        private final String sql;
+        private final int batchSize;
+        private final Object[] parameters;
+        private final SqlStatementEvent event = new SqlStatementEvent();
+        private final long start = System.nanoTime();
+        private long rowsRead;
+        private boolean finished;
+
+        Execution(String sql, int batchSize, Object[] parameters) {
+            this.sql = sql;
+            this.batchSize = batchSize;
+            this.parameters = parameters;
+            event.begin();
+        }
+
+        void finish(long rows, boolean failed) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long elapsed = System.nanoTime() - start;
+            event.end();
+            if (event.shouldCommit()) {
+                event.statementType = statementType(sql);
+                event.sql = sql;
+                event.rows = rows;
+                event.batchSize = batchSize;
+                event.failed = failed;
+                event.commit();
+            }
+            if (SlowOperationLog.isSlow(elapsed)) {
+                // One line per statement, however the SQL was laid out in the source.
+                StringBuilder detail = new StringBuilder(String.valueOf(sql).replaceAll("\\s+", " ").trim());
+                if (batchSize > 0) {
+                    detail.append(" batch=").append(batchSize);
+                } else {
+                    // Parameters are only meaningful for a single execution, not for a batch.
+                    appendParameters(detail, parameters);
+                }
+                detail.append(" rows=").append(rows);
+                if (failed) {
+                    detail.append(" FAILED");
+                }
+                SlowOperationLog.log("SQL", elapsed, detail.toString());
+            }
+        }
+    }
+
+    private static void appendParameters(StringBuilder detail, Object[] parameters) {
+        int count = parameters.length;
+        while (count > 0 && parameters[count - 1] == null) {
+            count--;
+        }
+        if (count == 0) {
+            return;
+        }
+        detail.append(" params=[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                detail.append(", ");
+            }
+            String value = String.valueOf(parameters[i]);
+            detail.append(value.length() > MAX_LOGGED_VALUE_LENGTH
+                    ? value.substring(0, MAX_LOGGED_VALUE_LENGTH) + "..."
+                    : value);
+        }
+        detail.append(']');
+    }
+
+    static String statementType(String sql) {
+        if (sql == null) {
+            return "UNKNOWN";
+        }
+        int start = 0;
+        while (start < sql.length() && !Character.isLetter(sql.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        return start == end ? "UNKNOWN" : sql.substring(start, end).toUpperCase(Locale.ROOT);
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
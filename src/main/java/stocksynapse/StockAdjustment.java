@@ -0,0 +1,68 @@
+package stocksynapse;
+
+/**
+ * A change to one product's stock level, e.g. a sale (negative) or a
+ * delivery (positive), together with the reason recorded in the ledger.
+ */
+public class StockAdjustment {
+    private final String productId;
+    private final int delta;
+    private final String reason;
+
+    /**
+     * @param productId The product whose stock changes.
+     * @param delta     Units added (positive) or removed (negative).
+     * @param reason    Why the stock changed, e.g. "SALE" or "RESTOCK"; at most 64 characters.
+     */
+    public StockAdjustment(String productId, int delta, String reason) {
+        if (productId == null || productId.isEmpty()) {
+            throw new IllegalArgumentException("Product ID cannot be empty.");
+        }
+        if (reason == null || reason.trim().isEmpty() || reason.trim().length() > 64) {
+            throw new IllegalArgumentException("Reason must be between 1 and 64 characters.");
+        }
+        this.productId = productId;
+        this.delta = delta;
+        this.reason = reason.trim();
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Applies the net change of one or more adjustments to a product.
+     *
+     * @param productId The product adjusted.
+     * @param before    The product as it is now, or null if it does not exist.
+     * @param netChange The combined change in units.
+     * @return The product with its new quantity and next version.
+     * @throws IllegalArgumentException if the product does not exist or would
+     *                                  end up with negative stock.
+     */
+    static Product apply(String productId, Product before, int netChange) {
+        if (before == null) {
+            throw new IllegalArgumentException("No product with ID " + productId + ".");
+        }
+        int quantity = before.getQuantity() + netChange;
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Not enough stock of " + before.getName() + ": "
+                    + before.getQuantity() + " in stock, " + -netChange + " requested.");
+        }
+        return new Product(before.getId(), before.getName(), before.getPrice(), quantity,
+                before.getCategory(), before.getDescription(), before.getVersion() + 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %+d (%s)", productId, delta, reason);
+    }
+}
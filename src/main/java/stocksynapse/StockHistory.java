@@ -0,0 +1,180 @@
+package stocksynapse;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent daily demand per product, used by the local forecasting engine.
+ *
+ * Demand is the stock that left the shelf: every decrease in a product's
+ * quantity counts as units sold on that day, while restocks are ignored.
+ * Each product's history is a fixed window of daily totals held in an int
+ * array used as a ring buffer, so recording a change is O(1) and the memory
+ * per product does not grow over time. Only products that have had a stock
+ * movement take up space.
+ *
+ * The window is seeded from the stock movement ledger and then kept up to
+ * date as InventoryService reports changes.
+ */
+public class StockHistory implements InventoryListener {
+
+    private final int historyDays;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private volatile ConcurrentHashMap<String, DemandSeries> series = new ConcurrentHashMap<>();
+    private boolean seeded;
+    // Bumped by every change, so a seed that raced with a change can be detected and retried.
+    private long version;
+
+    /**
+     * @param historyDays How many days of demand to keep per product.
+     */
+    public StockHistory(int historyDays) {
+        this.historyDays = Math.max(1, historyDays);
+    }
+
+    public int getHistoryDays() {
+        return historyDays;
+    }
+
+    public synchronized boolean isSeeded() {
+        return seeded;
+    }
+
+    /** @return Today's day number in the local time zone, as used by {@link #getDailyDemand}. */
+    public long today() {
+        return LocalDate.now(zone).toEpochDay();
+    }
+
+    /**
+     * Reloads the demand window from the stock movement ledger. If every
+     * attempt races with a change, the window is left as it was; see
+     * {@link SeedAttempts}.
+     *
+     * @param store The store to read the ledger from.
+     */
+    public void seed(ProductStore store) {
+        SeedAttempts.seed(this, () -> version, () -> {
+            long today = today();
+            ConcurrentHashMap<String, DemandSeries> loaded = new ConcurrentHashMap<>();
+            long since = LocalDate.ofEpochDay(today - historyDays + 1).atStartOfDay(zone).toInstant().toEpochMilli();
+            store.forEachStockMovement(since, movement -> {
+                if (movement.getQuantityChange() < 0) {
+                    long day = Instant.ofEpochMilli(movement.getMovedAtMillis()).atZone(zone).toLocalDate()
+                            .toEpochDay();
+                    loaded.computeIfAbsent(movement.getProductId(), id -> new DemandSeries(historyDays))
+                            .add(day, -movement.getQuantityChange());
+                }
+            });
+            return loaded;
+        }, loaded -> {
+            series = loaded;
+            seeded = true;
+        });
+    }
+
+    /**
+     * Copies a product's daily demand, oldest day first, ending today.
+     *
+     * @param productId The product to look up.
+     * @param today     The last day to include, from {@link #today()}.
+     * @param out       Receives {@link #getHistoryDays()} values.
+     * @return false if the product has no recorded stock movements, in which case {@code out} is untouched.
+     */
+    public boolean getDailyDemand(String productId, long today, double[] out) {
+        DemandSeries demand = series.get(productId);
+        if (demand == null) {
+            return false;
+        }
+        demand.copyTo(today, out);
+        return true;
+    }
+
+    /**
+     * @param today The last day of the window, from {@link #today()}.
+     * @return The IDs of the products with any demand in the window ending today.
+     */
+    public List<String> getProductsWithDemand(long today) {
+        List<String> ids = new ArrayList<>();
+        series.forEach((id, demand) -> {
+            if (demand.hasDemand(today)) {
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+
+    /** @return How many products have any demand recorded. */
+    public int getTrackedProductCount() {
+        return series.size();
+    }
+
+    @Override
+    public synchronized void productAdded(Product product) {
+        version++;
+    }
+
+    @Override
+    public synchronized void productUpdated(Product previous, Product updated) {
+        version++;
+        if (previous != null && updated.getQuantity() < previous.getQuantity()) {
+            series.computeIfAbsent(updated.getId(), id -> new DemandSeries(historyDays))
+                    .add(today(), previous.getQuantity() - updated.getQuantity());
+        }
+    }
+
+    @Override
+    public synchronized void productRemoved(Product product) {
+        version++;
+        series.remove(product.getId());
+    }
+
+    /** Daily demand totals for one product in a ring buffer indexed by day number. */
+    private static final class DemandSeries {
+        private final int[] units;
+        private long lastDay = Long.MIN_VALUE;
+
+        DemandSeries(int days) {
+            this.units = new int[days];
+        }
+
+        synchronized void add(long day, int amount) {
+            int n = units.length;
+            if (lastDay == Long.MIN_VALUE || day - lastDay >= n) {
+                Arrays.fill(units, 0);
+                lastDay = day;
+            } else if (day > lastDay) {
+                for (long d = lastDay + 1; d <= day; d++) {
+                    units[Math.floorMod(d, n)] = 0;
+                }
+                lastDay = day;
+            } else if (lastDay - day >= n) {
+                return; // Older than the window
+            }
+            units[Math.floorMod(day, n)] += amount;
+        }
+
+        synchronized void copyTo(long today, double[] out) {
+            int n = units.length;
+            for (int i = 0; i < n; i++) {
+                long day = today - (n - 1) + i;
+                boolean inWindow = day <= lastDay && lastDay - day < n;
+                out[i] = inWindow ? units[Math.floorMod(day, n)] : 0;
+            }
+        }
+
+        synchronized boolean hasDemand(long today) {
+            int n = units.length;
+            for (long day = Math.max(today, lastDay) - (n - 1); day <= Math.min(today, lastDay); day++) {
+                if (units[Math.floorMod(day, n)] > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package stocksynapse;
+
+/**
+ * One entry of the stock movement ledger: a change to a product's quantity,
+ * when it happened and why.
+ */
+public class StockMovement {
+    private final String productId;
+    private final long movedAtMillis;
+    private final int quantityChange;
+    private final int quantityAfter;
+    private final String reason;
+
+    /**
+     * @param productId      The product whose stock changed.
+     * @param movedAtMillis  When it changed, in epoch milliseconds.
+     * @param quantityChange Units added (positive) or removed (negative).
+     * @param quantityAfter  The product's stock after the change.
+     * @param reason         Why the stock changed, e.g. "SALE" or "EDIT".
+     */
+    public StockMovement(String productId, long movedAtMillis, int quantityChange, int quantityAfter,
+            String reason) {
+        this.productId = productId;
+        this.movedAtMillis = movedAtMillis;
+        this.quantityChange = quantityChange;
+        this.quantityAfter = quantityAfter;
+        this.reason = reason;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public long getMovedAtMillis() {
+        return movedAtMillis;
+    }
+
+    public int getQuantityChange() {
+        return quantityChange;
+    }
+
+    public int getQuantityAfter() {
+        return quantityAfter;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %+d -> %d (%s)", productId, quantityChange, quantityAfter, reason);
+    }
+}
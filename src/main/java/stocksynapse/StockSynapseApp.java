@@ -2,6 +2,7 @@ package stocksynapse;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Properties;
 import javax.swing.SwingUtilities;
 import com.formdev.flatlaf.FlatLightLaf;
@@ -31,28 +32,83 @@ public class StockSynapseApp {
         return null;
     }
 
+    private static Properties loadLocalProperties() {
+        try {
+            return LocalProperties.load();
+        } catch (IOException e) {
+            // Optional tuning only; the services fall back to their defaults.
+            return new Properties();
+        }
+    }
+
+    /**
+     * Starts the desktop application, or with {@code --server} the headless
+     * JSON API described in {@link InventoryServer}.
+     */
     public static void main(String[] args) {
-        // Set the modern FlatLaf look and feel for the entire application
-        FlatLightLaf.setup();
+        boolean serverMode = Arrays.asList(args).contains("--server");
+        if (!serverMode) {
+            // Set the modern FlatLaf look and feel for the entire application
+            FlatLightLaf.setup();
+        }
+
+        Properties props = loadLocalProperties();
+        // Before any service runs, so their first slow statements are caught too.
+        SlowOperationLog.configure(props);
 
         // The InventoryService will be shared across different panels.
         InventoryService inventoryService = new InventoryService();
+        // Close pooled database connections cleanly when the window is closed.
+        Runtime.getRuntime().addShutdownHook(new Thread(inventoryService::close));
 
         // Read the API key using our new robust method
         String geminiApiKey = getApiKey();
 
         if (geminiApiKey == null || geminiApiKey.trim().isEmpty()) {
-            // Show a user-friendly error dialog and exit if the key is missing.
-            JOptionPane.showMessageDialog(null,
-                    "FATAL ERROR: 'GEMINI_API_KEY' is not set.\n\n" +
-                            "Please set it in your system environment or in a 'local.properties' file.",
-                    "Configuration Error",
-                    JOptionPane.ERROR_MESSAGE);
+            String message = "FATAL ERROR: 'GEMINI_API_KEY' is not set.\n\n" +
+                    "Please set it in your system environment or in a 'local.properties' file.";
+            if (serverMode) {
+                System.err.println(message);
+            } else {
+                // Show a user-friendly error dialog and exit if the key is missing.
+                JOptionPane.showMessageDialog(null, message, "Configuration Error", JOptionPane.ERROR_MESSAGE);
+            }
             System.exit(1); // Exit the application
         }
-        ForecastingService forecastingService = new ForecastingService(geminiApiKey);
+        // Forecasts from stock history in-process; also stands in when the Gemini API fails or times out.
+        LocalForecastingEngine localEngine = new LocalForecastingEngine(inventoryService.getStockHistory(), props);
+        ForecastingService forecastingService = new ForecastingService(geminiApiKey, props, localEngine);
+        // Persist cached forecasts so they survive a restart.
+        Runtime.getRuntime().addShutdownHook(new Thread(forecastingService::close));
+
+        if (serverMode) {
+            startServer(inventoryService, forecastingService, props);
+            return;
+        }
 
         // Run the GUI creation on the Event Dispatch Thread for thread safety.
         SwingUtilities.invokeLater(() -> StockSynapseGUI.createAndShowGUI(inventoryService, forecastingService));
     }
-}
\ No newline at end of file
+
+    private static void startServer(InventoryService inventoryService, ForecastingService forecastingService,
+            Properties props) {
+        InventoryServer server;
+        try {
+            server = new InventoryServer(inventoryService, forecastingService, props);
+        } catch (IOException e) {
+            System.err.println("FATAL ERROR: Could not start the API server: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        // The panels normally build these when first shown; the API needs them from the start.
+        Thread warmUp = new Thread(() -> {
+            inventoryService.rebuildSearchIndex();
+            inventoryService.reseedStockHistory();
+        }, "stocksynapse-server-warmup");
+        warmUp.setDaemon(true);
+        warmUp.start();
+        // The server's own thread keeps the process running until it is stopped.
+        server.start();
+    }
+}
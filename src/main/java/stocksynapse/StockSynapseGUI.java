@@ -7,7 +7,7 @@ import java.awt.*;
 /**
  * The main GUI class for the Stock Synapse application.
  * It creates the main window and manages navigation between different panels
- * (Dashboard, Inventory, Forecasting) using a CardLayout.
+ * (Dashboard, Metrics, Inventory, Forecasting, Analytics) using a CardLayout.
  */
 public class StockSynapseGUI {
 
@@ -25,22 +25,30 @@ public class StockSynapseGUI {
 
         // Create panel instances so we can link them
         DashboardPanel dashboardPanel = new DashboardPanel(inventoryService);
+        MetricsPanel metricsPanel = new MetricsPanel(MetricsRegistry.getDefault());
         InventoryPanel inventoryPanel = new InventoryPanel(inventoryService, dashboardPanel);
         ForecastingPanel forecastingPanel = new ForecastingPanel(inventoryService, forecastingService);
+        AnalyticsPanel analyticsPanel = new AnalyticsPanel(inventoryService);
 
         mainPanel.add(dashboardPanel, "Dashboard");
+        mainPanel.add(metricsPanel, "Metrics");
         mainPanel.add(inventoryPanel, "Inventory");
         mainPanel.add(forecastingPanel, "Forecasting");
+        mainPanel.add(analyticsPanel, "Analytics");
 
         // --- Navigation Panel ---
         JPanel navPanel = new JPanel();
         JButton dashboardButton = new JButton("Dashboard");
+        JButton metricsButton = new JButton("Metrics");
         JButton inventoryButton = new JButton("Inventory");
         JButton forecastingButton = new JButton("Forecasting");
+        JButton analyticsButton = new JButton("Analytics");
 
         navPanel.add(dashboardButton);
+        navPanel.add(metricsButton);
         navPanel.add(inventoryButton);
         navPanel.add(forecastingButton);
+        navPanel.add(analyticsButton);
 
         // Apply the background color to the main containers
         frame.getContentPane().setBackground(appBackgroundColor);
@@ -49,8 +57,10 @@ public class StockSynapseGUI {
         // --- Button Actions to Switch Cards ---
         CardLayout cardLayout = (CardLayout) mainPanel.getLayout();
         dashboardButton.addActionListener(e -> cardLayout.show(mainPanel, "Dashboard"));
+        metricsButton.addActionListener(e -> cardLayout.show(mainPanel, "Metrics"));
         inventoryButton.addActionListener(e -> cardLayout.show(mainPanel, "Inventory"));
         forecastingButton.addActionListener(e -> cardLayout.show(mainPanel, "Forecasting"));
+        analyticsButton.addActionListener(e -> cardLayout.show(mainPanel, "Analytics"));
 
         // --- Add Panels to Frame ---
         frame.getContentPane().add(navPanel, BorderLayout.NORTH);
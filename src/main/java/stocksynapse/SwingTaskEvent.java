@@ -0,0 +1,34 @@
+package stocksynapse;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event for one phase of a {@link TracedSwingWorker}:
+ * its background work, or its done() callback on the event dispatch thread.
+ */
+@Name("stocksynapse.SwingTask")
+@Label("Swing Task")
+@Category({ "Stock Synapse", "User Interface" })
+@Description("A SwingWorker task started by one of the panels")
+final class SwingTaskEvent extends Event {
+
+    @Label("Task")
+    String task;
+
+    @Label("Phase")
+    @Description("background for doInBackground, done for the callback on the event dispatch thread")
+    String phase;
+
+    @Label("Queue Time")
+    @Description("How long the task waited for a worker thread before its background phase started")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueTime;
+
+    @Label("Failed")
+    boolean failed;
+}
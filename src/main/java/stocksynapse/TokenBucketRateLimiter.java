@@ -0,0 +1,144 @@
+package stocksynapse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A non-blocking token-bucket rate limiter. The bucket holds up to
+ * {@code burst} tokens and refills at {@code requestsPerMinute}; each request
+ * takes one token. When the bucket is empty, callers get a future that
+ * completes once a token is available, in FIFO order, so requests queue
+ * locally instead of burning API quota on 429 responses. Waiting never parks
+ * a thread: the queue is drained from a timer.
+ */
+public class TokenBucketRateLimiter {
+
+    private final double tokensPerNano;
+    private final int burst;
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefillNanos;
+    private boolean drainScheduled;
+
+    private long acquired;
+    private long delayed;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    /**
+     * @param requestsPerMinute Sustained rate; 0 or less disables limiting.
+     * @param burst             Requests allowed back to back after an idle period.
+     */
+    public TokenBucketRateLimiter(double requestsPerMinute, int burst) {
+        this.tokensPerNano = requestsPerMinute / 60_000_000_000.0;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public boolean isEnabled() {
+        return tokensPerNano > 0;
+    }
+
+    /**
+     * Takes a token, waiting in line if none is available.
+     *
+     * @return A future that completes when the caller may proceed. Cancelling
+     *         it, or completing it exceptionally (e.g. with orTimeout), gives
+     *         up the caller's place in the queue.
+     */
+    public CompletableFuture<Void> acquire() {
+        if (!isEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        synchronized (this) {
+            refill(System.nanoTime());
+            if (queue.isEmpty() && tokens >= 1) {
+                tokens -= 1;
+                acquired++;
+                return CompletableFuture.completedFuture(null);
+            }
+            Waiter waiter = new Waiter(System.nanoTime());
+            queue.add(waiter);
+            delayed++;
+            // A cancelled or timed-out caller leaves the queue at once, so it does not count toward the
+            // queue depth or hold memory until the next drain.
+            waiter.future.whenComplete((ignored, error) -> {
+                if (error != null) {
+                    leave(waiter);
+                }
+            });
+            scheduleDrain();
+            return waiter.future;
+        }
+    }
+
+    private synchronized void leave(Waiter waiter) {
+        queue.remove(waiter);
+    }
+
+    public synchronized RateLimiterStats getStats() {
+        refill(System.nanoTime());
+        return new RateLimiterStats(queue.size(), tokens, acquired, delayed, totalWaitNanos, maxWaitNanos);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+
+    // Called with the lock held.
+    private void scheduleDrain() {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        long delayNanos = (long) Math.ceil(Math.max(0, 1 - tokens) / tokensPerNano);
+        CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(this::drain);
+    }
+
+    private void drain() {
+        List<CompletableFuture<Void>> ready = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            long now = System.nanoTime();
+            refill(now);
+            while (!queue.isEmpty()) {
+                Waiter waiter = queue.peek();
+                if (waiter.future.isDone()) {
+                    queue.poll(); // Cancelled and not yet removed by leave(); its token goes to the next caller
+                    continue;
+                }
+                if (tokens < 1) {
+                    break;
+                }
+                queue.poll();
+                tokens -= 1;
+                acquired++;
+                long wait = now - waiter.enqueuedNanos;
+                totalWaitNanos += wait;
+                maxWaitNanos = Math.max(maxWaitNanos, wait);
+                ready.add(waiter.future);
+            }
+            if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+        // Complete outside the lock; dependents may start HTTP requests.
+        for (CompletableFuture<Void> future : ready) {
+            future.complete(null);
+        }
+    }
+
+    private static final class Waiter {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final long enqueuedNanos;
+
+        Waiter(long enqueuedNanos) {
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
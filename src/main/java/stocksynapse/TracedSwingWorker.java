@@ -0,0 +1,87 @@
+package stocksynapse;
+
+import javax.swing.SwingWorker;
+
+/**
+ * A {@link SwingWorker} that records its background work and its done()
+ * callback as {@link SwingTaskEvent}s and logs either phase to the
+ * {@link SlowOperationLog} when it runs long. The callback is held to the
+ * lower event dispatch thread threshold, since it blocks repainting.
+ *
+ * Subclasses implement {@link #runInBackground()} and {@link #finished()}
+ * in place of doInBackground() and done(), which this class wraps.
+ */
+public abstract class TracedSwingWorker<T, V> extends SwingWorker<T, V> {
+
+    private final String task;
+    private final long created = System.nanoTime();
+
+    /**
+     * @param task A short name for the task, e.g. "Load products", used in
+     *             recordings and in the slow-operation log.
+     */
+    protected TracedSwingWorker(String task) {
+        this.task = task;
+    }
+
+    /** The work to do off the event dispatch thread; see {@link SwingWorker#doInBackground()}. */
+    protected abstract T runInBackground() throws Exception;
+
+    /** Called on the event dispatch thread once the work is done; see {@link SwingWorker#done()}. */
+    protected void finished() {
+    }
+
+    @Override
+    protected final T doInBackground() throws Exception {
+        SwingTaskEvent event = new SwingTaskEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = runInBackground();
+            failed = false;
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            record(event, "background", start - created, failed);
+            if (SlowOperationLog.isSlow(elapsed)) {
+                SlowOperationLog.log("TASK", elapsed, describe("background", start - created, failed));
+            }
+        }
+    }
+
+    @Override
+    protected final void done() {
+        SwingTaskEvent event = new SwingTaskEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            finished();
+            failed = false;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            record(event, "done", 0, failed);
+            if (SlowOperationLog.isSlowOnEdt(elapsed)) {
+                SlowOperationLog.log("EDT", elapsed, describe("done", 0, failed));
+            }
+        }
+    }
+
+    private void record(SwingTaskEvent event, String phase, long queueTime, boolean failed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.task = task;
+            event.phase = phase;
+            event.queueTime = queueTime;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    private String describe(String phase, long queueTime, boolean failed) {
+        return task + " (" + phase + ")"
+                + (queueTime > 0 ? String.format(" queued=%.1f ms", queueTime / 1_000_000.0) : "")
+                + (failed ? " FAILED" : "");
+    }
+}
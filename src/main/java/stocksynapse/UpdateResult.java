@@ -0,0 +1,67 @@
+package stocksynapse;
+
+/**
+ * The outcome of a versioned product update: the product as saved, or the
+ * reason it was not saved.
+ */
+public class UpdateResult {
+
+    public enum Status {
+        /** The edit was saved; {@link #getProduct()} is the new row. */
+        UPDATED,
+        /** Someone else changed the product first; {@link #getProduct()} is their version. */
+        CONFLICT,
+        /** The product no longer exists; {@link #getProduct()} is null. */
+        NOT_FOUND
+    }
+
+    private final Status status;
+    private final Product product;
+    private final Product previous;
+
+    private UpdateResult(Status status, Product product, Product previous) {
+        this.status = status;
+        this.product = product;
+        this.previous = previous;
+    }
+
+    public static UpdateResult updated(Product product, Product previous) {
+        return new UpdateResult(Status.UPDATED, product, previous);
+    }
+
+    public static UpdateResult conflict(Product current) {
+        return new UpdateResult(Status.CONFLICT, current, null);
+    }
+
+    public static UpdateResult notFound() {
+        return new UpdateResult(Status.NOT_FOUND, null, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isUpdated() {
+        return status == Status.UPDATED;
+    }
+
+    /**
+     * @return The saved product if updated, the current product in the
+     *         database on a conflict, or null if it was not found.
+     */
+    public Product getProduct() {
+        return product;
+    }
+
+    /**
+     * @return The product as it was before the edit if updated, otherwise null.
+     */
+    public Product getPrevious() {
+        return previous;
+    }
+
+    @Override
+    public String toString() {
+        return status + (product == null ? "" : " " + product);
+    }
+}
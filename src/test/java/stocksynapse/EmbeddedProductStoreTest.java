@@ -0,0 +1,236 @@
+package stocksynapse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs the shared store tests against the embedded store, plus its own
+ * crash recovery and compaction.
+ */
+class EmbeddedProductStoreTest extends ProductStoreContractTest {
+
+    @TempDir
+    Path directory;
+
+    @Override
+    protected ProductStore createStore() throws IOException {
+        return open(new Properties());
+    }
+
+    private EmbeddedProductStore open(Properties props) throws IOException {
+        return new EmbeddedProductStore(directory, props);
+    }
+
+    private void reopen() throws IOException {
+        store.close();
+        store = createStore();
+    }
+
+    private List<Path> logFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches("products-\\d+\\.log")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return The offset just past the last complete record in a log file.
+     */
+    private static int endOfRecords(FileChannel log) throws IOException {
+        int position = 12;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (true) {
+            length.clear();
+            if (log.read(length, position) < 4 || length.getInt(0) == 0) {
+                return position;
+            }
+            position += 8 + length.getInt(0);
+        }
+    }
+
+    @Test
+    void productsAndLedgerSurviveReopening() throws IOException {
+        store.addProduct(product("a", "Apple", 10));
+        store.adjustQuantities(List.of(new StockAdjustment(prefix + "a", -3, "SALE")), new HashMap<>());
+        store.addProduct(product("b", "Banana", 0));
+        store.deleteProduct(prefix + "b");
+
+        reopen();
+
+        assertEquals(7, store.getProduct(prefix + "a").getQuantity());
+        assertEquals(1, store.getProduct(prefix + "a").getVersion());
+        assertNull(store.getProduct(prefix + "b"));
+        assertEquals(1, store.getProductCount());
+        assertEquals(List.of("ADD", "SALE"),
+                movements().stream().map(StockMovement::getReason).collect(Collectors.toList()));
+    }
+
+    @Test
+    void recordWithABadChecksumEndsTheLogOnReopen() throws IOException {
+        store.addProduct(product("a", "Apple", 10));
+        store.close();
+
+        Path file = logFiles().get(0);
+        try (FileChannel log = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int end = endOfRecords(log);
+            // A whole record header and payload, but the checksum does not match.
+            ByteBuffer torn = ByteBuffer.allocate(8 + 16);
+            torn.putInt(16).putInt(0x12345678).put(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 });
+            torn.put((byte) 16).flip();
+            log.write(torn, end);
+        }
+
+        store = createStore();
+        assertEquals(10, store.getProduct(prefix + "a").getQuantity());
+        assertEquals(1, store.getProductCount());
+
+        // Writes after the damaged record must not be mistaken for it on the next start.
+        store.addProduct(product("b", "Banana", 2));
+        reopen();
+        assertNotNull(store.getProduct(prefix + "a"));
+        assertEquals(2, store.getProduct(prefix + "b").getQuantity());
+        assertEquals(2, movements().size());
+    }
+
+    @Test
+    void recordCutShortByTheEndOfTheFileIsDiscarded() throws IOException {
+        store.addProduct(product("a", "Apple", 10));
+        store.close();
+
+        Path file = logFiles().get(0);
+        try (FileChannel log = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int end = endOfRecords(log);
+            // The length was written but the process died before the rest, and the file ends early.
+            log.write(ByteBuffer.allocate(4).putInt(0, 4096), end);
+            log.truncate(end + 6);
+        }
+
+        store = createStore();
+        assertEquals(10, store.getProduct(prefix + "a").getQuantity());
+        store.addProduct(product("b", "Banana", 2));
+        reopen();
+        assertEquals(2, store.getProductCount());
+    }
+
+    @Test
+    void compactionMovesToTheNextGenerationAndKeepsEverything() throws IOException {
+        store.close();
+        Properties props = new Properties();
+        props.setProperty("EMBEDDED_STORE_COMPACT_MIN_MB", "0");
+        store = open(props);
+
+        store.addProduct(product("a", "Apple", 0));
+        store.addProduct(product("b", "Banana", 5));
+        for (int i = 0; i < 200; i++) {
+            Product current = store.getProduct(prefix + "a");
+            store.updateProduct(new Product(current.getId(), prefix + "Apple " + i, 1.0, i + 1, "Test", "",
+                    current.getVersion()), current);
+        }
+
+        List<Path> files = logFiles();
+        assertEquals(1, files.size());
+        assertFalse(files.get(0).getFileName().toString().equals("products-000001.log"));
+
+        assertEquals(200, store.getProduct(prefix + "a").getQuantity());
+        assertEquals(200, store.getProduct(prefix + "a").getVersion());
+        assertEquals(List.of(prefix + "a", prefix + "b"),
+                ownProducts().stream().map(Product::getId).collect(Collectors.toList()));
+        assertEquals(201, movements().size());
+
+        store.close();
+        store = open(props);
+        assertEquals(prefix + "Apple 199", store.getProduct(prefix + "a").getName());
+        assertEquals(5, store.getProduct(prefix + "b").getQuantity());
+        assertEquals(201, movements().size());
+    }
+
+    @Test
+    void unfinishedCompactionIsIgnoredOnReopen() throws IOException {
+        store.addProduct(product("a", "Apple", 10));
+        store.close();
+
+        // A compaction that crashed before marking its file complete.
+        Path unfinished = directory.resolve("products-000002.log");
+        ByteBuffer header = ByteBuffer.allocate(12).putInt(0x53534C47).putInt(1).putInt(0);
+        Files.write(unfinished, header.array());
+
+        store = createStore();
+        assertEquals(10, store.getProduct(prefix + "a").getQuantity());
+        assertFalse(Files.exists(unfinished));
+        store.addProduct(product("b", "Banana", 2));
+        reopen();
+        assertEquals(2, store.getProductCount());
+    }
+
+    @Test
+    void nameOrderMatchesAFullSortAfterRandomWrites() throws IOException {
+        Random random = new Random(42);
+        TreeMap<String, Product> expected = new TreeMap<>();
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Product product = product("bulk" + i, "name" + random.nextInt(50), 1);
+            batch.add(product);
+            expected.put(product.getId(), product);
+        }
+        // Large enough to take the rebuild path rather than updating the order in place.
+        store.addProducts(batch);
+        for (int i = 0; i < 300; i++) {
+            String id = prefix + "p" + random.nextInt(40);
+            Product current = store.getProduct(id);
+            if (current == null) {
+                Product added = product("p" + id.substring(prefix.length() + 1), "name" + random.nextInt(50), 1);
+                store.addProduct(added);
+                expected.put(added.getId(), added);
+            } else if (random.nextInt(4) == 0) {
+                store.deleteProduct(id);
+                expected.remove(id);
+            } else {
+                Product renamed = new Product(id, prefix + "name" + random.nextInt(50), 1.0, 1, "Test", "",
+                        current.getVersion());
+                store.updateProduct(renamed, current);
+                expected.put(id, renamed);
+            }
+            if (i % 50 == 0) {
+                assertOrder(expected);
+            }
+        }
+        assertOrder(expected);
+        reopen();
+        assertOrder(expected);
+    }
+
+    private void assertOrder(TreeMap<String, Product> expected) {
+        List<String> sorted = expected.values().stream().sorted(Comparator.comparing(Product::getName,
+                String.CASE_INSENSITIVE_ORDER).thenComparing(Product::getId)).map(Product::getId)
+                .collect(Collectors.toList());
+        assertEquals(sorted, ownProducts().stream().map(Product::getId).collect(Collectors.toList()));
+        ProductQuery descending = ProductQuery.DEFAULT.withSort(ProductQuery.SortColumn.NAME, false);
+        List<String> reversed = store.queryProductsAt(descending, 0, Integer.MAX_VALUE).stream()
+                .map(Product::getId).collect(Collectors.toList());
+        Collections.reverse(reversed);
+        assertEquals(sorted, reversed);
+        assertEquals(expected.size(), store.countProducts(ProductQuery.DEFAULT));
+    }
+}
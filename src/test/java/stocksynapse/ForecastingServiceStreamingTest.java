@@ -0,0 +1,201 @@
+package stocksynapse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Streams forecasts from a local stub of the Gemini server-sent events
+ * endpoint, with each test scripting the responses to successive requests.
+ */
+class ForecastingServiceStreamingTest {
+
+    private static final Product PRODUCT = new Product("p1", "Widget", 9.99, 12, "Tools", "A widget");
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final ConcurrentLinkedQueue<HttpHandler> responses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private ForecastingService service;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            HttpHandler response = responses.poll();
+            if (response == null) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            response.handle(exchange);
+        });
+        server.start();
+
+        Properties config = new Properties();
+        config.setProperty("FORECAST_API_BASE_URL",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1");
+        config.setProperty("FORECAST_BACKOFF_BASE_MS", "1");
+        config.setProperty("FORECAST_BACKOFF_MAX_MS", "10");
+        config.setProperty("FORECAST_RATE_LIMIT_RPM", "0");
+        config.setProperty("FORECAST_TIMEOUT_MS", "0");
+        config.setProperty("FORECAST_CACHE_MAX_ENTRIES", "0");
+        service = new ForecastingService("test-key", config);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private static String textEvent(String text) {
+        return "data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + text + "\"}]}}]}\n\n";
+    }
+
+    private static void startStream(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+    }
+
+    private static void write(OutputStream body, String text) throws IOException {
+        body.write(text.getBytes(StandardCharsets.UTF_8));
+        body.flush();
+    }
+
+    private CompletableFuture<String> stream() {
+        return service.generateForecastStreaming(PRODUCT, received::add);
+    }
+
+    private static ForecastingException failure(CompletableFuture<String> future) {
+        ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        return assertInstanceOf(ForecastingException.class, error.getCause());
+    }
+
+    @Test
+    void textIsDeliveredAsEachEventCompletes() throws Exception {
+        CountDownLatch firstDelivered = new CountDownLatch(1);
+        responses.add(exchange -> {
+            startStream(exchange);
+            try (OutputStream body = exchange.getResponseBody()) {
+                write(body, ": keep-alive\n\n");
+                String first = textEvent("Demand is ");
+                // One event split across two writes.
+                write(body, first.substring(0, 20));
+                write(body, first.substring(20));
+                try {
+                    // The second event is only sent once the first has reached the listener.
+                    firstDelivered.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                write(body, textEvent("steady."));
+            }
+        });
+
+        CompletableFuture<String> future = service.generateForecastStreaming(PRODUCT, text -> {
+            received.add(text);
+            firstDelivered.countDown();
+        });
+
+        assertEquals("Demand is steady.", future.get(10, TimeUnit.SECONDS));
+        assertEquals(List.of("Demand is ", "steady."), received);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void unavailableServerIsRetriedBeforeAnyText() throws Exception {
+        responses.add(exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        responses.add(exchange -> {
+            startStream(exchange);
+            try (OutputStream body = exchange.getResponseBody()) {
+                write(body, textEvent("Restock soon."));
+            }
+        });
+
+        assertEquals("Restock soon.", stream().get(10, TimeUnit.SECONDS));
+        assertEquals(List.of("Restock soon."), received);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void retryAfterBeyondTheBackoffLimitFailsAtOnce() throws Exception {
+        responses.add(exchange -> {
+            exchange.getResponseHeaders().set("Retry-After", "3600");
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+        });
+
+        ForecastingException error = failure(stream());
+        assertTrue(error.getMessage().contains("quota exceeded"), error.getMessage());
+        assertTrue(error.getMessage().contains("3600 seconds"), error.getMessage());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void errorEventFailsTheForecastWithoutRetrying() throws Exception {
+        responses.add(exchange -> {
+            startStream(exchange);
+            try (OutputStream body = exchange.getResponseBody()) {
+                write(body, textEvent("Partial"));
+                write(body, "data: {\"error\":{\"code\":503,\"message\":\"The model is overloaded\"}}\n\n");
+            }
+        });
+
+        ForecastingException error = failure(stream());
+        assertTrue(error.getMessage().contains("The model is overloaded"), error.getMessage());
+        assertEquals(List.of("Partial"), received);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void connectionLostAfterTextIsNotRetried() throws Exception {
+        responses.add(exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            // Promise more than is sent, then drop every connection, so the body ends early.
+            exchange.sendResponseHeaders(200, 10_000);
+            write(exchange.getResponseBody(), textEvent("Partial"));
+            new Thread(() -> server.stop(0)).start();
+        });
+
+        ForecastingException error = failure(stream());
+        // A retry would have failed to connect and been reported as a network error instead.
+        assertTrue(error.getMessage().contains("lost"), error.getMessage());
+        assertEquals(List.of("Partial"), received);
+        assertEquals(1, requests.get());
+    }
+}
@@ -0,0 +1,48 @@
+package stocksynapse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class InventoryStatsTest {
+
+    private static Product product(String id, int quantity) {
+        return new Product(id, "Widget " + id, 1.0, quantity, "Tools", "");
+    }
+
+    @Test
+    void seedThatRacesWithAChangeIsRetried() {
+        InventoryStats stats = new InventoryStats(10);
+        AtomicInteger scans = new AtomicInteger();
+        stats.seed(consumer -> {
+            consumer.accept(product("a", 5));
+            if (scans.incrementAndGet() == 1) {
+                // Reported while the first scan runs; the scan may or may not have counted it.
+                stats.productAdded(product("b", 20));
+            }
+            consumer.accept(product("b", 20));
+        });
+
+        assertEquals(2, scans.get());
+        assertTrue(stats.isSeeded());
+        assertEquals(2, stats.getProductCount());
+        assertEquals(25, stats.getTotalUnits());
+        assertEquals(1, stats.getLowStockCount());
+    }
+
+    @Test
+    void seedThatAlwaysRacesLeavesTheStatsUnseeded() {
+        InventoryStats stats = new InventoryStats(10);
+        stats.seed(consumer -> {
+            consumer.accept(product("a", 5));
+            stats.productUpdated(product("a", 5), product("a", 4));
+        });
+
+        assertFalse(stats.isSeeded());
+        assertEquals(0, stats.getProductCount());
+    }
+}
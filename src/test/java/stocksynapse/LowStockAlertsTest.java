@@ -0,0 +1,44 @@
+package stocksynapse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class LowStockAlertsTest {
+
+    private static Product product(String id, int quantity) {
+        return new Product(id, "Widget " + id, 1.0, quantity, "Tools", "");
+    }
+
+    private static List<String> alertIds(LowStockAlerts alerts) {
+        return alerts.getMostUrgent(10).stream().map(LowStockAlerts.Alert::getProductId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void changesReportedDuringASeedAreKept() {
+        LowStockAlerts alerts = new LowStockAlerts(new Properties());
+        alerts.seed(consumer -> {
+            consumer.accept(product("a", 2));
+            consumer.accept(product("b", 50));
+            // Reported while the scan is still running: "a" after the scan read it, "d" before.
+            alerts.productUpdated(product("a", 2), product("a", 40));
+            alerts.productUpdated(product("b", 50), product("b", 3));
+            alerts.productAdded(product("d", 1));
+            alerts.productRemoved(product("c", 5));
+            consumer.accept(product("c", 5));
+            consumer.accept(product("d", 1));
+        });
+
+        assertEquals(List.of("d", "b"), alertIds(alerts));
+        assertEquals(2, alerts.getAlertCount());
+
+        // Changes after the seed still update the heap in place.
+        alerts.productUpdated(product("b", 3), product("b", 0));
+        assertEquals(List.of("b", "d"), alertIds(alerts));
+    }
+}
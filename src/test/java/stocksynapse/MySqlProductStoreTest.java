@@ -0,0 +1,26 @@
+package stocksynapse;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Properties;
+
+/**
+ * Runs the shared store tests against MySQL. Skipped unless
+ * STOCKSYNAPSE_TEST_DB_URL, STOCKSYNAPSE_TEST_DB_USER and
+ * STOCKSYNAPSE_TEST_DB_PASSWORD name a scratch database with a products
+ * table; the tests delete their products afterwards but leave their ledger
+ * entries behind.
+ */
+class MySqlProductStoreTest extends ProductStoreContractTest {
+
+    @Override
+    protected ProductStore createStore() {
+        String url = System.getenv("STOCKSYNAPSE_TEST_DB_URL");
+        assumeTrue(url != null && !url.isBlank(), "STOCKSYNAPSE_TEST_DB_URL is not set");
+        Properties props = new Properties();
+        props.setProperty("DB_POOL_MIN_SIZE", "0");
+        ConnectionPool pool = new ConnectionPool(url, System.getenv("STOCKSYNAPSE_TEST_DB_USER"),
+                System.getenv("STOCKSYNAPSE_TEST_DB_PASSWORD"), props);
+        return new MySqlProductStore(pool, props);
+    }
+}
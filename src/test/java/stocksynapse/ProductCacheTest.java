@@ -0,0 +1,40 @@
+package stocksynapse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class ProductCacheTest {
+
+    private static Product product(String id, String name) {
+        return new Product(id, name, 1.0, 1, "Tools", "");
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void writesAreMergedIntoTheCatalogInOrder() {
+        ProductCache cache = new ProductCache(new Properties());
+        cache.putAllLoaded(List.of(product("1", "apple"), product("2", "Banana"), product("3", "cherry")),
+                cache.beginLoad());
+
+        cache.put(product("4", "avocado"));
+        cache.put(product("1", "date"));
+        cache.remove("2");
+        cache.put(product("5", "Blueberry"));
+        cache.remove("5");
+        cache.put(product("6", "Aardvark"));
+
+        assertEquals(List.of("6", "4", "3", "1"), ids(cache.getAll()));
+        assertEquals(4, cache.getCatalogSize());
+
+        cache.put(product("3", "zucchini"));
+        assertEquals(List.of("6", "4", "1", "3"), ids(cache.getAll()));
+    }
+}
@@ -0,0 +1,116 @@
+package stocksynapse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProductPageCacheTest {
+
+    private static final ProductQuery ASCENDING = ProductQuery.DEFAULT;
+    private static final ProductQuery DESCENDING = ProductQuery.DEFAULT.withSort(ProductQuery.SortColumn.NAME, false);
+
+    @TempDir
+    Path directory;
+
+    private InventoryService service;
+    private ProductPageCache cache;
+    private final BlockingQueue<Integer> loadedRows = new LinkedBlockingQueue<>();
+    // Set to make the next keyset query wait on the loader thread until released.
+    private final AtomicBoolean holdNextQuery = new AtomicBoolean();
+    private final CountDownLatch queryHeld = new CountDownLatch(1);
+    private final CountDownLatch releaseQuery = new CountDownLatch(1);
+
+    @BeforeEach
+    void createCache() {
+        Properties props = new Properties();
+        props.setProperty("STORAGE_BACKEND", "embedded");
+        props.setProperty("EMBEDDED_STORE_DIR", directory.toString());
+        props.setProperty("CATALOG_SNAPSHOT_FILE", "");
+        service = new InventoryService(props) {
+            @Override
+            public List<Product> queryProducts(ProductQuery query, Product after, int limit) {
+                if (holdNextQuery.compareAndSet(true, false)) {
+                    queryHeld.countDown();
+                    try {
+                        releaseQuery.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.queryProducts(query, after, limit);
+            }
+        };
+        for (String name : List.of("a", "b", "c", "d", "e", "f")) {
+            service.addProduct(name, 1.0, 1, "Test", "");
+        }
+        cache = new ProductPageCache(service, 2, 4, (first, last) -> loadedRows.add(first));
+    }
+
+    @AfterEach
+    void close() {
+        cache.shutdown();
+        service.close();
+    }
+
+    private void onEdt(Runnable task) throws Exception {
+        SwingUtilities.invokeAndWait(task);
+    }
+
+    private void load(int row) throws Exception {
+        onEdt(() -> cache.get(row));
+        assertEquals(row, loadedRows.poll(10, TimeUnit.SECONDS));
+    }
+
+    private List<String> names(int first, int last) throws Exception {
+        AtomicReference<List<String>> names = new AtomicReference<>();
+        onEdt(() -> {
+            List<String> rows = new ArrayList<>();
+            for (int row = first; row <= last; row++) {
+                Product product = cache.get(row);
+                rows.add(product == null ? null : product.getName());
+            }
+            names.set(rows);
+        });
+        return names.get();
+    }
+
+    @Test
+    void resetWithANewQueryWhileAPageLoadsDiscardsTheOldCursors() throws Exception {
+        onEdt(() -> cache.reset(6, ASCENDING));
+        load(0);
+        load(2);
+        assertEquals(List.of("c", "d"), names(2, 3));
+
+        // Page 2 is read with a keyset query from page 1's cursor, and held there.
+        holdNextQuery.set(true);
+        onEdt(() -> cache.get(4));
+        assertTrue(queryHeld.await(10, TimeUnit.SECONDS));
+
+        // The table asks for page 1 of the new order while the old page is still loading.
+        onEdt(() -> {
+            cache.reset(6, DESCENDING);
+            cache.get(2);
+        });
+        releaseQuery.countDown();
+
+        // The old page 2 is discarded, so the next page to arrive is the new page 1.
+        assertEquals(2, loadedRows.poll(10, TimeUnit.SECONDS));
+        assertEquals(List.of("d", "c"), names(2, 3));
+    }
+}
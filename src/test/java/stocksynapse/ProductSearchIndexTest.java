@@ -0,0 +1,58 @@
+package stocksynapse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ProductSearchIndexTest {
+
+    private static Product product(String id, String name) {
+        return new Product(id, name, 1.0, 1, "Tools", "");
+    }
+
+    @Test
+    void changesReportedDuringABuildAreKept() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.build(consumer -> {
+            consumer.accept(product("a", "Blue Widget"));
+            // Reported while the scan is still running, after it has read "a".
+            index.productUpdated(product("a", "Blue Widget"), product("a", "Red Widget"));
+            index.productAdded(product("c", "Green Gadget"));
+            consumer.accept(product("b", "Blue Gadget"));
+        });
+
+        assertEquals(List.of("b"), index.search("blue").getProductIds(10));
+        assertEquals(List.of("a"), index.search("red").getProductIds(10));
+        assertEquals(List.of("c"), index.search("green").getProductIds(10));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void matchesSurviveCompaction() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            products.add(product("id" + i, "Widget " + i));
+        }
+        index.build(consumer -> products.forEach(consumer));
+        ProductSearchIndex.Matches matches = index.search("widget 2999");
+        assertTrue(matches.contains("id2999"));
+
+        // Enough removals to compact the index, which renumbers the products that are left.
+        for (int i = 0; i < 2_000; i++) {
+            index.productRemoved(products.get(i));
+        }
+
+        assertTrue(matches.isStale());
+        assertTrue(matches.contains("id2999"));
+        assertFalse(matches.contains("id2998"));
+        assertEquals(1, matches.size());
+        assertEquals(List.of("id2999"), matches.getProductIds(10));
+        assertEquals(List.of("id2999"), index.search("widget 2999").getProductIds(10));
+    }
+}
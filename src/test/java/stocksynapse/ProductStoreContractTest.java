@@ -0,0 +1,278 @@
+package stocksynapse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The behaviour every {@link ProductStore} backend must share. Each backend's
+ * test class extends this and supplies the store.
+ *
+ * The tests only look at the products they create, which all have IDs and
+ * names starting with a prefix unique to the test, so they can run against
+ * a database that already holds other rows.
+ */
+abstract class ProductStoreContractTest {
+
+    protected ProductStore store;
+    protected String prefix;
+    private long startMillis;
+    private final List<String> createdIds = new ArrayList<>();
+
+    /**
+     * @return A new, open store for one test.
+     */
+    protected abstract ProductStore createStore() throws Exception;
+
+    @BeforeEach
+    void openStore() throws Exception {
+        store = createStore();
+        prefix = "t" + UUID.randomUUID().toString().substring(0, 8) + "-";
+        // The database's clock may be a little behind ours.
+        startMillis = System.currentTimeMillis() - 5_000;
+    }
+
+    @AfterEach
+    void closeStore() {
+        if (store != null) {
+            for (String id : createdIds) {
+                store.deleteProduct(id);
+            }
+            store.close();
+        }
+    }
+
+    protected Product product(String key, String name, int quantity) {
+        String id = prefix + key;
+        createdIds.add(id);
+        return new Product(id, prefix + name, 9.99, quantity, "Test", "A test product");
+    }
+
+    protected List<StockMovement> movements() {
+        List<StockMovement> movements = new ArrayList<>();
+        store.forEachStockMovement(startMillis, movement -> {
+            if (movement.getProductId().startsWith(prefix)) {
+                movements.add(movement);
+            }
+        });
+        return movements;
+    }
+
+    protected List<Product> ownProducts() {
+        List<Product> products = new ArrayList<>();
+        store.forEachProduct(product -> {
+            if (product.getId().startsWith(prefix)) {
+                products.add(product);
+            }
+        });
+        return products;
+    }
+
+    @Test
+    void addedProductCanBeReadBack() {
+        Product added = product("a", "Widget", 5);
+        store.addProduct(added);
+
+        Product read = store.getProduct(added.getId());
+        assertNotNull(read);
+        assertEquals(added.getName(), read.getName());
+        assertEquals(9.99, read.getPrice(), 1e-9);
+        assertEquals(5, read.getQuantity());
+        assertEquals("Test", read.getCategory());
+        assertEquals("A test product", read.getDescription());
+        assertEquals(0, read.getVersion());
+        assertNull(store.getProduct(prefix + "missing"));
+
+        List<StockMovement> movements = movements();
+        assertEquals(1, movements.size());
+        assertEquals("ADD", movements.get(0).getReason());
+        assertEquals(5, movements.get(0).getQuantityChange());
+        assertEquals(5, movements.get(0).getQuantityAfter());
+    }
+
+    @Test
+    void addingAnEmptyProductRecordsNoMovement() {
+        store.addProduct(product("a", "Widget", 0));
+        assertTrue(movements().isEmpty());
+    }
+
+    @Test
+    void addingADuplicateIdFails() {
+        Product added = product("a", "Widget", 1);
+        store.addProduct(added);
+        assertThrows(RuntimeException.class, () -> store.addProduct(added));
+        assertEquals(1, store.getProduct(added.getId()).getQuantity());
+    }
+
+    @Test
+    void bulkAddStoresEveryProductWithoutMovements() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            products.add(product(String.format("%03d", i), String.format("Bulk %03d", i), i));
+        }
+        int countBefore = store.getProductCount();
+        store.addProducts(products);
+
+        assertEquals(countBefore + 100, store.getProductCount());
+        Map<String, Product> read = new HashMap<>();
+        store.getProducts(List.of(products.get(0).getId(), products.get(99).getId(), prefix + "missing"), read);
+        assertEquals(2, read.size());
+        assertEquals(99, read.get(products.get(99).getId()).getQuantity());
+        assertTrue(movements().isEmpty());
+    }
+
+    @Test
+    void updateIsACompareAndSetOnTheVersion() {
+        Product added = product("a", "Widget", 5);
+        store.addProduct(added);
+
+        Product edited = new Product(added.getId(), prefix + "Gadget", 12.5, 8, "Test", "Edited", 0);
+        UpdateResult first = store.updateProduct(edited, null);
+        assertEquals(UpdateResult.Status.UPDATED, first.getStatus());
+        assertEquals(1, first.getProduct().getVersion());
+        assertEquals(prefix + "Gadget", first.getProduct().getName());
+        assertEquals(5, first.getPrevious().getQuantity());
+
+        // A second edit based on the same version has lost the race.
+        Product stale = new Product(added.getId(), prefix + "Stale", 1.0, 1, "Test", "Stale", 0);
+        UpdateResult conflict = store.updateProduct(stale, added);
+        assertEquals(UpdateResult.Status.CONFLICT, conflict.getStatus());
+        assertEquals(1, conflict.getProduct().getVersion());
+        assertEquals(prefix + "Gadget", conflict.getProduct().getName());
+        assertEquals(prefix + "Gadget", store.getProduct(added.getId()).getName());
+
+        // An edit based on the current version, with the previous row supplied, goes through.
+        Product current = store.getProduct(added.getId());
+        Product again = new Product(added.getId(), prefix + "Gizmo", 12.5, 8, "Test", "Edited", 1);
+        UpdateResult second = store.updateProduct(again, current);
+        assertEquals(UpdateResult.Status.UPDATED, second.getStatus());
+        assertEquals(2, store.getProduct(added.getId()).getVersion());
+
+        Product missing = new Product(prefix + "missing", prefix + "Missing", 1.0, 1, "Test", "", 0);
+        assertEquals(UpdateResult.Status.NOT_FOUND, store.updateProduct(missing, null).getStatus());
+
+        // Only the change of quantity is recorded, once.
+        List<StockMovement> edits = movements().stream().filter(m -> m.getReason().equals("EDIT"))
+                .collect(Collectors.toList());
+        assertEquals(1, edits.size());
+        assertEquals(3, edits.get(0).getQuantityChange());
+        assertEquals(8, edits.get(0).getQuantityAfter());
+    }
+
+    @Test
+    void deleteReturnsTheRemovedProduct() {
+        Product added = product("a", "Widget", 5);
+        store.addProduct(added);
+
+        Product deleted = store.deleteProduct(added.getId());
+        assertNotNull(deleted);
+        assertEquals(added.getName(), deleted.getName());
+        assertNull(store.getProduct(added.getId()));
+        assertNull(store.deleteProduct(added.getId()));
+    }
+
+    @Test
+    void adjustmentsApplyNetChangesAndRecordEachMovement() {
+        Product a = product("a", "Apple", 10);
+        Product b = product("b", "Banana", 3);
+        store.addProduct(a);
+        store.addProduct(b);
+
+        Map<String, Product> previous = new HashMap<>();
+        List<Product> updated = store.adjustQuantities(List.of(
+                new StockAdjustment(b.getId(), 5, "RESTOCK"),
+                new StockAdjustment(a.getId(), -4, "SALE"),
+                new StockAdjustment(a.getId(), -1, "SALE")), previous);
+
+        assertEquals(List.of(a.getId(), b.getId()),
+                updated.stream().map(Product::getId).collect(Collectors.toList()));
+        assertEquals(5, updated.get(0).getQuantity());
+        assertEquals(8, updated.get(1).getQuantity());
+        assertEquals(1, updated.get(0).getVersion());
+        assertEquals(10, previous.get(a.getId()).getQuantity());
+        assertEquals(3, previous.get(b.getId()).getQuantity());
+        assertEquals(5, store.getProduct(a.getId()).getQuantity());
+        assertEquals(1, store.getProduct(a.getId()).getVersion());
+
+        List<StockMovement> ledger = movements().stream().filter(m -> !m.getReason().equals("ADD"))
+                .collect(Collectors.toList());
+        assertEquals(3, ledger.size());
+        assertEquals(b.getId(), ledger.get(0).getProductId());
+        assertEquals(8, ledger.get(0).getQuantityAfter());
+        assertEquals(-4, ledger.get(1).getQuantityChange());
+        assertEquals(6, ledger.get(1).getQuantityAfter());
+        assertEquals(5, ledger.get(2).getQuantityAfter());
+    }
+
+    @Test
+    void failedAdjustmentChangesNothing() {
+        Product a = product("a", "Apple", 10);
+        Product b = product("b", "Banana", 3);
+        store.addProduct(a);
+        store.addProduct(b);
+        int movementsBefore = movements().size();
+
+        assertThrows(IllegalArgumentException.class, () -> store.adjustQuantities(List.of(
+                new StockAdjustment(a.getId(), -1, "SALE"),
+                new StockAdjustment(b.getId(), -4, "SALE")), new HashMap<>()));
+        assertThrows(IllegalArgumentException.class, () -> store.adjustQuantities(List.of(
+                new StockAdjustment(prefix + "missing", 1, "RESTOCK")), new HashMap<>()));
+
+        assertEquals(10, store.getProduct(a.getId()).getQuantity());
+        assertEquals(0, store.getProduct(a.getId()).getVersion());
+        assertEquals(3, store.getProduct(b.getId()).getQuantity());
+        assertEquals(movementsBefore, movements().size());
+    }
+
+    @Test
+    void productsStreamAndPageInNameOrder() {
+        store.addProduct(product("1", "cherry", 1));
+        store.addProduct(product("2", "Apple", 2));
+        store.addProduct(product("3", "banana", 3));
+        store.addProduct(product("4", "apple", 4));
+
+        List<String> expected = List.of(prefix + "2", prefix + "4", prefix + "3", prefix + "1");
+        assertEquals(expected, ownProducts().stream().map(Product::getId).collect(Collectors.toList()));
+
+        ProductQuery query = new ProductQuery(ProductQuery.SortColumn.NAME, true, null, null, null, prefix);
+        assertEquals(4, store.countProducts(query));
+        List<Product> first = store.queryProducts(query, null, 3);
+        List<Product> second = store.queryProducts(query, first.get(2), 3);
+        assertEquals(expected.subList(0, 3), first.stream().map(Product::getId).collect(Collectors.toList()));
+        assertEquals(expected.subList(3, 4), second.stream().map(Product::getId).collect(Collectors.toList()));
+        assertEquals(expected.subList(1, 3), store.queryProductsAt(query, 1, 2).stream().map(Product::getId)
+                .collect(Collectors.toList()));
+
+        ProductQuery byQuantity = new ProductQuery(ProductQuery.SortColumn.QUANTITY, false, "Test", 2, null, prefix);
+        assertEquals(List.of(prefix + "4", prefix + "3", prefix + "2"),
+                store.queryProducts(byQuantity, null, 10).stream().map(Product::getId)
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    void nameOrderFollowsRenamesAndDeletes() {
+        store.addProduct(product("1", "b", 1));
+        store.addProduct(product("2", "c", 1));
+        store.addProduct(product("3", "d", 1));
+        ownProducts();
+
+        store.updateProduct(new Product(prefix + "3", prefix + "a", 9.99, 1, "Test", "", 0), null);
+        store.deleteProduct(prefix + "2");
+
+        assertEquals(List.of(prefix + "3", prefix + "1"),
+                ownProducts().stream().map(Product::getId).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,39 @@
+package stocksynapse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketRateLimiterTest {
+
+    @Test
+    void cancelledAndTimedOutWaitersLeaveTheQueue() throws Exception {
+        // One token, refilled once a minute, so every later caller waits.
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1);
+        assertTrue(limiter.acquire().isDone());
+
+        CompletableFuture<Void> cancelled = limiter.acquire();
+        CompletableFuture<Void> waiting = limiter.acquire();
+        assertEquals(2, limiter.getStats().getQueueDepth());
+
+        cancelled.cancel(true);
+        assertEquals(1, limiter.getStats().getQueueDepth());
+
+        // Only counted once it has timed out, since the timeout may fire at any moment.
+        CompletableFuture<Void> timedOut = limiter.acquire().orTimeout(10, TimeUnit.MILLISECONDS);
+        timedOut.handle((ignored, error) -> null).get(5, TimeUnit.SECONDS);
+        assertTrue(timedOut.isCompletedExceptionally());
+        // The limiter's own callback may run just after the one above, on the timeout thread.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limiter.getStats().getQueueDepth() > 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, limiter.getStats().getQueueDepth());
+        assertFalse(waiting.isDone());
+    }
+}